@@ -0,0 +1,46 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+/**
+ * A {@link RouteListener} that is told which device generated each waypoint event when
+ * registered with a {@link MultiDeviceRouteManager}.  Managers tracking a single location
+ * notify the listener through {@link RouteListener#waypointEvent} instead.
+ *
+ * @author David Valeri
+ */
+public interface DeviceRouteListener extends RouteListener {
+
+    /**
+     * Called when a waypoint event triggers for a device in the observed
+     * {@link MultiDeviceRouteManager}.
+     *
+     * @param deviceId the ID of the device whose location update triggered the event
+     * @param waypointIndex the zero based index of the waypoint in the route that triggered
+     *            the event
+     * @param route the route that the current waypoint is part of
+     * @param locationTime the millisecond of the day based on the GPS/location provider time
+     *            stamp that triggered the event
+     * @param systemTime the time, in milliseconds since midnight January 1, 1970 UTC, at which
+     *            the location update that triggered the event occurred based on system time
+     * @param eventType the type of the event
+     * @param distanceToWaypoint the distance to the waypoint, in meters
+     *
+     * @see RouteListener#waypointEvent(int, Route, long, long, WaypointEventType, float)
+     */
+    void waypointEvent(String deviceId, int waypointIndex, Route route, long locationTime,
+            long systemTime, WaypointEventType eventType, float distanceToWaypoint);
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+/**
+ * Distance and bearing computations on the WGS84 ellipsoid using the inverse Vincenty formula.
+ * <p/>
+ * In addition to the single pair form, batch forms compute the distances from one origin to
+ * many positions or between many pairs of positions, and the origin form retains the terms of an
+ * origin for distances to positions that are not contiguous in an array.  The batch forms take and produce
+ * primitive arrays, do not allocate and hoist the work that depends only on the origin out of
+ * the loop, so that route evaluation, odometry and analysis can share one implementation
+ * regardless of volume.  All forms produce identical results for the same pair of positions.
+ *
+ * @author David Valeri
+ */
+public final class Geodesic {
+
+    /**
+     * WGS84 semi-major axis, in meters.
+     */
+    public static final double SEMI_MAJOR_AXIS = 6378137.0;
+
+    /**
+     * WGS84 semi-minor axis, in meters.
+     */
+    public static final double SEMI_MINOR_AXIS = 6356752.3142;
+
+    private static final int MAX_ITERATIONS = 20;
+    private static final double TO_RADIANS = Math.PI / 180.0;
+    private static final double F = (SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS) / SEMI_MAJOR_AXIS;
+    private static final double A_SQ_MINUS_B_SQ_OVER_B_SQ =
+            (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS * SEMI_MINOR_AXIS)
+                    / (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS);
+
+    private Geodesic() {
+    }
+
+    /**
+     * Computes the distance and bearings between two positions.
+     *
+     * @param lat1 the latitude of the first point, in degrees
+     * @param lon1 the longitude of the first point, in degrees
+     * @param lat2 the latitude of the second point, in degrees
+     * @param lon2 the longitude of the second point, in degrees
+     * @param results the array of length 1-3 that will contain in position 0, the distance in
+     *            meters, in position 1, the initial bearing, and in position 2, the final
+     *            bearing
+     */
+    public static void computeDistanceAndBearing(double lat1, double lon1,
+            double lat2, double lon2, float[] results) {
+        double u1 = Math.atan((1.0 - F) * Math.tan(lat1 * TO_RADIANS));
+        inverse(Math.sin(u1), Math.cos(u1), lon1 * TO_RADIANS, lat2, lon2, results);
+    }
+
+    /**
+     * Returns the distance, in meters, between two positions.
+     *
+     * @param lat1 the latitude of the first point, in degrees
+     * @param lon1 the longitude of the first point, in degrees
+     * @param lat2 the latitude of the second point, in degrees
+     * @param lon2 the longitude of the second point, in degrees
+     */
+    public static float distance(double lat1, double lon1, double lat2, double lon2) {
+        double u1 = Math.atan((1.0 - F) * Math.tan(lat1 * TO_RADIANS));
+        return inverse(Math.sin(u1), Math.cos(u1), lon1 * TO_RADIANS, lat2, lon2, null);
+    }
+
+    /**
+     * Computes the terms of the inverse formula that depend only on an origin so that the
+     * distances from the origin to positions visited in an arbitrary order can be computed with
+     * {@link #distanceFromOrigin(double[], int, double, double)} without recomputing them.
+     *
+     * @param lat the latitude of the origin, in degrees
+     * @param lon the longitude of the origin, in degrees
+     * @param origin the array to receive the 3 origin terms
+     * @param offset the index in {@code origin} at which to store the first term
+     */
+    public static void origin(double lat, double lon, double[] origin, int offset) {
+        double u1 = Math.atan((1.0 - F) * Math.tan(lat * TO_RADIANS));
+        origin[offset] = Math.sin(u1);
+        origin[offset + 1] = Math.cos(u1);
+        origin[offset + 2] = lon * TO_RADIANS;
+    }
+
+    /**
+     * Returns the distance, in meters, from an origin to a position.
+     *
+     * @param origin the array containing the terms computed by
+     *            {@link #origin(double, double, double[], int)}
+     * @param offset the index in {@code origin} of the first term
+     * @param lat the latitude of the position, in degrees
+     * @param lon the longitude of the position, in degrees
+     */
+    public static float distanceFromOrigin(double[] origin, int offset, double lat, double lon) {
+        return inverse(origin[offset], origin[offset + 1], origin[offset + 2], lat, lon, null);
+    }
+
+    /**
+     * Computes the distances, in meters, from one origin to a number of positions.
+     *
+     * @param lat the latitude of the origin, in degrees
+     * @param lon the longitude of the origin, in degrees
+     * @param lats the latitudes of the positions, in degrees
+     * @param lons the longitudes of the positions, in degrees
+     * @param offset the index in {@code lats} and {@code lons} of the first position
+     * @param count the number of positions
+     * @param results the array to receive the distances
+     * @param resultsOffset the index in {@code results} at which to store the first distance
+     */
+    public static void distances(double lat, double lon, double[] lats, double[] lons,
+            int offset, int count, float[] results, int resultsOffset) {
+        double u1 = Math.atan((1.0 - F) * Math.tan(lat * TO_RADIANS));
+        double sinU1 = Math.sin(u1);
+        double cosU1 = Math.cos(u1);
+        double lon1 = lon * TO_RADIANS;
+
+        for (int i = 0; i < count; i++) {
+            results[resultsOffset + i] = inverse(sinU1, cosU1, lon1,
+                    lats[offset + i], lons[offset + i], null);
+        }
+    }
+
+    /**
+     * Computes the distances, in meters, between a number of pairs of positions.
+     *
+     * @param lats1 the latitudes of the first position of each pair, in degrees
+     * @param lons1 the longitudes of the first position of each pair, in degrees
+     * @param lats2 the latitudes of the second position of each pair, in degrees
+     * @param lons2 the longitudes of the second position of each pair, in degrees
+     * @param offset the index in the position arrays of the first pair
+     * @param count the number of pairs
+     * @param results the array to receive the distances
+     * @param resultsOffset the index in {@code results} at which to store the first distance
+     */
+    public static void distances(double[] lats1, double[] lons1, double[] lats2,
+            double[] lons2, int offset, int count, float[] results, int resultsOffset) {
+        for (int i = 0; i < count; i++) {
+            int index = offset + i;
+            double u1 = Math.atan((1.0 - F) * Math.tan(lats1[index] * TO_RADIANS));
+            results[resultsOffset + i] = inverse(Math.sin(u1), Math.cos(u1),
+                    lons1[index] * TO_RADIANS, lats2[index], lons2[index], null);
+        }
+    }
+
+    /**
+     * Computes the total distance, in meters, along a path.
+     *
+     * @param lats the latitudes of the points on the path, in degrees
+     * @param lons the longitudes of the points on the path, in degrees
+     * @param offset the index in {@code lats} and {@code lons} of the first point
+     * @param count the number of points
+     */
+    public static double pathLength(double[] lats, double[] lons, int offset, int count) {
+        double length = 0;
+        if (count > 1) {
+            double u1 = Math.atan((1.0 - F) * Math.tan(lats[offset] * TO_RADIANS));
+            double sinU1 = Math.sin(u1);
+            double cosU1 = Math.cos(u1);
+            double lon1 = lons[offset] * TO_RADIANS;
+
+            for (int i = offset + 1; i < offset + count; i++) {
+                length += inverse(sinU1, cosU1, lon1, lats[i], lons[i], null);
+                u1 = Math.atan((1.0 - F) * Math.tan(lats[i] * TO_RADIANS));
+                sinU1 = Math.sin(u1);
+                cosU1 = Math.cos(u1);
+                lon1 = lons[i] * TO_RADIANS;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Implementation of the inverse Vincenty formula. There are implementations
+     * all over the net, but this one comes from Android with the hopes that it
+     * is well implemented and tested.  Restructured so that the terms depending only on the
+     * first point are supplied by the caller.
+     * 
+     * <p/>
+     * Copyright (C) 2007 The Android Open Source Project
+     * 
+     * Licensed under the Apache License, Version 2.0 (the "License"); you may
+     * not use this file except in compliance with the License. You may obtain a
+     * copy of the License at
+     * 
+     * http://www.apache.org/licenses/LICENSE-2.0
+     * 
+     * Unless required by applicable law or agreed to in writing, software
+     * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+     * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+     * License for the specific language governing permissions and limitations
+     * under the License.
+     * 
+     * @param sinU1
+     *            the sine of the reduced latitude of the first point
+     * @param cosU1
+     *            the cosine of the reduced latitude of the first point
+     * @param lon1
+     *            the longitude of the first point, in radians
+     * @param lat2
+     *            the latitude of the second point, in degrees
+     * @param lon2
+     *            the longitude of the second point, in degrees
+     * @param results
+     *            {@code null} or the array of length 1-3 that will contain in position 0, the
+     *            distance in meters, in position 1, the initial bearing, and in
+     *            position 2, the final bearing
+     * @return the distance in meters
+     */
+    private static float inverse(double sinU1, double cosU1, double lon1,
+            double lat2, double lon2, float[] results) {
+        // Based on http://www.ngs.noaa.gov/PUBS_LIB/inverse.pdf
+        // using the "Inverse Formula" (section 4)
+
+        lat2 *= TO_RADIANS;
+        lon2 *= TO_RADIANS;
+
+        double L = lon2 - lon1;
+        double A = 0.0;
+        double U2 = Math.atan((1.0 - F) * Math.tan(lat2));
+
+        double cosU2 = Math.cos(U2);
+        double sinU2 = Math.sin(U2);
+        double cosU1cosU2 = cosU1 * cosU2;
+        double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0.0;
+        double deltaSigma = 0.0;
+        double cosSqAlpha = 0.0;
+        double cos2SM = 0.0;
+        double cosSigma = 0.0;
+        double sinSigma = 0.0;
+        double cosLambda = 0.0;
+        double sinLambda = 0.0;
+
+        double lambda = L; // initial guess
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            double lambdaOrig = lambda;
+            cosLambda = Math.cos(lambda);
+            sinLambda = Math.sin(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            double sinSqSigma = t1 * t1 + t2 * t2; // (14)
+            sinSigma = Math.sqrt(sinSqSigma);
+            cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda; // (15)
+            sigma = Math.atan2(sinSigma, cosSigma); // (16)
+            double sinAlpha = (sinSigma == 0) ? 0.0 : cosU1cosU2 * sinLambda
+                    / sinSigma; // (17)
+            cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            cos2SM = (cosSqAlpha == 0) ? 0.0 : cosSigma - 2.0 * sinU1sinU2
+                    / cosSqAlpha; // (18)
+
+            double uSquared = cosSqAlpha * A_SQ_MINUS_B_SQ_OVER_B_SQ; // defn
+            A = 1
+                    + (uSquared / 16384.0)
+                    * // (3)
+                    (4096.0 + uSquared
+                            * (-768 + uSquared * (320.0 - 175.0 * uSquared)));
+            double B = (uSquared / 1024.0) * // (4)
+                    (256.0 + uSquared
+                            * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+            double C = (F / 16.0) * cosSqAlpha
+                    * (4.0 + F * (4.0 - 3.0 * cosSqAlpha)); // (10)
+            double cos2SMSq = cos2SM * cos2SM;
+            deltaSigma = B
+                    * sinSigma
+                    * // (6)
+                    (cos2SM + (B / 4.0)
+                            * (cosSigma * (-1.0 + 2.0 * cos2SMSq) - (B / 6.0)
+                                    * cos2SM
+                                    * (-3.0 + 4.0 * sinSigma * sinSigma)
+                                    * (-3.0 + 4.0 * cos2SMSq)));
+
+            lambda = L
+                    + (1.0 - C)
+                    * F
+                    * sinAlpha
+                    * (sigma + C
+                            * sinSigma
+                            * (cos2SM + C * cosSigma
+                                    * (-1.0 + 2.0 * cos2SM * cos2SM))); // (11)
+
+            double delta = (lambda - lambdaOrig) / lambda;
+            if (Math.abs(delta) < 1.0e-12) {
+                break;
+            }
+        }
+
+        float distance = (float) (SEMI_MINOR_AXIS * A * (sigma - deltaSigma));
+        if (results != null) {
+            results[0] = distance;
+            if (results.length > 1) {
+                float initialBearing = (float) Math.atan2(cosU2 * sinLambda, cosU1
+                        * sinU2 - sinU1 * cosU2 * cosLambda);
+                initialBearing *= 180.0 / Math.PI;
+                results[1] = initialBearing;
+                if (results.length > 2) {
+                    float finalBearing = (float) Math.atan2(cosU1 * sinLambda,
+                            -sinU1 * cosU2 + cosU1 * sinU2 * cosLambda);
+                    finalBearing *= 180.0 / Math.PI;
+                    results[2] = finalBearing;
+                }
+            }
+        }
+        return distance;
+    }
+}
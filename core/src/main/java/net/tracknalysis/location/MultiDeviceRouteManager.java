@@ -0,0 +1,280 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.metrics.PipelineTrace;
+import net.tracknalysis.location.metrics.RouteManagerMetrics;
+
+/**
+ * A route manager tracking the locations of many devices, such as the receivers in each car on
+ * a circuit, against one set of routes.  The routes, their listeners and their geometry are
+ * registered and held once and shared by every device.  Each device has its own route state,
+ * created on its first update and guarded by a lock of its own, so updates for different
+ * devices are processed concurrently by any number of threads without contending on a global
+ * lock.  Updates for the same device are processed one at a time in the order the device's
+ * lock is acquired, so each device should be fed by a single thread to preserve the order of its
+ * fixes.
+ * <p/>
+ * Listeners implementing {@link DeviceRouteListener} are told which device generated each
+ * event.  Other listeners receive the events of every device without its ID.
+ * <p/>
+ * The metrics are shared by all devices.  The update rate is approximate while updates are
+ * processed concurrently.
+ *
+ * @author David Valeri
+ */
+public class MultiDeviceRouteManager implements RouteManager {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final RouteRegistry routeRegistry = new RouteRegistry();
+    private final ConcurrentMap<String, Device> devices;
+    private final RouteManagerMetrics metrics = new RouteManagerMetrics();
+    private volatile LocalTangentPlane localTangentPlane;
+    private volatile float maxSpeed;
+    private volatile PipelineTrace pipelineTrace;
+    private volatile PipelineProbe probe;
+
+    public MultiDeviceRouteManager() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param concurrencyLevel the estimated number of threads concurrently delivering updates,
+     *            used to size the shards of the device map
+     */
+    public MultiDeviceRouteManager(int concurrencyLevel) {
+        devices = new ConcurrentHashMap<String, Device>(16, 0.75f, concurrencyLevel);
+    }
+
+    @Override
+    public final void addRouteForSynchronousListeners(Route route, float distance,
+            RouteListener... listeners) {
+        routeRegistry.add(route, distance, listeners);
+    }
+
+    @Override
+    public final void addRouteForSynchronousListeners(Route route, float distance,
+            Set<WaypointEventType> eventTypes, RouteListener... listeners) {
+        routeRegistry.add(route, distance, RouteSet.toEventMask(eventTypes), listeners);
+    }
+
+    @Override
+    public final void addListenerForSynchronousNotification(Route route,
+            Set<WaypointEventType> eventTypes, RouteListener listener) {
+        routeRegistry.addListener(route, RouteSet.toEventMask(eventTypes), listener);
+    }
+
+    @Override
+    public final void addRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners) {
+        routeRegistry.addAll(routes, distances, listeners);
+    }
+
+    @Override
+    public final void replaceRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners) {
+        routeRegistry.replaceAll(routes, distances, listeners);
+    }
+
+    @Override
+    public final void removeRouteForSynchronousListeners(Route route) {
+        routeRegistry.remove(route);
+    }
+
+    /**
+     * Returns the number of routes being tracked.
+     */
+    public final int getRouteCount() {
+        return routeRegistry.getRouteCount();
+    }
+
+    /**
+     * Returns the number of listeners registered across all routes.
+     */
+    public final int getRouteListenerCount() {
+        return routeRegistry.getRouteListenerCount();
+    }
+
+    /**
+     * Returns the IDs of the devices for which updates have been processed and that have not
+     * been removed.  The set is a live, unmodifiable view.
+     */
+    public final Set<String> getDeviceIds() {
+        return Collections.unmodifiableSet(devices.keySet());
+    }
+
+    /**
+     * Returns the number of devices for which updates have been processed and that have not
+     * been removed.
+     */
+    public final int getDeviceCount() {
+        return devices.size();
+    }
+
+    /**
+     * Discards the route state of a device.  The next update for the device starts every route
+     * from its first waypoint.  Does nothing if the device is not known.
+     *
+     * @param deviceId the ID of the device
+     *
+     * @return true if the device was known
+     */
+    public final boolean removeDevice(String deviceId) {
+        return devices.remove(deviceId) != null;
+    }
+
+    /**
+     * @see AbstractRouteManager#getLocalTangentPlane()
+     */
+    public final LocalTangentPlane getLocalTangentPlane() {
+        return localTangentPlane;
+    }
+
+    /**
+     * Sets the plane in which waypoint distances are evaluated for every device.
+     *
+     * @see AbstractRouteManager#setLocalTangentPlane(LocalTangentPlane)
+     */
+    public final void setLocalTangentPlane(LocalTangentPlane localTangentPlane) {
+        this.localTangentPlane = localTangentPlane;
+    }
+
+    /**
+     * @see AbstractRouteManager#getMaxSpeed()
+     */
+    public final float getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * Sets the maximum speed, in meters per second, at which any device can move.
+     *
+     * @throws IllegalArgumentException if {@code maxSpeed} is negative or not a number
+     *
+     * @see AbstractRouteManager#setMaxSpeed(float)
+     */
+    public final void setMaxSpeed(float maxSpeed) {
+        if (!(maxSpeed >= 0)) {
+            throw new IllegalArgumentException("Invalid maximum speed " + maxSpeed + ".");
+        }
+        this.maxSpeed = maxSpeed;
+    }
+
+    /**
+     * Returns the metrics for location updates and route listener callbacks of all devices.
+     */
+    public final RouteManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public final PipelineTrace getPipelineTrace() {
+        return pipelineTrace;
+    }
+
+    /**
+     * Sets the trace receiving the latency of route listener notifications.  Set to {@code null}
+     * to disable tracing.
+     */
+    public final void setPipelineTrace(PipelineTrace pipelineTrace) {
+        this.pipelineTrace = pipelineTrace;
+    }
+
+    public final PipelineProbe getProbe() {
+        return probe;
+    }
+
+    /**
+     * Sets the probe notified of route processing and waypoint events.  Set to {@code null} to
+     * disable notification.
+     */
+    public final void setProbe(PipelineProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * Processes a location received from a device.
+     *
+     * @param deviceId the ID of the device
+     * @param location the location
+     */
+    public final void receiveLocation(String deviceId, Location location) {
+        processUpdate(deviceId, location.getLatitude(), location.getLongitude(),
+                location.getTime(), location.getReceivedTime(), 0);
+    }
+
+    public final void processUpdate(String deviceId, double currentLat, double currentLon,
+            long gpsTime, long systemTime) {
+        processUpdate(deviceId, currentLat, currentLon, gpsTime, systemTime, 0);
+    }
+
+    /**
+     * Processes a location update for a device, attributing route listener notifications to the
+     * input that produced the location when tracing.
+     *
+     * @param deviceId the ID of the device
+     * @param firstByteTime the {@link System#nanoTime()} at which the first byte contributing to
+     *            the location arrived or 0 if not known
+     */
+    public final void processUpdate(String deviceId, double currentLat, double currentLon,
+            long gpsTime, long systemTime, long firstByteTime) {
+
+        if (deviceId == null) {
+            throw new IllegalArgumentException("Device ID is required.");
+        }
+
+        Device device = devices.get(deviceId);
+        if (device == null) {
+            device = new Device(new RouteEvaluator(metrics, deviceId));
+            Device existing = devices.putIfAbsent(deviceId, device);
+            if (existing != null) {
+                device = existing;
+            }
+        }
+
+        synchronized (device) {
+            RouteSet set = routeRegistry.getRouteSet(localTangentPlane);
+            if (device.routeTable.set != set) {
+                device.routeTable = new RouteTable(set, device.routeTable);
+            }
+
+            device.evaluator.evaluate(device.routeTable, currentLat, currentLon, gpsTime,
+                    systemTime, maxSpeed, firstByteTime, pipelineTrace, probe);
+        }
+    }
+
+    /**
+     * The route state of a device, guarded by the device's monitor.
+     */
+    private static final class Device {
+
+        private final RouteEvaluator evaluator;
+        private RouteTable routeTable = RouteTable.EMPTY;
+
+        Device(RouteEvaluator evaluator) {
+            this.evaluator = evaluator;
+        }
+    }
+}
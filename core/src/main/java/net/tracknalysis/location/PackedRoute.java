@@ -0,0 +1,191 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A route backed by packed primitive coordinate arrays for routes with very many waypoints, such
+ * as a centerline with a point every meter.  Coordinates are held either as doubles or, to halve
+ * the memory required, as fixed-point integers in units of {@link #FIXED_POINT_SCALE}ths of a
+ * degree, a resolution of roughly 1.1 cm.
+ * <p/>
+ * Waypoints are not retained.  The route manager consumes the coordinates through
+ * {@link #getLatitude(int)} and {@link #getLongitude(int)} and the {@link Waypoint}s returned by
+ * {@link #getWaypoints()} are created on access with an ID resolved from their position, the
+ * one based index of the waypoint in the route.
+ *
+ * @author David Valeri
+ */
+public class PackedRoute extends Route {
+
+    /**
+     * The number of fixed-point units per degree.
+     */
+    public static final double FIXED_POINT_SCALE = 1e7;
+
+    private final int count;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] fixedPointLatitudes;
+    private final int[] fixedPointLongitudes;
+    private final List<Waypoint> waypoints = new WaypointList();
+
+    /**
+     * Constructs a new route holding the coordinates as doubles.  The arrays are copied.
+     *
+     * @param name the name of the route
+     * @param latitudes the latitudes of the waypoints, in degrees
+     * @param longitudes the longitudes of the waypoints, in degrees
+     *
+     * @throws IllegalArgumentException if the arrays are not the same length
+     */
+    public PackedRoute(String name, double[] latitudes, double[] longitudes) {
+        this(name, latitudes, longitudes, false);
+    }
+
+    /**
+     * Constructs a new route.  The arrays are copied.
+     *
+     * @param name the name of the route
+     * @param latitudes the latitudes of the waypoints, in degrees
+     * @param longitudes the longitudes of the waypoints, in degrees
+     * @param fixedPoint true to hold the coordinates as fixed-point integers
+     *
+     * @throws IllegalArgumentException if the arrays are not the same length
+     */
+    public PackedRoute(String name, double[] latitudes, double[] longitudes,
+            boolean fixedPoint) {
+        super(name);
+        count = checkLength(latitudes.length, longitudes.length);
+
+        if (fixedPoint) {
+            this.latitudes = null;
+            this.longitudes = null;
+            fixedPointLatitudes = new int[count];
+            fixedPointLongitudes = new int[count];
+            for (int i = 0; i < count; i++) {
+                fixedPointLatitudes[i] = toFixedPoint(latitudes[i]);
+                fixedPointLongitudes[i] = toFixedPoint(longitudes[i]);
+            }
+        } else {
+            this.latitudes = latitudes.clone();
+            this.longitudes = longitudes.clone();
+            fixedPointLatitudes = null;
+            fixedPointLongitudes = null;
+        }
+    }
+
+    /**
+     * Constructs a new route from fixed-point coordinates.  The arrays are not copied and must
+     * not be modified after construction so that large routes may be loaded without holding
+     * two copies of their coordinates.
+     *
+     * @param name the name of the route
+     * @param latitudes the latitudes of the waypoints, in {@link #FIXED_POINT_SCALE}ths of a
+     *            degree
+     * @param longitudes the longitudes of the waypoints, in {@link #FIXED_POINT_SCALE}ths of
+     *            a degree
+     *
+     * @throws IllegalArgumentException if the arrays are not the same length
+     */
+    public PackedRoute(String name, int[] latitudes, int[] longitudes) {
+        super(name);
+        count = checkLength(latitudes.length, longitudes.length);
+        this.latitudes = null;
+        this.longitudes = null;
+        fixedPointLatitudes = latitudes;
+        fixedPointLongitudes = longitudes;
+    }
+
+    /**
+     * Converts a coordinate, in degrees, to fixed-point.
+     */
+    public static int toFixedPoint(double degrees) {
+        return (int) Math.round(degrees * FIXED_POINT_SCALE);
+    }
+
+    /**
+     * Returns true if the coordinates are held as fixed-point integers.
+     */
+    public boolean isFixedPoint() {
+        return fixedPointLatitudes != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned list creates a new {@link Waypoint} on each access.
+     */
+    @Override
+    public List<Waypoint> getWaypoints() {
+        return waypoints;
+    }
+
+    @Override
+    public int getWaypointCount() {
+        return count;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        return latitudes != null
+                ? latitudes[index] : fixedPointLatitudes[index] / FIXED_POINT_SCALE;
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        return longitudes != null
+                ? longitudes[index] : fixedPointLongitudes[index] / FIXED_POINT_SCALE;
+    }
+
+    /**
+     * Returns the ID of the waypoint at {@code index}.
+     */
+    public String getWaypointId(int index) {
+        checkIndex(index);
+        return String.valueOf(index + 1);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    private static int checkLength(int latitudeCount, int longitudeCount) {
+        if (latitudeCount != longitudeCount) {
+            throw new IllegalArgumentException("Received " + latitudeCount + " latitudes and "
+                    + longitudeCount + " longitudes.");
+        }
+        return latitudeCount;
+    }
+
+    private final class WaypointList extends AbstractList<Waypoint> implements RandomAccess {
+
+        @Override
+        public Waypoint get(int index) {
+            return new Waypoint(getWaypointId(index), getLatitude(index), getLongitude(index));
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
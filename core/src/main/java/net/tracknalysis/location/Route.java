@@ -38,10 +38,42 @@ public class Route {
         }
     }
 
+    /**
+     * Constructs a route whose waypoints are provided by overriding {@link #getWaypoints()},
+     * {@link #getWaypointCount()}, {@link #getLatitude(int)} and {@link #getLongitude(int)}.
+     *
+     * @param name the name of the route
+     */
+    protected Route(String name) {
+        this.name = name;
+        this.waypoints = Collections.emptyList();
+    }
+
     public List<Waypoint> getWaypoints() {
         return this.waypoints;
     }
 
+    /**
+     * Returns the number of waypoints in the route.
+     */
+    public int getWaypointCount() {
+        return waypoints.size();
+    }
+
+    /**
+     * Returns the latitude, in degrees, of the waypoint at {@code index}.
+     */
+    public double getLatitude(int index) {
+        return waypoints.get(index).getLatitude();
+    }
+
+    /**
+     * Returns the longitude, in degrees, of the waypoint at {@code index}.
+     */
+    public double getLongitude(int index) {
+        return waypoints.get(index).getLongitude();
+    }
+
     public String getName() {
         return name;
     }
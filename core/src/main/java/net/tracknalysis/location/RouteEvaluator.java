@@ -0,0 +1,306 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.metrics.PipelineTrace;
+import net.tracknalysis.location.metrics.RouteManagerMetrics;
+
+import org.slf4j.Logger;
+
+/**
+ * Evaluates location updates against a {@link RouteTable}, advancing the state of each route
+ * and notifying its listeners of the waypoint events generated.  An evaluator holds scratch
+ * space for a single update and is used by one thread at a time, so a manager tracking several
+ * locations concurrently uses one evaluator per location.
+ *
+ * @author David Valeri
+ */
+final class RouteEvaluator {
+
+    private static final Logger LOG = AbstractRouteManager.LOG;
+
+    private final RouteManagerMetrics metrics;
+    private final String deviceId;
+
+    /**
+     * Scratch space for the projection of the current location into the plane of the table.
+     */
+    private final double[] currentPosition = new double[3];
+
+    /**
+     * Scratch space for the geodesic terms of the current location when the table has no plane.
+     */
+    private final double[] currentOrigin = new double[3];
+    private PipelineTrace updatePipelineTrace;
+    private PipelineProbe updateProbe;
+    private long updateFirstByteTime;
+    private long updateStartTime;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param metrics the metrics recording updates and listener callbacks
+     * @param deviceId the ID of the device whose updates are evaluated, passed to
+     *            {@link DeviceRouteListener}s, or {@code null} to notify every listener without
+     *            an ID
+     */
+    RouteEvaluator(RouteManagerMetrics metrics, String deviceId) {
+        this.metrics = metrics;
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * Evaluates a location update against every route in {@code table}.
+     *
+     * @param maxSpeed the maximum speed, in meters per second, used to skip routes that cannot
+     *            have reached their next waypoint or 0 to evaluate every route
+     * @param firstByteTime the {@link System#nanoTime()} at which the first byte contributing to
+     *            the location arrived or 0 if not known
+     * @param pipelineTrace the trace receiving the latency of notifications or {@code null}
+     * @param probe the probe notified of route processing and waypoint events or {@code null}
+     */
+    void evaluate(RouteTable table, double currentLat, double currentLon, long gpsTime,
+            long systemTime, float maxSpeed, long firstByteTime, PipelineTrace pipelineTrace,
+            PipelineProbe probe) {
+
+        long startTime = System.nanoTime();
+        updatePipelineTrace = pipelineTrace;
+        updateProbe = probe;
+        int routesEvaluated = 0;
+        int routesSkipped = 0;
+        // Meters covered per millisecond of GPS time
+        float maxDistanceRate = maxSpeed / 1000f;
+        updateFirstByteTime = firstByteTime;
+        updateStartTime = startTime;
+        LocalTangentPlane plane = table.plane;
+
+        if (plane != null) {
+            plane.project(currentLat, currentLon, currentPosition, 0);
+        } else {
+            Geodesic.origin(currentLat, currentLon, currentOrigin, 0);
+        }
+        
+        boolean[] reached = table.reached;
+        float[] lastDistances = table.lastDistances;
+        float[] closestDistances = table.closestDistances;
+        long[] closestGpsTimes = table.closestGpsTimes;
+        long[] closestSystemTimes = table.closestSystemTimes;
+        long[] lastEvaluationGpsTimes = table.lastEvaluationGpsTimes;
+        float[] triggerMargins = table.triggerMargins;
+        double[] nextCoordinates = table.nextCoordinates;
+        
+        for (int i = 0; i < table.size; i++) {
+
+            if (maxDistanceRate > 0 && !reached[i]) {
+                long elapsedTime = gpsTime - lastEvaluationGpsTimes[i];
+                if (elapsedTime >= 0 && triggerMargins[i] > maxDistanceRate * elapsedTime) {
+                    routesSkipped++;
+                    continue;
+                }
+            }
+
+            Route route = table.routes[i];
+            RouteListener[] listeners = table.listeners[i];
+            int[] listenerMasks = table.listenerMasks[i];
+            int waypointIndex = table.nextWaypointIndexes[i];
+            int eventMask = table.eventMasks[i];
+            routesEvaluated++;
+
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Calculating info for route {}.  Current state is {}",
+                        route.getName(), table.toString(i));
+            }
+
+            float triggerDistance = table.triggerDistances[i];
+            float currentDistance;
+
+            if (nextCoordinates != null) {
+                currentDistance = (float) LocalTangentPlane.distance(
+                        currentPosition, 0, nextCoordinates, i * 3);
+            } else {
+                currentDistance = Geodesic.distanceFromOrigin(currentOrigin, 0,
+                        table.nextLatitudes[i], table.nextLongitudes[i]);
+            }
+
+            if (!reached[i]) {
+                if (currentDistance < triggerDistance) {
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(
+                                "Entering notification perimeter for waypoint  {} at GPS time "
+                                        + "{} and system time {}.  Distance to waypoint is {}m.",
+                                new Object[] { table.getNextWaypoint(i), gpsTime, systemTime,
+                                        currentDistance });
+                    }
+
+                    reached[i] = true;
+                    closestDistances[i] = currentDistance;
+                    closestGpsTimes[i] = gpsTime;
+                    closestSystemTimes[i] = systemTime;
+
+                    if ((eventMask & RouteSet.ENTERING_PERIMETER) != 0) {
+                        notifyListeners(listeners, listenerMasks, route, waypointIndex,
+                                gpsTime, systemTime, WaypointEventType.ENTERING_PERIMETER,
+                                currentDistance);
+                    }
+                } else {
+                    triggerMargins[i] = currentDistance - triggerDistance;
+                    
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace(
+                                "Waiting to enter notification perimeter for waypoint {} at GPS Time "
+                                        + "{} and system time {}.  Distance to waypoint is {}m.",
+                                new Object[] { table.getNextWaypoint(i), gpsTime, systemTime,
+                                        currentDistance });
+                    }
+                }
+            } else {
+                if (currentDistance > triggerDistance) {
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(
+                                "Leaving notification perimeter for waypoint {} at GPS time "
+                                        + "{} and system time {}.  Distance to waypoint is {}m.",
+                                new Object[] { table.getNextWaypoint(i), gpsTime, systemTime,
+                                        currentDistance });
+                    }
+
+                    if ((eventMask & RouteSet.LEAVING_PERIMETER) != 0) {
+                        notifyListeners(listeners, listenerMasks, route, waypointIndex,
+                                gpsTime, systemTime, WaypointEventType.LEAVING_PERIMETER,
+                                currentDistance);
+                    }
+
+                    if ((eventMask & RouteSet.CLOSEST_TO_WAYPOINT) != 0) {
+                        notifyListeners(listeners, listenerMasks, route, waypointIndex,
+                                closestGpsTimes[i], closestSystemTimes[i],
+                                WaypointEventType.CLOSEST_TO_WAYPOINT, closestDistances[i]);
+                    }
+
+                    reached[i] = false;
+                    triggerMargins[i] = 0;
+                    closestDistances[i] = Float.POSITIVE_INFINITY;
+                    closestGpsTimes[i] = 0;
+                    closestSystemTimes[i] = 0;
+                    table.setNextWaypointIndex(i, (waypointIndex + 1) % table.waypointCounts[i]);
+                } else {
+
+                    // Update the closest distance while we are in the
+                    // perimeter, if anyone is listening for it.
+                    if ((eventMask & RouteSet.CLOSEST_TO_WAYPOINT) != 0
+                            && currentDistance < closestDistances[i]) {
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace(
+                                    "Calculated new closest distance to waypoint {} at GPS Time {} "
+                                            + "and system time {}.  Distance to waypoint is {}m.",
+                                    new Object[] { table.getNextWaypoint(i), gpsTime,
+                                            systemTime, currentDistance });
+                        }
+
+                        closestDistances[i] = currentDistance;
+                        closestGpsTimes[i] = gpsTime;
+                        closestSystemTimes[i] = systemTime;
+                    }
+
+                    if ((eventMask & RouteSet.APPROACHING) != 0
+                            && currentDistance < lastDistances[i]) {
+
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace(
+                                    "Approaching waypoint {} at GPS Time {} and system time {}.  Distance "
+                                            + "to waypoint is {}m.",
+                                    new Object[] { table.getNextWaypoint(i), gpsTime,
+                                            systemTime, currentDistance });
+                        }
+
+                        notifyListeners(listeners, listenerMasks, route, waypointIndex,
+                                gpsTime, systemTime, WaypointEventType.APPROACHING,
+                                currentDistance);
+                    } else if ((eventMask & RouteSet.RECEDING) != 0
+                            && currentDistance > lastDistances[i]) {
+
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace(
+                                    "Receding waypoint {} at GPS Time {} and system time {}.  Distance "
+                                            + "to waypoint is {}m.",
+                                    new Object[] { table.getNextWaypoint(i), gpsTime,
+                                            systemTime, currentDistance });
+                        }
+
+                        notifyListeners(listeners, listenerMasks, route, waypointIndex,
+                                gpsTime, systemTime, WaypointEventType.RECEDING,
+                                currentDistance);
+                    }
+                }
+            }
+
+            lastDistances[i] = currentDistance;
+            lastEvaluationGpsTimes[i] = gpsTime;
+        }
+        
+        metrics.recordUpdate(startTime, routesEvaluated, routesSkipped);
+        
+        if (updateProbe != null) {
+            updateProbe.routesProcessed(
+                    routesEvaluated, routesSkipped, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Notifies the listeners subscribing to {@code waypointEventType} of an event.
+     *
+     * @param listenerMasks the mask of the event types to which each listener subscribes
+     */
+    private void notifyListeners(RouteListener[] listeners, int[] listenerMasks, Route route,
+            int waypointIndex, long gpsTime, long systemTime,
+            WaypointEventType waypointEventType, float distanceToWaypoint) {
+
+        int eventMask = RouteSet.toEventMask(waypointEventType);
+
+        if (updateProbe != null) {
+            updateProbe.waypointEvent(route, waypointIndex, waypointEventType, distanceToWaypoint);
+        }
+        
+        for (int i = 0; i < listeners.length; i++) {
+            if ((listenerMasks[i] & eventMask) == 0) {
+                continue;
+            }
+
+            RouteListener listener = listeners[i];
+            long startTime = System.nanoTime();
+            if (updatePipelineTrace != null) {
+                updatePipelineTrace.recordWaypointEvent(
+                        updateFirstByteTime, updateStartTime, startTime);
+            }
+            try {
+                if (deviceId != null && listener instanceof DeviceRouteListener) {
+                    ((DeviceRouteListener) listener).waypointEvent(deviceId, waypointIndex,
+                            route, gpsTime, systemTime, waypointEventType, distanceToWaypoint);
+                } else {
+                    listener.waypointEvent(waypointIndex, route, gpsTime, systemTime,
+                            waypointEventType, distanceToWaypoint);
+                }
+            } catch (Exception e) {
+                metrics.recordListenerError();
+                LOG.error("Error while notifying route listener, " + listener
+                        + ".", e);
+            }
+            metrics.recordWaypointEvent(startTime);
+        }
+    }
+}
@@ -15,6 +15,10 @@
  */
 package net.tracknalysis.location;
 
+import java.util.Set;
+
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+
 /**
  * Interface for entities that process routes and generate events based on waypoint data.
  *
@@ -37,6 +41,85 @@ public interface RouteManager {
 	 */
     void addRouteForSynchronousListeners(Route route, float distance, RouteListener... listeners);
     
+    /**
+     * Adds a route and a number of listeners for synchronous notification of only the given
+     * types of waypoint event.  Events of types to which no listener of the route subscribes are
+     * not generated, and the closest distance to each waypoint is only tracked if a listener
+     * subscribes to {@link WaypointEventType#CLOSEST_TO_WAYPOINT}, so listeners interested in a
+     * few types of event, typically {@link WaypointEventType#ENTERING_PERIMETER} and
+     * {@link WaypointEventType#CLOSEST_TO_WAYPOINT}, are cheaper to serve than listeners for
+     * every event.
+     *
+     * @param route the route
+     * @param distance the perimeter distance to use when generating waypoint events, in meters
+     * @param eventTypes the types of waypoint event to deliver to the listeners
+     * @param listeners the listeners to register for the generated waypoint events
+     *
+     * @throws IllegalStateException if the route is already registered
+     *
+     * @see #addRouteForSynchronousListeners(Route, float, RouteListener...)
+     */
+    void addRouteForSynchronousListeners(Route route, float distance,
+            Set<WaypointEventType> eventTypes, RouteListener... listeners);
+    
+    /**
+     * Adds a listener to a registered route for synchronous notification of only the given
+     * types of waypoint event, so that the listeners of a route may subscribe to different types
+     * of event.  The progress of the route is unchanged.  A listener already registered for the
+     * route is additionally notified of the given types of event.  Listeners keep their types of
+     * event when the route is registered again by
+     * {@link #replaceRoutesForSynchronousListeners(Route[], float[], RouteListener...)}.
+     *
+     * @param route the route
+     * @param eventTypes the types of waypoint event to deliver to the listener
+     * @param listener the listener to register for the generated waypoint events
+     *
+     * @throws IllegalStateException if the route is not registered
+     *
+     * @see #addRouteForSynchronousListeners(Route, float, Set, RouteListener...)
+     */
+    void addListenerForSynchronousNotification(Route route, Set<WaypointEventType> eventTypes,
+            RouteListener listener);
+    
+    /**
+     * Adds a number of routes, each with the same listeners for synchronous notification.
+     * Equivalent to adding each route in turn with
+     * {@link #addRouteForSynchronousListeners(Route, float, RouteListener...)} except that the
+     * routes are added together, which is far cheaper when adding many routes.
+     *
+     * @param routes the routes
+     * @param distances the perimeter distance to use for each route when generating waypoint
+     *            events, in meters
+     * @param listeners the listeners to register for the generated waypoint events
+     *
+     * @throws IllegalStateException if a route is already registered or appears more than once,
+     *             in which case no routes are added
+     * @throws IllegalArgumentException if the number of distances does not match the number of
+     *             routes
+     */
+    void addRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners);
+    
+    /**
+     * Replaces every registered route with the given routes, each with the same listeners for
+     * synchronous notification.  The change is applied atomically: a location update is
+     * evaluated either against the previous routes or against the new routes, never a mix of
+     * the two.  Routes registered both before and after the change retain their progress, such
+     * as the next waypoint, while routes no longer registered are discarded.
+     *
+     * @param routes the routes
+     * @param distances the perimeter distance to use for each route when generating waypoint
+     *            events, in meters
+     * @param listeners the listeners to register for the generated waypoint events
+     *
+     * @throws IllegalStateException if a route appears more than once, in which case the
+     *             registered routes are unchanged
+     * @throws IllegalArgumentException if the number of distances does not match the number of
+     *             routes
+     */
+    void replaceRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners);
+    
     /**
      * Removes a route and all of its listeners.  Does nothing if the route was not previously registered.
      *
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The routes registered with a route manager.  Registrations are made under the registry's
+ * lock and published, by the registering thread, as an immutable {@link RouteSet} that
+ * replaces the previous set atomically.  The threads processing updates read the current set
+ * without locking and pick up a new set between updates, so a change to any number of routes
+ * is seen either entirely or not at all.  A set is only built by an updating thread when the
+ * plane in which distances are evaluated changes.
+ *
+ * @author David Valeri
+ */
+final class RouteRegistry {
+
+    private final Map<Route, RouteSet.Entry> entryMap =
+            new LinkedHashMap<Route, RouteSet.Entry>();
+
+    /**
+     * The set of the values in {@link #entryMap}, replaced on modification and when the plane
+     * changes.
+     */
+    private final AtomicReference<RouteSet> routeSet =
+            new AtomicReference<RouteSet>(RouteSet.EMPTY);
+
+    synchronized void add(Route route, float distance, RouteListener[] listeners) {
+        add(route, distance, RouteSet.ALL_EVENTS, listeners);
+    }
+
+    synchronized void add(Route route, float distance, int eventMask,
+            RouteListener[] listeners) {
+        if (entryMap.containsKey(route)) {
+            throw new IllegalStateException("Route already added.");
+        }
+
+        entryMap.put(route, new RouteSet.Entry(route, toUniqueListeners(listeners), distance,
+                eventMask));
+        publish();
+    }
+
+    /**
+     * Adds {@code listener} to the registered {@code route} for the event types in
+     * {@code eventMask}, keeping the state of the route.  A listener already registered for the
+     * route receives the event types in either mask.
+     */
+    synchronized void addListener(Route route, int eventMask, RouteListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null.");
+        }
+
+        RouteSet.Entry previous = entryMap.get(route);
+        if (previous == null) {
+            throw new IllegalStateException("Route not added.");
+        }
+
+        RouteListener[] previousListeners = previous.getListeners();
+        int[] previousMasks = previous.getListenerMasks();
+        RouteListener[] listeners = previousListeners;
+        int[] listenerMasks = previousMasks.clone();
+        int index = previous.indexOfListener(listener);
+
+        if (index == -1) {
+            index = previousListeners.length;
+            listeners = Arrays.copyOf(previousListeners, index + 1);
+            listeners[index] = listener;
+            listenerMasks = Arrays.copyOf(previousMasks, index + 1);
+        }
+
+        listenerMasks[index] |= eventMask;
+        entryMap.put(route, new RouteSet.Entry(previous, listeners, listenerMasks,
+                previous.getTriggerDistance()));
+        publish();
+    }
+
+    synchronized void addAll(Route[] routes, float[] distances, RouteListener[] listeners) {
+        if (routes.length != distances.length) {
+            throw new IllegalArgumentException("Received " + routes.length + " routes and "
+                    + distances.length + " distances.");
+        }
+
+        Set<Route> uniqueRoutes = new HashSet<Route>();
+        for (Route route : routes) {
+            if (entryMap.containsKey(route) || !uniqueRoutes.add(route)) {
+                throw new IllegalStateException("Route already added.");
+            }
+        }
+
+        RouteListener[] uniqueListeners = toUniqueListeners(listeners);
+        for (int i = 0; i < routes.length; i++) {
+            entryMap.put(routes[i],
+                    new RouteSet.Entry(routes[i], uniqueListeners, distances[i]));
+        }
+        publish();
+    }
+
+    synchronized void replaceAll(Route[] routes, float[] distances,
+            RouteListener[] listeners) {
+        if (routes.length != distances.length) {
+            throw new IllegalArgumentException("Received " + routes.length + " routes and "
+                    + distances.length + " distances.");
+        }
+
+        Map<Route, RouteSet.Entry> newEntryMap = new LinkedHashMap<Route, RouteSet.Entry>();
+        RouteListener[] uniqueListeners = toUniqueListeners(listeners);
+        for (int i = 0; i < routes.length; i++) {
+            RouteSet.Entry previous = entryMap.get(routes[i]);
+            RouteSet.Entry entry;
+
+            if (previous == null) {
+                entry = new RouteSet.Entry(routes[i], uniqueListeners, distances[i]);
+            } else {
+                // Listeners that remain keep the event types to which they subscribed.
+                int[] listenerMasks = new int[uniqueListeners.length];
+                for (int j = 0; j < uniqueListeners.length; j++) {
+                    int index = previous.indexOfListener(uniqueListeners[j]);
+                    listenerMasks[j] = index == -1
+                            ? RouteSet.ALL_EVENTS : previous.getListenerMasks()[index];
+                }
+                entry = new RouteSet.Entry(previous, uniqueListeners, listenerMasks,
+                        distances[i]);
+            }
+            if (newEntryMap.put(routes[i], entry) != null) {
+                throw new IllegalStateException("Route already added.");
+            }
+        }
+
+        entryMap.clear();
+        entryMap.putAll(newEntryMap);
+        publish();
+    }
+
+    synchronized void remove(Route route) {
+        if (entryMap.remove(route) != null) {
+            publish();
+        }
+    }
+
+    int getRouteCount() {
+        return routeSet.get().size;
+    }
+
+    int getRouteListenerCount() {
+        int count = 0;
+        for (RouteSet.Entry entry : routeSet.get().entries) {
+            count += entry.getListeners().length;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the set of the registered routes evaluated in {@code plane}, building it if the
+     * plane has changed since the set was last built.
+     */
+    RouteSet getRouteSet(LocalTangentPlane plane) {
+        RouteSet set = routeSet.get();
+
+        while (set.plane != plane) {
+            RouteSet newSet = new RouteSet(set.entries, plane);
+            if (routeSet.compareAndSet(set, newSet)) {
+                return newSet;
+            }
+            set = routeSet.get();
+        }
+
+        return set;
+    }
+
+    private void publish() {
+        RouteSet.Entry[] entries = entryMap.values().toArray(
+                new RouteSet.Entry[entryMap.size()]);
+        RouteSet set;
+        RouteSet newSet;
+
+        // An updating thread may replace the set concurrently when the plane changes.
+        do {
+            set = routeSet.get();
+            newSet = new RouteSet(entries, set.plane);
+        } while (!routeSet.compareAndSet(set, newSet));
+    }
+
+    private static RouteListener[] toUniqueListeners(RouteListener[] listeners) {
+        Set<RouteListener> uniqueListeners = new LinkedHashSet<RouteListener>();
+        if (listeners != null) {
+            for (RouteListener listener : listeners) {
+                uniqueListeners.add(listener);
+            }
+        }
+        return uniqueListeners.toArray(new RouteListener[uniqueListeners.size()]);
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+
+/**
+ * An immutable set of routes, their listeners and trigger distances held in parallel arrays,
+ * indexed by route, together with the plane in which distances are evaluated.  A set is shared
+ * by every {@link RouteTable} evaluating the same routes, so the route geometry and
+ * registrations are held once however many locations are tracked against them.
+ *
+ * @author David Valeri
+ */
+final class RouteSet {
+
+    static final RouteSet EMPTY = new RouteSet(new Entry[0], null);
+
+    static final int ENTERING_PERIMETER = toEventMask(WaypointEventType.ENTERING_PERIMETER);
+    static final int LEAVING_PERIMETER = toEventMask(WaypointEventType.LEAVING_PERIMETER);
+    static final int APPROACHING = toEventMask(WaypointEventType.APPROACHING);
+    static final int RECEDING = toEventMask(WaypointEventType.RECEDING);
+    static final int CLOSEST_TO_WAYPOINT = toEventMask(WaypointEventType.CLOSEST_TO_WAYPOINT);
+    static final int ALL_EVENTS = ENTERING_PERIMETER | LEAVING_PERIMETER | APPROACHING
+            | RECEDING | CLOSEST_TO_WAYPOINT;
+
+    final Entry[] entries;
+    final LocalTangentPlane plane;
+    final int size;
+
+    final Route[] routes;
+    final RouteListener[][] listeners;
+
+    /**
+     * The mask of the event types to which each listener of each route subscribes.
+     */
+    final int[][] listenerMasks;
+    final int[] waypointCounts;
+    final float[] triggerDistances;
+
+    /**
+     * The union of the masks of the listeners of each route, the event types generated for the
+     * route.
+     */
+    final int[] eventMasks;
+
+    /**
+     * The index of each entry keyed by its registration rather than by route, so that a route
+     * removed and added again is not mistaken for its earlier registration.
+     */
+    private final Map<Object, Integer> indexes;
+
+    /**
+     * Constructs a new set.
+     *
+     * @param entries the routes in the set
+     * @param plane the plane in which to project the waypoints or {@code null}
+     */
+    RouteSet(Entry[] entries, LocalTangentPlane plane) {
+        this.entries = entries;
+        this.plane = plane;
+        size = entries.length;
+
+        routes = new Route[size];
+        listeners = new RouteListener[size][];
+        listenerMasks = new int[size][];
+        waypointCounts = new int[size];
+        triggerDistances = new float[size];
+        eventMasks = new int[size];
+        indexes = new IdentityHashMap<Object, Integer>(size);
+
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries[i];
+            Route route = entry.getRoute();
+            routes[i] = route;
+            listeners[i] = entry.getListeners();
+            listenerMasks[i] = entry.getListenerMasks();
+            waypointCounts[i] = route.getWaypointCount();
+            triggerDistances[i] = entry.getTriggerDistance();
+            eventMasks[i] = entry.getEventMask();
+            indexes.put(entry.registration, i);
+        }
+    }
+
+    /**
+     * Returns the index of the entry sharing the registration of {@code entry} or -1 if the
+     * registration is not in the set.
+     */
+    int indexOf(Entry entry) {
+        Integer index = indexes.get(entry.registration);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the mask bit for an event type.
+     */
+    static int toEventMask(WaypointEventType eventType) {
+        return 1 << eventType.ordinal();
+    }
+
+    /**
+     * Converts a set of event types into a mask.
+     */
+    static int toEventMask(Set<WaypointEventType> eventTypes) {
+        int mask = 0;
+        for (WaypointEventType eventType : eventTypes) {
+            mask |= toEventMask(eventType);
+        }
+        return mask;
+    }
+
+    /**
+     * An immutable registration of a route and its listeners, each with the mask of the event
+     * types to which it subscribes.  An entry replacing the registration of a route that remains
+     * registered shares its registration, so that the state of the route is carried over to the
+     * new entry.
+     */
+    static final class Entry {
+        private final Object registration;
+        private final Route route;
+        private final RouteListener[] listeners;
+        private final int[] listenerMasks;
+        private final float triggerDistance;
+        private final int eventMask;
+
+        Entry(Route route, RouteListener[] listeners, float triggerDistance) {
+            this(route, listeners, triggerDistance, ALL_EVENTS);
+        }
+
+        Entry(Route route, RouteListener[] listeners, float triggerDistance, int eventMask) {
+            this(new Object(), route, listeners, fill(listeners.length, eventMask),
+                    triggerDistance);
+        }
+
+        /**
+         * Constructs an entry replacing {@code previous}, which registers the same route.
+         *
+         * @param listenerMasks the mask of the event types to which each listener subscribes
+         */
+        Entry(Entry previous, RouteListener[] listeners, int[] listenerMasks,
+                float triggerDistance) {
+            this(previous.registration, previous.route, listeners, listenerMasks,
+                    triggerDistance);
+        }
+
+        private Entry(Object registration, Route route, RouteListener[] listeners,
+                int[] listenerMasks, float triggerDistance) {
+            this.registration = registration;
+            this.route = route;
+            this.listeners = listeners;
+            this.listenerMasks = listenerMasks;
+            this.triggerDistance = triggerDistance;
+
+            int mask = 0;
+            for (int listenerMask : listenerMasks) {
+                mask |= listenerMask;
+            }
+            eventMask = mask;
+        }
+
+        Route getRoute() {
+            return route;
+        }
+
+        RouteListener[] getListeners() {
+            return listeners;
+        }
+
+        /**
+         * Returns the mask of the event types to which each listener subscribes, indexed as
+         * {@link #getListeners()}.
+         */
+        int[] getListenerMasks() {
+            return listenerMasks;
+        }
+
+        /**
+         * Returns the index of {@code listener} in {@link #getListeners()} or -1 if it is not a
+         * listener of the route.
+         */
+        int indexOfListener(RouteListener listener) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i].equals(listener)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        float getTriggerDistance() {
+            return triggerDistance;
+        }
+
+        /**
+         * Returns the union of the masks of the listeners, the event types that are generated
+         * for the route.
+         */
+        int getEventMask() {
+            return eventMask;
+        }
+
+        private static int[] fill(int length, int mask) {
+            int[] masks = new int[length];
+            Arrays.fill(masks, mask);
+            return masks;
+        }
+    }
+}
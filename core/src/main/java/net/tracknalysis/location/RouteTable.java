@@ -0,0 +1,174 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import java.util.Arrays;
+
+/**
+ * The evaluation state of a {@link RouteSet} held in parallel primitive arrays, indexed by
+ * route, so that a location update is evaluated against every route with a linear scan over
+ * contiguous memory.  The coordinates of the next waypoint of each route are copied, and
+ * projected into the plane if any, into the table as the route advances so that routes are
+ * consumed without retaining or creating {@link Waypoint}s.
+ * <p/>
+ * A table is built for a set, carrying the state of the registrations that remain from the
+ * previous table.  A route that is removed and added again is a new registration and starts
+ * from its first waypoint.  The arrays describing the routes are shared with the set.  The state arrays are not
+ * thread safe and are only modified by the thread processing updates for the table.
+ *
+ * @author David Valeri
+ */
+final class RouteTable {
+
+    static final RouteTable EMPTY = new RouteTable(RouteSet.EMPTY, null);
+
+    final RouteSet set;
+    final LocalTangentPlane plane;
+    final int size;
+
+    final Route[] routes;
+    final RouteListener[][] listeners;
+    final int[][] listenerMasks;
+    final int[] waypointCounts;
+    final float[] triggerDistances;
+    final int[] eventMasks;
+
+    final int[] nextWaypointIndexes;
+    final double[] nextLatitudes;
+    final double[] nextLongitudes;
+
+    /**
+     * The east, north and up coordinates of the next waypoint of each route, three per route,
+     * or {@code null} if {@link #plane} is {@code null}.
+     */
+    final double[] nextCoordinates;
+
+    final boolean[] reached;
+    final float[] lastDistances;
+    final float[] closestDistances;
+    final long[] closestGpsTimes;
+    final long[] closestSystemTimes;
+    final long[] lastEvaluationGpsTimes;
+
+    /**
+     * The distance, in meters, by which the last computed distance to the next waypoint of each
+     * route exceeded the trigger distance or 0 if the distance is not known.
+     */
+    final float[] triggerMargins;
+
+    /**
+     * Constructs a new table.
+     *
+     * @param set the routes in the table
+     * @param previous the table from which to carry the state of the entries of {@code set} or
+     *            {@code null}
+     */
+    RouteTable(RouteSet set, RouteTable previous) {
+        this.set = set;
+        plane = set.plane;
+        size = set.size;
+
+        routes = set.routes;
+        listeners = set.listeners;
+        listenerMasks = set.listenerMasks;
+        waypointCounts = set.waypointCounts;
+        triggerDistances = set.triggerDistances;
+        eventMasks = set.eventMasks;
+        nextWaypointIndexes = new int[size];
+        nextLatitudes = new double[size];
+        nextLongitudes = new double[size];
+        nextCoordinates = plane == null ? null : new double[size * 3];
+        reached = new boolean[size];
+        lastDistances = new float[size];
+        closestDistances = new float[size];
+        closestGpsTimes = new long[size];
+        closestSystemTimes = new long[size];
+        lastEvaluationGpsTimes = new long[size];
+        triggerMargins = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            int previousIndex = previous == null ? -1 : previous.set.indexOf(set.entries[i]);
+            int nextWaypointIndex = 0;
+
+            if (previousIndex != -1) {
+                int j = previousIndex;
+                nextWaypointIndex = previous.nextWaypointIndexes[j];
+                reached[i] = previous.reached[j];
+                lastDistances[i] = previous.lastDistances[j];
+                closestDistances[i] = previous.closestDistances[j];
+                closestGpsTimes[i] = previous.closestGpsTimes[j];
+                closestSystemTimes[i] = previous.closestSystemTimes[j];
+                lastEvaluationGpsTimes[i] = previous.lastEvaluationGpsTimes[j];
+                triggerMargins[i] = previous.triggerMargins[j];
+            }
+
+            setNextWaypointIndex(i, nextWaypointIndex);
+        }
+    }
+
+    /**
+     * Sets the index of the next waypoint of the route at {@code index}, updating the
+     * coordinates of the next waypoint.
+     */
+    void setNextWaypointIndex(int index, int nextWaypointIndex) {
+        Route route = routes[index];
+        double latitude = route.getLatitude(nextWaypointIndex);
+        double longitude = route.getLongitude(nextWaypointIndex);
+        nextWaypointIndexes[index] = nextWaypointIndex;
+        nextLatitudes[index] = latitude;
+        nextLongitudes[index] = longitude;
+
+        if (nextCoordinates != null) {
+            plane.project(latitude, longitude, nextCoordinates, index * 3);
+        }
+    }
+
+    /**
+     * Returns the next waypoint of the route at {@code index}.
+     */
+    Waypoint getNextWaypoint(int index) {
+        return routes[index].getWaypoints().get(nextWaypointIndexes[index]);
+    }
+
+    /**
+     * Returns a description of the state of the route at {@code index}.
+     */
+    String toString(int index) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RouteState [nextWaypointIndex=");
+        builder.append(nextWaypointIndexes[index]);
+        builder.append(", listeners=");
+        builder.append(Arrays.toString(listeners[index]));
+        builder.append(", reached=");
+        builder.append(reached[index]);
+        builder.append(", triggerDistance=");
+        builder.append(triggerDistances[index]);
+        builder.append(", lastDistanceToWaypoint=");
+        builder.append(lastDistances[index]);
+        builder.append(", closestDistanceToWaypoint=");
+        builder.append(closestDistances[index]);
+        builder.append(", closestDistanceGpsTime=");
+        builder.append(closestGpsTimes[index]);
+        builder.append(", closestDistanceSystemTime=");
+        builder.append(closestSystemTimes[index]);
+        builder.append(", lastEvaluationGpsTime=");
+        builder.append(lastEvaluationGpsTimes[index]);
+        builder.append(", triggerMargin=");
+        builder.append(triggerMargins[index]);
+        builder.append("]");
+        return builder.toString();
+    }
+}
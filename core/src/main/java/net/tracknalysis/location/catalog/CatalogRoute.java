@@ -0,0 +1,119 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.Waypoint;
+
+/**
+ * A route read in place from a memory-mapped {@link RouteCatalog}.
+ *
+ * @author David Valeri
+ */
+final class CatalogRoute extends Route {
+
+    private final RouteCatalog catalog;
+    private final int entryOffset;
+    private final int coordinatesOffset;
+    private final int count;
+    private final int idsOffset;
+    private final List<Waypoint> waypoints = new WaypointList();
+    private volatile String name;
+
+    CatalogRoute(RouteCatalog catalog, int entryOffset, int coordinatesOffset, int count,
+            int idsOffset) {
+        super(null);
+        this.catalog = catalog;
+        this.entryOffset = entryOffset;
+        this.coordinatesOffset = coordinatesOffset;
+        this.count = count;
+        this.idsOffset = idsOffset;
+    }
+
+    @Override
+    public String getName() {
+        String name = this.name;
+        if (name == null) {
+            name = catalog.getString(catalog.getInt(entryOffset + RouteCatalog.NAME_OFFSET));
+            this.name = name;
+        }
+        return name;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned list creates a new {@link Waypoint} on each access.
+     */
+    @Override
+    public List<Waypoint> getWaypoints() {
+        return waypoints;
+    }
+
+    @Override
+    public int getWaypointCount() {
+        return count;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        return catalog.getInt(coordinateOffset(index)) / PackedRoute.FIXED_POINT_SCALE;
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        return catalog.getInt(coordinateOffset(index) + 4) / PackedRoute.FIXED_POINT_SCALE;
+    }
+
+    private int coordinateOffset(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return coordinatesOffset + index * RouteCatalog.WAYPOINT_SIZE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("CatalogRoute [name=");
+        builder.append(getName());
+        builder.append(", waypointCount=");
+        builder.append(count);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    private final class WaypointList extends AbstractList<Waypoint> implements RandomAccess {
+
+        @Override
+        public Waypoint get(int index) {
+            String id = idsOffset == RouteCatalog.NO_IDS
+                    ? String.valueOf(index + 1)
+                    : catalog.getString(catalog.getInt(idsOffset + index * 4));
+            return new Waypoint(id, getLatitude(index), getLongitude(index));
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.RouteManager;
+
+/**
+ * A precompiled catalog of routes, written by {@link RouteCatalogWriter}, that is memory-mapped
+ * and used in place.  Opening a catalog validates its header and creates one small
+ * {@link Route} per route.  Names, coordinates and waypoint IDs are read from the mapping on
+ * access, so a catalog of tens of thousands of routes is ready in milliseconds and the
+ * coordinates are paged in by the operating system as routes are evaluated.
+ * <p/>
+ * The catalog also holds the bounding box of each route, allowing the routes near a position
+ * to be found without reading their waypoints, see {@link #findRoutes(double, double, float,
+ * int[])}.
+ * <p/>
+ * The file format, all values big-endian, is a header of {@link #HEADER_SIZE} bytes followed by a
+ * directory of {@link #ROUTE_ENTRY_SIZE} byte route entries, the fixed-point coordinates of
+ * every waypoint, the string offsets of explicit waypoint IDs and finally the strings.
+ * Instances are immutable and thread safe.
+ *
+ * @author David Valeri
+ */
+public final class RouteCatalog {
+
+    public static final String CATALOG_SUFFIX = ".rcat";
+
+    static final int MAGIC = 0x52434154;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int ROUTE_ENTRY_SIZE = 40;
+    static final int WAYPOINT_SIZE = 8;
+    static final int NO_IDS = -1;
+
+    // Offsets of the fields of a route entry.
+    static final int NAME_OFFSET = 0;
+    static final int FIRST_WAYPOINT = 4;
+    static final int WAYPOINT_COUNT = 8;
+    static final int FIRST_ID = 12;
+    static final int TRIGGER_DISTANCE = 16;
+    static final int MIN_LATITUDE = 20;
+    static final int MAX_LATITUDE = 24;
+    static final int MIN_LONGITUDE = 28;
+    static final int MAX_LONGITUDE = 32;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int routeCount;
+    private final int waypointCount;
+    private final int directoryOffset;
+    private final int coordinatesOffset;
+    private final int idsOffset;
+    private final int stringsOffset;
+    private final Route[] routes;
+
+    private RouteCatalog(File file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("File " + file + " is not a route catalog.");
+        }
+
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Route catalog " + file + " has unsupported version "
+                    + version + ".");
+        }
+
+        routeCount = buffer.getInt(8);
+        waypointCount = buffer.getInt(12);
+        int idCount = buffer.getInt(16);
+        directoryOffset = buffer.getInt(20);
+        coordinatesOffset = buffer.getInt(24);
+        idsOffset = buffer.getInt(28);
+        stringsOffset = buffer.getInt(32);
+        int length = buffer.getInt(36);
+
+        if (length != buffer.capacity() || routeCount < 0 || waypointCount < 0 || idCount < 0
+                || directoryOffset != HEADER_SIZE
+                || coordinatesOffset != directoryOffset + (long) routeCount * ROUTE_ENTRY_SIZE
+                || idsOffset != coordinatesOffset + (long) waypointCount * WAYPOINT_SIZE
+                || stringsOffset != idsOffset + idCount * 4L
+                || stringsOffset > length) {
+            throw new IOException("Route catalog " + file + " is truncated or corrupt.");
+        }
+
+        routes = new Route[routeCount];
+        for (int i = 0; i < routeCount; i++) {
+            int entry = directoryOffset + i * ROUTE_ENTRY_SIZE;
+            int firstWaypoint = buffer.getInt(entry + FIRST_WAYPOINT);
+            int count = buffer.getInt(entry + WAYPOINT_COUNT);
+            int firstId = buffer.getInt(entry + FIRST_ID);
+
+            if (firstWaypoint < 0 || count < 0 || (long) firstWaypoint + count > waypointCount
+                    || (firstId != NO_IDS
+                            && (firstId < 0 || (long) firstId + count > idCount))) {
+                throw new IOException("Route catalog " + file + " is truncated or corrupt.");
+            }
+
+            routes[i] = new CatalogRoute(this, entry,
+                    coordinatesOffset + firstWaypoint * WAYPOINT_SIZE, count,
+                    firstId == NO_IDS ? NO_IDS : idsOffset + firstId * 4);
+        }
+    }
+
+    /**
+     * Memory-maps and opens the catalog in {@code file}.
+     *
+     * @throws IOException if the file cannot be read or is not a valid catalog
+     */
+    public static RouteCatalog open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long length = randomAccessFile.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File " + file + " is not a route catalog.");
+            }
+            // The mapping remains valid after the file is closed.
+            return new RouteCatalog(file, randomAccessFile.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, length));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of routes in the catalog.
+     */
+    public int size() {
+        return routeCount;
+    }
+
+    /**
+     * Returns the total number of waypoints across all routes.
+     */
+    public int getWaypointCount() {
+        return waypointCount;
+    }
+
+    /**
+     * Returns the route at {@code index}.  The same instance is returned on each call.
+     */
+    public Route getRoute(int index) {
+        return routes[index];
+    }
+
+    /**
+     * Returns the perimeter distance, in meters, compiled for the route at {@code index}.
+     */
+    public float getTriggerDistance(int index) {
+        return buffer.getFloat(entryOffset(index) + TRIGGER_DISTANCE);
+    }
+
+    /**
+     * Finds the routes with a waypoint that may be within {@code distance} of a position,
+     * using the bounding box of each route.  The routes found are a superset of those with a
+     * waypoint within the distance, including routes on the far side of the antimeridian.
+     *
+     * @param latitude the latitude of the position, in degrees
+     * @param longitude the longitude of the position, in degrees
+     * @param distance the distance, in meters
+     * @param results the array to receive the indexes of the routes found, in order
+     *
+     * @return the number of routes found, which may exceed the length of {@code results} in
+     *         which case only the first routes found are stored
+     */
+    public int findRoutes(double latitude, double longitude, float distance, int[] results) {
+        // Meters per degree of latitude is at least 110574, and per degree of longitude at least
+        // that scaled by the cosine of the latitude.
+        double latitudeMargin = distance / 110574d;
+        double longitudeMargin = latitudeMargin
+                / Math.max(Math.cos(Math.toRadians(Math.min(90d, Math.abs(latitude)
+                        + latitudeMargin))), 1e-9);
+        long minLatitude = (long) Math.floor((latitude - latitudeMargin)
+                * PackedRoute.FIXED_POINT_SCALE);
+        long maxLatitude = (long) Math.ceil((latitude + latitudeMargin)
+                * PackedRoute.FIXED_POINT_SCALE);
+        double westLongitude = longitude - longitudeMargin;
+        double eastLongitude = longitude + longitudeMargin;
+
+        // A window crossing the antimeridian is split into a range ending at 180 and a range
+        // starting at -180.  The second range is empty unless the window crosses.
+        double wrappedWestLongitude = 1d;
+        double wrappedEastLongitude = -1d;
+        if (longitudeMargin >= 180d) {
+            westLongitude = -180d;
+            eastLongitude = 180d;
+        } else if (westLongitude < -180d) {
+            wrappedWestLongitude = westLongitude + 360d;
+            wrappedEastLongitude = 180d;
+            westLongitude = -180d;
+        } else if (eastLongitude > 180d) {
+            wrappedWestLongitude = -180d;
+            wrappedEastLongitude = eastLongitude - 360d;
+            eastLongitude = 180d;
+        }
+
+        long minLongitude = (long) Math.floor(westLongitude * PackedRoute.FIXED_POINT_SCALE);
+        long maxLongitude = (long) Math.ceil(eastLongitude * PackedRoute.FIXED_POINT_SCALE);
+        long wrappedMinLongitude = (long) Math.floor(wrappedWestLongitude
+                * PackedRoute.FIXED_POINT_SCALE);
+        long wrappedMaxLongitude = (long) Math.ceil(wrappedEastLongitude
+                * PackedRoute.FIXED_POINT_SCALE);
+
+        int found = 0;
+        for (int i = 0; i < routeCount; i++) {
+            int entry = directoryOffset + i * ROUTE_ENTRY_SIZE;
+            if (buffer.getInt(entry + MIN_LATITUDE) > maxLatitude
+                    || buffer.getInt(entry + MAX_LATITUDE) < minLatitude) {
+                continue;
+            }
+
+            int routeMinLongitude = buffer.getInt(entry + MIN_LONGITUDE);
+            int routeMaxLongitude = buffer.getInt(entry + MAX_LONGITUDE);
+            if ((routeMinLongitude <= maxLongitude && routeMaxLongitude >= minLongitude)
+                    || (routeMinLongitude <= wrappedMaxLongitude
+                            && routeMaxLongitude >= wrappedMinLongitude)) {
+                if (found < results.length) {
+                    results[found] = i;
+                }
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds every route in the catalog to {@code routeManager} with its compiled trigger
+     * distance and the given listeners.
+     *
+     * @throws IllegalStateException if a route is already registered
+     */
+    public void addRoutes(RouteManager routeManager, RouteListener... listeners) {
+        routeManager.addRoutesForSynchronousListeners(routes.clone(), getTriggerDistances(),
+                listeners);
+    }
+
+    /**
+     * Replaces every route registered with {@code routeManager} with the routes in the catalog,
+     * each with its compiled trigger distance and the given listeners, in a single atomic
+     * change.  Used to load a recompiled catalog while the manager is processing updates.
+     */
+    public void replaceRoutes(RouteManager routeManager, RouteListener... listeners) {
+        routeManager.replaceRoutesForSynchronousListeners(routes.clone(), getTriggerDistances(),
+                listeners);
+    }
+
+    private float[] getTriggerDistances() {
+        float[] distances = new float[routeCount];
+        for (int i = 0; i < routeCount; i++) {
+            distances[i] = getTriggerDistance(i);
+        }
+        return distances;
+    }
+
+    private int entryOffset(int index) {
+        if (index < 0 || index >= routeCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + routeCount);
+        }
+        return directoryOffset + index * ROUTE_ENTRY_SIZE;
+    }
+
+    int getInt(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    /**
+     * Returns the string at {@code offset} in the strings section.
+     */
+    String getString(int offset) {
+        int position = stringsOffset + offset;
+        int length = buffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length + 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+
+        try {
+            return DataInputStream.readUTF(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Route catalog " + file + " is corrupt.", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RouteCatalog [file=");
+        builder.append(file);
+        builder.append(", routeCount=");
+        builder.append(routeCount);
+        builder.append(", waypointCount=");
+        builder.append(waypointCount);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.io.RouteFormat;
+
+/**
+ * Command line tool compiling GPX, KML and CSV course files into a route catalog.
+ * <p/>
+ * Usage: {@code RouteCatalogCompiler [-d triggerDistance] catalog input...}.  Every route read
+ * from the inputs, in order, is compiled with the trigger distance, 15 m by default.
+ *
+ * @author David Valeri
+ */
+public final class RouteCatalogCompiler {
+
+    private static final float DEFAULT_TRIGGER_DISTANCE = 15f;
+
+    private RouteCatalogCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        float triggerDistance = DEFAULT_TRIGGER_DISTANCE;
+        int index = 0;
+
+        if (args.length > 1 && "-d".equals(args[0])) {
+            triggerDistance = Float.parseFloat(args[1]);
+            index = 2;
+        }
+
+        if (args.length - index < 2) {
+            System.err.println("Usage: RouteCatalogCompiler [-d triggerDistance] catalog "
+                    + "input...");
+            System.exit(1);
+        }
+
+        File catalogFile = new File(args[index++]);
+        RouteCatalogWriter writer = new RouteCatalogWriter();
+        long startTime = System.nanoTime();
+
+        for (; index < args.length; index++) {
+            File input = new File(args[index]);
+            List<Route> routes = RouteFormat.importRoutes(input, true);
+            for (Route route : routes) {
+                writer.add(route, triggerDistance);
+            }
+            System.out.println(String.format("Read %d routes from %s.", routes.size(), input));
+        }
+
+        writer.write(catalogFile);
+        System.out.println(String.format("Compiled %d routes into %s in %d ms.", writer.size(),
+                catalogFile, (System.nanoTime() - startTime) / 1000000));
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.Waypoint;
+
+/**
+ * Compiles routes and their trigger distances into a route catalog file that is memory-mapped
+ * and used in place by {@link RouteCatalog}.  Coordinates are stored as fixed-point integers
+ * in units of {@link PackedRoute#FIXED_POINT_SCALE}ths of a degree.  The IDs of waypoints are
+ * only stored for routes whose IDs are not the one based index of each waypoint.
+ *
+ * @author David Valeri
+ */
+public final class RouteCatalogWriter {
+
+    private final List<Route> routes = new ArrayList<Route>();
+    private final List<Float> triggerDistances = new ArrayList<Float>();
+
+    /**
+     * Adds a route to the catalog.
+     *
+     * @param route the route
+     * @param triggerDistance the perimeter distance to use when generating waypoint events, in
+     *            meters
+     */
+    public void add(Route route, float triggerDistance) {
+        if (route == null) {
+            throw new NullPointerException("route");
+        }
+        routes.add(route);
+        triggerDistances.add(triggerDistance);
+    }
+
+    /**
+     * Returns the number of routes added.
+     */
+    public int size() {
+        return routes.size();
+    }
+
+    /**
+     * Writes the catalog to {@code file}, replacing any existing file.  The catalog is written
+     * to a temporary file and renamed so that a reader never maps a partial catalog.
+     *
+     * @throws IOException if the catalog cannot be written
+     */
+    public void write(File file) throws IOException {
+        int routeCount = routes.size();
+        long waypointCount = 0;
+        int idCount = 0;
+        boolean[] explicitIds = new boolean[routeCount];
+
+        for (int i = 0; i < routeCount; i++) {
+            Route route = routes.get(i);
+            waypointCount += route.getWaypointCount();
+            explicitIds[i] = hasExplicitIds(route);
+            if (explicitIds[i]) {
+                idCount += route.getWaypointCount();
+            }
+        }
+
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream strings = new DataOutputStream(stringBytes);
+        int[] idOffsets = new int[idCount];
+        int[] nameOffsets = new int[routeCount];
+        int idIndex = 0;
+
+        for (int i = 0; i < routeCount; i++) {
+            Route route = routes.get(i);
+            nameOffsets[i] = writeString(strings, route.getName());
+            if (explicitIds[i]) {
+                for (Waypoint waypoint : route.getWaypoints()) {
+                    idOffsets[idIndex++] = writeString(strings, waypoint.getId());
+                }
+            }
+        }
+
+        long directoryOffset = RouteCatalog.HEADER_SIZE;
+        long coordinatesOffset = directoryOffset
+                + (long) routeCount * RouteCatalog.ROUTE_ENTRY_SIZE;
+        long idsOffset = coordinatesOffset + waypointCount * RouteCatalog.WAYPOINT_SIZE;
+        long stringsOffset = idsOffset + idCount * 4L;
+        long length = stringsOffset + strings.size();
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Route catalog of " + length + " bytes exceeds the maximum "
+                    + "size of " + Integer.MAX_VALUE + " bytes.");
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+        try {
+            out.writeInt(RouteCatalog.MAGIC);
+            out.writeInt(RouteCatalog.VERSION);
+            out.writeInt(routeCount);
+            out.writeInt((int) waypointCount);
+            out.writeInt(idCount);
+            out.writeInt((int) directoryOffset);
+            out.writeInt((int) coordinatesOffset);
+            out.writeInt((int) idsOffset);
+            out.writeInt((int) stringsOffset);
+            out.writeInt((int) length);
+
+            int firstWaypoint = 0;
+            int firstId = 0;
+            for (int i = 0; i < routeCount; i++) {
+                Route route = routes.get(i);
+                int count = route.getWaypointCount();
+                int minLatitude = Integer.MAX_VALUE;
+                int maxLatitude = Integer.MIN_VALUE;
+                int minLongitude = Integer.MAX_VALUE;
+                int maxLongitude = Integer.MIN_VALUE;
+
+                for (int j = 0; j < count; j++) {
+                    int latitude = PackedRoute.toFixedPoint(route.getLatitude(j));
+                    int longitude = PackedRoute.toFixedPoint(route.getLongitude(j));
+                    minLatitude = Math.min(minLatitude, latitude);
+                    maxLatitude = Math.max(maxLatitude, latitude);
+                    minLongitude = Math.min(minLongitude, longitude);
+                    maxLongitude = Math.max(maxLongitude, longitude);
+                }
+
+                out.writeInt(nameOffsets[i]);
+                out.writeInt(firstWaypoint);
+                out.writeInt(count);
+                out.writeInt(explicitIds[i] ? firstId : RouteCatalog.NO_IDS);
+                out.writeFloat(triggerDistances.get(i));
+                out.writeInt(minLatitude);
+                out.writeInt(maxLatitude);
+                out.writeInt(minLongitude);
+                out.writeInt(maxLongitude);
+                out.writeInt(0);
+
+                firstWaypoint += count;
+                if (explicitIds[i]) {
+                    firstId += count;
+                }
+            }
+
+            for (Route route : routes) {
+                int count = route.getWaypointCount();
+                for (int j = 0; j < count; j++) {
+                    out.writeInt(PackedRoute.toFixedPoint(route.getLatitude(j)));
+                    out.writeInt(PackedRoute.toFixedPoint(route.getLongitude(j)));
+                }
+            }
+
+            for (int idOffset : idOffsets) {
+                out.writeInt(idOffset);
+            }
+
+            stringBytes.writeTo(out);
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Unable to write route catalog " + file + ".");
+            }
+        }
+    }
+
+    private static boolean hasExplicitIds(Route route) {
+        if (route instanceof PackedRoute) {
+            return false;
+        }
+
+        int index = 1;
+        for (Waypoint waypoint : route.getWaypoints()) {
+            if (!String.valueOf(index++).equals(waypoint.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes {@code value}, or an empty string if {@code null}, and returns its offset.
+     */
+    private static int writeString(DataOutputStream strings, String value) throws IOException {
+        int offset = strings.size();
+        strings.writeUTF(value == null ? "" : value);
+        return offset;
+    }
+}
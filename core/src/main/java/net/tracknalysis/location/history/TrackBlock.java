@@ -0,0 +1,195 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.history;
+
+import java.util.Arrays;
+
+/**
+ * A block of consecutive records in a track, stored in columns.  Positions are stored in units
+ * of 1e-7 degrees, about 1 cm.  Once full, a block is sealed and its records are indexed by the
+ * cell of a fixed grid containing them so that a query only examines the records in the cells
+ * around its position.
+ *
+ * @author David Valeri
+ */
+final class TrackBlock {
+
+    static final int CAPACITY = 4096;
+
+    /**
+     * The size of a grid cell in units of 1e-7 degrees, about 55 m of latitude.
+     */
+    static final int CELL_SIZE = 5000;
+
+    private static final int INDEX_BITS = 12;
+    private static final int LONGITUDE_CELL_BITS = 20;
+    private static final int LATITUDE_CELL_OFFSET = 900000000 / CELL_SIZE + 1;
+    private static final int LONGITUDE_CELL_OFFSET = 1800000000 / CELL_SIZE + 1;
+
+    final long[] times = new long[CAPACITY];
+    final int[] latitudes = new int[CAPACITY];
+    final int[] longitudes = new int[CAPACITY];
+    final float[] altitudes = new float[CAPACITY];
+    final float[] speeds = new float[CAPACITY];
+    final float[] bearings = new float[CAPACITY];
+    int size;
+
+    int minLatitude = Integer.MAX_VALUE;
+    int maxLatitude = Integer.MIN_VALUE;
+    int minLongitude = Integer.MAX_VALUE;
+    int maxLongitude = Integer.MIN_VALUE;
+
+    /**
+     * The distinct cell keys of the records, sorted, once sealed.
+     */
+    private long[] cellKeys;
+    /**
+     * The start of the records of each cell in {@link #order}, with a final entry for the end.
+     */
+    private int[] cellStarts;
+    /**
+     * The indexes of the records ordered by cell and then by time.
+     */
+    private short[] order;
+
+    boolean isFull() {
+        return size == CAPACITY;
+    }
+
+    boolean isSealed() {
+        return cellKeys != null;
+    }
+
+    long getMinTime() {
+        return times[0];
+    }
+
+    long getMaxTime() {
+        return times[size - 1];
+    }
+
+    void add(long time, int latitude, int longitude, float altitude, float speed,
+            float bearing) {
+
+        times[size] = time;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        altitudes[size] = altitude;
+        speeds[size] = speed;
+        bearings[size] = bearing;
+        size++;
+
+        minLatitude = Math.min(minLatitude, latitude);
+        maxLatitude = Math.max(maxLatitude, latitude);
+        minLongitude = Math.min(minLongitude, longitude);
+        maxLongitude = Math.max(maxLongitude, longitude);
+
+        if (isFull()) {
+            seal();
+        }
+    }
+
+    /**
+     * Calls {@code visitor} with the index of each record whose cell lies within the given
+     * range of cells, or with every record if the block is not sealed.
+     *
+     * @return false if the visitor ended the visit
+     */
+    boolean visitCells(int minLatitudeCell, int maxLatitudeCell, int minLongitudeCell,
+            int maxLongitudeCell, RecordVisitor visitor) {
+
+        if (!isSealed()) {
+            for (int i = 0; i < size; i++) {
+                if (!visitor.visit(this, i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell;
+                latitudeCell++) {
+
+            long maxKey = toCellKey(latitudeCell, maxLongitudeCell);
+            int cell = Arrays.binarySearch(cellKeys, toCellKey(latitudeCell, minLongitudeCell));
+            if (cell < 0) {
+                cell = -cell - 1;
+            }
+
+            for (; cell < cellKeys.length && cellKeys[cell] <= maxKey; cell++) {
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    if (!visitor.visit(this, order[i])) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void seal() {
+        long[] entries = new long[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = toCellKey(toCell(latitudes[i]), toCell(longitudes[i])) << INDEX_BITS | i;
+        }
+        Arrays.sort(entries);
+
+        long[] keys = new long[size];
+        int[] starts = new int[size + 1];
+        short[] recordOrder = new short[size];
+        int cells = 0;
+
+        for (int i = 0; i < size; i++) {
+            long key = entries[i] >>> INDEX_BITS;
+            recordOrder[i] = (short) (entries[i] & (CAPACITY - 1));
+
+            if (cells == 0 || keys[cells - 1] != key) {
+                keys[cells] = key;
+                starts[cells] = i;
+                cells++;
+            }
+        }
+        starts[cells] = size;
+
+        cellKeys = Arrays.copyOf(keys, cells);
+        cellStarts = Arrays.copyOf(starts, cells + 1);
+        order = recordOrder;
+    }
+
+    /**
+     * Returns the grid cell containing {@code coordinate}, in units of 1e-7 degrees.
+     */
+    static int toCell(int coordinate) {
+        return coordinate >= 0 ? coordinate / CELL_SIZE : (coordinate + 1) / CELL_SIZE - 1;
+    }
+
+    private static long toCellKey(int latitudeCell, int longitudeCell) {
+        return (long) (latitudeCell + LATITUDE_CELL_OFFSET) << LONGITUDE_CELL_BITS
+                | (longitudeCell + LONGITUDE_CELL_OFFSET);
+    }
+
+    /**
+     * Receives the indexes of the records visited in a block.
+     */
+    static interface RecordVisitor {
+
+        /**
+         * @return true to continue the visit, false to end it
+         */
+        boolean visit(TrackBlock block, int index);
+    }
+}
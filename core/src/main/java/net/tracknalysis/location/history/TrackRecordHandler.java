@@ -0,0 +1,42 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.history;
+
+/**
+ * Receives the records matched by a query of a {@link TrackStore}.  Records are passed as
+ * primitive values so that queries do not allocate per record.
+ *
+ * @author David Valeri
+ */
+public interface TrackRecordHandler {
+
+    /**
+     * Handles a matched record.
+     *
+     * @param trackId the ID of the track containing the record
+     * @param time the time of the record
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     * @param altitude the altitude, in meters
+     * @param speed the speed, in meters per second
+     * @param bearing the bearing, in degrees
+     * @param distance the distance from the query position, in meters
+     *
+     * @return true to continue the query, false to end it
+     */
+    boolean handleRecord(String trackId, long time, double latitude, double longitude,
+            double altitude, float speed, float bearing, float distance);
+}
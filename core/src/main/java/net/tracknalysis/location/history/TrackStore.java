@@ -0,0 +1,285 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.history;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.tracknalysis.location.Location;
+
+/**
+ * An in-memory store of location histories, one track per vehicle or session, that answers
+ * queries for every record within a distance of a position during a period of time.
+ * <p/>
+ * Each track is stored in time ordered blocks of records.  A query skips the blocks that do not
+ * overlap its period or whose bounding box does not reach its position.  Within the remaining
+ * blocks it examines only the records in the cells of a fixed grid, of about 55 m, around its
+ * position.  Distances are computed on a local flat Earth approximation around the query
+ * position, which is accurate to about 0.1% of the distance up to about ten kilometers.
+ * <p/>
+ * Times are any non-decreasing millisecond times chosen by the caller, typically milliseconds
+ * since midnight January 1, 1970 UTC so that tracks from different days can be queried
+ * together.  Not thread safe.
+ *
+ * @author David Valeri
+ */
+public final class TrackStore {
+
+    /**
+     * Meters per degree of latitude on a sphere of the mean radius of the Earth.
+     */
+    private static final double METERS_PER_DEGREE = 6371008.8d * Math.PI / 180d;
+    private static final double METERS_PER_UNIT = METERS_PER_DEGREE / 1e7d;
+
+    private final Map<String, List<TrackBlock>> tracks =
+            new LinkedHashMap<String, List<TrackBlock>>();
+    private long size;
+
+    /**
+     * Appends a record to a track, creating the track if needed.
+     *
+     * @param trackId the ID of the track
+     * @param time the time of the record, no earlier than the previous record in the track
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     * @param altitude the altitude, in meters
+     * @param speed the speed, in meters per second
+     * @param bearing the bearing, in degrees
+     *
+     * @throws IllegalArgumentException if {@code time} is earlier than the previous record in
+     *             the track
+     */
+    public void add(String trackId, long time, double latitude, double longitude,
+            double altitude, float speed, float bearing) {
+
+        List<TrackBlock> blocks = tracks.get(trackId);
+        if (blocks == null) {
+            blocks = new ArrayList<TrackBlock>();
+            tracks.put(trackId, blocks);
+        }
+
+        TrackBlock block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+
+        if (block != null && time < block.getMaxTime()) {
+            throw new IllegalArgumentException("Time " + time + " precedes the last record in "
+                    + "track " + trackId + ".");
+        }
+
+        if (block == null || block.isFull()) {
+            block = new TrackBlock();
+            blocks.add(block);
+        }
+
+        block.add(time, toUnits(latitude), toUnits(longitude), (float) altitude, speed, bearing);
+        size++;
+    }
+
+    /**
+     * Appends a location to a track at the given time.  Locations report the time of day, so
+     * the caller supplies the full time.
+     *
+     * @see #add(String, long, double, double, double, float, float)
+     */
+    public void add(String trackId, long time, Location location) {
+        add(trackId, time, location.getLatitude(), location.getLongitude(),
+                location.getAltitude(), location.getSpeed(), location.getBearing());
+    }
+
+    /**
+     * Returns the IDs of the tracks in the order they were created.
+     */
+    public Set<String> getTrackIds() {
+        return Collections.unmodifiableSet(tracks.keySet());
+    }
+
+    /**
+     * Returns the number of records in all tracks.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Queries all tracks for the records within {@code radius} meters of a position from
+     * {@code startTime} to {@code endTime}, inclusive.  Records are delivered grouped by track
+     * and are not necessarily in time order.
+     *
+     * @param latitude the latitude of the position, in degrees
+     * @param longitude the longitude of the position, in degrees
+     * @param radius the distance from the position, in meters
+     * @param startTime the start of the period
+     * @param endTime the end of the period
+     * @param handler the handler receiving each matching record
+     *
+     * @return the number of records delivered
+     */
+    public long query(double latitude, double longitude, float radius, long startTime,
+            long endTime, TrackRecordHandler handler) {
+
+        Query query = new Query(latitude, longitude, radius, startTime, endTime, handler);
+
+        for (Map.Entry<String, List<TrackBlock>> entry : tracks.entrySet()) {
+            if (!query.run(entry.getKey(), entry.getValue())) {
+                break;
+            }
+        }
+
+        return query.count;
+    }
+
+    /**
+     * Queries one track.  Does nothing if the track does not exist.
+     *
+     * @see #query(double, double, float, long, long, TrackRecordHandler)
+     */
+    public long query(String trackId, double latitude, double longitude, float radius,
+            long startTime, long endTime, TrackRecordHandler handler) {
+
+        List<TrackBlock> blocks = tracks.get(trackId);
+        Query query = new Query(latitude, longitude, radius, startTime, endTime, handler);
+
+        if (blocks != null) {
+            query.run(trackId, blocks);
+        }
+
+        return query.count;
+    }
+
+    private static int toUnits(double degrees) {
+        return (int) Math.round(degrees * 1e7d);
+    }
+
+    /**
+     * The state of a query.
+     */
+    private static final class Query implements TrackBlock.RecordVisitor {
+
+        private final int latitude;
+        private final int longitude;
+        private final float radius;
+        private final long startTime;
+        private final long endTime;
+        private final TrackRecordHandler handler;
+        private final double metersPerLongitudeUnit;
+        private final int minLatitude;
+        private final int maxLatitude;
+        private final int minLongitude;
+        private final int maxLongitude;
+
+        private String trackId;
+        private long count;
+
+        public Query(double latitude, double longitude, float radius, long startTime,
+                long endTime, TrackRecordHandler handler) {
+
+            this.latitude = toUnits(latitude);
+            this.longitude = toUnits(longitude);
+            this.radius = radius;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.handler = handler;
+
+            metersPerLongitudeUnit = METERS_PER_UNIT * Math.cos(Math.toRadians(latitude));
+
+            // Pad the bounding box for rounding and the flat Earth approximation.
+            int latitudeRange = (int) Math.ceil(radius * 1.01d / METERS_PER_UNIT) + 1;
+            int longitudeRange = (int) Math.min(Integer.MAX_VALUE / 2,
+                    Math.ceil(radius * 1.01d / metersPerLongitudeUnit) + 1);
+            minLatitude = this.latitude - latitudeRange;
+            maxLatitude = this.latitude + latitudeRange;
+            minLongitude = this.longitude - longitudeRange;
+            maxLongitude = this.longitude + longitudeRange;
+        }
+
+        /**
+         * Runs the query over a track.
+         *
+         * @return false if the handler ended the query
+         */
+        boolean run(String trackId, List<TrackBlock> blocks) {
+            this.trackId = trackId;
+
+            for (int i = findFirstBlock(blocks); i < blocks.size(); i++) {
+                TrackBlock block = blocks.get(i);
+
+                if (block.getMinTime() > endTime) {
+                    break;
+                }
+
+                if (block.maxLatitude < minLatitude || block.minLatitude > maxLatitude
+                        || block.maxLongitude < minLongitude
+                        || block.minLongitude > maxLongitude) {
+                    continue;
+                }
+
+                if (!block.visitCells(
+                        TrackBlock.toCell(Math.max(minLatitude, block.minLatitude)),
+                        TrackBlock.toCell(Math.min(maxLatitude, block.maxLatitude)),
+                        TrackBlock.toCell(Math.max(minLongitude, block.minLongitude)),
+                        TrackBlock.toCell(Math.min(maxLongitude, block.maxLongitude)),
+                        this)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean visit(TrackBlock block, int index) {
+            long time = block.times[index];
+            if (time < startTime || time > endTime) {
+                return true;
+            }
+
+            double y = (block.latitudes[index] - latitude) * METERS_PER_UNIT;
+            double x = (block.longitudes[index] - longitude) * metersPerLongitudeUnit;
+            float distance = (float) Math.sqrt(x * x + y * y);
+            if (distance > radius) {
+                return true;
+            }
+
+            count++;
+            return handler.handleRecord(trackId, time, block.latitudes[index] / 1e7d,
+                    block.longitudes[index] / 1e7d, block.altitudes[index],
+                    block.speeds[index], block.bearings[index], distance);
+        }
+
+        /**
+         * Returns the index of the first block that ends at or after the start time.
+         */
+        private int findFirstBlock(List<TrackBlock> blocks) {
+            int low = 0;
+            int high = blocks.size() - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+
+                if (blocks.get(mid).getMaxTime() < startTime) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            return low;
+        }
+    }
+}
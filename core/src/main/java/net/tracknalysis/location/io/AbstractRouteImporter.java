@@ -0,0 +1,73 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+
+/**
+ * Base class for route importers providing the choice between routes of
+ * {@link net.tracknalysis.location.Waypoint}s and {@link PackedRoute}s.
+ *
+ * @author David Valeri
+ */
+public abstract class AbstractRouteImporter implements RouteImporter {
+
+    private boolean packed;
+    private boolean fixedPoint;
+
+    /**
+     * Returns true if routes are built as {@link PackedRoute}s.
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Sets whether routes are built as {@link PackedRoute}s, which do not retain the IDs of
+     * waypoints, rather than routes of {@link net.tracknalysis.location.Waypoint}s.  Defaults to
+     * false.
+     */
+    public void setPacked(boolean packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Returns true if packed routes hold their coordinates as fixed-point integers.
+     */
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * Sets whether packed routes hold their coordinates as fixed-point integers.  Defaults to
+     * false.
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * Builds a route from {@code builder} in the configured representation, naming it
+     * {@code defaultName} followed by its one based position in the input if not named.
+     */
+    protected final Route toRoute(RouteBuilder builder, String defaultName, int index) {
+        if (builder.getName() == null) {
+            builder.setName(index == 0 ? defaultName : defaultName + " " + (index + 1));
+        }
+        return packed ? builder.toPackedRoute(fixedPoint) : builder.toRoute();
+    }
+}
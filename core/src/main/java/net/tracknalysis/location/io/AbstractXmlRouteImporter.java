@@ -0,0 +1,105 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Base class for importers reading XML course files with StAX.  DTDs and external entities are
+ * not processed.
+ *
+ * @author David Valeri
+ */
+public abstract class AbstractXmlRouteImporter extends AbstractRouteImporter {
+
+    private final XMLInputFactory inputFactory;
+
+    protected AbstractXmlRouteImporter() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    @Override
+    public final List<Route> importRoutes(InputStream in, String defaultName)
+            throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            synchronized (inputFactory) {
+                reader = inputFactory.createXMLStreamReader(in);
+            }
+            return importRoutes(reader, defaultName);
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid " + getFormatName() + " document.  "
+                    + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid " + getFormatName() + " document at "
+                    + toString(reader == null ? null : reader.getLocation()) + ".  "
+                    + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // Ignore, the underlying stream is not closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the format read, for error messages.
+     */
+    protected abstract String getFormatName();
+
+    /**
+     * Reads the routes from {@code reader}.
+     *
+     * @throws IllegalArgumentException if the document contains invalid values
+     */
+    protected abstract List<Route> importRoutes(XMLStreamReader reader, String defaultName)
+            throws XMLStreamException;
+
+    /**
+     * Parses a coordinate from an attribute of the current element.
+     *
+     * @throws IllegalArgumentException if the attribute is missing or not a number
+     */
+    protected static double parseAttribute(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing attribute " + name + " on element "
+                    + reader.getLocalName() + ".");
+        }
+        return Double.parseDouble(value.trim());
+    }
+
+    private static String toString(Location location) {
+        return location == null
+                ? "unknown location"
+                : "line " + location.getLineNumber() + " column " + location.getColumnNumber();
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Imports delimited text with one waypoint per line.  The input is read in blocks and fields are
+ * located and parsed in place in the block, so no strings are created for coordinates.  Lines
+ * may be terminated by LF, CR LF or CR and blank lines are ignored.  Fields may be surrounded by
+ * whitespace and double quotes but quoted fields may not contain the separator.
+ * <p/>
+ * All lines form one route unless a route column is set, in which case a new route starts each
+ * time the value in that column changes and the value is used as the name of the route.
+ *
+ * @author David Valeri
+ */
+public class CsvRouteImporter extends AbstractRouteImporter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final String CHARSET = "UTF-8";
+
+    private final int latitudeColumn;
+    private final int longitudeColumn;
+    private int idColumn = -1;
+    private int routeColumn = -1;
+    private int headerLines;
+    private byte separator = ',';
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Constructs a new importer reading latitude and longitude, in degrees, from the given zero
+     * based columns.
+     */
+    public CsvRouteImporter(int latitudeColumn, int longitudeColumn) {
+        if (latitudeColumn < 0 || longitudeColumn < 0 || latitudeColumn == longitudeColumn) {
+            throw new IllegalArgumentException("Invalid latitude column " + latitudeColumn
+                    + " and longitude column " + longitudeColumn + ".");
+        }
+        this.latitudeColumn = latitudeColumn;
+        this.longitudeColumn = longitudeColumn;
+    }
+
+    /**
+     * Sets the zero based column containing the IDs of the waypoints or -1, the default, if
+     * waypoints are identified by their position.
+     */
+    public void setIdColumn(int idColumn) {
+        this.idColumn = idColumn;
+    }
+
+    /**
+     * Sets the zero based column containing the names of the routes or -1, the default, if the
+     * input contains one route.
+     */
+    public void setRouteColumn(int routeColumn) {
+        this.routeColumn = routeColumn;
+    }
+
+    /**
+     * Sets the number of lines to skip at the start of the input.  Defaults to 0.
+     */
+    public void setHeaderLines(int headerLines) {
+        this.headerLines = headerLines;
+    }
+
+    /**
+     * Sets the ASCII character separating fields.  Defaults to a comma.
+     */
+    public void setSeparator(char separator) {
+        if (separator >= 0x80 || separator == '\r' || separator == '\n' || separator == '"') {
+            throw new IllegalArgumentException("Invalid separator " + separator + ".");
+        }
+        this.separator = (byte) separator;
+    }
+
+    /**
+     * Sets the size of the blocks in which input is read.  Lines longer than a block are
+     * supported by growing the block.  Defaults to 64 KB.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Invalid buffer size " + bufferSize + ".");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public List<Route> importRoutes(InputStream in, String defaultName) throws IOException {
+        List<Route> routes = new ArrayList<Route>();
+        RouteBuilder builder = new RouteBuilder();
+        int columnCount = Math.max(Math.max(latitudeColumn, longitudeColumn),
+                Math.max(idColumn, routeColumn)) + 1;
+        int[] fieldStarts = new int[columnCount];
+        int[] fieldEnds = new int[columnCount];
+        byte[] routeKey = null;
+        byte[] buffer = new byte[bufferSize];
+        int start = 0;
+        int end = 0;
+        long lineNumber = 0;
+        boolean endOfInput = false;
+        boolean afterCr = false;
+
+        while (true) {
+            // Find the end of the next line in the buffer.
+            int lineEnd = start;
+            while (lineEnd < end && buffer[lineEnd] != '\n' && buffer[lineEnd] != '\r') {
+                lineEnd++;
+            }
+
+            if (lineEnd == end && !endOfInput) {
+                // Incomplete line.  Move it to the start of the buffer, growing the buffer if
+                // the line fills it, and read more.
+                if (start == 0 && end == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                } else if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+
+                int count = in.read(buffer, end, buffer.length - end);
+                if (count == -1) {
+                    endOfInput = true;
+                } else {
+                    end += count;
+                }
+                continue;
+            }
+
+            // The empty segment between the CR and LF of a CR LF pair is not a line.
+            boolean crLf = lineEnd == start && afterCr && lineEnd < end
+                    && buffer[lineEnd] == '\n';
+            if (!crLf) {
+                lineNumber++;
+            }
+
+            if (!crLf && lineNumber > headerLines && !isBlank(buffer, start, lineEnd)) {
+                int fieldCount = split(buffer, start, lineEnd, fieldStarts, fieldEnds);
+                if (fieldCount < columnCount) {
+                    throw new IOException("Line " + lineNumber + " contains " + fieldCount
+                            + " fields, expected at least " + columnCount + ".");
+                }
+
+                if (routeColumn != -1) {
+                    int keyStart = fieldStarts[routeColumn];
+                    int keyEnd = fieldEnds[routeColumn];
+                    if (routeKey == null || !equals(routeKey, buffer, keyStart, keyEnd)) {
+                        if (builder.size() > 0) {
+                            routes.add(toRoute(builder, defaultName, routes.size()));
+                        }
+                        builder.clear();
+                        routeKey = Arrays.copyOfRange(buffer, keyStart, keyEnd);
+                        builder.setName(toString(buffer, keyStart, keyEnd));
+                    }
+                }
+
+                try {
+                    builder.add(
+                            idColumn == -1 ? null : toString(buffer, fieldStarts[idColumn],
+                                    fieldEnds[idColumn]),
+                            DecimalParser.parse(buffer, fieldStarts[latitudeColumn],
+                                    fieldEnds[latitudeColumn]),
+                            DecimalParser.parse(buffer, fieldStarts[longitudeColumn],
+                                    fieldEnds[longitudeColumn]));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid waypoint on line " + lineNumber + ".  "
+                            + e.getMessage(), e);
+                }
+            }
+
+            if (lineEnd == end) {
+                break;
+            }
+            afterCr = buffer[lineEnd] == '\r';
+            start = lineEnd + 1;
+        }
+
+        if (builder.size() > 0) {
+            routes.add(toRoute(builder, defaultName, routes.size()));
+        }
+
+        return routes;
+    }
+
+    /**
+     * Locates the fields of a line, stopping once the fields of interest are found.  Surrounding
+     * whitespace and double quotes are excluded from each field.
+     *
+     * @return the number of fields located
+     */
+    private int split(byte[] buffer, int start, int end, int[] fieldStarts, int[] fieldEnds) {
+        int field = 0;
+        int fieldStart = start;
+
+        for (int i = start; i <= end && field < fieldStarts.length; i++) {
+            if (i == end || buffer[i] == separator) {
+                int s = fieldStart;
+                int e = i;
+                while (s < e && DecimalParser.isWhitespace(buffer[s])) {
+                    s++;
+                }
+                while (e > s && DecimalParser.isWhitespace(buffer[e - 1])) {
+                    e--;
+                }
+                if (e - s >= 2 && buffer[s] == '"' && buffer[e - 1] == '"') {
+                    s++;
+                    e--;
+                }
+                fieldStarts[field] = s;
+                fieldEnds[field] = e;
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+
+        return field;
+    }
+
+    private static boolean isBlank(byte[] buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!DecimalParser.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] key, byte[] buffer, int start, int end) {
+        if (key.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toString(byte[] buffer, int start, int end) {
+        try {
+            return new String(buffer, start, end - start, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
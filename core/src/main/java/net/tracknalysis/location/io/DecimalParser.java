@@ -0,0 +1,107 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Parses decimal numbers directly from ASCII bytes without creating strings.  Numbers with at
+ * most 15 significant digits and no exponent, which covers coordinates in course files, are
+ * computed exactly as the quotient of two exactly representable doubles and so produce the
+ * same, correctly rounded, result as {@link Double#parseDouble(String)}.  Other numbers are
+ * delegated to {@link Double#parseDouble(String)}.
+ *
+ * @author David Valeri
+ */
+final class DecimalParser {
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1d;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10d;
+        }
+    }
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parses the number in {@code bytes} from {@code start}, inclusive, to {@code end},
+     * exclusive, ignoring surrounding whitespace.
+     *
+     * @throws NumberFormatException if the bytes do not contain a number
+     */
+    static double parse(byte[] bytes, int start, int end) {
+        while (start < end && isWhitespace(bytes[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean decimalPoint = false;
+
+        for (; i < end; i++) {
+            int b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+                    return parseSlow(bytes, start, end);
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimalPoint) {
+                    scale++;
+                }
+            } else if (b == '.' && !decimalPoint) {
+                decimalPoint = true;
+            } else {
+                return parseSlow(bytes, start, end);
+            }
+        }
+
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return parseSlow(bytes, start, end);
+        }
+
+        double value = mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static double parseSlow(byte[] bytes, int start, int end) {
+        try {
+            return Double.parseDouble(new String(bytes, start, end - start, "US-ASCII"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Imports GPX 1.0 and 1.1 documents.  Each route ({@code rte}) becomes a route of its route
+ * points and each track ({@code trk}) becomes a route of the points of all of its segments.  The
+ * names of routes, tracks and points are used as the names of the routes and the IDs of the
+ * waypoints respectively.  Stand alone waypoints ({@code wpt}) are ignored.
+ *
+ * @author David Valeri
+ */
+public class GpxRouteImporter extends AbstractXmlRouteImporter {
+
+    @Override
+    protected String getFormatName() {
+        return "GPX";
+    }
+
+    @Override
+    protected List<Route> importRoutes(XMLStreamReader reader, String defaultName)
+            throws XMLStreamException {
+        List<Route> routes = new ArrayList<Route>();
+        RouteBuilder builder = new RouteBuilder();
+        boolean inRoute = false;
+        boolean inPoint = false;
+        String pointId = null;
+        double latitude = 0;
+        double longitude = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if (!inRoute && ("rte".equals(name) || "trk".equals(name))) {
+                    inRoute = true;
+                    builder.clear();
+                } else if (inRoute && ("rtept".equals(name) || "trkpt".equals(name))) {
+                    inPoint = true;
+                    pointId = null;
+                    latitude = parseAttribute(reader, "lat");
+                    longitude = parseAttribute(reader, "lon");
+                } else if (inRoute && "name".equals(name)) {
+                    String text = reader.getElementText().trim();
+                    if (inPoint) {
+                        pointId = text;
+                    } else {
+                        builder.setName(text);
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+
+                if (inPoint && ("rtept".equals(name) || "trkpt".equals(name))) {
+                    builder.add(pointId, latitude, longitude);
+                    inPoint = false;
+                } else if (inRoute && ("rte".equals(name) || "trk".equals(name))) {
+                    routes.add(toRoute(builder, defaultName, routes.size()));
+                    inRoute = false;
+                }
+            }
+        }
+
+        return routes;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Imports KML documents.  Each placemark containing one or more {@code LineString}s becomes a
+ * route of their coordinates, named after the placemark.  The text of {@code coordinates}
+ * elements is tokenized as it is streamed, without assembling it into strings, so that lines of
+ * hundreds of thousands of points are read in constant memory beyond the route itself.
+ * Placemarks without a line, such as points and polygons, are ignored.
+ *
+ * @author David Valeri
+ */
+public class KmlRouteImporter extends AbstractXmlRouteImporter {
+
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    @Override
+    protected String getFormatName() {
+        return "KML";
+    }
+
+    @Override
+    protected List<Route> importRoutes(XMLStreamReader reader, String defaultName)
+            throws XMLStreamException {
+        List<Route> routes = new ArrayList<Route>();
+        RouteBuilder builder = new RouteBuilder();
+        CoordinateTokenizer tokenizer = new CoordinateTokenizer(builder);
+        int placemarkDepth = 0;
+        int lineStringDepth = 0;
+        int depth = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+
+                if (placemarkDepth == 0 && "Placemark".equals(name)) {
+                    placemarkDepth = depth;
+                    builder.clear();
+                } else if (placemarkDepth != 0 && "LineString".equals(name)) {
+                    lineStringDepth = depth;
+                } else if (placemarkDepth != 0 && depth == placemarkDepth + 1
+                        && "name".equals(name)) {
+                    builder.setName(reader.getElementText().trim());
+                    depth--;
+                } else if (lineStringDepth != 0 && "coordinates".equals(name)) {
+                    readCoordinates(reader, tokenizer);
+                    depth--;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == lineStringDepth) {
+                    lineStringDepth = 0;
+                } else if (depth == placemarkDepth) {
+                    if (builder.size() > 0) {
+                        routes.add(toRoute(builder, defaultName, routes.size()));
+                    }
+                    placemarkDepth = 0;
+                }
+                depth--;
+            }
+        }
+
+        return routes;
+    }
+
+    /**
+     * Reads the text of the current {@code coordinates} element up to and including its end.
+     */
+    private static void readCoordinates(XMLStreamReader reader, CoordinateTokenizer tokenizer)
+            throws XMLStreamException {
+        tokenizer.reset();
+
+        while (true) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                tokenizer.append(reader.getTextCharacters(), reader.getTextStart(),
+                        reader.getTextLength());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                tokenizer.finish();
+                return;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Unexpected element " + reader.getLocalName()
+                        + " in coordinates.", reader.getLocation());
+            }
+        }
+    }
+
+    /**
+     * Splits KML coordinate tuples, {@code longitude,latitude[,altitude]} separated by
+     * whitespace, that may span any number of text chunks.
+     */
+    private static final class CoordinateTokenizer {
+
+        private final RouteBuilder builder;
+        private final byte[] token = new byte[MAX_TOKEN_LENGTH];
+        private int tokenLength;
+        private int component;
+        private double longitude;
+        private double latitude;
+
+        CoordinateTokenizer(RouteBuilder builder) {
+            this.builder = builder;
+        }
+
+        void reset() {
+            tokenLength = 0;
+            component = 0;
+        }
+
+        void append(char[] text, int start, int length) {
+            int end = start + length;
+            for (int i = start; i < end; i++) {
+                char c = text[i];
+                if (c == ',') {
+                    endComponent();
+                } else if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    endTuple();
+                } else if (tokenLength < MAX_TOKEN_LENGTH && c < 0x80) {
+                    token[tokenLength++] = (byte) c;
+                } else {
+                    throw new IllegalArgumentException("Invalid coordinate.");
+                }
+            }
+        }
+
+        void finish() {
+            endTuple();
+        }
+
+        private void endComponent() {
+            double value = DecimalParser.parse(token, 0, tokenLength);
+            if (component == 0) {
+                longitude = value;
+            } else if (component == 1) {
+                latitude = value;
+            }
+            component++;
+            tokenLength = 0;
+        }
+
+        private void endTuple() {
+            if (tokenLength > 0) {
+                endComponent();
+            }
+
+            if (component == 1) {
+                throw new IllegalArgumentException("Coordinate without a latitude.");
+            } else if (component > 1) {
+                builder.add(latitude, longitude);
+            }
+            component = 0;
+        }
+    }
+}
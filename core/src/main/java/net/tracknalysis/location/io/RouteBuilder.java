@@ -0,0 +1,155 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.Waypoint;
+
+/**
+ * Accumulates the waypoints of a route into growable primitive arrays so that very large routes
+ * are read without creating a {@link Waypoint} per point, and builds either a {@link Route} or a
+ * {@link PackedRoute} from them.  IDs are only retained once a waypoint with an ID is added;
+ * waypoints without an ID are given their one based index.
+ *
+ * @author David Valeri
+ */
+public final class RouteBuilder {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String name;
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private List<String> ids;
+    private int size;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the number of waypoints added.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a waypoint without an ID.
+     *
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     *
+     * @throws IllegalArgumentException if the coordinates are out of range
+     */
+    public void add(double latitude, double longitude) {
+        add(null, latitude, longitude);
+    }
+
+    /**
+     * Adds a waypoint.
+     *
+     * @param id the ID of the waypoint or {@code null} to use its one based index
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     *
+     * @throws IllegalArgumentException if the coordinates are out of range
+     */
+    public void add(String id, double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Invalid coordinates " + latitude + ", "
+                    + longitude + ".");
+        }
+
+        if (size == latitudes.length) {
+            int capacity = size * 2;
+            double[] newLatitudes = new double[capacity];
+            double[] newLongitudes = new double[capacity];
+            System.arraycopy(latitudes, 0, newLatitudes, 0, size);
+            System.arraycopy(longitudes, 0, newLongitudes, 0, size);
+            latitudes = newLatitudes;
+            longitudes = newLongitudes;
+        }
+
+        if (id != null && ids == null) {
+            ids = new ArrayList<String>(Math.max(size + 1, INITIAL_CAPACITY));
+            for (int i = 0; i < size; i++) {
+                ids.add(null);
+            }
+        }
+
+        if (ids != null) {
+            ids.add(id);
+        }
+
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        size++;
+    }
+
+    /**
+     * Builds a route of {@link Waypoint}s.
+     */
+    public Route toRoute() {
+        List<Waypoint> waypoints = new ArrayList<Waypoint>(size);
+        for (int i = 0; i < size; i++) {
+            String id = ids == null ? null : ids.get(i);
+            waypoints.add(new Waypoint(id == null ? String.valueOf(i + 1) : id,
+                    latitudes[i], longitudes[i]));
+        }
+        return new Route(name, waypoints);
+    }
+
+    /**
+     * Builds a route backed by packed coordinates.  The IDs of the waypoints are not retained.
+     *
+     * @param fixedPoint true to hold the coordinates as fixed-point integers
+     */
+    public PackedRoute toPackedRoute(boolean fixedPoint) {
+        if (fixedPoint) {
+            int[] fixedPointLatitudes = new int[size];
+            int[] fixedPointLongitudes = new int[size];
+            for (int i = 0; i < size; i++) {
+                fixedPointLatitudes[i] = PackedRoute.toFixedPoint(latitudes[i]);
+                fixedPointLongitudes[i] = PackedRoute.toFixedPoint(longitudes[i]);
+            }
+            return new PackedRoute(name, fixedPointLatitudes, fixedPointLongitudes);
+        } else {
+            double[] packedLatitudes = new double[size];
+            double[] packedLongitudes = new double[size];
+            System.arraycopy(latitudes, 0, packedLatitudes, 0, size);
+            System.arraycopy(longitudes, 0, packedLongitudes, 0, size);
+            return new PackedRoute(name, packedLatitudes, packedLongitudes);
+        }
+    }
+
+    /**
+     * Removes the name and all waypoints, retaining the allocated capacity.
+     */
+    public void clear() {
+        name = null;
+        ids = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * The course file formats from which routes can be imported.
+ *
+ * @author David Valeri
+ */
+public enum RouteFormat {
+
+    /**
+     * GPX routes and tracks, see {@link GpxRouteImporter}.
+     */
+    GPX(".gpx"),
+
+    /**
+     * KML placemarks containing lines, see {@link KmlRouteImporter}.
+     */
+    KML(".kml"),
+
+    /**
+     * Delimited text with the latitude and longitude of a waypoint on each line, in that order,
+     * and no header, see {@link CsvRouteImporter}.
+     */
+    CSV(".csv");
+
+    private final String suffix;
+
+    private RouteFormat(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Returns a new importer for this format with the default configuration.
+     */
+    public AbstractRouteImporter newImporter() {
+        switch (this) {
+            case GPX:
+                return new GpxRouteImporter();
+            case KML:
+                return new KmlRouteImporter();
+            default:
+                return new CsvRouteImporter(0, 1);
+        }
+    }
+
+    /**
+     * Returns the format of {@code file} based on its suffix.
+     *
+     * @throws IllegalArgumentException if the suffix is not recognized
+     */
+    public static RouteFormat forFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        for (RouteFormat format : values()) {
+            if (name.endsWith(format.suffix)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown route format for file " + file + ".");
+    }
+
+    /**
+     * Imports the routes in {@code file} using the format of the file and the default
+     * configuration.  Routes not named in the file are named after the file.
+     *
+     * @param file the file
+     * @param packed true to build the routes as {@link net.tracknalysis.location.PackedRoute}s
+     *
+     * @throws IOException if the file cannot be read or is not valid
+     * @throws IllegalArgumentException if the suffix of the file is not recognized
+     */
+    public static List<Route> importRoutes(File file, boolean packed) throws IOException {
+        RouteFormat format = forFile(file);
+        AbstractRouteImporter importer = format.newImporter();
+        importer.setPacked(packed);
+
+        String name = file.getName();
+        name = name.substring(0, name.length() - format.suffix.length());
+
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        try {
+            return importer.importRoutes(in, name);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Interface for entities that read routes from a course file.  Implementations stream the input
+ * rather than loading the whole document into memory.
+ *
+ * @author David Valeri
+ */
+public interface RouteImporter {
+
+    /**
+     * Reads the routes in {@code in}.  The stream is not closed.
+     *
+     * @param in the input
+     * @param defaultName the name given to routes that are not named in the input
+     *
+     * @return the routes read, in the order in which they appear in the input
+     *
+     * @throws IOException if the input cannot be read or is not valid
+     */
+    List<Route> importRoutes(InputStream in, String defaultName) throws IOException;
+}
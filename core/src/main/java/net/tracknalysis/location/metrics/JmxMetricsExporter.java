@@ -0,0 +1,125 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports {@link Metrics} to JMX.  The metrics object is registered under
+ * {@code net.tracknalysis.location:type=<type>,name=<name>} and each of its latency histograms
+ * under the same name with an additional {@code histogram=<key>} property.
+ * <p/>
+ * This is the only metrics class that depends on {@code javax.management} so that the metrics
+ * remain usable on platforms without JMX.
+ *
+ * @author David Valeri
+ */
+public final class JmxMetricsExporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmxMetricsExporter.class);
+
+    /**
+     * The JMX domain under which metrics are registered.
+     */
+    public static final String DOMAIN = "net.tracknalysis.location";
+
+    private final MBeanServer mBeanServer;
+    private final List<ObjectName> registeredNames = new ArrayList<ObjectName>();
+
+    /**
+     * Constructs a new instance that exports to the platform MBean server.
+     */
+    public JmxMetricsExporter() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public JmxMetricsExporter(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    /**
+     * Registers {@code metrics} and its histograms.  {@code metrics} must be a compliant MBean or
+     * MXBean.
+     *
+     * @param metrics the metrics to export
+     * @param type the value of the type key property, e.g. "NmeaParser"
+     * @param name the value of the name key property identifying the instance
+     *
+     * @throws JMException if there is an error registering the metrics
+     */
+    public synchronized void export(Metrics metrics, String type, String name)
+            throws JMException {
+
+        String baseName = DOMAIN + ":type=" + ObjectName.quote(type) + ",name="
+                + ObjectName.quote(name);
+
+        register(metrics, new ObjectName(baseName));
+
+        for (Map.Entry<String, LatencyHistogram> entry
+                : metrics.getLatencyHistograms().entrySet()) {
+            register(entry.getValue(), new ObjectName(baseName + ",histogram="
+                    + ObjectName.quote(entry.getKey())));
+        }
+    }
+
+    /**
+     * Registers {@code mBean} without any histograms, for example a management interface over a
+     * component that aggregates several metrics.  {@code mBean} must be a compliant MBean or
+     * MXBean.
+     *
+     * @param mBean the object to export
+     * @param type the value of the type key property, e.g. "NmeaLocationManager"
+     * @param name the value of the name key property identifying the instance
+     *
+     * @throws JMException if there is an error registering the object
+     */
+    public synchronized void exportMBean(Object mBean, String type, String name)
+            throws JMException {
+        register(mBean, new ObjectName(DOMAIN + ":type=" + ObjectName.quote(type) + ",name="
+                + ObjectName.quote(name)));
+    }
+
+    /**
+     * Unregisters all metrics exported by this instance.
+     */
+    public synchronized void unexportAll() {
+        for (ObjectName objectName : registeredNames) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                LOG.warn("Error unregistering " + objectName + ".", e);
+            }
+        }
+
+        registeredNames.clear();
+    }
+
+    private void register(Object object, ObjectName objectName) throws JMException {
+        mBeanServer.registerMBean(object, objectName);
+        registeredNames.add(objectName);
+        LOG.debug("Registered {} as {}.", object, objectName);
+    }
+}
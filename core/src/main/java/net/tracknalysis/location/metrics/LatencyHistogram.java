@@ -0,0 +1,213 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, log-linear histogram of latencies in nanoseconds in the style of an HDR
+ * histogram.  Values below 32 are recorded exactly and larger values are recorded into one of
+ * 32 linear sub-buckets per power of two, bounding the relative error of reported values to
+ * about 3%.  Values above {@link #MAX_VALUE}, about 68 seconds, are recorded as
+ * {@link #MAX_VALUE}.
+ * <p/>
+ * All storage is allocated up front so that recording does not allocate.  Recording and reading
+ * are thread safe, but reads that race with recording or {@link #reset()} may observe a
+ * partially updated histogram.
+ *
+ * @author David Valeri
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean {
+
+    /**
+     * The largest value, in nanoseconds, that is tracked distinctly.
+     */
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value.  Negative values are recorded as 0.
+     *
+     * @param value the value in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long currentMin = min.get();
+        while (value < currentMin && !min.compareAndSet(currentMin, value)) {
+            currentMin = min.get();
+        }
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since {@code startTime}.
+     *
+     * @param startTime the start time as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public long getMin() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public double getMean() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+    }
+
+    /**
+     * Returns the largest value, within the precision of the histogram, below which
+     * {@code percentile} percent of the recorded values fall, or 0 if no values were recorded.
+     *
+     * @param percentile the percentile between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long currentCount = count.get();
+
+        if (currentCount == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(currentCount * percentile / 100d));
+        long accumulated = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += counts.get(i);
+
+            if (accumulated >= target) {
+                return Math.min(highestValueIn(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    /**
+     * Returns the index of the bucket containing {@code value}.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the largest value recorded into the bucket at {@code index}.
+     */
+    static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("LatencyHistogram [count=");
+        builder.append(getCount());
+        builder.append(", min=");
+        builder.append(getMin());
+        builder.append(", mean=");
+        builder.append(getMean());
+        builder.append(", p50=");
+        builder.append(getP50());
+        builder.append(", p99=");
+        builder.append(getP99());
+        builder.append(", max=");
+        builder.append(getMax());
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+
+/**
+ * Receives domain events from the location pipeline for correlation with external profiling
+ * data, for example GC and safepoint events in a flight recording.  Components only call a probe
+ * while one is set on them, so an unset probe costs a single null check.
+ * <p/>
+ * Probes are called synchronously from the thread processing the input and must not block.
+ * Arguments are passed as primitives and constant strings so that calls do not allocate.
+ *
+ * @author David Valeri
+ */
+public interface PipelineProbe {
+
+    /**
+     * Reason for a sentence with an invalid sentence type.
+     */
+    String INVALID_SENTENCE_TYPE = "Invalid sentence type";
+
+    /**
+     * Reason for a sentence with a field that could not be decoded.
+     */
+    String INVALID_FIELD = "Invalid field";
+
+    /**
+     * Reason for a sentence exceeding the maximum sentence length.
+     */
+    String INVALID_LENGTH = "Invalid length";
+
+    /**
+     * Reason for a sentence with a malformed or mismatched checksum.
+     */
+    String INVALID_CHECKSUM = "Invalid checksum";
+
+    /**
+     * Reason for a sentence that is not properly terminated.
+     */
+    String INVALID_TERMINATION = "Invalid termination";
+
+    /**
+     * Reason for a sentence whose processing failed with an exception.
+     */
+    String PROCESSING_ERROR = "Processing error";
+
+    /**
+     * Called when a sentence has been completely read.
+     *
+     * @param sentenceType the type of the sentence
+     * @param parseTime the time, in nanoseconds, from the start of the sentence to its completion
+     */
+    void sentenceParsed(String sentenceType, long parseTime);
+
+    /**
+     * Called when a sentence is rejected.
+     *
+     * @param sentenceType the type of the sentence or {@code null} if not yet known
+     * @param reason the reason for the rejection, one of the constants of this interface
+     */
+    void sentenceRejected(String sentenceType, String reason);
+
+    /**
+     * Called when a location has been fused from the sentences of an epoch.
+     *
+     * @param time the time of the location, in milliseconds since midnight UTC
+     * @param sentenceMask the mask of the sentence types that contributed to the location
+     * @param fusionTime the time, in nanoseconds, from the arrival of the first sentence of the
+     *            epoch to the fusion of the location or 0 if not known
+     */
+    void locationFused(long time, int sentenceMask, long fusionTime);
+
+    /**
+     * Called when an incomplete epoch is discarded because a sentence from a different epoch, or a
+     * second sentence of the same type, arrived.
+     *
+     * @param discardedTime the time of the discarded epoch, in milliseconds since midnight UTC
+     * @param discardedSentenceMask the mask of the sentence types received in the discarded epoch
+     * @param time the time of the new epoch, in milliseconds since midnight UTC
+     */
+    void epochMismatch(long discardedTime, int discardedSentenceMask, long time);
+
+    /**
+     * Called when the route manager has processed a location update.
+     *
+     * @param routesEvaluated the number of routes for which the distance to the next waypoint was
+     *            computed
+     * @param routesSkipped the number of routes that were not evaluated
+     * @param processTime the time, in nanoseconds, spent processing the update
+     */
+    void routesProcessed(int routesEvaluated, int routesSkipped, long processTime);
+
+    /**
+     * Called before the listeners of a route are notified of a waypoint event.
+     *
+     * @param route the route
+     * @param waypointIndex the index of the waypoint in the route
+     * @param eventType the type of the event
+     * @param distanceToWaypoint the distance to the waypoint in meters
+     */
+    void waypointEvent(Route route, int waypointIndex, WaypointEventType eventType,
+            float distanceToWaypoint);
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility methods for obtaining optional {@link PipelineProbe} implementations.
+ *
+ * @author David Valeri
+ */
+public final class PipelineProbes {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineProbes.class);
+
+    /**
+     * Name of the Flight Recorder probe provided by the optional tracknalysis-location-jfr module.
+     */
+    static final String JFR_PROBE_CLASS_NAME =
+            "net.tracknalysis.location.metrics.jfr.JfrPipelineProbe";
+
+    private PipelineProbes() {
+    }
+
+    /**
+     * Returns a probe emitting JDK Flight Recorder events if the tracknalysis-location-jfr module
+     * is on the class path and the runtime provides Flight Recorder.
+     *
+     * @return the probe or {@code null} if Flight Recorder events are not available
+     */
+    public static PipelineProbe newFlightRecorderProbe() {
+        try {
+            Class<?> probeClass = Class.forName(JFR_PROBE_CLASS_NAME, true,
+                    PipelineProbes.class.getClassLoader());
+            return (PipelineProbe) probeClass.getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            LOG.debug("Flight Recorder probe is not on the class path.");
+        } catch (LinkageError e) {
+            LOG.debug("Flight Recorder is not supported by the runtime.", e);
+        } catch (InstantiationException e) {
+            LOG.warn("Error creating Flight Recorder probe.", e);
+        } catch (IllegalAccessException e) {
+            LOG.warn("Error creating Flight Recorder probe.", e);
+        } catch (NoSuchMethodException e) {
+            LOG.warn("Error creating Flight Recorder probe.", e);
+        } catch (InvocationTargetException e) {
+            LOG.warn("Error creating Flight Recorder probe.", e.getCause());
+        }
+        
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the distribution of latencies between the stages of the location pipeline using
+ * monotonic {@link System#nanoTime()} stamps.  Stamps are taken when the first byte of the
+ * input contributing to a location arrives, when the sentence completing the location has been
+ * read, when the location is emitted to listeners and when each route listener is notified.
+ * The stamps travel with the data through the pipeline as primitive values so that tracing
+ * does not allocate.
+ * <p/>
+ * Tracing is optional.  Components only take stamps while a trace is set on them.
+ *
+ * @author David Valeri
+ */
+public final class PipelineTrace implements Metrics, PipelineTraceMXBean {
+
+    private final LatencyHistogram firstByteToSentence = new LatencyHistogram();
+    private final LatencyHistogram sentenceToLocation = new LatencyHistogram();
+    private final LatencyHistogram firstByteToLocation = new LatencyHistogram();
+    private final LatencyHistogram updateToWaypointEvent = new LatencyHistogram();
+    private final LatencyHistogram firstByteToWaypointEvent = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> latencyHistograms;
+
+    public PipelineTrace() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        histograms.put("firstByteToSentence", firstByteToSentence);
+        histograms.put("sentenceToLocation", sentenceToLocation);
+        histograms.put("firstByteToLocation", firstByteToLocation);
+        histograms.put("updateToWaypointEvent", updateToWaypointEvent);
+        histograms.put("firstByteToWaypointEvent", firstByteToWaypointEvent);
+        latencyHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Records the emission of a location.
+     *
+     * @param firstByteTime the time the first byte contributing to the location arrived
+     * @param sentenceTime the time the sentence completing the location was read
+     * @param emissionTime the time the location was emitted
+     */
+    public void recordLocation(long firstByteTime, long sentenceTime, long emissionTime) {
+        firstByteToSentence.record(sentenceTime - firstByteTime);
+        sentenceToLocation.record(emissionTime - sentenceTime);
+        firstByteToLocation.record(emissionTime - firstByteTime);
+    }
+
+    /**
+     * Records the notification of a route listener.
+     *
+     * @param firstByteTime the time the first byte contributing to the location arrived or 0 if
+     *            not known
+     * @param updateTime the time the route manager started processing the location
+     * @param eventTime the time the listener was notified
+     */
+    public void recordWaypointEvent(long firstByteTime, long updateTime, long eventTime) {
+        updateToWaypointEvent.record(eventTime - updateTime);
+
+        if (firstByteTime != 0) {
+            firstByteToWaypointEvent.record(eventTime - firstByteTime);
+        }
+    }
+
+    @Override
+    public long getLocationCount() {
+        return firstByteToLocation.getCount();
+    }
+
+    @Override
+    public long getWaypointEventCount() {
+        return updateToWaypointEvent.getCount();
+    }
+
+    /**
+     * Returns the distribution of the time from the arrival of the first byte of an epoch to the
+     * completion of the sentence completing the epoch.
+     */
+    public LatencyHistogram getFirstByteToSentence() {
+        return firstByteToSentence;
+    }
+
+    /**
+     * Returns the distribution of the time from the completion of the sentence completing an
+     * epoch to the emission of the location.
+     */
+    public LatencyHistogram getSentenceToLocation() {
+        return sentenceToLocation;
+    }
+
+    /**
+     * Returns the distribution of the time from the arrival of the first byte of an epoch to the
+     * emission of the location.
+     */
+    public LatencyHistogram getFirstByteToLocation() {
+        return firstByteToLocation;
+    }
+
+    /**
+     * Returns the distribution of the time from the start of route processing to the
+     * notification of each route listener.
+     */
+    public LatencyHistogram getUpdateToWaypointEvent() {
+        return updateToWaypointEvent;
+    }
+
+    /**
+     * Returns the end to end distribution of the time from the arrival of the first byte of an
+     * epoch to the notification of each route listener.
+     */
+    public LatencyHistogram getFirstByteToWaypointEvent() {
+        return firstByteToWaypointEvent;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : latencyHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("PipelineTrace ");
+        builder.append(latencyHistograms);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events and tracks their rate per second over the most recently completed window of
+ * about one second.  Does not allocate.  Intended to be incremented by a single thread and read
+ * by any thread.
+ *
+ * @author David Valeri
+ */
+public final class RateCounter {
+
+    private static final long WINDOW = 1000000000L;
+
+    private final AtomicLong count = new AtomicLong();
+    private volatile long windowStart = System.nanoTime();
+    private volatile long windowCount;
+    private volatile double rate;
+
+    /**
+     * Counts a single event at the current time.
+     */
+    public void increment() {
+        increment(System.nanoTime());
+    }
+
+    /**
+     * Counts a single event.
+     *
+     * @param nanoTime the time of the event as returned by {@link System#nanoTime()}
+     */
+    public void increment(long nanoTime) {
+        count.incrementAndGet();
+        rollWindow(nanoTime);
+        windowCount++;
+    }
+
+    /**
+     * Returns the total number of events counted since creation or the last reset.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of events per second over the most recently completed window.  If no
+     * window has completed for more than two windows, returns the rate since the start of the
+     * current window so that the rate decays while events are not arriving.
+     */
+    public double getRate() {
+        long elapsed = System.nanoTime() - windowStart;
+
+        if (elapsed >= 2 * WINDOW) {
+            return windowCount * 1e9d / elapsed;
+        }
+
+        return rate;
+    }
+
+    public void reset() {
+        count.set(0);
+        windowStart = System.nanoTime();
+        windowCount = 0;
+        rate = 0;
+    }
+
+    private void rollWindow(long nanoTime) {
+        long elapsed = nanoTime - windowStart;
+
+        if (elapsed >= WINDOW) {
+            rate = windowCount * 1e9d / elapsed;
+            windowStart = nanoTime;
+            windowCount = 0;
+        }
+    }
+}
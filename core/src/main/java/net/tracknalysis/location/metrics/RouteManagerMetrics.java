@@ -0,0 +1,174 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics for a route manager.
+ *
+ * @author David Valeri
+ */
+public final class RouteManagerMetrics implements Metrics, RouteManagerMetricsMXBean {
+
+    private final RateCounter updates = new RateCounter();
+    private final AtomicLong waypointEventCount = new AtomicLong();
+    private final AtomicLong listenerErrorCount = new AtomicLong();
+    private final AtomicLong routeEvaluationCount = new AtomicLong();
+    private final AtomicLong routeSkipCount = new AtomicLong();
+    private final LatencyHistogram processUpdateTime = new LatencyHistogram();
+    private final LatencyHistogram routeListenerTime = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> latencyHistograms;
+
+    public RouteManagerMetrics() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        histograms.put("processUpdateTime", processUpdateTime);
+        histograms.put("routeListenerTime", routeListenerTime);
+        latencyHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Records the completion of a location update.
+     *
+     * @param startTime the time the update started as returned by {@link System#nanoTime()}
+     */
+    public void recordUpdate(long startTime) {
+        long endTime = System.nanoTime();
+        updates.increment(endTime);
+        processUpdateTime.record(endTime - startTime);
+    }
+
+    /**
+     * Records the completion of a location update.
+     *
+     * @param startTime the time the update started as returned by {@link System#nanoTime()}
+     * @param routesEvaluated the number of routes for which the distance to the next waypoint
+     *            was computed
+     * @param routesSkipped the number of routes that could not have reached their next waypoint
+     *            and were not evaluated
+     */
+    public void recordUpdate(long startTime, int routesEvaluated, int routesSkipped) {
+        recordUpdate(startTime);
+        routeEvaluationCount.addAndGet(routesEvaluated);
+        if (routesSkipped != 0) {
+            routeSkipCount.addAndGet(routesSkipped);
+        }
+    }
+
+    /**
+     * Records the completion of a single route listener callback.
+     *
+     * @param startTime the time the callback started as returned by {@link System#nanoTime()}
+     */
+    public void recordWaypointEvent(long startTime) {
+        routeListenerTime.recordSince(startTime);
+        waypointEventCount.incrementAndGet();
+    }
+
+    /**
+     * Records a route listener callback that threw an exception.
+     */
+    public void recordListenerError() {
+        listenerErrorCount.incrementAndGet();
+    }
+
+    @Override
+    public long getUpdateCount() {
+        return updates.getCount();
+    }
+
+    @Override
+    public double getUpdateRate() {
+        return updates.getRate();
+    }
+
+    @Override
+    public long getWaypointEventCount() {
+        return waypointEventCount.get();
+    }
+
+    @Override
+    public long getListenerErrorCount() {
+        return listenerErrorCount.get();
+    }
+
+    @Override
+    public long getRouteEvaluationCount() {
+        return routeEvaluationCount.get();
+    }
+
+    @Override
+    public long getRouteSkipCount() {
+        return routeSkipCount.get();
+    }
+
+    /**
+     * Returns the distribution of the time taken by each location update, in nanoseconds.
+     */
+    public LatencyHistogram getProcessUpdateTime() {
+        return processUpdateTime;
+    }
+
+    /**
+     * Returns the distribution of the time taken by each route listener callback, in
+     * nanoseconds.
+     */
+    public LatencyHistogram getRouteListenerTime() {
+        return routeListenerTime;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    @Override
+    public void reset() {
+        updates.reset();
+        waypointEventCount.set(0);
+        listenerErrorCount.set(0);
+        routeEvaluationCount.set(0);
+        routeSkipCount.set(0);
+        processUpdateTime.reset();
+        routeListenerTime.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("RouteManagerMetrics [updateCount=");
+        builder.append(getUpdateCount());
+        builder.append(", updateRate=");
+        builder.append(getUpdateRate());
+        builder.append(", waypointEventCount=");
+        builder.append(getWaypointEventCount());
+        builder.append(", listenerErrorCount=");
+        builder.append(getListenerErrorCount());
+        builder.append(", routeEvaluationCount=");
+        builder.append(getRouteEvaluationCount());
+        builder.append(", routeSkipCount=");
+        builder.append(getRouteSkipCount());
+        builder.append(", processUpdateTime=");
+        builder.append(processUpdateTime);
+        builder.append(", routeListenerTime=");
+        builder.append(routeListenerTime);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author David Valeri
+ */
+public class GeodesicTest {
+
+    @Test
+    public void testComputeDistanceAndBearing() {
+        float[] results = new float[3];
+
+        // Flinders Peak to Buninyong from the reference paper.
+        Geodesic.computeDistanceAndBearing(-37.95103341666667d, 144.42486788888888d,
+                -37.65282113888889d, 143.92649552777777d, results);
+
+        assertEquals(54972.271f, results[0], 0.01f);
+        assertEquals(306.86816f - 360, results[1], 0.0001f);
+        assertEquals(307.17363f - 360, results[2], 0.0001f);
+        assertEquals(results[0], Geodesic.distance(-37.95103341666667d, 144.42486788888888d,
+                -37.65282113888889d, 143.92649552777777d), 0f);
+
+        assertEquals(0f, Geodesic.distance(38.9799d, -77.541d, 38.9799d, -77.541d), 0f);
+    }
+
+    @Test
+    public void testBatchMatchesSinglePair() {
+        Random random = new Random(1);
+        int count = 1000;
+        double[] lats1 = new double[count];
+        double[] lons1 = new double[count];
+        double[] lats2 = new double[count];
+        double[] lons2 = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            lats1[i] = 38.97 + random.nextDouble() * 0.02;
+            lons1[i] = -77.55 + random.nextDouble() * 0.02;
+            lats2[i] = random.nextDouble() * 170 - 85;
+            lons2[i] = random.nextDouble() * 360 - 180;
+        }
+
+        float[] results = new float[count + 1];
+
+        Geodesic.distances(lats1[0], lons1[0], lats2, lons2, 0, count, results, 1);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Geodesic.distance(lats1[0], lons1[0], lats2[i], lons2[i]),
+                    results[i + 1], 0f);
+        }
+
+        double[] origin = new double[4];
+        Geodesic.origin(lats1[0], lons1[0], origin, 1);
+        for (int i = count - 1; i >= 0; i--) {
+            assertEquals(Geodesic.distance(lats1[0], lons1[0], lats2[i], lons2[i]),
+                    Geodesic.distanceFromOrigin(origin, 1, lats2[i], lons2[i]), 0f);
+        }
+
+        Geodesic.distances(lats1, lons1, lats2, lons2, 0, count, results, 0);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Geodesic.distance(lats1[i], lons1[i], lats2[i], lons2[i]),
+                    results[i], 0f);
+        }
+
+        double length = 0;
+        for (int i = 1; i < count; i++) {
+            length += Geodesic.distance(lats1[i - 1], lons1[i - 1], lats1[i], lons1[i]);
+        }
+        assertEquals(length, Geodesic.pathLength(lats1, lons1, 0, count), 0d);
+        assertEquals(0d, Geodesic.pathLength(lats1, lons1, 5, 1), 0d);
+    }
+
+    @Test
+    public void testLocalTangentPlaneMaxError() {
+        LocalTangentPlane plane = new LocalTangentPlane(38.978, -77.54);
+        Random random = new Random(1);
+        double[] enu = new double[6];
+
+        // Positions up to roughly 20 km from one another and 10 km from the origin.
+        for (int i = 0; i < 1000; i++) {
+            double lat1 = 38.888 + random.nextDouble() * 0.18;
+            double lon1 = -77.655 + random.nextDouble() * 0.23;
+            double lat2 = 38.888 + random.nextDouble() * 0.18;
+            double lon2 = -77.655 + random.nextDouble() * 0.23;
+
+            plane.project(lat1, lon1, enu, 0);
+            plane.project(lat2, lon2, enu, 3);
+
+            double chord = LocalTangentPlane.distance(enu, 0, enu, 3);
+            float geodesic = Geodesic.distance(lat1, lon1, lat2, lon2);
+            // Float resolution of the geodesic distance plus the bound on the chord error.
+            double tolerance = Math.ulp(geodesic) + LocalTangentPlane.getMaxError(geodesic);
+
+            assertTrue(chord <= geodesic + Math.ulp(geodesic));
+            assertEquals(geodesic, chord, tolerance);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author David Valeri
+ */
+public class MultiDeviceRouteManagerTest {
+
+    private static final int DEVICES = 8;
+
+    private final Route route = new Route("My Route", Arrays.asList(
+            new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+            new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
+            new Waypoint("3", 38.982906341552734d, -77.54007720947266d),
+            new Waypoint("4", 38.972618103027344d, -77.54145050048828d),
+            new Waypoint("5", 38.97257995605469d, -77.5412826538086d)));
+
+    private final List<double[]> fixes = new ArrayList<double[]>();
+    private final Map<String, List<String>> deviceEvents =
+            new ConcurrentHashMap<String, List<String>>();
+    private final List<String> allEvents = Collections.synchronizedList(new ArrayList<String>());
+
+    private final DeviceRouteListener deviceListener = new DeviceRouteListener() {
+
+        @Override
+        public void waypointEvent(String deviceId, int waypointIndex, Route route,
+                long locationTime, long systemTime, WaypointEventType eventType,
+                float distanceToWaypoint) {
+            List<String> events = deviceEvents.get(deviceId);
+            if (events == null) {
+                events = Collections.synchronizedList(new ArrayList<String>());
+                deviceEvents.put(deviceId, events);
+            }
+            events.add(waypointIndex + " " + eventType + " " + locationTime + " "
+                    + distanceToWaypoint);
+        }
+
+        @Override
+        public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+            throw new AssertionError();
+        }
+    };
+
+    private final RouteListener listener = new RouteListener() {
+
+        @Override
+        public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+            allEvents.add(waypointIndex + " " + eventType + " " + locationTime + " "
+                    + distanceToWaypoint);
+        }
+    };
+
+    @Before
+    public void loadFixes() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/RouteManagerTestData.csv")));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] tokens = line.split(",[ ]*");
+                fixes.add(new double[] {Math.round(Double.valueOf(tokens[1]) * 1000),
+                        Double.valueOf(tokens[2]), Double.valueOf(tokens[3])});
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testDevicesMatchSingleDeviceManager() throws Exception {
+        MultiDeviceRouteManager manager = new MultiDeviceRouteManager();
+        manager.addRouteForSynchronousListeners(route, 15f, deviceListener, listener);
+
+        // Interleave the devices, each starting at a different point in the data.
+        for (int i = 0; i < fixes.size(); i++) {
+            for (int device = 0; device < DEVICES; device++) {
+                double[] fix = fixes.get((i + device * 500) % fixes.size());
+                manager.processUpdate("Car " + device, fix[1], fix[2], (long) fix[0], i);
+            }
+        }
+
+        assertEquals(DEVICES, manager.getDeviceCount());
+        assertEquals((long) fixes.size() * DEVICES, manager.getMetrics().getUpdateCount());
+
+        int eventCount = 0;
+        for (int device = 0; device < DEVICES; device++) {
+            List<String> expected = replay(device * 500);
+            assertTrue(expected.size() > 20);
+            assertEquals(expected, deviceEvents.get("Car " + device));
+            eventCount += expected.size();
+        }
+        assertEquals(eventCount, allEvents.size());
+    }
+
+    @Test
+    public void testConcurrentDevices() throws Exception {
+        final MultiDeviceRouteManager manager = new MultiDeviceRouteManager(DEVICES);
+        manager.setLocalTangentPlane(new LocalTangentPlane(38.979, -77.541));
+        manager.addRouteForSynchronousListeners(route, 15f, deviceListener);
+
+        Thread[] threads = new Thread[DEVICES];
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        for (int device = 0; device < DEVICES; device++) {
+            final String deviceId = "Car " + device;
+            final int start = device * 500;
+            threads[device] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < fixes.size(); i++) {
+                            double[] fix = fixes.get((i + start) % fixes.size());
+                            manager.processUpdate(deviceId, fix[1], fix[2], (long) fix[0], i);
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }
+            };
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Collections.emptyList(), errors);
+
+        for (int device = 0; device < DEVICES; device++) {
+            AbstractRouteManager single = new AbstractRouteManager();
+            single.setLocalTangentPlane(manager.getLocalTangentPlane());
+            assertEquals(replay(single, device * 500), deviceEvents.get("Car " + device));
+        }
+    }
+
+    @Test
+    public void testRemoveDevice() throws Exception {
+        MultiDeviceRouteManager manager = new MultiDeviceRouteManager();
+        manager.addRouteForSynchronousListeners(route, 15f, deviceListener);
+
+        for (int i = 0; i < fixes.size() / 2; i++) {
+            double[] fix = fixes.get(i);
+            manager.processUpdate("Car", fix[1], fix[2], (long) fix[0], i);
+        }
+
+        assertEquals(Collections.singleton("Car"), manager.getDeviceIds());
+        assertTrue(manager.removeDevice("Car"));
+        assertFalse(manager.removeDevice("Car"));
+        assertEquals(0, manager.getDeviceCount());
+        deviceEvents.clear();
+
+        for (int i = 0; i < fixes.size(); i++) {
+            double[] fix = fixes.get(i);
+            manager.processUpdate("Car", fix[1], fix[2], (long) fix[0], i);
+        }
+
+        assertEquals(replay(0), deviceEvents.get("Car"));
+    }
+
+    @Test
+    public void testReaddedRouteStartsFromFirstWaypoint() throws Exception {
+        MultiDeviceRouteManager manager = new MultiDeviceRouteManager();
+        manager.addRouteForSynchronousListeners(route, 15f, deviceListener);
+
+        for (int i = 0; i < fixes.size() / 2; i++) {
+            double[] fix = fixes.get(i);
+            manager.processUpdate("Car", fix[1], fix[2], (long) fix[0], i);
+        }
+
+        assertFalse(deviceEvents.get("Car").isEmpty());
+        deviceEvents.clear();
+
+        // Re-registered before the device sees another update.
+        manager.removeRouteForSynchronousListeners(route);
+        manager.addRouteForSynchronousListeners(route, 15f, deviceListener);
+
+        for (int i = 0; i < fixes.size(); i++) {
+            double[] fix = fixes.get(i);
+            manager.processUpdate("Car", fix[1], fix[2], (long) fix[0], i);
+        }
+
+        assertEquals(replay(0), deviceEvents.get("Car"));
+    }
+
+    private List<String> replay(int start) {
+        return replay(new AbstractRouteManager(), start);
+    }
+
+    /**
+     * Replays the fixes from {@code start} through a single device manager, returning the
+     * events generated.
+     */
+    private List<String> replay(AbstractRouteManager manager, int start) {
+        final List<String> events = new ArrayList<String>();
+        manager.addRouteForSynchronousListeners(route, 15f, new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                    long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                events.add(waypointIndex + " " + eventType + " " + locationTime + " "
+                        + distanceToWaypoint);
+            }
+        });
+
+        for (int i = 0; i < fixes.size(); i++) {
+            double[] fix = fixes.get((i + start) % fixes.size());
+            manager.processUpdate(fix[1], fix[2], (long) fix[0], i);
+        }
+
+        return events;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import java.io.File;
+import java.util.Random;
+
+import net.tracknalysis.location.AbstractRouteManager;
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+
+/**
+ * Measures the time to make a catalog of routes ready for evaluation, compared with building
+ * the same routes from coordinates.  Each route is a random walk of waypoints 10 m apart
+ * around a venue.
+ * <p/>
+ * Not run as part of the test suite.  Run {@link #main(String[])} with the test classpath,
+ * optionally passing the number of routes and waypoints per route.
+ *
+ * @author David Valeri
+ */
+public final class RouteCatalogBenchmark {
+
+    private static final int DEFAULT_ROUTES = 20000;
+    private static final int DEFAULT_WAYPOINTS = 50;
+    private static final double LATITUDE = 38.979896545410156d;
+    private static final double LONGITUDE = -77.54102325439453d;
+    private static final double STEP = 10d / 111000d;
+
+    private RouteCatalogBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int routeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUTES;
+        int waypointCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WAYPOINTS;
+
+        Random random = new Random(0);
+        RouteCatalogWriter writer = new RouteCatalogWriter();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < routeCount; i++) {
+            double[] latitudes = new double[waypointCount];
+            double[] longitudes = new double[waypointCount];
+            double latitude = LATITUDE + random.nextGaussian() * 0.01;
+            double longitude = LONGITUDE + random.nextGaussian() * 0.01;
+            for (int j = 0; j < waypointCount; j++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                latitude += Math.cos(angle) * STEP;
+                longitude += Math.sin(angle) * STEP;
+                latitudes[j] = latitude;
+                longitudes[j] = longitude;
+            }
+            writer.add(new PackedRoute("Route " + i, latitudes, longitudes), 15f);
+        }
+        System.out.println(String.format("Built %d routes in %d ms.", routeCount,
+                (System.nanoTime() - startTime) / 1000000));
+
+        File file = File.createTempFile("routes", RouteCatalog.CATALOG_SUFFIX);
+        try {
+            startTime = System.nanoTime();
+            writer.write(file);
+            System.out.println(String.format("Compiled %d bytes in %d ms.", file.length(),
+                    (System.nanoTime() - startTime) / 1000000));
+
+            RouteListener listener = new RouteListener() {
+                @Override
+                public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                        long systemTime, WaypointEventType eventType,
+                        float distanceToWaypoint) {
+                }
+            };
+
+            for (int round = 0; round < 5; round++) {
+                startTime = System.nanoTime();
+                RouteCatalog catalog = RouteCatalog.open(file);
+                long openTime = System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                AbstractRouteManager routeManager = new AbstractRouteManager();
+                catalog.addRoutes(routeManager, listener);
+                long addTime = System.nanoTime() - startTime;
+
+                System.out.println(String.format("Round %d: opened %d routes in %.3f ms, "
+                        + "added to a route manager in %.3f ms", round, catalog.size(),
+                        openTime / 1e6d, addTime / 1e6d));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.tracknalysis.location.AbstractRouteManager;
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.Waypoint;
+
+/**
+ * @author David Valeri
+ */
+public class RouteCatalogTest {
+
+    private static final double RESOLUTION = 0.5 / PackedRoute.FIXED_POINT_SCALE;
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("routes", RouteCatalog.CATALOG_SUFFIX);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteAndOpen() throws Exception {
+        Route lap = new Route("Lap", Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+                new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
+                new Waypoint("3", 38.982906341552734d, -77.54007720947266d)));
+        Route named = new Route("Pit Lane \u00e9", Arrays.asList(
+                new Waypoint("Pit In", 38.972618103027344d, -77.54145050048828d),
+                new Waypoint("Pit Out", 38.97257995605469d, -77.5412826538086d)));
+
+        double[] latitudes = new double[1000];
+        double[] longitudes = new double[1000];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = 50.0 + i * 1e-5;
+            longitudes[i] = 8.0 - i * 1e-5;
+        }
+        PackedRoute centerline = new PackedRoute("Centerline", latitudes, longitudes);
+
+        RouteCatalogWriter writer = new RouteCatalogWriter();
+        writer.add(lap, 15f);
+        writer.add(named, 5f);
+        writer.add(centerline, 1f);
+        assertEquals(3, writer.size());
+        writer.write(file);
+
+        RouteCatalog catalog = RouteCatalog.open(file);
+        assertEquals(3, catalog.size());
+        assertEquals(1005, catalog.getWaypointCount());
+        assertSame(catalog.getRoute(0), catalog.getRoute(0));
+
+        assertRoute(lap, catalog.getRoute(0));
+        assertRoute(named, catalog.getRoute(1));
+        assertRoute(centerline, catalog.getRoute(2));
+        assertEquals(15f, catalog.getTriggerDistance(0), 0f);
+        assertEquals(5f, catalog.getTriggerDistance(1), 0f);
+        assertEquals(1f, catalog.getTriggerDistance(2), 0f);
+
+        int[] results = new int[3];
+        assertEquals(2, catalog.findRoutes(38.98, -77.54, 1000f, results));
+        assertEquals(0, results[0]);
+        assertEquals(1, results[1]);
+        assertEquals(1, catalog.findRoutes(38.98, -77.54, 100f, results));
+        assertEquals(0, results[0]);
+        assertEquals(1, catalog.findRoutes(50.005, 7.995, 10f, results));
+        assertEquals(2, results[0]);
+        assertEquals(0, catalog.findRoutes(0, 0, 1000f, results));
+
+        AbstractRouteManager routeManager = new AbstractRouteManager();
+        catalog.addRoutes(routeManager, new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                    long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+            }
+        });
+        assertEquals(3, routeManager.getRouteCount());
+        assertEquals(3, routeManager.getRouteListenerCount());
+
+        try {
+            catalog.addRoutes(routeManager);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(3, routeManager.getRouteCount());
+    }
+
+    @Test
+    public void testFindRoutesAcrossAntimeridian() throws Exception {
+        Route west = new Route("West", Arrays.asList(
+                new Waypoint("1", -17.0, -179.9995),
+                new Waypoint("2", -17.001, -179.999)));
+        Route east = new Route("East", Arrays.asList(
+                new Waypoint("1", -17.0, 179.9995),
+                new Waypoint("2", -17.001, 179.999)));
+
+        RouteCatalogWriter writer = new RouteCatalogWriter();
+        writer.add(west, 15f);
+        writer.add(east, 15f);
+        writer.write(file);
+
+        RouteCatalog catalog = RouteCatalog.open(file);
+        int[] results = new int[2];
+        assertEquals(2, catalog.findRoutes(-17.0, 179.9999, 500f, results));
+        assertEquals(0, results[0]);
+        assertEquals(1, results[1]);
+        assertEquals(2, catalog.findRoutes(-17.0, -179.9999, 500f, results));
+        assertEquals(1, catalog.findRoutes(-17.0, 179.99, 1000f, results));
+        assertEquals(1, results[0]);
+        assertEquals(1, catalog.findRoutes(-17.0, -179.99, 1000f, results));
+        assertEquals(0, results[0]);
+        assertEquals(0, catalog.findRoutes(-17.0, 0, 500f, results));
+    }
+
+    @Test
+    public void testInvalidCatalog() throws Exception {
+        RouteCatalogWriter writer = new RouteCatalogWriter();
+        writer.add(new Route("Lap", Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d))), 15f);
+        writer.write(file);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(randomAccessFile.length() - 1);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        try {
+            RouteCatalog.open(file);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.writeInt(0);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        try {
+            RouteCatalog.open(file);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    private static void assertRoute(Route expected, Route actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getWaypointCount(), actual.getWaypointCount());
+        assertEquals(expected.getWaypoints().size(), actual.getWaypoints().size());
+
+        for (int i = 0; i < expected.getWaypointCount(); i++) {
+            Waypoint waypoint = actual.getWaypoints().get(i);
+            assertEquals(expected.getWaypoints().get(i).getId(), waypoint.getId());
+            assertEquals(expected.getLatitude(i), actual.getLatitude(i), RESOLUTION);
+            assertEquals(expected.getLongitude(i), actual.getLongitude(i), RESOLUTION);
+            assertEquals(actual.getLatitude(i), waypoint.getLatitude(), 0d);
+            assertEquals(actual.getLongitude(i), waypoint.getLongitude(), 0d);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.history;
+
+import java.util.Random;
+
+/**
+ * Measures the time to answer queries over a season of location histories.  Each car drives
+ * laps of a 3 km circuit at 10 Hz for a number of sessions, one session per day.  Queries ask
+ * for every fix within 30 m of a corner during one hour across all cars and during the whole
+ * season.
+ * <p/>
+ * Not run as part of the test suite.  Run {@link #main(String[])} with the test classpath,
+ * optionally passing the number of cars, sessions and minutes per session.  The defaults
+ * require a heap of about 512 MB.
+ *
+ * @author David Valeri
+ */
+public final class TrackStoreBenchmark {
+
+    private static final int DEFAULT_CARS = 10;
+    private static final int DEFAULT_SESSIONS = 40;
+    private static final int DEFAULT_MINUTES = 30;
+    private static final int ROUNDS = 5;
+    private static final int QUERIES = 100;
+
+    private static final double LATITUDE = 38.979896545410156d;
+    private static final double LONGITUDE = -77.54102325439453d;
+    private static final double CIRCUIT_RADIUS = 3000d / (2 * Math.PI);
+    private static final double METERS_PER_DEGREE = 6371008.8d * Math.PI / 180d;
+    private static final long SEASON_START = 1336910400000L;
+    private static final long SESSION_START = 14 * 60 * 60 * 1000L;
+    private static final long MILLISECONDS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private TrackStoreBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int cars = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CARS;
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SESSIONS;
+        int minutes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MINUTES;
+
+        TrackStore store = new TrackStore();
+        Random random = new Random(0);
+        double metersPerLongitudeDegree = METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+
+        long loadStartTime = System.nanoTime();
+        for (int car = 0; car < cars; car++) {
+            String trackId = "Car " + car;
+            float speed = 35f + car;
+
+            for (int session = 0; session < sessions; session++) {
+                long start = SEASON_START + session * MILLISECONDS_PER_DAY + SESSION_START;
+
+                for (int i = 0; i < minutes * 60 * 10; i++) {
+                    double angle = speed * i / 10d / CIRCUIT_RADIUS;
+                    double north = Math.cos(angle) * CIRCUIT_RADIUS + random.nextGaussian();
+                    double east = Math.sin(angle) * CIRCUIT_RADIUS + random.nextGaussian();
+
+                    store.add(trackId, start + i * 100L,
+                            LATITUDE + north / METERS_PER_DEGREE,
+                            LONGITUDE + east / metersPerLongitudeDegree,
+                            100d, speed, (float) Math.toDegrees(angle) % 360f);
+                }
+            }
+        }
+
+        System.out.println(String.format("Loaded %d records in %d ms.", store.size(),
+                (System.nanoTime() - loadStartTime) / 1000000));
+
+        // A corner on the circuit.
+        double cornerLatitude = LATITUDE + CIRCUIT_RADIUS / METERS_PER_DEGREE;
+        long hourStart = SEASON_START + sessions / 2 * MILLISECONDS_PER_DAY + SESSION_START;
+        final long[] checksum = new long[1];
+
+        TrackRecordHandler handler = new TrackRecordHandler() {
+            @Override
+            public boolean handleRecord(String trackId, long time, double latitude,
+                    double longitude, double altitude, float speed, float bearing,
+                    float distance) {
+                checksum[0] += time;
+                return true;
+            }
+        };
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long count = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                count = store.query(cornerLatitude, LONGITUDE, 30f, hourStart,
+                        hourStart + 60 * 60 * 1000L, handler);
+            }
+            long hourTime = (System.nanoTime() - startTime) / QUERIES;
+
+            long seasonCount = 0;
+            startTime = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                seasonCount = store.query(cornerLatitude, LONGITUDE, 30f, 0, Long.MAX_VALUE,
+                        handler);
+            }
+            long seasonTime = (System.nanoTime() - startTime) / QUERIES;
+
+            System.out.println(String.format("Round %d: one hour %d fixes in %.3f ms, "
+                    + "season %d fixes in %.3f ms", round, count, hourTime / 1e6d, seasonCount,
+                    seasonTime / 1e6d));
+        }
+
+        System.out.println("Checksum " + checksum[0]);
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author David Valeri
+ */
+public class TrackStoreTest {
+    
+    private static final double LATITUDE = 38.979896545410156d;
+    private static final double LONGITUDE = -77.54102325439453d;
+    private static final double METERS_PER_DEGREE = 6371008.8d * Math.PI / 180d;
+    
+    TrackStore store;
+    List<double[]> records;
+    
+    @Before
+    public void setup() {
+        store = new TrackStore();
+        records = new ArrayList<double[]>();
+        Random random = new Random(0);
+        
+        // Three tracks wandering around a point, spanning several blocks each.
+        for (int track = 0; track < 3; track++) {
+            for (int i = 0; i < 10000 + track * 1000; i++) {
+                long time = 1000000L + i * 100L;
+                double latitude = LATITUDE + (random.nextDouble() - 0.5d) * 0.01d;
+                double longitude = LONGITUDE + (random.nextDouble() - 0.5d) * 0.01d;
+                store.add("car" + track, time, latitude, longitude, 100d, i, track);
+                records.add(new double[] {track, time, latitude, longitude});
+            }
+        }
+    }
+    
+    @Test
+    public void testQuery() {
+        assertEquals(33000, store.size());
+        assertEquals(3, store.getTrackIds().size());
+        
+        assertQuery(null, LATITUDE, LONGITUDE, 30f, 0, Long.MAX_VALUE);
+        assertQuery(null, LATITUDE + 0.002d, LONGITUDE - 0.001d, 100f, 1200000L, 1500000L);
+        assertQuery("car1", LATITUDE, LONGITUDE, 250f, 0, Long.MAX_VALUE);
+        assertQuery("car2", LATITUDE, LONGITUDE, 10000f, 2050000L, 2050000L);
+        assertQuery(null, LATITUDE + 1d, LONGITUDE, 30f, 0, Long.MAX_VALUE);
+        assertQuery("car3", LATITUDE, LONGITUDE, 30f, 0, Long.MAX_VALUE);
+    }
+    
+    @Test
+    public void testQueryEndedByHandler() {
+        final int[] count = new int[1];
+        
+        long delivered = store.query(LATITUDE, LONGITUDE, 1000f, 0, Long.MAX_VALUE,
+                new TrackRecordHandler() {
+                    @Override
+                    public boolean handleRecord(String trackId, long time, double latitude,
+                            double longitude, double altitude, float speed, float bearing,
+                            float distance) {
+                        return ++count[0] < 10;
+                    }
+                });
+        
+        assertEquals(10, delivered);
+        assertEquals(10, count[0]);
+    }
+    
+    @Test
+    public void testOutOfOrderTime() {
+        try {
+            store.add("car0", 1000000L, LATITUDE, LONGITUDE, 0d, 0f, 0f);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+    
+    private void assertQuery(String trackId, final double latitude, final double longitude,
+            final float radius, long startTime, long endTime) {
+        
+        List<String> expected = new ArrayList<String>();
+        for (double[] record : records) {
+            double y = (record[2] - latitude) * METERS_PER_DEGREE;
+            double x = (record[3] - longitude) * METERS_PER_DEGREE
+                    * Math.cos(Math.toRadians(latitude));
+            if ((trackId == null || trackId.equals("car" + (int) record[0]))
+                    && record[1] >= startTime && record[1] <= endTime
+                    && Math.sqrt(x * x + y * y) <= radius) {
+                expected.add("car" + (int) record[0] + "@" + (long) record[1]);
+            }
+        }
+        
+        final List<String> actual = new ArrayList<String>();
+        TrackRecordHandler handler = new TrackRecordHandler() {
+            @Override
+            public boolean handleRecord(String trackId, long time, double recordLatitude,
+                    double recordLongitude, double altitude, float speed, float bearing,
+                    float distance) {
+                assertTrue(distance <= radius);
+                assertEquals(100d, altitude, 0d);
+                actual.add(trackId + "@" + time);
+                return true;
+            }
+        };
+        
+        long count = trackId == null
+                ? store.query(latitude, longitude, radius, startTime, endTime, handler)
+                : store.query(trackId, latitude, longitude, radius, startTime, endTime,
+                        handler);
+        
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), count);
+    }
+}
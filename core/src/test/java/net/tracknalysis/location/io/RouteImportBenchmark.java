@@ -0,0 +1,154 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+import net.tracknalysis.location.Route;
+
+/**
+ * Measures the throughput of the route importers.  A GPX, KML and CSV file each containing the
+ * same routes are generated in a temporary directory and imported a number of times.
+ * <p/>
+ * Not run as part of the test suite.  Run {@link #main(String[])} with the test classpath,
+ * optionally passing the number of routes and waypoints per route.
+ *
+ * @author David Valeri
+ */
+public final class RouteImportBenchmark {
+
+    private static final int DEFAULT_ROUTES = 100;
+    private static final int DEFAULT_WAYPOINTS = 5000;
+    private static final int ROUNDS = 5;
+
+    private static final double LATITUDE = 38.979896545410156d;
+    private static final double LONGITUDE = -77.54102325439453d;
+
+    private RouteImportBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int routes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUTES;
+        int waypoints = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WAYPOINTS;
+
+        File directory = File.createTempFile("route-import", "");
+        directory.delete();
+        directory.mkdirs();
+
+        File gpxFile = new File(directory, "routes.gpx");
+        File kmlFile = new File(directory, "routes.kml");
+        File csvFile = new File(directory, "routes.csv");
+
+        Writer gpx = open(gpxFile);
+        Writer kml = open(kmlFile);
+        Writer csv = open(csvFile);
+        try {
+            gpx.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+            kml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>\n");
+            csv.write("route,id,lat,lon\n");
+
+            for (int route = 0; route < routes; route++) {
+                gpx.write("<rte><name>Route " + route + "</name>\n");
+                kml.write("<Placemark><name>Route " + route
+                        + "</name><LineString><coordinates>\n");
+
+                for (int i = 0; i < waypoints; i++) {
+                    double angle = 2 * Math.PI * i / waypoints;
+                    String lat = format(LATITUDE + 0.01d * Math.sin(angle) + route * 0.001d);
+                    String lon = format(LONGITUDE + 0.01d * Math.cos(angle));
+
+                    gpx.write("<rtept lat=\"" + lat + "\" lon=\"" + lon + "\"/>\n");
+                    kml.write(lon + "," + lat + ",0\n");
+                    csv.write("Route " + route + "," + i + "," + lat + "," + lon + "\n");
+                }
+
+                gpx.write("</rte>\n");
+                kml.write("</coordinates></LineString></Placemark>\n");
+            }
+
+            gpx.write("</gpx>\n");
+            kml.write("</Document></kml>\n");
+        } finally {
+            gpx.close();
+            kml.close();
+            csv.close();
+        }
+
+        CsvRouteImporter csvImporter = new CsvRouteImporter(2, 3);
+        csvImporter.setHeaderLines(1);
+        csvImporter.setRouteColumn(0);
+        csvImporter.setIdColumn(1);
+        csvImporter.setPacked(true);
+
+        GpxRouteImporter gpxImporter = new GpxRouteImporter();
+        gpxImporter.setPacked(true);
+        KmlRouteImporter kmlImporter = new KmlRouteImporter();
+        kmlImporter.setPacked(true);
+
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                run(round, gpxImporter, gpxFile);
+                run(round, kmlImporter, kmlFile);
+                run(round, csvImporter, csvFile);
+            }
+        } finally {
+            gpxFile.delete();
+            kmlFile.delete();
+            csvFile.delete();
+            directory.delete();
+        }
+    }
+
+    private static void run(int round, RouteImporter importer, File file) throws IOException {
+        long startTime = System.nanoTime();
+        InputStream in = new FileInputStream(file);
+        List<Route> routes;
+        try {
+            routes = importer.importRoutes(in, file.getName());
+        } finally {
+            in.close();
+        }
+        long time = System.nanoTime() - startTime;
+
+        long count = 0;
+        for (Route route : routes) {
+            count += route.getWaypointCount();
+        }
+
+        System.out.println(String.format("Round %d: %s %d waypoints in %.1f ms, "
+                + "%.0f waypoints/s, %.1f MB/s", round, file.getName(), count, time / 1e6d,
+                count / (time / 1e9d), file.length() / (time / 1e3d)));
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.7f", value);
+    }
+}
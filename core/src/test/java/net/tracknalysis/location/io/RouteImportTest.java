@@ -0,0 +1,250 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.tracknalysis.location.PackedRoute;
+import net.tracknalysis.location.Route;
+
+/**
+ * @author David Valeri
+ */
+public class RouteImportTest {
+
+    @Test
+    public void testCsvTestData() throws Exception {
+        List<double[]> expected = new ArrayList<double[]>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getResourceAsStream("/RouteManagerTestData.csv")));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] tokens = line.split(",[ ]*");
+                expected.add(new double[] {Double.valueOf(tokens[2]), Double.valueOf(tokens[3])});
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+
+        // The test data uses CR line endings.  A tiny buffer exercises lines spanning reads.
+        for (int bufferSize : new int[] {7, 64 * 1024}) {
+            CsvRouteImporter importer = new CsvRouteImporter(2, 3);
+            importer.setBufferSize(bufferSize);
+            importer.setPacked(true);
+
+            InputStream in = getClass().getResourceAsStream("/RouteManagerTestData.csv");
+            List<Route> routes;
+            try {
+                routes = importer.importRoutes(in, "Test Data");
+            } finally {
+                in.close();
+            }
+
+            assertEquals(1, routes.size());
+            Route route = routes.get(0);
+            assertTrue(route instanceof PackedRoute);
+            assertEquals("Test Data", route.getName());
+            assertEquals(expected.size(), route.getWaypointCount());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i)[0], route.getLatitude(i), 0d);
+                assertEquals(expected.get(i)[1], route.getLongitude(i), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testCsvRoutesAndIds() throws Exception {
+        String csv = "route,id,lat,lon\r\n"
+                + "Lap, \"Start\", 38.9798965, -77.5410232\r\n"
+                + "Lap,T1,38.98295974731445,-77.53973388671875\r\n"
+                + "\r\n"
+                + "\"Pit\",In,38.972618,-77.541450\n"
+                + "Pit,Out,3.897258e1,-77.5412826\n";
+
+        CsvRouteImporter importer = new CsvRouteImporter(2, 3);
+        importer.setHeaderLines(1);
+        importer.setRouteColumn(0);
+        importer.setIdColumn(1);
+
+        List<Route> routes = importer.importRoutes(
+                new ByteArrayInputStream(csv.getBytes("UTF-8")), "Routes");
+
+        assertEquals(2, routes.size());
+        assertEquals("Lap", routes.get(0).getName());
+        assertEquals(2, routes.get(0).getWaypointCount());
+        assertEquals("Start", routes.get(0).getWaypoints().get(0).getId());
+        assertEquals(38.9798965d, routes.get(0).getLatitude(0), 0d);
+        assertEquals(-77.53973388671875d, routes.get(0).getLongitude(1), 0d);
+        assertEquals("Pit", routes.get(1).getName());
+        assertEquals("Out", routes.get(1).getWaypoints().get(1).getId());
+        assertEquals(38.97258d, routes.get(1).getLatitude(1), 0d);
+
+        try {
+            importer.importRoutes(new ByteArrayInputStream(
+                    "route,id,lat,lon\nLap,1,38.9\n".getBytes("UTF-8")), "Routes");
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        try {
+            importer.importRoutes(new ByteArrayInputStream(
+                    "route,id,lat,lon\nLap,1,98.9,-77.5\n".getBytes("UTF-8")), "Routes");
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testGpx() throws Exception {
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"test\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "  <metadata><name>Summit Point</name></metadata>\n"
+                + "  <wpt lat=\"38.0\" lon=\"-77.0\"><name>Ignored</name></wpt>\n"
+                + "  <rte>\n"
+                + "    <name>Lap</name>\n"
+                + "    <rtept lat=\"38.979896545410156\" lon=\"-77.54102325439453\">"
+                + "<ele>160</ele><name>Start</name></rtept>\n"
+                + "    <rtept lat=\"38.98295974731445\" lon=\"-77.53973388671875\"/>\n"
+                + "  </rte>\n"
+                + "  <trk>\n"
+                + "    <trkseg>\n"
+                + "      <trkpt lat=\"38.1\" lon=\"-77.1\"><time>2012-05-13T17:43:58Z</time></trkpt>\n"
+                + "    </trkseg>\n"
+                + "    <trkseg>\n"
+                + "      <trkpt lat=\"38.2\" lon=\"-77.2\"/>\n"
+                + "      <trkpt lat=\"38.3\" lon=\"-77.3\"/>\n"
+                + "    </trkseg>\n"
+                + "  </trk>\n"
+                + "</gpx>\n";
+
+        List<Route> routes = new GpxRouteImporter().importRoutes(
+                new ByteArrayInputStream(gpx.getBytes("UTF-8")), "Course");
+
+        assertEquals(2, routes.size());
+        assertEquals("Lap", routes.get(0).getName());
+        assertEquals(2, routes.get(0).getWaypointCount());
+        assertEquals("Start", routes.get(0).getWaypoints().get(0).getId());
+        assertEquals("2", routes.get(0).getWaypoints().get(1).getId());
+        assertEquals(-77.53973388671875d, routes.get(0).getLongitude(1), 0d);
+        assertEquals("Course 2", routes.get(1).getName());
+        assertEquals(3, routes.get(1).getWaypointCount());
+        assertEquals(38.3d, routes.get(1).getLatitude(2), 0d);
+
+        try {
+            new GpxRouteImporter().importRoutes(new ByteArrayInputStream(
+                    "<gpx><rte><rtept lat=\"38.1\"/></rte></gpx>".getBytes("UTF-8")), "Course");
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testKml() throws Exception {
+        String kml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\">\n"
+                + "  <Document>\n"
+                + "    <name>Summit Point</name>\n"
+                + "    <Placemark><name>Start</name>"
+                + "<Point><coordinates>-77.54,38.97,0</coordinates></Point></Placemark>\n"
+                + "    <Placemark>\n"
+                + "      <name>Centerline</name>\n"
+                + "      <ExtendedData><Data name=\"a\"><name>Not the route</name></Data>"
+                + "</ExtendedData>\n"
+                + "      <LineString>\n"
+                + "        <tessellate>1</tessellate>\n"
+                + "        <coordinates>\n"
+                + "          -77.54102325439453,38.979896545410156,160\n"
+                + "          -77.53973388671875,38.98295974731445\t-77.5,38.9,0\n"
+                + "        </coordinates>\n"
+                + "      </LineString>\n"
+                + "    </Placemark>\n"
+                + "    <Placemark>\n"
+                + "      <MultiGeometry>\n"
+                + "        <LineString><coordinates>1,2 3,4</coordinates></LineString>\n"
+                + "        <LineString><coordinates><![CDATA[5,6]]></coordinates></LineString>\n"
+                + "      </MultiGeometry>\n"
+                + "    </Placemark>\n"
+                + "  </Document>\n"
+                + "</kml>\n";
+
+        KmlRouteImporter importer = new KmlRouteImporter();
+        importer.setPacked(true);
+        importer.setFixedPoint(true);
+        List<Route> routes = importer.importRoutes(
+                new ByteArrayInputStream(kml.getBytes("UTF-8")), "Course");
+
+        assertEquals(2, routes.size());
+        assertEquals("Centerline", routes.get(0).getName());
+        assertEquals(3, routes.get(0).getWaypointCount());
+        assertTrue(((PackedRoute) routes.get(0)).isFixedPoint());
+        assertEquals(38.979896545410156d, routes.get(0).getLatitude(0),
+                0.5 / PackedRoute.FIXED_POINT_SCALE);
+        assertEquals(-77.5d, routes.get(0).getLongitude(2), 0d);
+        assertEquals("Course 2", routes.get(1).getName());
+        assertEquals(3, routes.get(1).getWaypointCount());
+        assertEquals(6d, routes.get(1).getLatitude(2), 0d);
+        assertEquals(5d, routes.get(1).getLongitude(2), 0d);
+    }
+
+    @Test
+    public void testDecimalParser() throws Exception {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder builder = new StringBuilder();
+            if (random.nextBoolean()) {
+                builder.append('-');
+            }
+            builder.append(random.nextInt(181));
+            if (random.nextInt(10) != 0) {
+                builder.append('.');
+                int digits = random.nextInt(18);
+                for (int j = 0; j < digits; j++) {
+                    builder.append(random.nextInt(10));
+                }
+            }
+
+            String value = builder.toString();
+            byte[] bytes = (" " + value + " ").getBytes("US-ASCII");
+            assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+                    Double.doubleToLongBits(DecimalParser.parse(bytes, 0, bytes.length)));
+        }
+
+        try {
+            DecimalParser.parse(new byte[] {'-'}, 0, 1);
+            fail();
+        } catch (NumberFormatException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics.jfr;
+
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener.WaypointEventType;
+import net.tracknalysis.location.metrics.PipelineProbe;
+
+/**
+ * A probe that emits JDK Flight Recorder events so that pipeline activity can be correlated with
+ * GC, safepoint and other JVM events in a recording.  Events are only populated and committed
+ * while enabled in the recording settings; otherwise each call reduces to an event construction
+ * that the JIT eliminates.  Durations are reported as timespan fields as they are measured by the
+ * pipeline before the probe is called.
+ * <p/>
+ * Requires a Java runtime with the {@code jdk.jfr} module, Java 11 or later, and is therefore
+ * packaged separately from the core library.  Use
+ * {@link net.tracknalysis.location.metrics.PipelineProbes#newFlightRecorderProbe()} to obtain the
+ * probe only when this module and Flight Recorder are available.
+ *
+ * @author David Valeri
+ */
+public final class JfrPipelineProbe implements PipelineProbe {
+
+    @Override
+    public void sentenceParsed(String sentenceType, long parseTime) {
+        SentenceParsedEvent event = new SentenceParsedEvent();
+        if (event.shouldCommit()) {
+            event.sentenceType = sentenceType;
+            event.parseTime = parseTime;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void sentenceRejected(String sentenceType, String reason) {
+        SentenceRejectedEvent event = new SentenceRejectedEvent();
+        if (event.shouldCommit()) {
+            event.sentenceType = sentenceType;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void locationFused(long time, int sentenceMask, long fusionTime) {
+        LocationFusedEvent event = new LocationFusedEvent();
+        if (event.shouldCommit()) {
+            event.time = time;
+            event.sentenceMask = sentenceMask;
+            event.fusionTime = fusionTime;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void epochMismatch(long discardedTime, int discardedSentenceMask, long time) {
+        EpochMismatchEvent event = new EpochMismatchEvent();
+        if (event.shouldCommit()) {
+            event.discardedTime = discardedTime;
+            event.discardedSentenceMask = discardedSentenceMask;
+            event.time = time;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void routesProcessed(int routesEvaluated, int routesSkipped, long processTime) {
+        RouteUpdateEvent event = new RouteUpdateEvent();
+        if (event.shouldCommit()) {
+            event.routesEvaluated = routesEvaluated;
+            event.routesSkipped = routesSkipped;
+            event.processTime = processTime;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void waypointEvent(Route route, int waypointIndex, WaypointEventType eventType,
+            float distanceToWaypoint) {
+        WaypointEvent event = new WaypointEvent();
+        if (event.shouldCommit()) {
+            event.route = route.getName();
+            event.waypointIndex = waypointIndex;
+            event.eventType = eventType.name();
+            event.distanceToWaypoint = distanceToWaypoint;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted when a location has been fused from the sentences of an epoch.
+ *
+ * @author David Valeri
+ */
+@Name("net.tracknalysis.location.LocationFused")
+@Label("Location Fused")
+@Category({ "Tracknalysis", "NMEA" })
+final class LocationFusedEvent extends Event {
+
+    @Label("Time")
+    @Description("The time of the location, in milliseconds since midnight UTC")
+    long time;
+
+    @Label("Sentence Mask")
+    int sentenceMask;
+
+    @Label("Fusion Time")
+    @Timespan
+    long fusionTime;
+}
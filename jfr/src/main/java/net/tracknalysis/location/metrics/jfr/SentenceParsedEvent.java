@@ -0,0 +1,40 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted when a sentence has been completely read.
+ *
+ * @author David Valeri
+ */
+@Name("net.tracknalysis.location.SentenceParsed")
+@Label("Sentence Parsed")
+@Category({ "Tracknalysis", "NMEA" })
+final class SentenceParsedEvent extends Event {
+
+    @Label("Sentence Type")
+    String sentenceType;
+
+    @Label("Parse Time")
+    @Timespan
+    long parseTime;
+}
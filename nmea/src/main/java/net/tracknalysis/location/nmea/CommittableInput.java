@@ -0,0 +1,52 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.io.IOException;
+
+/**
+ * Implemented by input streams of line oriented input that track which lines their consumer
+ * has finished with, rather than which lines they have returned.  Consumers that read ahead,
+ * e.g. through a {@link java.io.BufferedReader}, commit lines only once they are done with
+ * them, so that lines read ahead but not yet processed are not lost if the consumer stops.
+ * <p/>
+ * A consumer takes over the input by calling {@link #rollback()}.  The input is then returned
+ * to and committed by only the calling thread.
+ *
+ * @author David Valeri
+ */
+public interface CommittableInput {
+
+    /**
+     * Repositions the input to follow the last committed line and makes the calling thread its
+     * consumer.  Lines returned to a previous consumer but not committed are returned again.
+     *
+     * @throws IOException if the input cannot be repositioned
+     */
+    void rollback() throws IOException;
+
+    /**
+     * Marks the next lines returned to the consumer, following the last committed line, as
+     * processed.  Does nothing if the calling thread is not the consumer.
+     *
+     * @param count the number of lines processed since the last commit
+     *
+     * @throws IOException if the position of the committed line cannot be saved
+     * @throws IllegalArgumentException if fewer than {@code count} lines have been returned
+     *             and not committed
+     */
+    void commitLines(int count) throws IOException;
+}
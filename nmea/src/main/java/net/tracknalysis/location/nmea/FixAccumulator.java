@@ -0,0 +1,569 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Set;
+
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.Location.LocationBuilder;
+
+/**
+ * A mutable, reusable container that fuses the data from the individual sentences reported
+ * by a GPS device for a single epoch into a single fix.  Sentences contribute their data through
+ * the {@code accept*} methods and the fix is complete once every required sentence type has
+ * contributed data for the same epoch.  A contribution for a different epoch, or a second
+ * contribution from the same sentence type, discards any partially accumulated data and starts
+ * a new epoch.  Sentence types that do not report a time, such as VTG, join the epoch of the
+ * sentences they arrive with.
+ * <p/>
+ * Positions from GGA and GNS sentences take precedence over positions from RMC and GLL
+ * sentences in the same epoch.
+ * <p/>
+ * Instances are not thread safe and are intended to be owned and reused by a single parsing
+ * thread.  Observers that need to retain the data must copy it, for example using
+ * {@link #toLocation()}.
+ *
+ * @author David Valeri
+ */
+public final class FixAccumulator {
+
+    /**
+     * Mask bit for data contributed by a GGA sentence.
+     */
+    public static final int GGA = 1;
+
+    /**
+     * Mask bit for data contributed by an RMC sentence.
+     */
+    public static final int RMC = 1 << 1;
+
+    /**
+     * Mask bit for data contributed by a GLL sentence.
+     */
+    public static final int GLL = 1 << 2;
+
+    /**
+     * Mask bit for data contributed by a GNS sentence.
+     */
+    public static final int GNS = 1 << 3;
+
+    /**
+     * Mask bit for data contributed by a VTG sentence.
+     */
+    public static final int VTG = 1 << 4;
+
+    /**
+     * Mask bit for data contributed by a UBX NAV-PVT message.
+     */
+    public static final int NAV_PVT = 1 << 5;
+
+    private static final int POSITION_SENTENCE_MASK = GGA | RMC | GLL | GNS | NAV_PVT;
+
+    private static final float KNOTS_TO_METERS_PER_SECOND = 0.514444444f;
+
+    private int requiredSentenceMask = GGA | RMC;
+    private int receivedSentenceMask;
+
+    private boolean hasTime;
+    private long time;
+    private long receivedTime;
+    private boolean hasPosition;
+    private boolean positionFromFixData;
+    private double latitude;
+    private double longitude;
+    private boolean hasAltitude;
+    private double altitude;
+    private boolean hasSpeed;
+    private float speed;
+    private boolean hasBearing;
+    private float bearing;
+    private long firstByteNanoTime;
+    private long sentenceNanoTime;
+    private long discardedEpochCount;
+    private long discardedTime;
+    private int discardedSentenceMask;
+
+    /**
+     * Contributes the data from a valid GGA sentence to the fix.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param altitude the altitude in meters
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptGga(long time, double latitude, double longitude, double altitude,
+            long receivedTime) {
+
+        beginTimedContribution(GGA, time, receivedTime);
+        acceptFixData(latitude, longitude, altitude);
+    }
+
+    /**
+     * Contributes the data from a valid GNS sentence to the fix.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param altitude the altitude in meters
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptGns(long time, double latitude, double longitude, double altitude,
+            long receivedTime) {
+
+        beginTimedContribution(GNS, time, receivedTime);
+        acceptFixData(latitude, longitude, altitude);
+    }
+
+    /**
+     * Contributes the data from a valid RMC sentence to the fix.  Position data from a GGA sentence
+     * in the same epoch takes precedence over the position reported in the RMC sentence.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param speed the speed over ground in knots
+     * @param heading the heading in degrees
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptRmc(long time, double latitude, double longitude, float speed,
+            float heading, long receivedTime) {
+
+        beginTimedContribution(RMC, time, receivedTime);
+        acceptPosition(latitude, longitude);
+        acceptMotion(speed, heading);
+    }
+
+    /**
+     * Contributes the data from a valid GLL sentence to the fix.  Position data from a GGA or GNS
+     * sentence in the same epoch takes precedence over the position reported in the GLL sentence.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptGll(long time, double latitude, double longitude, long receivedTime) {
+
+        beginTimedContribution(GLL, time, receivedTime);
+        acceptPosition(latitude, longitude);
+    }
+
+    /**
+     * Contributes the data from a valid VTG sentence to the epoch currently being accumulated.
+     *
+     * @param speed the speed over ground in knots
+     * @param heading the course over ground relative to true north in degrees
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptVtg(float speed, float heading, long receivedTime) {
+
+        beginUntimedContribution(VTG, receivedTime);
+        acceptMotion(speed, heading);
+    }
+
+    /**
+     * Contributes the data from a valid UBX NAV-PVT message to the fix.  A NAV-PVT message
+     * reports a complete fix on its own.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param altitude the height above mean sea level in meters
+     * @param speed the ground speed in meters per second
+     * @param heading the heading of motion in degrees
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the message started arriving
+     */
+    public void acceptNavPvt(long time, double latitude, double longitude, double altitude,
+            float speed, float heading, long receivedTime) {
+
+        beginTimedContribution(NAV_PVT, time, receivedTime);
+        acceptFixData(latitude, longitude, altitude);
+        this.hasSpeed = true;
+        this.speed = speed;
+        this.hasBearing = true;
+        this.bearing = heading;
+    }
+
+    /**
+     * Returns true if all required sentence types have contributed to the current epoch.
+     */
+    public boolean isComplete() {
+        return hasTime && hasPosition
+                && (receivedSentenceMask & requiredSentenceMask) == requiredSentenceMask;
+    }
+
+    /**
+     * Discards all accumulated data in preparation for the next epoch.
+     */
+    public void clear() {
+        hasTime = false;
+        receivedSentenceMask = 0;
+        time = 0;
+        receivedTime = 0;
+        hasPosition = false;
+        positionFromFixData = false;
+        latitude = 0;
+        longitude = 0;
+        hasAltitude = false;
+        altitude = 0;
+        hasSpeed = false;
+        speed = 0;
+        hasBearing = false;
+        bearing = 0;
+        firstByteNanoTime = 0;
+        sentenceNanoTime = 0;
+    }
+
+    /**
+     * Stamps the epoch with the {@link System#nanoTime()} values of the sentence just committed
+     * to it.  The first byte time of the first stamped sentence in the epoch is retained while the
+     * sentence time always reflects the latest sentence.  Has no effect if no sentence has
+     * contributed to the epoch.
+     *
+     * @param firstByteNanoTime the time the first byte of the sentence arrived
+     * @param sentenceNanoTime the time the sentence was completely read
+     */
+    public void stamp(long firstByteNanoTime, long sentenceNanoTime) {
+        if (receivedSentenceMask != 0) {
+            if (this.firstByteNanoTime == 0) {
+                this.firstByteNanoTime = firstByteNanoTime;
+            }
+            this.sentenceNanoTime = sentenceNanoTime;
+        }
+    }
+
+    /**
+     * Returns the mask of sentence types that must all contribute to an epoch to complete the fix.
+     */
+    public int getRequiredSentenceMask() {
+        return requiredSentenceMask;
+    }
+
+    /**
+     * Sets the mask of sentence types that must all contribute to an epoch to complete the fix.
+     *
+     * @throws IllegalArgumentException if the mask contains unknown bits or does not contain a
+     *             sentence type that reports a position and time
+     *
+     * @see #toSentenceMask(Set)
+     */
+    public void setRequiredSentenceMask(int requiredSentenceMask) {
+        if ((requiredSentenceMask & ~(POSITION_SENTENCE_MASK | VTG)) != 0) {
+            throw new IllegalArgumentException("Unknown sentence mask bits in "
+                    + requiredSentenceMask + ".");
+        }
+
+        if ((requiredSentenceMask & POSITION_SENTENCE_MASK) == 0) {
+            throw new IllegalArgumentException(
+                    "At least one sentence type must report a position.");
+        }
+
+        this.requiredSentenceMask = requiredSentenceMask;
+        clear();
+    }
+
+    /**
+     * Returns the mask of sentence types that have contributed to the current epoch.
+     */
+    public int getReceivedSentenceMask() {
+        return receivedSentenceMask;
+    }
+
+    /**
+     * Returns the mask bit for the sentence type, e.g. "GGA", or 0 if the sentence type does not
+     * contribute to a fix.
+     */
+    public static int getSentenceMask(String sentenceType) {
+        if ("GGA".equals(sentenceType)) {
+            return GGA;
+        } else if ("RMC".equals(sentenceType)) {
+            return RMC;
+        } else if ("GLL".equals(sentenceType)) {
+            return GLL;
+        } else if ("GNS".equals(sentenceType)) {
+            return GNS;
+        } else if ("VTG".equals(sentenceType)) {
+            return VTG;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Converts a set of sentence types, e.g. "GNS" and "VTG", into a sentence mask suitable for
+     * {@link #setRequiredSentenceMask(int)}.
+     *
+     * @throws IllegalArgumentException if any of the sentence types do not contribute to a fix
+     *             or if none of the sentence types report a position
+     */
+    public static int toSentenceMask(Set<String> sentenceTypes) {
+        int mask = 0;
+
+        for (String sentenceType : sentenceTypes) {
+            int sentenceMask = getSentenceMask(sentenceType);
+
+            if (sentenceMask == 0) {
+                throw new IllegalArgumentException("Sentence type " + sentenceType
+                        + " does not contribute to a fix.");
+            }
+
+            mask |= sentenceMask;
+        }
+
+        if ((mask & POSITION_SENTENCE_MASK) == 0) {
+            throw new IllegalArgumentException("Sentence types " + sentenceTypes
+                    + " do not include a sentence type that reports a position.");
+        }
+
+        return mask;
+    }
+
+    /**
+     * Returns the UTC time of the fix as millisecond offset into the day
+     * on which the capture occurred.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the time, in milliseconds since midnight January 1, 1970 UTC, at which the first
+     * sentence contributing to the fix started arriving.
+     */
+    public long getReceivedTime() {
+        return receivedTime;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the first byte of the epoch arrived or 0 if
+     * the epoch was not stamped.
+     *
+     * @see #stamp(long, long)
+     */
+    public long getFirstByteNanoTime() {
+        return firstByteNanoTime;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the latest sentence of the epoch was
+     * completely read or 0 if the epoch was not stamped.
+     *
+     * @see #stamp(long, long)
+     */
+    public long getSentenceNanoTime() {
+        return sentenceNanoTime;
+    }
+
+    /**
+     * Returns the number of incomplete epochs discarded because a sentence from a different epoch,
+     * or a second sentence of the same type, arrived.  Not reset by {@link #clear()}.
+     */
+    public long getDiscardedEpochCount() {
+        return discardedEpochCount;
+    }
+
+    /**
+     * Returns the time of the most recently discarded epoch.
+     *
+     * @see #getDiscardedEpochCount()
+     */
+    public long getDiscardedTime() {
+        return discardedTime;
+    }
+
+    /**
+     * Returns the mask of the sentence types received in the most recently discarded epoch.
+     *
+     * @see #getDiscardedEpochCount()
+     */
+    public int getDiscardedSentenceMask() {
+        return discardedSentenceMask;
+    }
+
+    public boolean isHasPosition() {
+        return hasPosition;
+    }
+
+    /**
+     * Returns the latitude of the fix in degrees.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Returns the longitude of the fix in degrees.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public boolean isHasAltitude() {
+        return hasAltitude;
+    }
+
+    /**
+     * Returns the altitude of the fix in meters.
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public boolean isHasSpeed() {
+        return hasSpeed;
+    }
+
+    /**
+     * Returns the speed over ground at the time of the fix in meters per second.
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    public boolean isHasBearing() {
+        return hasBearing;
+    }
+
+    /**
+     * Returns the heading at the time of the fix in degrees.
+     */
+    public float getBearing() {
+        return bearing;
+    }
+
+    /**
+     * Builds a new immutable {@link Location} from the current contents of the fix.
+     */
+    public Location toLocation() {
+        LocationBuilder builder = new LocationBuilder();
+        builder.setReceivedTime(receivedTime);
+        builder.setTime(time);
+        builder.setLatitude(latitude);
+        builder.setLongitude(longitude);
+
+        if (hasAltitude) {
+            builder.setAltitude(altitude);
+        }
+
+        if (hasSpeed) {
+            builder.setSpeed(speed);
+        }
+
+        if (hasBearing) {
+            builder.setBearing(bearing);
+        }
+
+        return builder.build();
+    }
+
+    private void beginTimedContribution(int sentenceMask, long time, long receivedTime) {
+        if ((hasTime && this.time != time) || (receivedSentenceMask & sentenceMask) != 0) {
+            discard();
+        }
+
+        if (!hasTime) {
+            hasTime = true;
+            this.time = time;
+        }
+
+        beginContribution(sentenceMask, receivedTime);
+    }
+
+    private void beginUntimedContribution(int sentenceMask, long receivedTime) {
+        if ((receivedSentenceMask & sentenceMask) != 0) {
+            discard();
+        }
+
+        beginContribution(sentenceMask, receivedTime);
+    }
+
+    private void discard() {
+        discardedEpochCount++;
+        discardedTime = time;
+        discardedSentenceMask = receivedSentenceMask;
+        clear();
+    }
+
+    private void beginContribution(int sentenceMask, long receivedTime) {
+        if (receivedSentenceMask == 0) {
+            this.receivedTime = receivedTime;
+        }
+
+        receivedSentenceMask |= sentenceMask;
+    }
+
+    private void acceptFixData(double latitude, double longitude, double altitude) {
+        this.hasPosition = true;
+        this.positionFromFixData = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.hasAltitude = true;
+        this.altitude = altitude;
+    }
+
+    private void acceptPosition(double latitude, double longitude) {
+        if (!positionFromFixData) {
+            this.hasPosition = true;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    private void acceptMotion(float speed, float heading) {
+        this.hasSpeed = true;
+        this.speed = speed * KNOTS_TO_METERS_PER_SECOND;
+        this.hasBearing = true;
+        this.bearing = heading;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("FixAccumulator [receivedSentenceMask=");
+        builder.append(receivedSentenceMask);
+        builder.append(", time=");
+        builder.append(time);
+        builder.append(", receivedTime=");
+        builder.append(receivedTime);
+        builder.append(", hasPosition=");
+        builder.append(hasPosition);
+        builder.append(", latitude=");
+        builder.append(latitude);
+        builder.append(", longitude=");
+        builder.append(longitude);
+        builder.append(", hasAltitude=");
+        builder.append(hasAltitude);
+        builder.append(", altitude=");
+        builder.append(altitude);
+        builder.append(", hasSpeed=");
+        builder.append(hasSpeed);
+        builder.append(", speed=");
+        builder.append(speed);
+        builder.append(", hasBearing=");
+        builder.append(hasBearing);
+        builder.append(", bearing=");
+        builder.append(bearing);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+/**
+ * Interface for observers of fixes fused directly from NMEA input without constructing
+ * intermediate sentence objects.
+ *
+ * @author David Valeri
+ */
+public interface FixListener {
+
+    /**
+     * Handle a completed fix.  The fix is owned and reused by the notifying parser and is only
+     * valid for the duration of this call.
+     *
+     * @param fix the completed fix
+     */
+    void receiveFix(FixAccumulator fix);
+}
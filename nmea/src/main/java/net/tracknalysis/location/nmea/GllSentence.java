@@ -0,0 +1,104 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+import net.tracknalysis.location.nmea.RmcSentence.StatusIndicator;
+
+/**
+ * @author David Valeri
+ */
+public class GllSentence extends AbstractNmeaSentence {
+
+    private double latitude;
+    private double longitude;
+    private long time;
+    private StatusIndicator statusIndicator;
+    private ModeIndicator modeIndicator;
+
+    /**
+     * Returns the latitude of the fix in degrees.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Returns the longitude of the fix in degrees.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns the UTC time of the location fix as millisecond offset into the day
+     * on which the capture occurred.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public StatusIndicator getStatusIndicator() {
+        return statusIndicator;
+    }
+
+    public void setStatusIndicator(StatusIndicator statusIndicator) {
+        this.statusIndicator = statusIndicator;
+    }
+
+    public ModeIndicator getModeIndicator() {
+        return modeIndicator;
+    }
+
+    public void setModeIndicator(ModeIndicator modeIndicator) {
+        this.modeIndicator = modeIndicator;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("GllSentence [latitude=");
+        builder.append(latitude);
+        builder.append(", longitude=");
+        builder.append(longitude);
+        builder.append(", time=");
+        builder.append(time);
+        builder.append(", statusIndicator=");
+        builder.append(statusIndicator);
+        builder.append(", modeIndicator=");
+        builder.append(modeIndicator);
+        builder.append(", getSentenceParsingStartTime()=");
+        builder.append(getSentenceParsingStartTime());
+        builder.append(", getSentenceParsingEndTime()=");
+        builder.append(getSentenceParsingEndTime());
+        builder.append(", getTalkerIdentifier()=");
+        builder.append(getTalkerIdentifier());
+        builder.append("]");
+        return builder.toString();
+    }
+}
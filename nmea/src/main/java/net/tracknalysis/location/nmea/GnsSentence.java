@@ -0,0 +1,199 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Arrays;
+
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+
+/**
+ * A GNSS fix data sentence.  Similar to GGA but reports a mode indicator per satellite
+ * system in place of a single fix quality.
+ *
+ * @author David Valeri
+ */
+public class GnsSentence extends AbstractNmeaSentence {
+
+    private long time;
+    private double latitude;
+    private double longitude;
+    private ModeIndicator[] modeIndicators = new ModeIndicator[0];
+    private int numberOfSatelites;
+    private float hdop;
+    private double altitude;
+    private float geoidalSepraration;
+    private float dgpsAge;
+    private int dgpsRefStationId;
+
+    /**
+     * Returns the UTC time of the location fix as millisecond offset into the day
+     * on which the capture occurred.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Returns the latitude of the fix in degrees.
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Returns the longitude of the fix in degrees.
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Returns the mode indicators for each satellite system in the order GPS, GLONASS, Galileo,
+     * BeiDou, followed by any additional systems reported by the device.
+     */
+    public ModeIndicator[] getModeIndicators() {
+        return modeIndicators;
+    }
+
+    public void setModeIndicators(ModeIndicator[] modeIndicators) {
+        this.modeIndicators = modeIndicators;
+    }
+
+    /**
+     * Returns true if any satellite system reports a fix.
+     */
+    public boolean isValid() {
+        for (ModeIndicator modeIndicator : modeIndicators) {
+            switch (modeIndicator) {
+                case AUTONOMOUS:
+                case DIFFERENTIAL:
+                case PRECISE:
+                case RTK:
+                case FLOAT_RTK:
+                    return true;
+                default:
+                    // Keep looking
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the number of satellites involved in the fix.
+     */
+    public int getNumberOfSatelites() {
+        return numberOfSatelites;
+    }
+
+    public void setNumberOfSatelites(int numberOfSatelites) {
+        this.numberOfSatelites = numberOfSatelites;
+    }
+
+    /**
+     * Returns the horizontal dilution of precision for the fix.
+     */
+    public float getHdop() {
+        return hdop;
+    }
+
+    public void setHdop(float hdop) {
+        this.hdop = hdop;
+    }
+
+    /**
+     * Returns the altitude of the fix in meters.
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public void setAltitude(double altitude) {
+        this.altitude = altitude;
+    }
+
+    /**
+     * Returns the geoidal separation in meters.
+     */
+    public float getGeoidalSepraration() {
+        return geoidalSepraration;
+    }
+
+    public void setGeoidalSepraration(float geoidalSepraration) {
+        this.geoidalSepraration = geoidalSepraration;
+    }
+
+    public float getDgpsAge() {
+        return dgpsAge;
+    }
+
+    public void setDgpsAge(float dgpsAge) {
+        this.dgpsAge = dgpsAge;
+    }
+
+    public int getDgpsRefStationId() {
+        return dgpsRefStationId;
+    }
+
+    public void setDgpsRefStationId(int dgpsRefStationId) {
+        this.dgpsRefStationId = dgpsRefStationId;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("GnsSentence [time=");
+        builder.append(time);
+        builder.append(", latitude=");
+        builder.append(latitude);
+        builder.append(", longitude=");
+        builder.append(longitude);
+        builder.append(", modeIndicators=");
+        builder.append(Arrays.toString(modeIndicators));
+        builder.append(", numberOfSatelites=");
+        builder.append(numberOfSatelites);
+        builder.append(", hdop=");
+        builder.append(hdop);
+        builder.append(", altitude=");
+        builder.append(altitude);
+        builder.append(", geoidalSepraration=");
+        builder.append(geoidalSepraration);
+        builder.append(", dgpsAge=");
+        builder.append(dgpsAge);
+        builder.append(", dgpsRefStationId=");
+        builder.append(dgpsRefStationId);
+        builder.append(", getSentenceParsingStartTime()=");
+        builder.append(getSentenceParsingStartTime());
+        builder.append(", getSentenceParsingEndTime()=");
+        builder.append(getSentenceParsingEndTime());
+        builder.append(", getTalkerIdentifier()=");
+        builder.append(getTalkerIdentifier());
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Arrays;
+
+/**
+ * A DOP and active satellites sentence.
+ *
+ * @author David Valeri
+ */
+public class GsaSentence extends AbstractNmeaSentence {
+
+    /**
+     * The maximum number of satellite IDs reported in a single sentence.
+     */
+    public static final int MAX_SATELLITES = 12;
+
+    private SelectionMode selectionMode;
+    private FixType fixType;
+    private int[] satelliteIds = new int[MAX_SATELLITES];
+    private int numberOfSatelliteIds;
+    private float pdop;
+    private float hdop;
+    private float vdop;
+
+    public enum SelectionMode {
+        MANUAL,
+        AUTOMATIC;
+    }
+
+    public enum FixType {
+        NO_FIX,
+        FIX_2D,
+        FIX_3D;
+    }
+
+    public SelectionMode getSelectionMode() {
+        return selectionMode;
+    }
+
+    public void setSelectionMode(SelectionMode selectionMode) {
+        this.selectionMode = selectionMode;
+    }
+
+    public FixType getFixType() {
+        return fixType;
+    }
+
+    public void setFixType(FixType fixType) {
+        this.fixType = fixType;
+    }
+
+    /**
+     * Returns the IDs of the satellites used in the fix.  Only the first
+     * {@link #getNumberOfSatelliteIds()} entries are valid.
+     */
+    public int[] getSatelliteIds() {
+        return satelliteIds;
+    }
+
+    public int getNumberOfSatelliteIds() {
+        return numberOfSatelliteIds;
+    }
+
+    /**
+     * Adds the ID of a satellite used in the fix.
+     *
+     * @throws IllegalStateException if {@link #MAX_SATELLITES} IDs have already been added
+     */
+    public void addSatelliteId(int satelliteId) {
+        if (numberOfSatelliteIds == MAX_SATELLITES) {
+            throw new IllegalStateException("Too many satellite IDs.");
+        }
+
+        satelliteIds[numberOfSatelliteIds++] = satelliteId;
+    }
+
+    /**
+     * Returns the position dilution of precision.
+     */
+    public float getPdop() {
+        return pdop;
+    }
+
+    public void setPdop(float pdop) {
+        this.pdop = pdop;
+    }
+
+    /**
+     * Returns the horizontal dilution of precision.
+     */
+    public float getHdop() {
+        return hdop;
+    }
+
+    public void setHdop(float hdop) {
+        this.hdop = hdop;
+    }
+
+    /**
+     * Returns the vertical dilution of precision.
+     */
+    public float getVdop() {
+        return vdop;
+    }
+
+    public void setVdop(float vdop) {
+        this.vdop = vdop;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("GsaSentence [selectionMode=");
+        builder.append(selectionMode);
+        builder.append(", fixType=");
+        builder.append(fixType);
+        builder.append(", satelliteIds=");
+        builder.append(Arrays.toString(Arrays.copyOf(satelliteIds, numberOfSatelliteIds)));
+        builder.append(", pdop=");
+        builder.append(pdop);
+        builder.append(", hdop=");
+        builder.append(hdop);
+        builder.append(", vdop=");
+        builder.append(vdop);
+        builder.append(", getSentenceParsingStartTime()=");
+        builder.append(getSentenceParsingStartTime());
+        builder.append(", getSentenceParsingEndTime()=");
+        builder.append(getSentenceParsingEndTime());
+        builder.append(", getTalkerIdentifier()=");
+        builder.append(getTalkerIdentifier());
+        builder.append("]");
+        return builder.toString();
+    }
+}
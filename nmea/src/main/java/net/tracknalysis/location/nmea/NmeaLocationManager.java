@@ -16,7 +16,13 @@
 package net.tracknalysis.location.nmea;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
@@ -27,32 +33,69 @@ import net.tracknalysis.common.notification.DefaultNotificationListenerManager;
 import net.tracknalysis.common.notification.NotificationListener;
 import net.tracknalysis.common.notification.NotificationListenerManager;
 import net.tracknalysis.common.notification.NotificationListenerRegistry;
+import net.tracknalysis.location.LocalTangentPlane;
 import net.tracknalysis.location.Location;
-import net.tracknalysis.location.Location.LocationBuilder;
 import net.tracknalysis.location.LocationListener;
 import net.tracknalysis.location.LocationManager;
 import net.tracknalysis.location.LocationManagerLifecycleNotificationType;
 import net.tracknalysis.location.Route;
 import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.RouteListener.WaypointEventType;
 import net.tracknalysis.location.RouteManager;
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.metrics.PipelineTrace;
+import net.tracknalysis.location.metrics.RouteManagerMetrics;
+import net.tracknalysis.location.nmea.journal.NmeaJournal;
+import net.tracknalysis.location.nmea.receiver.ReceiverConfigurator;
 import net.tracknalysis.location.nmea.simple.SimpleNmeaParser;
 
 /**
+ * A location manager based on NMEA input.  The sentences contributing to a fix are decoded
+ * directly into a single {@link FixAccumulator} that drives both location listeners and route
+ * processing in one pass, without constructing intermediate sentence objects.  Sentences
+ * delivered through {@link #receiveSentence(AbstractNmeaSentence)} are fused in the same way.
+ * <p/>
+ * By default a fix is made up of GGA and RMC sentences.  Receivers that report a different
+ * minimal sentence set, for example GNS and VTG, are supported through
+ * {@link #setFixSentenceTypes(Set)}.
+ * <p/>
+ * When a {@link ReceiverConfigurator} is set, the receiver is configured on start to emit only
+ * the fix sentence types at the requested fix interval.  If the receiver cannot be configured,
+ * the start fails and the socket manager is disconnected.
+ *
  * @author David Valeri
  */
 public class NmeaLocationManager implements RouteManager, LocationManager,
-		NmeaSentenceListener,
+		NmeaSentenceListener, FixListener,
 		NotificationListenerRegistry<LocationManagerLifecycleNotificationType> {
     
     private static final Logger LOG = LoggerFactory.getLogger(NmeaLocationManager.class);
 
+    /**
+     * The longest fix interval, in milliseconds, that can be requested.  The limit of the
+     * 16-bit UBX measurement rate, the narrowest field among the supported receivers.
+     */
+    public static final int MAX_FIX_INTERVAL = 0xFFFF;
+
     private final SocketManager socketManager;
     private final NotificationListenerManager<LocationManagerLifecycleNotificationType> lifecycleNotificationListenerManager;
     private NmeaParser nmeaParser;
+    private Set<String> fixSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("GGA", "RMC")));
+    private ReceiverConfigurator receiverConfigurator;
+    private int fixInterval;
     
-    private GgaSentence currentGgaSentence;
-    private RmcSentence currentRmcSentence;
+    private final FixAccumulator sentenceFix = new FixAccumulator();
     private NmeaRouteManager routeManager = new NmeaRouteManager(); 
+    private final NmeaLocationManagerMetrics metrics = new NmeaLocationManagerMetrics();
+    private final NmeaParserMetrics parserMetrics;
+    private final PipelineTrace pipelineTrace = new PipelineTrace();
+    private volatile boolean tracing;
+    private volatile PipelineProbe probe;
+    private NmeaJournal journal;
+    private volatile LocationManagerLifecycleNotificationType state =
+            LocationManagerLifecycleNotificationType.STOPPED;
+    private volatile long lastFixReceivedTime;
     
     private List<LocationListener> listeners = 
             new CopyOnWriteArrayList<LocationListener>();
@@ -65,6 +108,7 @@ public class NmeaLocationManager implements RouteManager, LocationManager,
      */
     public NmeaLocationManager(SocketManager socketManager) {
 		this.socketManager = socketManager;
+		parserMetrics = createParserMetrics();
 
 		lifecycleNotificationListenerManager = 
 				new DefaultNotificationListenerManager<LocationManagerLifecycleNotificationType>(
@@ -74,32 +118,40 @@ public class NmeaLocationManager implements RouteManager, LocationManager,
     @Override
     public synchronized void start() {
         if (nmeaParser == null) {
-			lifecycleNotificationListenerManager
-					.sendNotification(LocationManagerLifecycleNotificationType.STARTING);
+			sendLifecycleNotification(LocationManagerLifecycleNotificationType.STARTING);
             try {
                 // Make sure we are connected if not previously connected.
                 socketManager.connect();
                 
                 try {
-                    nmeaParser = new SimpleNmeaParser(socketManager.getInputStream());
-                    nmeaParser.addSynchronousListener(this);
-                    nmeaParser.addSynchronousListener(routeManager);
+                    configureReceiver();
+                } catch (Exception e) {
+                    LOG.error("Error configuring receiver.", e);
+                    sendLifecycleNotification(
+                            LocationManagerLifecycleNotificationType.START_FAILED, e);
+                    disconnect();
+                    return;
+                }
+                
+                try {
+                    nmeaParser = createParser(socketManager.getInputStream(), parserMetrics);
+                    nmeaParser.setFixSentenceTypes(fixSentenceTypes);
+                    nmeaParser.setTracing(tracing);
+                    nmeaParser.setProbe(probe);
+                    nmeaParser.setJournal(journal);
+                    nmeaParser.addSynchronousFixListener(this);
                     nmeaParser.start();
-                    lifecycleNotificationListenerManager
-							.sendNotification(LocationManagerLifecycleNotificationType.STARTED);
+                    sendLifecycleNotification(LocationManagerLifecycleNotificationType.STARTED);
                 } catch (IOException e) {
                 	LOG.error("Error retrieving input stream.", e);
-                	lifecycleNotificationListenerManager
-							.sendNotification(
-									LocationManagerLifecycleNotificationType.START_FAILED,
-									e);
+                	sendLifecycleNotification(
+                	        LocationManagerLifecycleNotificationType.START_FAILED, e);
                 	nmeaParser = null;
                 }
             } catch (IOException e) {
             	LOG.error("Error initiating connection with socket manager.", e);
-            	lifecycleNotificationListenerManager.sendNotification(
-						LocationManagerLifecycleNotificationType.START_FAILED,
-						e);
+            	sendLifecycleNotification(
+            	        LocationManagerLifecycleNotificationType.START_FAILED, e);
 				
 				nmeaParser = null;
             }
@@ -109,25 +161,335 @@ public class NmeaLocationManager implements RouteManager, LocationManager,
     @Override
     public synchronized void stop() {
         if (nmeaParser != null) {
-        	lifecycleNotificationListenerManager
-					.sendNotification(LocationManagerLifecycleNotificationType.STOPPING);
+        	sendLifecycleNotification(LocationManagerLifecycleNotificationType.STOPPING);
             try {
-				nmeaParser.removeSynchronousListener(this);
-				nmeaParser.removeSynchronousListener(routeManager);
+				nmeaParser.removeSynchronousFixListener(this);
 				nmeaParser.stop();
 				nmeaParser = null;
-				lifecycleNotificationListenerManager
-						.sendNotification(LocationManagerLifecycleNotificationType.STOPPED);
+				sendLifecycleNotification(LocationManagerLifecycleNotificationType.STOPPED);
 			} catch (Exception e) {
 				LOG.error("Error during shutdown.", e);
-				lifecycleNotificationListenerManager
-						.sendNotification(
-								LocationManagerLifecycleNotificationType.STOP_FAILED,
-								e);
+				sendLifecycleNotification(
+				        LocationManagerLifecycleNotificationType.STOP_FAILED, e);
             }
         }
     }
     
+    /**
+     * Returns the type of the most recent lifecycle notification sent by the manager.
+     */
+    public LocationManagerLifecycleNotificationType getState() {
+        return state;
+    }
+    
+    /**
+     * Returns the time, in milliseconds since midnight January 1, 1970 UTC, at which the input of
+     * the most recent fix started arriving or 0 if no fix has been received.
+     */
+    public long getLastFixReceivedTime() {
+        return lastFixReceivedTime;
+    }
+    
+    /**
+     * Returns the number of registered location listeners.
+     */
+    public int getListenerCount() {
+        return listeners.size();
+    }
+    
+    /**
+     * Returns the number of routes being tracked.
+     */
+    public int getRouteCount() {
+        return routeManager.getRouteCount();
+    }
+    
+    /**
+     * Returns the number of route listeners registered across all routes.
+     */
+    public int getRouteListenerCount() {
+        return routeManager.getRouteListenerCount();
+    }
+    
+    /**
+     * Returns the plane in which waypoint distances are evaluated or {@code null} if distances
+     * are evaluated on the ellipsoid.
+     */
+    public LocalTangentPlane getLocalTangentPlane() {
+        return routeManager.getLocalTangentPlane();
+    }
+    
+    /**
+     * Sets the plane, typically centered on the venue, in which waypoint distances are
+     * evaluated.  Set to {@code null}, the default, to evaluate distances on the ellipsoid.
+     *
+     * @see net.tracknalysis.location.AbstractRouteManager#setLocalTangentPlane(LocalTangentPlane)
+     */
+    public void setLocalTangentPlane(LocalTangentPlane localTangentPlane) {
+        routeManager.setLocalTangentPlane(localTangentPlane);
+    }
+    
+    /**
+     * Returns the maximum speed, in meters per second, used to skip the evaluation of routes or
+     * 0 if all routes are evaluated on every fix.
+     */
+    public float getMaxSpeed() {
+        return routeManager.getMaxSpeed();
+    }
+    
+    /**
+     * Sets the maximum speed, in meters per second, of the vehicle.  Routes that cannot have
+     * reached their next waypoint at this speed are not evaluated.  Set to 0, the default, to
+     * evaluate every route on every fix.
+     *
+     * @see net.tracknalysis.location.AbstractRouteManager#setMaxSpeed(float)
+     */
+    public void setMaxSpeed(float maxSpeed) {
+        routeManager.setMaxSpeed(maxSpeed);
+    }
+    
+    /**
+     * Returns the metrics for fusion and location listener callbacks.
+     */
+    public NmeaLocationManagerMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Returns the metrics of the parser.  The metrics are shared by the parsers of every run, so
+     * counters accumulate across restarts until reset.
+     */
+    public NmeaParserMetrics getParserMetrics() {
+        return parserMetrics;
+    }
+    
+    /**
+     * Returns the metrics for route processing.
+     */
+    public RouteManagerMetrics getRouteManagerMetrics() {
+        return routeManager.getMetrics();
+    }
+    
+    /**
+     * Returns true if end to end latency tracing is enabled.
+     */
+    public synchronized boolean isTracing() {
+        return tracing;
+    }
+    
+    /**
+     * Enables or disables end to end latency tracing.  While enabled, the time at which the first
+     * byte of each fix arrives, the sentence completing the fix is read, the location is emitted
+     * and each route listener is notified are recorded into {@link #getPipelineTrace()}.
+     * Disabled by default.  Sentences delivered through
+     * {@link #receiveSentence(AbstractNmeaSentence)} are not traced.
+     *
+     * @param tracing true to enable tracing
+     */
+    public synchronized void setTracing(boolean tracing) {
+        this.tracing = tracing;
+        routeManager.setPipelineTrace(tracing ? pipelineTrace : null);
+        
+        if (nmeaParser != null) {
+            nmeaParser.setTracing(tracing);
+        }
+    }
+    
+    /**
+     * Returns the distribution of latencies between the stages of the pipeline recorded while
+     * tracing is enabled.
+     *
+     * @see #setTracing(boolean)
+     */
+    public PipelineTrace getPipelineTrace() {
+        return pipelineTrace;
+    }
+    
+    /**
+     * Returns the probe notified of pipeline events or {@code null} if none.
+     */
+    public synchronized PipelineProbe getProbe() {
+        return probe;
+    }
+    
+    /**
+     * Sets the probe notified of parsed and rejected sentences, fused locations, discarded
+     * epochs, route processing and waypoint events, for example the probe returned by
+     * {@link net.tracknalysis.location.metrics.PipelineProbes#newFlightRecorderProbe()}.  Set to
+     * {@code null} to disable notification.
+     *
+     * @param probe the probe or {@code null}
+     */
+    public synchronized void setProbe(PipelineProbe probe) {
+        this.probe = probe;
+        routeManager.setProbe(probe);
+        
+        if (nmeaParser != null) {
+            nmeaParser.setProbe(probe);
+        }
+    }
+    
+    /**
+     * Returns the journal of the raw input or {@code null} if none.
+     */
+    public synchronized NmeaJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * Sets the journal to which the raw input of the receiver is appended with its arrival
+     * times, so that it can be replayed exactly with a
+     * {@link net.tracknalysis.location.nmea.journal.NmeaJournalInputStream}.  The caller owns
+     * the journal and is responsible for closing it.  Set to {@code null} to disable journaling.
+     *
+     * @param journal the journal or {@code null}
+     */
+    public synchronized void setJournal(NmeaJournal journal) {
+        this.journal = journal;
+        
+        if (nmeaParser != null) {
+            nmeaParser.setJournal(journal);
+        }
+    }
+    
+    /**
+     * Returns the configurator used to configure the receiver on start or null if the receiver
+     * is not configured.
+     */
+    public synchronized ReceiverConfigurator getReceiverConfigurator() {
+        return receiverConfigurator;
+    }
+    
+    /**
+     * Sets the configurator used to configure the receiver on start.  Takes effect the next time
+     * the manager is started.
+     *
+     * @param receiverConfigurator the configurator for the receiver family or null to leave the
+     *            receiver unconfigured
+     */
+    public synchronized void setReceiverConfigurator(ReceiverConfigurator receiverConfigurator) {
+        this.receiverConfigurator = receiverConfigurator;
+    }
+    
+    /**
+     * Returns the interval between fixes, in milliseconds, requested from the receiver or 0 if
+     * the receiver's fix rate is left unchanged.
+     */
+    public synchronized int getFixInterval() {
+        return fixInterval;
+    }
+    
+    /**
+     * Sets the interval between fixes, in milliseconds, requested from the receiver when a
+     * receiver configurator is set.  Takes effect the next time the manager is started.
+     *
+     * @param fixInterval the interval between fixes or 0 to leave the fix rate unchanged
+     *
+     * @throws IllegalArgumentException if {@code fixInterval} is negative or greater than
+     *             {@value #MAX_FIX_INTERVAL}
+     */
+    public synchronized void setFixInterval(int fixInterval) {
+        if (fixInterval < 0 || fixInterval > MAX_FIX_INTERVAL) {
+            throw new IllegalArgumentException("Fix interval " + fixInterval
+                    + "ms must be between 0 and " + MAX_FIX_INTERVAL + "ms.");
+        }
+        
+        this.fixInterval = fixInterval;
+    }
+    
+    /**
+     * Sends the receiver configuration, if any, to the receiver.  A failure to configure the
+     * receiver fails the start as the receiver may be left partially configured.
+     */
+    private void configureReceiver() throws IOException {
+        if (receiverConfigurator != null) {
+            OutputStream outputStream = socketManager.getOutputStream();
+            
+            if (outputStream == null) {
+                LOG.warn("Socket manager does not provide an output stream.  Receiver will "
+                        + "not be configured.");
+            } else {
+                configureReceiver(receiverConfigurator, outputStream, fixSentenceTypes,
+                        fixInterval);
+            }
+        }
+    }
+    
+    /**
+     * Writes the receiver configuration to the receiver.  Subclasses decoding other protocols
+     * may override this method to configure the receiver to output that protocol.
+     *
+     * @param receiverConfigurator the configurator for the receiver family
+     * @param outputStream the stream to the receiver
+     * @param sentenceTypes the sentence types that contribute to a fix
+     * @param fixInterval the interval between fixes in milliseconds or 0 to leave the
+     *            receiver's fix rate unchanged
+     *
+     * @throws IOException if there is an error writing to the receiver
+     */
+    protected void configureReceiver(ReceiverConfigurator receiverConfigurator,
+            OutputStream outputStream, Set<String> sentenceTypes, int fixInterval)
+            throws IOException {
+        receiverConfigurator.configure(outputStream, sentenceTypes, fixInterval);
+    }
+    
+    private void disconnect() {
+        try {
+            socketManager.disconnect();
+        } catch (IOException e) {
+            LOG.warn("Error disconnecting from socket manager.", e);
+        }
+    }
+    
+    /**
+     * Creates the metrics recorded by the parsers of every run.  Subclasses overriding
+     * {@link #createParser(InputStream, NmeaParserMetrics)} override this method to count the
+     * sentence types of their protocol.  Called from the constructor.
+     */
+    protected NmeaParserMetrics createParserMetrics() {
+        return SimpleNmeaParser.newMetrics();
+    }
+    
+    /**
+     * Creates the parser for the input from the socket manager.  Subclasses may override this
+     * method to decode other protocols spoken by the device.
+     *
+     * @param inputStream the input from the socket manager
+     * @param metrics the metrics the parser records into, as created by
+     *            {@link #createParserMetrics()}
+     */
+    protected NmeaParser createParser(InputStream inputStream, NmeaParserMetrics metrics) {
+        return new SimpleNmeaParser(inputStream, metrics);
+    }
+    
+    /**
+     * Returns the sentence types that must all report data for the same epoch to produce a
+     * location update.
+     */
+    public synchronized Set<String> getFixSentenceTypes() {
+        return fixSentenceTypes;
+    }
+    
+    /**
+     * Sets the sentence types, e.g. "GNS" and "VTG", that must all report data for the same
+     * epoch to produce a location update.  Defaults to GGA and RMC.  Takes effect the next time
+     * the manager is started.
+     *
+     * @param fixSentenceTypes the sentence types that make up a fix
+     *
+     * @throws IllegalArgumentException if a sentence type does not contribute to a fix or if no
+     *             sentence type in the set reports a position
+     */
+    public synchronized void setFixSentenceTypes(Set<String> fixSentenceTypes) {
+        int mask = FixAccumulator.toSentenceMask(fixSentenceTypes);
+        this.fixSentenceTypes = Collections.unmodifiableSet(
+                new HashSet<String>(fixSentenceTypes));
+        
+        synchronized (sentenceFix) {
+            sentenceFix.setRequiredSentenceMask(mask);
+        }
+    }
+    
     @Override
     public void addSynchronousListener(LocationListener listener) {
         if (!listeners.contains(listener)) {
@@ -151,6 +513,30 @@ public class NmeaLocationManager implements RouteManager, LocationManager,
         routeManager.addRouteForSynchronousListeners(route, distance, listeners);
     }
     
+    @Override
+    public void addRouteForSynchronousListeners(Route route, float distance,
+            Set<WaypointEventType> eventTypes, RouteListener... listeners) {
+        routeManager.addRouteForSynchronousListeners(route, distance, eventTypes, listeners);
+    }
+    
+    @Override
+    public void addListenerForSynchronousNotification(Route route,
+            Set<WaypointEventType> eventTypes, RouteListener listener) {
+        routeManager.addListenerForSynchronousNotification(route, eventTypes, listener);
+    }
+    
+    @Override
+    public void addRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners) {
+        routeManager.addRoutesForSynchronousListeners(routes, distances, listeners);
+    }
+    
+    @Override
+    public void replaceRoutesForSynchronousListeners(Route[] routes, float[] distances,
+            RouteListener... listeners) {
+        routeManager.replaceRoutesForSynchronousListeners(routes, distances, listeners);
+    }
+    
     @Override
     public void removeRouteForSynchronousListeners(Route route) {
         routeManager.removeRouteForSynchronousListeners(route);
@@ -158,78 +544,160 @@ public class NmeaLocationManager implements RouteManager, LocationManager,
     
     @Override
     public void receiveSentence(AbstractNmeaSentence sentence) {
+        synchronized (sentenceFix) {
+            long fusionStartTime = System.nanoTime();
+            long discardedEpochCount = sentenceFix.getDiscardedEpochCount();
+            fuseSentence(sentence);
+            boolean complete = sentenceFix.isComplete();
+            metrics.getFusionTime().recordSince(fusionStartTime);
+            
+            PipelineProbe probe = this.probe;
+            if (probe != null && sentenceFix.getDiscardedEpochCount() != discardedEpochCount) {
+                probe.epochMismatch(sentenceFix.getDiscardedTime(),
+                        sentenceFix.getDiscardedSentenceMask(), sentenceFix.getTime());
+            }
+            
+            if (complete) {
+                receiveFix(sentenceFix);
+                sentenceFix.clear();
+            }
+        }
+    }
+    
+    private void fuseSentence(AbstractNmeaSentence sentence) {
+        
+        int requiredSentenceMask = sentenceFix.getRequiredSentenceMask();
         
-        if (sentence instanceof GgaSentence) {
+        if (sentence instanceof GgaSentence
+                && (requiredSentenceMask & FixAccumulator.GGA) != 0) {
             GgaSentence ggaSentence = (GgaSentence) sentence;
             
             switch (ggaSentence.getFixQuality()) {
                 case DGPS:
                 case GPS:
-                    LOG.debug("Recieved a new GGA sentence, {}.  Discarding old GGA sentence {}.",
-                            ggaSentence, currentGgaSentence);
+                    LOG.debug("Recieved a new GGA sentence, {}.", ggaSentence);
                     
-                    currentGgaSentence = ggaSentence;
+                    sentenceFix.acceptGga(ggaSentence.getTime(), ggaSentence.getLatitude(),
+                            ggaSentence.getLongitude(), ggaSentence.getAltitude(),
+                            ggaSentence.getSentenceParsingStartTime());
                     break;
                 default:
                     LOG.warn("Received {}.  GPS device does not have fix.  Ignoring sentence.",
                             ggaSentence);
             }
-        } else if (sentence instanceof RmcSentence) {
+        } else if (sentence instanceof RmcSentence
+                && (requiredSentenceMask & FixAccumulator.RMC) != 0) {
             RmcSentence rmcSentence = (RmcSentence) sentence;
             
             switch (rmcSentence.getStatusIndicator()) {
                 case ACTIVE:
-                    LOG.debug("Recieved a new RMC sentence, {}.  Discarding old RMC sentence {}.",
-                            rmcSentence, currentRmcSentence);
+                    LOG.debug("Recieved a new RMC sentence, {}.", rmcSentence);
                     
-                    currentRmcSentence = rmcSentence;
+                    sentenceFix.acceptRmc(rmcSentence.getTime(), rmcSentence.getLatitude(),
+                            rmcSentence.getLongitude(), rmcSentence.getSpeed(),
+                            rmcSentence.getHeading(), rmcSentence.getSentenceParsingStartTime());
                     break;
                 default:
                     LOG.warn("Received {}.  GPS device does not have fix.  Ignoring sentence.",
                             rmcSentence);
             }
-        } else {
-            LOG.debug("Ignoring sentence {}.", sentence);    
-        }
-        
-        if (currentGgaSentence != null && currentRmcSentence != null) {
-            long deltaT = currentGgaSentence.getTime() - currentRmcSentence.getTime();
+        } else if (sentence instanceof GnsSentence
+                && (requiredSentenceMask & FixAccumulator.GNS) != 0) {
+            GnsSentence gnsSentence = (GnsSentence) sentence;
             
-            if (deltaT < 100 || deltaT > -100) {
+            if (gnsSentence.isValid()) {
+                LOG.debug("Recieved a new GNS sentence, {}.", gnsSentence);
                 
-                LocationBuilder builder = new Location.LocationBuilder();
-                // TODO assumes that altitude is always in meters even though the sentence has a unit field?
-                builder.setAltitude(currentGgaSentence.getAltitude());
-                builder.setBearing(currentRmcSentence.getHeading());
-                builder.setLatitude(currentGgaSentence.getLatitude());
-                builder.setLongitude(currentGgaSentence.getLongitude());
-                builder.setSpeed(currentRmcSentence.getSpeed() * 0.514444444f);
-                builder.setTime(currentGgaSentence.getTime());
-                builder.setReceivedTime(currentGgaSentence.getSentenceParsingStartTime());
-                
-                Location newGpsData = builder.build();
-                
-                notifySynchronousListeners(newGpsData);
+                sentenceFix.acceptGns(gnsSentence.getTime(), gnsSentence.getLatitude(),
+                        gnsSentence.getLongitude(), gnsSentence.getAltitude(),
+                        gnsSentence.getSentenceParsingStartTime());
+            } else {
+                LOG.warn("Received {}.  GPS device does not have fix.  Ignoring sentence.",
+                        gnsSentence);
+            }
+        } else if (sentence instanceof GllSentence
+                && (requiredSentenceMask & FixAccumulator.GLL) != 0) {
+            GllSentence gllSentence = (GllSentence) sentence;
+            
+            switch (gllSentence.getStatusIndicator()) {
+                case ACTIVE:
+                    LOG.debug("Recieved a new GLL sentence, {}.", gllSentence);
+                    
+                    sentenceFix.acceptGll(gllSentence.getTime(), gllSentence.getLatitude(),
+                            gllSentence.getLongitude(), gllSentence.getSentenceParsingStartTime());
+                    break;
+                default:
+                    LOG.warn("Received {}.  GPS device does not have fix.  Ignoring sentence.",
+                            gllSentence);
+            }
+        } else if (sentence instanceof VtgSentence
+                && (requiredSentenceMask & FixAccumulator.VTG) != 0) {
+            VtgSentence vtgSentence = (VtgSentence) sentence;
+            
+            if (vtgSentence.getModeIndicator() != RmcSentence.ModeIndicator.NOT_VALID) {
+                LOG.debug("Recieved a new VTG sentence, {}.", vtgSentence);
                 
-                currentGgaSentence = null;
-                currentRmcSentence = null;
+                sentenceFix.acceptVtg(vtgSentence.getSpeed(), vtgSentence.getTrueCourse(),
+                        vtgSentence.getSentenceParsingStartTime());
             } else {
-                LOG.warn(
-                        "Delta T bewteen sentences, {}, is too large, not triggering update.",
-                        deltaT);
+                LOG.warn("Received {}.  GPS device does not have fix.  Ignoring sentence.",
+                        vtgSentence);
             }
+        } else {
+            LOG.debug("Ignoring sentence {}.", sentence);    
+        }
+    }
+    
+    @Override
+    public void receiveFix(FixAccumulator fix) {
+        metrics.recordFix();
+        lastFixReceivedTime = fix.getReceivedTime();
+        
+        // TODO assumes that altitude is always in meters even though the sentence has a unit field?
+        Location location = listeners.isEmpty() ? null : fix.toLocation();
+        
+        if (tracing && fix.getFirstByteNanoTime() != 0) {
+            pipelineTrace.recordLocation(fix.getFirstByteNanoTime(), fix.getSentenceNanoTime(),
+                    System.nanoTime());
         }
+        
+        PipelineProbe probe = this.probe;
+        if (probe != null) {
+            probe.locationFused(fix.getTime(), fix.getReceivedSentenceMask(),
+                    fix.getFirstByteNanoTime() == 0
+                            ? 0 : System.nanoTime() - fix.getFirstByteNanoTime());
+        }
+        
+        if (location != null) {
+            notifySynchronousListeners(location);
+        }
+        
+        routeManager.receiveFix(fix);
+    }
+    
+    private void sendLifecycleNotification(LocationManagerLifecycleNotificationType type) {
+        state = type;
+        lifecycleNotificationListenerManager.sendNotification(type);
+    }
+    
+    private void sendLifecycleNotification(LocationManagerLifecycleNotificationType type,
+            Exception e) {
+        state = type;
+        lifecycleNotificationListenerManager.sendNotification(type, e);
     }
     
     protected void notifySynchronousListeners(Location data) {
         
         for (LocationListener listener : listeners) {
+            long listenerStartTime = System.nanoTime();
             try {
                 listener.receiveLocation(data);
             } catch (Exception e) {
+                metrics.recordListenerError();
                 LOG.error("Error in location listener " + listener + ".",
                         e);
             }
+            metrics.getLocationListenerTime().recordSince(listenerStartTime);
         }
     }
 
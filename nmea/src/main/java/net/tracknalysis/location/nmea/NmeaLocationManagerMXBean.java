@@ -0,0 +1,75 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Map;
+
+/**
+ * Management interface for a {@link NmeaLocationManager}, its current parser and its route
+ * manager.
+ *
+ * @author David Valeri
+ *
+ * @see NmeaLocationManagerManagement
+ */
+public interface NmeaLocationManagerMXBean {
+
+    String getState();
+
+    boolean isRunning();
+
+    /**
+     * Returns the time, in milliseconds, since the input of the most recent fix started arriving
+     * or -1 if no fix has been received.
+     */
+    long getLastFixAge();
+
+    int getListenerCount();
+
+    int getRouteCount();
+
+    int getRouteListenerCount();
+
+    long getFixCount();
+
+    double getFixRate();
+
+    Map<String, Long> getSentenceCounts();
+
+    long getSentenceCount();
+
+    double getSentenceRate();
+
+    long getInvalidSentenceCount();
+
+    long getIgnoredSentenceCount();
+
+    long getDiscardedEpochCount();
+
+    long getListenerErrorCount();
+
+    long getRouteUpdateCount();
+
+    boolean isTracing();
+
+    void setTracing(boolean tracing);
+
+    /**
+     * Resets the counters and latency distributions of the manager, its current parser, its route
+     * manager and its pipeline trace.
+     */
+    void resetCounters();
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Map;
+
+import javax.management.JMException;
+
+import net.tracknalysis.location.LocationManagerLifecycleNotificationType;
+import net.tracknalysis.location.metrics.JmxMetricsExporter;
+
+/**
+ * Exposes the state and counters of a {@link NmeaLocationManager} through JMX.  Parser counters
+ * accumulate across restarts of the manager until reset.
+ * <p/>
+ * This class depends on {@code javax.management} only through {@link #export}, so the manager
+ * remains usable on platforms without JMX.
+ *
+ * @author David Valeri
+ */
+public final class NmeaLocationManagerManagement implements NmeaLocationManagerMXBean {
+
+    /**
+     * The value of the type key property under which the management interface is exported.
+     */
+    public static final String TYPE = "NmeaLocationManager";
+
+    private final NmeaLocationManager locationManager;
+
+    public NmeaLocationManagerManagement(NmeaLocationManager locationManager) {
+        this.locationManager = locationManager;
+    }
+
+    /**
+     * Exports the management interface of {@code locationManager} along with the metrics of the
+     * manager, its parser, its route manager and its pipeline trace.  The metrics are exported
+     * under types named for their classes and the same {@code name}.
+     *
+     * @param locationManager the manager to export
+     * @param exporter the exporter to register with
+     * @param name the value of the name key property identifying the manager, e.g. the receiver
+     *            address
+     *
+     * @throws JMException if there is an error registering the beans
+     */
+    public static void export(NmeaLocationManager locationManager, JmxMetricsExporter exporter,
+            String name) throws JMException {
+        exporter.exportMBean(new NmeaLocationManagerManagement(locationManager), TYPE, name);
+        exporter.export(locationManager.getMetrics(), "NmeaLocationManagerMetrics", name);
+        exporter.export(locationManager.getParserMetrics(), "NmeaParserMetrics", name);
+        exporter.export(locationManager.getRouteManagerMetrics(), "RouteManagerMetrics", name);
+        exporter.export(locationManager.getPipelineTrace(), "PipelineTrace", name);
+    }
+
+    @Override
+    public String getState() {
+        return locationManager.getState().name();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return locationManager.getState() == LocationManagerLifecycleNotificationType.STARTED;
+    }
+
+    @Override
+    public long getLastFixAge() {
+        long lastFixReceivedTime = locationManager.getLastFixReceivedTime();
+        return lastFixReceivedTime == 0
+                ? -1 : System.currentTimeMillis() - lastFixReceivedTime;
+    }
+
+    @Override
+    public int getListenerCount() {
+        return locationManager.getListenerCount();
+    }
+
+    @Override
+    public int getRouteCount() {
+        return locationManager.getRouteCount();
+    }
+
+    @Override
+    public int getRouteListenerCount() {
+        return locationManager.getRouteListenerCount();
+    }
+
+    @Override
+    public long getFixCount() {
+        return locationManager.getMetrics().getFixCount();
+    }
+
+    @Override
+    public double getFixRate() {
+        return locationManager.getMetrics().getFixRate();
+    }
+
+    @Override
+    public Map<String, Long> getSentenceCounts() {
+        return locationManager.getParserMetrics().getSentenceCounts();
+    }
+
+    @Override
+    public long getSentenceCount() {
+        return locationManager.getParserMetrics().getSentenceCount();
+    }
+
+    @Override
+    public double getSentenceRate() {
+        double rate = 0;
+        for (Double sentenceRate : locationManager.getParserMetrics().getSentenceRates().values()) {
+            rate += sentenceRate;
+        }
+        return rate;
+    }
+
+    @Override
+    public long getInvalidSentenceCount() {
+        return locationManager.getParserMetrics().getInvalidSentenceCount();
+    }
+
+    @Override
+    public long getIgnoredSentenceCount() {
+        return locationManager.getParserMetrics().getIgnoredSentenceCount();
+    }
+
+    @Override
+    public long getDiscardedEpochCount() {
+        return locationManager.getParserMetrics().getDiscardedEpochCount();
+    }
+
+    @Override
+    public long getListenerErrorCount() {
+        return locationManager.getMetrics().getListenerErrorCount()
+                + locationManager.getRouteManagerMetrics().getListenerErrorCount()
+                + locationManager.getParserMetrics().getListenerErrorCount();
+    }
+
+    @Override
+    public long getRouteUpdateCount() {
+        return locationManager.getRouteManagerMetrics().getUpdateCount();
+    }
+
+    @Override
+    public boolean isTracing() {
+        return locationManager.isTracing();
+    }
+
+    @Override
+    public void setTracing(boolean tracing) {
+        locationManager.setTracing(tracing);
+    }
+
+    @Override
+    public void resetCounters() {
+        locationManager.getMetrics().reset();
+        locationManager.getRouteManagerMetrics().reset();
+        locationManager.getParserMetrics().reset();
+        locationManager.getPipelineTrace().reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("NmeaLocationManagerManagement [locationManager=");
+        builder.append(locationManager);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.tracknalysis.location.metrics.LatencyHistogram;
+import net.tracknalysis.location.metrics.Metrics;
+import net.tracknalysis.location.metrics.RateCounter;
+
+/**
+ * Metrics for an {@link NmeaLocationManager}.
+ *
+ * @author David Valeri
+ */
+public final class NmeaLocationManagerMetrics implements Metrics,
+        NmeaLocationManagerMetricsMXBean {
+
+    private final RateCounter fixes = new RateCounter();
+    private final AtomicLong listenerErrorCount = new AtomicLong();
+    private final LatencyHistogram fusionTime = new LatencyHistogram();
+    private final LatencyHistogram locationListenerTime = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> latencyHistograms;
+
+    public NmeaLocationManagerMetrics() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        histograms.put("fusionTime", fusionTime);
+        histograms.put("locationListenerTime", locationListenerTime);
+        latencyHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Counts a fix delivered to the location listeners and route manager.
+     */
+    public void recordFix() {
+        fixes.increment();
+    }
+
+    /**
+     * Counts a location listener callback that threw an exception.
+     */
+    public void recordListenerError() {
+        listenerErrorCount.incrementAndGet();
+    }
+
+    @Override
+    public long getFixCount() {
+        return fixes.getCount();
+    }
+
+    @Override
+    public double getFixRate() {
+        return fixes.getRate();
+    }
+
+    @Override
+    public long getListenerErrorCount() {
+        return listenerErrorCount.get();
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken to fuse each sentence received
+     * through {@link NmeaLocationManager#receiveSentence(AbstractNmeaSentence)}.
+     */
+    public LatencyHistogram getFusionTime() {
+        return fusionTime;
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken by each location listener
+     * callback.
+     */
+    public LatencyHistogram getLocationListenerTime() {
+        return locationListenerTime;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    @Override
+    public void reset() {
+        fixes.reset();
+        listenerErrorCount.set(0);
+        fusionTime.reset();
+        locationListenerTime.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("NmeaLocationManagerMetrics [fixCount=");
+        builder.append(getFixCount());
+        builder.append(", fixRate=");
+        builder.append(getFixRate());
+        builder.append(", listenerErrorCount=");
+        builder.append(getListenerErrorCount());
+        builder.append(", fusionTime=");
+        builder.append(fusionTime);
+        builder.append(", locationListenerTime=");
+        builder.append(locationListenerTime);
+        builder.append("]");
+        return builder.toString();
+    }
+}
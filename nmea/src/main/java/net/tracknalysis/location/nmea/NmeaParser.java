@@ -15,6 +15,11 @@
  */
 package net.tracknalysis.location.nmea;
 
+import java.util.Set;
+
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.nmea.journal.NmeaJournal;
+
 /**
  * @author David Valeri
  */
@@ -28,4 +33,84 @@ public interface NmeaParser {
 
     void removeSynchronousListener(NmeaSentenceListener listener);
 
+    /**
+     * Registers a new listener for fixes fused directly from the parsed input.  Sentences
+     * contributing to a fix are decoded straight into a reused {@link FixAccumulator} without
+     * constructing sentence objects.  Does nothing if {@code listener} is already registered.
+     *
+     * @param listener the listener to register
+     */
+    void addSynchronousFixListener(FixListener listener);
+
+    /**
+     * Removes a previously registered listener.  Does nothing if the listener is
+     * not registered.
+     *
+     * @param listener the listener to remove
+     */
+    void removeSynchronousFixListener(FixListener listener);
+
+    /**
+     * Registers a new listener for the satellites in view assembled from the parts of GSV
+     * messages into a reused {@link SatelliteView}.  The view is published once per epoch.  Does
+     * nothing if {@code listener} is already registered.
+     *
+     * @param listener the listener to register
+     */
+    void addSynchronousSatelliteViewListener(SatelliteViewListener listener);
+
+    /**
+     * Removes a previously registered listener.  Does nothing if the listener is
+     * not registered.
+     *
+     * @param listener the listener to remove
+     */
+    void removeSynchronousSatelliteViewListener(SatelliteViewListener listener);
+
+    /**
+     * Returns the metrics for the sentences read by the parser and the listener callbacks it
+     * makes.
+     */
+    NmeaParserMetrics getMetrics();
+
+    /**
+     * Sets the sentence types, e.g. "GNS" and "VTG", that must all report data for the same epoch
+     * before a fix is delivered to the fix listeners.  Sentence types outside of the set are not
+     * decoded for fixes.  Defaults to GGA and RMC.
+     *
+     * @param sentenceTypes the sentence types that make up a fix
+     *
+     * @throws IllegalArgumentException if a sentence type does not contribute to a fix or if no
+     *             sentence type in the set reports a position
+     */
+    void setFixSentenceTypes(Set<String> sentenceTypes);
+
+    /**
+     * Enables or disables stamping of the fixes delivered to fix listeners with the
+     * {@link System#nanoTime()} at which their input arrived and was completely read.  Disabled by
+     * default.
+     *
+     * @param tracing true to enable stamping
+     *
+     * @see FixAccumulator#stamp(long, long)
+     */
+    void setTracing(boolean tracing);
+
+    /**
+     * Sets the probe notified of parsed and rejected sentences and of discarded epochs.  Set to
+     * {@code null} to disable notification.
+     *
+     * @param probe the probe or {@code null}
+     */
+    void setProbe(PipelineProbe probe);
+
+    /**
+     * Sets the journal to which all input read by the parser, valid or not, is appended along
+     * with its arrival time.  Set to {@code null} to disable journaling.  Journaling is disabled
+     * if appending to the journal fails.
+     *
+     * @param journal the journal or {@code null}
+     */
+    void setJournal(NmeaJournal journal);
+
 }
\ No newline at end of file
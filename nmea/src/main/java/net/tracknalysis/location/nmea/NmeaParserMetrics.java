@@ -0,0 +1,301 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.tracknalysis.location.metrics.LatencyHistogram;
+import net.tracknalysis.location.metrics.Metrics;
+import net.tracknalysis.location.metrics.RateCounter;
+
+/**
+ * Metrics for an {@link NmeaParser}.  Sentences are counted per sentence type from a fixed set
+ * of types provided at construction, with all other types counted as {@link #OTHER}, so that
+ * counting does not allocate.
+ *
+ * @author David Valeri
+ */
+public final class NmeaParserMetrics implements Metrics, NmeaParserMetricsMXBean {
+
+    /**
+     * The sentence type under which sentences of unknown types are counted.
+     */
+    public static final String OTHER = "OTHER";
+
+    private final String[] sentenceTypes;
+    private final RateCounter[] sentenceCounters;
+    private final AtomicLong invalidSentenceCount = new AtomicLong();
+    private final AtomicLong ignoredSentenceCount = new AtomicLong();
+    private final AtomicLong discardedEpochCount = new AtomicLong();
+    private final AtomicLong listenerErrorCount = new AtomicLong();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+    private final LatencyHistogram fusionTime = new LatencyHistogram();
+    private final LatencyHistogram sentenceListenerTime = new LatencyHistogram();
+    private final LatencyHistogram fixListenerTime = new LatencyHistogram();
+    private final LatencyHistogram satelliteViewListenerTime = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> latencyHistograms;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param sentenceTypes the sentence types, e.g. "GGA", to count individually
+     */
+    public NmeaParserMetrics(String... sentenceTypes) {
+        this.sentenceTypes = new String[sentenceTypes.length + 1];
+        System.arraycopy(sentenceTypes, 0, this.sentenceTypes, 0, sentenceTypes.length);
+        this.sentenceTypes[sentenceTypes.length] = OTHER;
+
+        sentenceCounters = new RateCounter[this.sentenceTypes.length];
+        for (int i = 0; i < sentenceCounters.length; i++) {
+            sentenceCounters[i] = new RateCounter();
+        }
+
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+        histograms.put("parseTime", parseTime);
+        histograms.put("fusionTime", fusionTime);
+        histograms.put("sentenceListenerTime", sentenceListenerTime);
+        histograms.put("fixListenerTime", fixListenerTime);
+        histograms.put("satelliteViewListenerTime", satelliteViewListenerTime);
+        latencyHistograms = Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Returns the index used to count {@code sentenceType}.  Does not allocate.
+     */
+    public int indexOf(CharSequence sentenceType) {
+        for (int i = 0; i < sentenceTypes.length - 1; i++) {
+            String candidate = sentenceTypes[i];
+
+            if (candidate.length() == sentenceType.length()) {
+                boolean matches = true;
+                for (int j = 0; j < candidate.length() && matches; j++) {
+                    matches = candidate.charAt(j) == sentenceType.charAt(j);
+                }
+
+                if (matches) {
+                    return i;
+                }
+            }
+        }
+
+        return sentenceTypes.length - 1;
+    }
+
+    /**
+     * Counts a received sentence.
+     *
+     * @param sentenceTypeIndex the index of the sentence type as returned by
+     *            {@link #indexOf(CharSequence)}
+     * @param nanoTime the time the sentence was received as returned by
+     *            {@link System#nanoTime()}
+     */
+    public void recordSentence(int sentenceTypeIndex, long nanoTime) {
+        sentenceCounters[sentenceTypeIndex].increment(nanoTime);
+    }
+
+    /**
+     * Counts a sentence that was discarded because it was malformed.
+     */
+    public void recordInvalidSentence() {
+        invalidSentenceCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a sentence that was discarded because no listener consumes it.
+     */
+    public void recordIgnoredSentence() {
+        ignoredSentenceCount.incrementAndGet();
+    }
+
+    /**
+     * Counts an incomplete epoch that was discarded because a sentence from a different epoch
+     * arrived.
+     */
+    public void recordDiscardedEpoch() {
+        discardedEpochCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a listener callback that threw an exception.
+     */
+    public void recordListenerError() {
+        listenerErrorCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the sentence type counted at {@code sentenceTypeIndex}.  Does not allocate.
+     *
+     * @param sentenceTypeIndex the index of the sentence type as returned by
+     *            {@link #indexOf(CharSequence)}
+     */
+    public String getSentenceType(int sentenceTypeIndex) {
+        return sentenceTypes[sentenceTypeIndex];
+    }
+
+    /**
+     * Returns the sentence types counted individually, followed by {@link #OTHER}.
+     */
+    public String[] getSentenceTypes() {
+        return sentenceTypes.clone();
+    }
+
+    /**
+     * Returns the number of sentences received of {@code sentenceType}.
+     */
+    public long getSentenceCount(String sentenceType) {
+        return sentenceCounters[indexOf(sentenceType)].getCount();
+    }
+
+    /**
+     * Returns the number of sentences per second received of {@code sentenceType}.
+     */
+    public double getSentenceRate(String sentenceType) {
+        return sentenceCounters[indexOf(sentenceType)].getRate();
+    }
+
+    @Override
+    public Map<String, Long> getSentenceCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < sentenceTypes.length; i++) {
+            counts.put(sentenceTypes[i], sentenceCounters[i].getCount());
+        }
+
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getSentenceRates() {
+        Map<String, Double> rates = new LinkedHashMap<String, Double>();
+        for (int i = 0; i < sentenceTypes.length; i++) {
+            rates.put(sentenceTypes[i], sentenceCounters[i].getRate());
+        }
+
+        return rates;
+    }
+
+    @Override
+    public long getSentenceCount() {
+        long count = 0;
+        for (RateCounter counter : sentenceCounters) {
+            count += counter.getCount();
+        }
+
+        return count;
+    }
+
+    @Override
+    public long getInvalidSentenceCount() {
+        return invalidSentenceCount.get();
+    }
+
+    @Override
+    public long getIgnoredSentenceCount() {
+        return ignoredSentenceCount.get();
+    }
+
+    @Override
+    public long getDiscardedEpochCount() {
+        return discardedEpochCount.get();
+    }
+
+    @Override
+    public long getListenerErrorCount() {
+        return listenerErrorCount.get();
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, from the first byte of a sentence to
+     * the completion of its parsing.  On slow links this includes the time spent waiting for the
+     * bytes of the sentence to arrive.
+     */
+    public LatencyHistogram getParseTime() {
+        return parseTime;
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken to fuse a decoded sentence into
+     * the current fix.
+     */
+    public LatencyHistogram getFusionTime() {
+        return fusionTime;
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken by each sentence listener
+     * callback.
+     */
+    public LatencyHistogram getSentenceListenerTime() {
+        return sentenceListenerTime;
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken by each fix listener callback.
+     */
+    public LatencyHistogram getFixListenerTime() {
+        return fixListenerTime;
+    }
+
+    /**
+     * Returns the distribution of the time, in nanoseconds, taken by each satellite view listener
+     * callback.
+     */
+    public LatencyHistogram getSatelliteViewListenerTime() {
+        return satelliteViewListenerTime;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
+    @Override
+    public void reset() {
+        for (RateCounter counter : sentenceCounters) {
+            counter.reset();
+        }
+
+        invalidSentenceCount.set(0);
+        ignoredSentenceCount.set(0);
+        discardedEpochCount.set(0);
+        listenerErrorCount.set(0);
+
+        for (LatencyHistogram histogram : latencyHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("NmeaParserMetrics [sentenceCounts=");
+        builder.append(getSentenceCounts());
+        builder.append(", invalidSentenceCount=");
+        builder.append(getInvalidSentenceCount());
+        builder.append(", ignoredSentenceCount=");
+        builder.append(getIgnoredSentenceCount());
+        builder.append(", discardedEpochCount=");
+        builder.append(getDiscardedEpochCount());
+        builder.append(", listenerErrorCount=");
+        builder.append(getListenerErrorCount());
+        builder.append(", latencyHistograms=");
+        builder.append(latencyHistograms);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -25,9 +25,16 @@ import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
  *
  * @author David Valeri
  */
-class NmeaRouteManager extends AbstractRouteManager implements NmeaSentenceListener {
+class NmeaRouteManager extends AbstractRouteManager implements NmeaSentenceListener,
+        FixListener {
     
     private Class<? extends AbstractNmeaSentence> sentenceType = GgaSentence.class; 
+    
+    @Override
+    public void receiveFix(FixAccumulator fix) {
+        processUpdate(fix.getLatitude(), fix.getLongitude(), fix.getTime(),
+                fix.getReceivedTime(), fix.getFirstByteNanoTime());
+    }
 
     @Override
     public void receiveSentence(AbstractNmeaSentence sentence) {
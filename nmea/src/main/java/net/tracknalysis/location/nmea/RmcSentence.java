@@ -46,7 +46,10 @@ public class RmcSentence extends AbstractNmeaSentence {
         ESTIMATED,
         MANUAL,
         SIMULATED,
-        NOT_VALID;
+        NOT_VALID,
+        PRECISE,
+        RTK,
+        FLOAT_RTK;
     }
 
     /**
@@ -0,0 +1,299 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+/**
+ * A mutable, reusable table of the satellites in view for each constellation during a single
+ * epoch.  The table is assembled from the parts of the multi-part GSV messages reported by a
+ * GPS device through {@link #acceptGsv(Constellation, int, int, int, int[], int, long)}.
+ * All storage is allocated up front so that assembly does not allocate.
+ * <p/>
+ * A constellation is complete once all parts of its GSV message have been received in order.
+ * A part received out of order discards the partially assembled data for the constellation.
+ * <p/>
+ * Instances are not thread safe and are intended to be owned and reused by a single parsing
+ * thread.
+ *
+ * @author David Valeri
+ */
+public final class SatelliteView {
+
+    /**
+     * The satellite constellations, identified by the talker ID of the GSV sentences reporting
+     * them.
+     */
+    public static enum Constellation {
+        GPS,
+        GLONASS,
+        GALILEO,
+        BEIDOU,
+        QZSS,
+        OTHER;
+
+        /**
+         * Returns the constellation reported by the talker ID, e.g. "GP" or "GL".
+         */
+        public static Constellation forTalkerId(char first, char second) {
+            if (first == 'G') {
+                switch (second) {
+                    case 'P':
+                        return GPS;
+                    case 'L':
+                        return GLONASS;
+                    case 'A':
+                        return GALILEO;
+                    case 'B':
+                        return BEIDOU;
+                    case 'Q':
+                        return QZSS;
+                    default:
+                        return OTHER;
+                }
+            } else if (first == 'B' && second == 'D') {
+                return BEIDOU;
+            } else {
+                return OTHER;
+            }
+        }
+    }
+
+    /**
+     * The maximum number of satellites retained per constellation.  Additional satellites are
+     * counted in {@link #getSatellitesInView(Constellation)} but not retained.
+     */
+    public static final int MAX_SATELLITES = 64;
+
+    /**
+     * The value reported for an elevation, azimuth or SNR that was not provided by the device,
+     * e.g. the SNR of a satellite in view that is not being tracked.
+     */
+    public static final int NOT_AVAILABLE = -1;
+
+    private static final Constellation[] CONSTELLATIONS = Constellation.values();
+
+    private final int[] satellitesInView = new int[CONSTELLATIONS.length];
+    private final int[] satelliteCount = new int[CONSTELLATIONS.length];
+    private final int[] nextMessageNumber = new int[CONSTELLATIONS.length];
+    private final boolean[] complete = new boolean[CONSTELLATIONS.length];
+    private final int[][] prn = new int[CONSTELLATIONS.length][MAX_SATELLITES];
+    private final int[][] elevation = new int[CONSTELLATIONS.length][MAX_SATELLITES];
+    private final int[][] azimuth = new int[CONSTELLATIONS.length][MAX_SATELLITES];
+    private final int[][] snr = new int[CONSTELLATIONS.length][MAX_SATELLITES];
+    private long receivedTime;
+    private boolean empty = true;
+
+    /**
+     * Contributes one part of a GSV message to the view.
+     *
+     * @param constellation the constellation reported by the message
+     * @param messageCount the total number of parts in the message
+     * @param messageNumber the one based number of this part of the message
+     * @param satellitesInView the total number of satellites in view
+     * @param satellites the satellites reported in this part as consecutive groups of
+     *            PRN, elevation, azimuth and SNR
+     * @param count the number of satellites in {@code satellites}
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the sentence started arriving
+     */
+    public void acceptGsv(Constellation constellation, int messageCount, int messageNumber,
+            int satellitesInView, int[] satellites, int count, long receivedTime) {
+
+        int c = constellation.ordinal();
+
+        if (messageNumber == 1) {
+            this.satelliteCount[c] = 0;
+            this.complete[c] = false;
+            this.nextMessageNumber[c] = 1;
+        }
+
+        if (messageNumber != nextMessageNumber[c] || messageNumber > messageCount) {
+            discard(c);
+            return;
+        }
+
+        if (empty) {
+            empty = false;
+            this.receivedTime = receivedTime;
+        }
+
+        this.satellitesInView[c] = satellitesInView;
+
+        for (int i = 0; i < count; i++) {
+            int index = satelliteCount[c];
+
+            if (index < MAX_SATELLITES) {
+                prn[c][index] = satellites[i * 4];
+                elevation[c][index] = satellites[i * 4 + 1];
+                azimuth[c][index] = satellites[i * 4 + 2];
+                snr[c][index] = satellites[i * 4 + 3];
+                satelliteCount[c] = index + 1;
+            }
+        }
+
+        if (messageNumber == messageCount) {
+            complete[c] = true;
+            nextMessageNumber[c] = 0;
+        } else {
+            nextMessageNumber[c] = messageNumber + 1;
+        }
+    }
+
+    /**
+     * Returns true if the first part of a GSV message for a constellation that is already
+     * complete in this view starts the next epoch.
+     */
+    public boolean isStartOfNextEpoch(Constellation constellation, int messageNumber) {
+        return messageNumber == 1 && complete[constellation.ordinal()];
+    }
+
+    /**
+     * Returns true if at least one constellation is complete and no constellation is partially
+     * assembled.
+     */
+    public boolean isComplete() {
+        boolean anyComplete = false;
+
+        for (int c = 0; c < CONSTELLATIONS.length; c++) {
+            if (nextMessageNumber[c] != 0) {
+                return false;
+            }
+
+            anyComplete |= complete[c];
+        }
+
+        return anyComplete;
+    }
+
+    /**
+     * Discards all assembled data in preparation for the next epoch.
+     */
+    public void clear() {
+        for (int c = 0; c < CONSTELLATIONS.length; c++) {
+            discard(c);
+        }
+
+        receivedTime = 0;
+        empty = true;
+    }
+
+    /**
+     * Returns the time, in milliseconds since midnight January 1, 1970 UTC, at which the first
+     * sentence contributing to the view started arriving.
+     */
+    public long getReceivedTime() {
+        return receivedTime;
+    }
+
+    /**
+     * Returns true if the view contains a complete satellite table for the constellation.
+     */
+    public boolean isHasConstellation(Constellation constellation) {
+        return complete[constellation.ordinal()];
+    }
+
+    /**
+     * Returns the number of satellites in view reported by the device for the constellation.
+     */
+    public int getSatellitesInView(Constellation constellation) {
+        return complete[constellation.ordinal()]
+                ? satellitesInView[constellation.ordinal()] : 0;
+    }
+
+    /**
+     * Returns the number of satellites in the table for the constellation.
+     */
+    public int getSatelliteCount(Constellation constellation) {
+        return complete[constellation.ordinal()]
+                ? satelliteCount[constellation.ordinal()] : 0;
+    }
+
+    /**
+     * Returns the PRN of the satellite at {@code index} in the table for the constellation.
+     */
+    public int getPrn(Constellation constellation, int index) {
+        return prn[constellation.ordinal()][checkIndex(constellation, index)];
+    }
+
+    /**
+     * Returns the elevation in degrees of the satellite at {@code index} in the table for the
+     * constellation or {@link #NOT_AVAILABLE}.
+     */
+    public int getElevation(Constellation constellation, int index) {
+        return elevation[constellation.ordinal()][checkIndex(constellation, index)];
+    }
+
+    /**
+     * Returns the azimuth in degrees from true north of the satellite at {@code index} in the
+     * table for the constellation or {@link #NOT_AVAILABLE}.
+     */
+    public int getAzimuth(Constellation constellation, int index) {
+        return azimuth[constellation.ordinal()][checkIndex(constellation, index)];
+    }
+
+    /**
+     * Returns the signal to noise ratio in dB-Hz of the satellite at {@code index} in the table
+     * for the constellation or {@link #NOT_AVAILABLE} if the satellite is not being tracked.
+     */
+    public int getSnr(Constellation constellation, int index) {
+        return snr[constellation.ordinal()][checkIndex(constellation, index)];
+    }
+
+    private int checkIndex(Constellation constellation, int index) {
+        if (index < 0 || index >= getSatelliteCount(constellation)) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for "
+                    + constellation + ".");
+        }
+
+        return index;
+    }
+
+    private void discard(int c) {
+        satellitesInView[c] = 0;
+        satelliteCount[c] = 0;
+        nextMessageNumber[c] = 0;
+        complete[c] = false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("SatelliteView [receivedTime=");
+        builder.append(receivedTime);
+
+        for (Constellation constellation : CONSTELLATIONS) {
+            if (complete[constellation.ordinal()]) {
+                builder.append(", ");
+                builder.append(constellation);
+                builder.append("=[");
+
+                for (int i = 0; i < getSatelliteCount(constellation); i++) {
+                    if (i > 0) {
+                        builder.append(", ");
+                    }
+
+                    builder.append(getPrn(constellation, i));
+                    builder.append(":");
+                    builder.append(getSnr(constellation, i));
+                }
+
+                builder.append("]");
+            }
+        }
+
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+
+/**
+ * @author David Valeri
+ */
+public class VtgSentence extends AbstractNmeaSentence {
+
+    private float trueCourse;
+    private float magneticCourse;
+    private float speed;
+    private float speedKph;
+    private ModeIndicator modeIndicator;
+
+    /**
+     * Returns the course over ground relative to true north in degrees.
+     */
+    public float getTrueCourse() {
+        return trueCourse;
+    }
+
+    public void setTrueCourse(float trueCourse) {
+        this.trueCourse = trueCourse;
+    }
+
+    /**
+     * Returns the course over ground relative to magnetic north in degrees.
+     */
+    public float getMagneticCourse() {
+        return magneticCourse;
+    }
+
+    public void setMagneticCourse(float magneticCourse) {
+        this.magneticCourse = magneticCourse;
+    }
+
+    /**
+     * Returns the speed over ground in knots.
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the speed over ground in kilometers per hour.
+     */
+    public float getSpeedKph() {
+        return speedKph;
+    }
+
+    public void setSpeedKph(float speedKph) {
+        this.speedKph = speedKph;
+    }
+
+    public ModeIndicator getModeIndicator() {
+        return modeIndicator;
+    }
+
+    public void setModeIndicator(ModeIndicator modeIndicator) {
+        this.modeIndicator = modeIndicator;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("VtgSentence [trueCourse=");
+        builder.append(trueCourse);
+        builder.append(", magneticCourse=");
+        builder.append(magneticCourse);
+        builder.append(", speed=");
+        builder.append(speed);
+        builder.append(", speedKph=");
+        builder.append(speedKph);
+        builder.append(", modeIndicator=");
+        builder.append(modeIndicator);
+        builder.append(", getSentenceParsingStartTime()=");
+        builder.append(getSentenceParsingStartTime());
+        builder.append(", getSentenceParsingEndTime()=");
+        builder.append(getSentenceParsingEndTime());
+        builder.append(", getTalkerIdentifier()=");
+        builder.append(getTalkerIdentifier());
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+/**
+ * A time and date sentence.
+ *
+ * @author David Valeri
+ */
+public class ZdaSentence extends AbstractNmeaSentence {
+
+    private long time;
+    private int day;
+    private int month;
+    private int year;
+    private int localZoneHours;
+    private int localZoneMinutes;
+
+    /**
+     * Returns the UTC time as millisecond offset into the day.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    /**
+     * Returns the UTC day of the month, 1 - 31.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    public void setDay(int day) {
+        this.day = day;
+    }
+
+    /**
+     * Returns the UTC month of the year, 1 - 12.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    public void setMonth(int month) {
+        this.month = month;
+    }
+
+    /**
+     * Returns the four digit UTC year.
+     */
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public int getLocalZoneHours() {
+        return localZoneHours;
+    }
+
+    public void setLocalZoneHours(int localZoneHours) {
+        this.localZoneHours = localZoneHours;
+    }
+
+    public int getLocalZoneMinutes() {
+        return localZoneMinutes;
+    }
+
+    public void setLocalZoneMinutes(int localZoneMinutes) {
+        this.localZoneMinutes = localZoneMinutes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("ZdaSentence [time=");
+        builder.append(time);
+        builder.append(", day=");
+        builder.append(day);
+        builder.append(", month=");
+        builder.append(month);
+        builder.append(", year=");
+        builder.append(year);
+        builder.append(", localZoneHours=");
+        builder.append(localZoneHours);
+        builder.append(", localZoneMinutes=");
+        builder.append(localZoneMinutes);
+        builder.append(", getSentenceParsingStartTime()=");
+        builder.append(getSentenceParsingStartTime());
+        builder.append(", getSentenceParsingEndTime()=");
+        builder.append(getSentenceParsingEndTime());
+        builder.append(", getTalkerIdentifier()=");
+        builder.append(getTalkerIdentifier());
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,540 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A sparse index from GPS time to byte offset in a recorded capture of receiver output, allowing
+ * parsing to start at any time without reading the capture from the beginning.  Each entry is
+ * the offset of the first sentence or frame reporting a time at least the index interval after
+ * the previous entry.  Lookups are a binary search over the entries.
+ * <p/>
+ * Times are in milliseconds since the start of the UTC day of the first time in the capture,
+ * the same time of day reported by {@link net.tracknalysis.location.Location#getTime()}, with
+ * captures crossing midnight continuing past 24 hours.
+ * <p/>
+ * Indexes are built by scanning the capture and may be saved alongside it, see
+ * {@link #open(File, Format)}.
+ *
+ * @author David Valeri
+ */
+public final class TimeIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimeIndex.class);
+
+    public static final long DEFAULT_INTERVAL = 10000;
+    public static final String INDEX_SUFFIX = ".tidx";
+
+    /**
+     * The formats of capture that can be indexed.
+     */
+    public static enum Format {
+        /**
+         * NMEA 0183 text.  Times are read from GGA, RMC, GNS and ZDA sentences with a valid
+         * checksum.
+         */
+        NMEA,
+        /**
+         * u-blox UBX binary.  Times are read from NAV-PVT messages with a valid checksum and
+         * time.
+         */
+        UBX;
+    }
+
+    private static final int MAGIC = 0x54494458;
+    private static final int VERSION = 1;
+    private static final long MILLISECONDS_PER_DAY = 24 * 60 * 60 * 1000;
+    private static final int MAX_NMEA_SENTENCE_LENGTH = 128;
+
+    // UBX protocol constants, see net.tracknalysis.location.nmea.ubx.UbxFrameDecoder.
+    private static final int UBX_SYNC_CHAR_1 = 0xB5;
+    private static final int UBX_SYNC_CHAR_2 = 0x62;
+    private static final int UBX_CLASS_NAV = 0x01;
+    private static final int UBX_ID_NAV_PVT = 0x07;
+    private static final int UBX_NAV_PVT_LENGTH = 92;
+    private static final int UBX_VALID_TIME = 0x02;
+
+    private final Format format;
+    private final long interval;
+    private int size;
+    private long[] times;
+    private long[] offsets;
+    /**
+     * The number of midnights crossed while scanning.
+     */
+    private long day;
+    private long lastTimeOfDay = -1;
+
+    private TimeIndex(Format format, long interval, int capacity) {
+        this.format = format;
+        this.interval = interval;
+        times = new long[Math.max(capacity, 16)];
+        offsets = new long[times.length];
+    }
+
+    /**
+     * Returns the index saved alongside {@code capture} if it is current, otherwise builds an
+     * index with the default interval and attempts to save it alongside the capture.
+     *
+     * @param capture the capture file
+     * @param format the format of the capture
+     *
+     * @throws IOException if the capture cannot be read
+     */
+    public static TimeIndex open(File capture, Format format) throws IOException {
+        File indexFile = getIndexFile(capture);
+
+        if (indexFile.isFile() && indexFile.lastModified() >= capture.lastModified()) {
+            try {
+                TimeIndex index = read(indexFile, capture.length());
+                if (index.getFormat() == format) {
+                    return index;
+                }
+            } catch (IOException e) {
+                LOG.warn("Ignoring invalid time index " + indexFile + ".", e);
+            }
+        }
+
+        TimeIndex index = build(capture, format, DEFAULT_INTERVAL);
+
+        try {
+            index.write(indexFile, capture.length());
+        } catch (IOException e) {
+            LOG.warn("Unable to save time index " + indexFile + ".", e);
+        }
+
+        return index;
+    }
+
+    /**
+     * Builds an index of {@code capture} by scanning it.
+     *
+     * @param capture the capture file
+     * @param format the format of the capture
+     * @param interval the minimum time, in milliseconds, between entries
+     *
+     * @throws IOException if the capture cannot be read
+     */
+    public static TimeIndex build(File capture, Format format, long interval)
+            throws IOException {
+
+        InputStream in = new FileInputStream(capture);
+        try {
+            return build(in, format, interval);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Builds an index of the capture read from {@code in}, with offsets relative to the first
+     * byte read.
+     *
+     * @see #build(File, Format, long)
+     */
+    public static TimeIndex build(InputStream in, Format format, long interval)
+            throws IOException {
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive.");
+        }
+
+        TimeIndex index = new TimeIndex(format, interval, 0);
+        InputStream bufferedIn = new BufferedInputStream(in, 65536);
+
+        switch (format) {
+            case NMEA:
+                index.scanNmea(bufferedIn);
+                break;
+            case UBX:
+                index.scanUbx(bufferedIn);
+                break;
+        }
+
+        return index;
+    }
+
+    /**
+     * Reads an index written by {@link #write(File, long)}.
+     *
+     * @param indexFile the file containing the index
+     * @param captureLength the length of the capture the index must describe
+     *
+     * @throws IOException if the index cannot be read, is invalid or describes a capture of a
+     *             different length
+     */
+    public static TimeIndex read(File indexFile, long captureLength) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Invalid time index header.");
+            }
+
+            Format format = Format.values()[in.readInt()];
+            long interval = in.readLong();
+
+            if (in.readLong() != captureLength) {
+                throw new IOException("Time index is for a capture of a different length.");
+            }
+
+            int size = in.readInt();
+            TimeIndex index = new TimeIndex(format, interval, size);
+            for (int i = 0; i < size; i++) {
+                index.add(in.readLong(), in.readLong());
+            }
+
+            return index;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid time index format.");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index to {@code indexFile}.
+     *
+     * @param indexFile the file to write
+     * @param captureLength the length of the capture the index describes
+     *
+     * @throws IOException if the index cannot be written
+     */
+    public void write(File indexFile, long captureLength) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(format.ordinal());
+            out.writeLong(interval);
+            out.writeLong(captureLength);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(times[i]);
+                out.writeLong(offsets[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the file in which the index of {@code capture} is saved.
+     */
+    public static File getIndexFile(File capture) {
+        return new File(capture.getPath() + INDEX_SUFFIX);
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the number of entries in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getTime(int entry) {
+        checkEntry(entry);
+        return times[entry];
+    }
+
+    public long getOffset(int entry) {
+        checkEntry(entry);
+        return offsets[entry];
+    }
+
+    /**
+     * Returns the index of the last entry at or before {@code time}, or -1 if {@code time}
+     * precedes the first entry.
+     */
+    public int getEntry(long time) {
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (times[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return high;
+    }
+
+    /**
+     * Returns the offset at which to start parsing to receive all input at or after
+     * {@code time}.  This is the offset of the last entry at or before {@code time}, or 0 if
+     * {@code time} precedes the first entry.
+     */
+    public long getOffset(long time) {
+        int entry = getEntry(time);
+        return entry == -1 ? 0 : offsets[entry];
+    }
+
+    /**
+     * Opens {@code capture} positioned to start parsing at {@code time}.
+     *
+     * @see #getOffset(long)
+     */
+    public InputStream openStream(File capture, long time) throws IOException {
+        FileInputStream in = new FileInputStream(capture);
+        try {
+            in.getChannel().position(getOffset(time));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private void checkEntry(int entry) {
+        if (entry < 0 || entry >= size) {
+            throw new IndexOutOfBoundsException("Entry " + entry + " of " + size + ".");
+        }
+    }
+
+    private void add(long time, long offset) {
+        if (size == times.length) {
+            long[] newTimes = new long[size * 2];
+            long[] newOffsets = new long[size * 2];
+            System.arraycopy(times, 0, newTimes, 0, size);
+            System.arraycopy(offsets, 0, newOffsets, 0, size);
+            times = newTimes;
+            offsets = newOffsets;
+        }
+
+        times[size] = time;
+        offsets[size] = offset;
+        size++;
+    }
+
+    /**
+     * Adds an entry for the time of day scanned at {@code offset} if it is at least the interval
+     * after the last entry.  Times of day are unwrapped into continuous time when they jump back
+     * by more than half a day.
+     */
+    private void indexTime(long timeOfDay, long offset) {
+        if (lastTimeOfDay != -1 && timeOfDay < lastTimeOfDay - MILLISECONDS_PER_DAY / 2) {
+            day++;
+        }
+        lastTimeOfDay = timeOfDay;
+
+        long time = day * MILLISECONDS_PER_DAY + timeOfDay;
+        if (size == 0 || time >= times[size - 1] + interval) {
+            add(time, offset);
+        }
+    }
+
+    private void scanNmea(InputStream in) throws IOException {
+        byte[] sentence = new byte[MAX_NMEA_SENTENCE_LENGTH];
+        int length = -1;
+        long sentenceOffset = 0;
+        long offset = 0;
+        int b;
+
+        while ((b = in.read()) != -1) {
+            if (b == '$') {
+                sentenceOffset = offset;
+                length = 0;
+            } else if (b == '\r' || b == '\n') {
+                if (length > 0) {
+                    long timeOfDay = parseNmeaTime(sentence, length);
+                    if (timeOfDay != -1) {
+                        indexTime(timeOfDay, sentenceOffset);
+                    }
+                }
+                length = -1;
+            } else if (length != -1) {
+                if (length == sentence.length) {
+                    length = -1;
+                } else {
+                    sentence[length++] = (byte) b;
+                }
+            }
+
+            offset++;
+        }
+    }
+
+    /**
+     * Returns the time of day in milliseconds reported by the sentence body in {@code sentence}
+     * or -1 if the sentence does not report a time or is invalid.
+     */
+    private static long parseNmeaTime(byte[] sentence, int length) {
+        // Body, '*' and two checksum characters.
+        if (length < 13 || sentence[length - 3] != '*') {
+            return -1;
+        }
+
+        int checksum = 0;
+        for (int i = 0; i < length - 3; i++) {
+            checksum ^= sentence[i];
+        }
+
+        int expectedChecksum = Character.digit(sentence[length - 2], 16) << 4
+                | Character.digit(sentence[length - 1], 16);
+        if (checksum != expectedChecksum) {
+            return -1;
+        }
+
+        if (!(isSentenceType(sentence, 'G', 'G', 'A')
+                || isSentenceType(sentence, 'R', 'M', 'C')
+                || isSentenceType(sentence, 'G', 'N', 'S')
+                || isSentenceType(sentence, 'Z', 'D', 'A'))
+                || sentence[5] != ',') {
+            return -1;
+        }
+
+        // hhmmss followed by an optional fraction.
+        long time = 0;
+        int i = 6;
+        for (; i < 12; i++) {
+            int digit = Character.digit(sentence[i], 10);
+            if (digit == -1) {
+                return -1;
+            }
+            time = time * 10 + digit;
+        }
+
+        long hours = time / 10000;
+        long minutes = time / 100 % 100;
+        long seconds = time % 100;
+        if (hours > 23 || minutes > 59 || seconds > 60) {
+            return -1;
+        }
+
+        long milliseconds = 0;
+        if (sentence[i] == '.') {
+            int scale = 100;
+            for (i++; i < length && sentence[i] != ',' && scale > 0; i++, scale /= 10) {
+                int digit = Character.digit(sentence[i], 10);
+                if (digit == -1) {
+                    return -1;
+                }
+                milliseconds += digit * scale;
+            }
+        }
+
+        return hours * 3600000 + minutes * 60000 + seconds * 1000 + milliseconds;
+    }
+
+    private static boolean isSentenceType(byte[] sentence, char c1, char c2, char c3) {
+        return sentence[2] == c1 && sentence[3] == c2 && sentence[4] == c3;
+    }
+
+    private void scanUbx(InputStream in) throws IOException {
+        byte[] payload = new byte[UBX_NAV_PVT_LENGTH];
+        long offset = 0;
+        int b;
+        boolean sync1 = false;
+
+        while ((b = in.read()) != -1) {
+            offset++;
+
+            if (b == UBX_SYNC_CHAR_1) {
+                sync1 = true;
+                continue;
+            }
+
+            if (!sync1 || b != UBX_SYNC_CHAR_2) {
+                sync1 = false;
+                continue;
+            }
+
+            sync1 = false;
+            long frameOffset = offset - 2;
+            in.mark(UBX_NAV_PVT_LENGTH + 8);
+
+            int messageClass = in.read();
+            int messageId = in.read();
+            int length1 = in.read();
+            int length2 = in.read();
+            if (length2 == -1) {
+                return;
+            }
+
+            int length = length1 | length2 << 8;
+            if (messageClass != UBX_CLASS_NAV || messageId != UBX_ID_NAV_PVT
+                    || length != UBX_NAV_PVT_LENGTH) {
+                // Not a frame of interest; resume the search after the synch characters.
+                in.reset();
+                continue;
+            }
+
+            int checksumA = (messageClass + messageId + length1 + length2) & 0xFF;
+            int checksumB = (4 * messageClass + 3 * messageId + 2 * length1 + length2) & 0xFF;
+
+            int count = 0;
+            while (count < UBX_NAV_PVT_LENGTH) {
+                int read = in.read(payload, count, UBX_NAV_PVT_LENGTH - count);
+                if (read == -1) {
+                    return;
+                }
+                count += read;
+            }
+
+            for (int i = 0; i < UBX_NAV_PVT_LENGTH; i++) {
+                checksumA = (checksumA + (payload[i] & 0xFF)) & 0xFF;
+                checksumB = (checksumB + checksumA) & 0xFF;
+            }
+
+            if (in.read() != checksumA || in.read() != checksumB) {
+                in.reset();
+                continue;
+            }
+
+            offset += 4 + UBX_NAV_PVT_LENGTH + 2;
+
+            if ((payload[11] & UBX_VALID_TIME) != 0) {
+                int nanoseconds = (payload[16] & 0xFF) | (payload[17] & 0xFF) << 8
+                        | (payload[18] & 0xFF) << 16 | payload[19] << 24;
+                long timeOfDay = (payload[8] & 0xFF) * 3600000L + (payload[9] & 0xFF) * 60000L
+                        + (payload[10] & 0xFF) * 1000L + Math.round(nanoseconds / 1000000d);
+
+                if (timeOfDay < 0) {
+                    timeOfDay += MILLISECONDS_PER_DAY;
+                } else if (timeOfDay >= MILLISECONDS_PER_DAY) {
+                    timeOfDay -= MILLISECONDS_PER_DAY;
+                }
+
+                indexTime(timeOfDay, frameOffset);
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of raw receiver input and the times at which it arrived, written
+ * through memory-mapped, fixed size segment files in a directory.  Each record holds a contiguous
+ * slice of the input so that concatenating the records in order reproduces the input exactly.
+ * Read a journal back with {@link NmeaJournalReader} or replay it with
+ * {@link NmeaJournalInputStream}.
+ * <p/>
+ * A record is committed by writing its length after its content.  Each record also carries a
+ * checksum of its content so that a record torn by a crash is detected and ignored by the reader.
+ * Records survive a crash of the process once appended.  Call {@link #sync()} to also make them
+ * survive a crash of the operating system.  Opening a journal never modifies existing segments;
+ * appending continues in a new segment.
+ * <p/>
+ * Appending does not allocate except when rolling over to a new segment.  Character input is
+ * stored UTF-8 encoded, which reproduces NMEA 0183 input exactly as it is limited to ASCII.
+ *
+ * @author David Valeri
+ */
+public final class NmeaJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NmeaJournal.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    public static final int MIN_SEGMENT_SIZE = 4096;
+
+    static final String SEGMENT_SUFFIX = ".nmj";
+    static final int MAGIC = 0x4E4D4A31;
+    static final int VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 24;
+    static final int END_OF_SEGMENT = -1;
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int MAX_CHAR_LENGTH = 3;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxPayloadLength;
+
+    private MappedByteBuffer segment;
+    private long segmentSequence;
+    private int position;
+    /**
+     * The checksum of the record being written.
+     */
+    private int hash;
+    private long recordCount;
+    private long byteCount;
+    private int segmentCount;
+
+    /**
+     * Opens a journal in {@code directory} with the default segment size.
+     *
+     * @see #NmeaJournal(File, int)
+     */
+    public NmeaJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal in {@code directory}, creating the directory if needed.  Appending starts in
+     * a new segment following any existing segments.
+     *
+     * @param directory the directory containing the segment files
+     * @param segmentSize the size of each segment file in bytes
+     *
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+    public NmeaJournal(File directory, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("The segment size must be at least "
+                    + MIN_SEGMENT_SIZE + " bytes.");
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory " + directory + ".");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        maxPayloadLength = segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE;
+
+        File[] segmentFiles = listSegments(directory);
+        segmentSequence = segmentFiles.length == 0
+                ? 0 : getSequence(segmentFiles[segmentFiles.length - 1]) + 1;
+        openSegment();
+    }
+
+    /**
+     * Appends the characters in {@code chars} from {@code start}, inclusive, to {@code end},
+     * exclusive, as one record.  Input longer than a segment is split across records.
+     *
+     * @param chars the input
+     * @param start the index of the first character to append
+     * @param end the index after the last character to append
+     * @param time the time, in milliseconds since midnight January 1, 1970 UTC, at which the
+     *            input arrived
+     * @param nanoTime the {@link System#nanoTime()} at which the input arrived
+     *
+     * @throws IOException if the journal is closed or a new segment cannot be created
+     */
+    public synchronized void append(CharSequence chars, int start, int end, long time,
+            long nanoTime) throws IOException {
+
+        while (start < end) {
+            int chunkEnd = Math.min(end, start + maxPayloadLength / MAX_CHAR_LENGTH);
+            ensureCapacity((chunkEnd - start) * MAX_CHAR_LENGTH);
+
+            int index = position + RECORD_HEADER_SIZE;
+            hash = seed(time, nanoTime);
+            for (int i = start; i < chunkEnd; i++) {
+                char c = chars.charAt(i);
+
+                if (c < 0x80) {
+                    index = put(index, (byte) c);
+                } else if (c < 0x800) {
+                    index = put(index, (byte) (0xC0 | c >> 6));
+                    index = put(index, (byte) (0x80 | c & 0x3F));
+                } else {
+                    index = put(index, (byte) (0xE0 | c >> 12));
+                    index = put(index, (byte) (0x80 | c >> 6 & 0x3F));
+                    index = put(index, (byte) (0x80 | c & 0x3F));
+                }
+            }
+
+            commit(index - position - RECORD_HEADER_SIZE, time, nanoTime);
+            start = chunkEnd;
+        }
+    }
+
+    /**
+     * Appends {@code length} bytes of {@code bytes} from {@code offset} as one record.  Input
+     * longer than a segment is split across records.
+     *
+     * @param bytes the input
+     * @param offset the index of the first byte to append
+     * @param length the number of bytes to append
+     * @param time the time, in milliseconds since midnight January 1, 1970 UTC, at which the
+     *            input arrived
+     * @param nanoTime the {@link System#nanoTime()} at which the input arrived
+     *
+     * @throws IOException if the journal is closed or a new segment cannot be created
+     */
+    public synchronized void append(byte[] bytes, int offset, int length, long time,
+            long nanoTime) throws IOException {
+
+        while (length > 0) {
+            int chunkLength = Math.min(length, maxPayloadLength);
+            ensureCapacity(chunkLength);
+
+            int index = position + RECORD_HEADER_SIZE;
+            hash = seed(time, nanoTime);
+            for (int i = 0; i < chunkLength; i++) {
+                index = put(index, bytes[offset + i]);
+            }
+
+            commit(chunkLength, time, nanoTime);
+            offset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    /**
+     * Forces the appended records to storage.
+     */
+    public synchronized void sync() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Forces the appended records to storage and closes the journal.  Does nothing if already
+     * closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+            LOG.info("Closed NMEA journal {} after {} records in {} segments.",
+                    new Object[] {directory, recordCount, segmentCount});
+        }
+    }
+
+    /**
+     * Returns the number of records appended since the journal was opened.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the number of bytes of input appended since the journal was opened.
+     */
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of segments created since the journal was opened.
+     */
+    public synchronized int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private void ensureCapacity(int payloadLength) throws IOException {
+        if (segment == null) {
+            throw new IOException("Journal " + directory + " is closed.");
+        }
+
+        if (position + RECORD_HEADER_SIZE + payloadLength > segmentSize) {
+            if (position + 4 <= segmentSize) {
+                segment.putInt(position, END_OF_SEGMENT);
+            }
+            segment.force();
+            segmentSequence++;
+            openSegment();
+        }
+    }
+
+    /**
+     * Writes a byte of record content, updating the checksum of the record, and returns the index
+     * of the next byte.
+     */
+    private int put(int index, byte b) {
+        segment.put(index, b);
+        hash = update(hash, b);
+        return index + 1;
+    }
+
+    /**
+     * Writes the header of the record whose content has been written at {@link #position},
+     * committing it last by writing its length.
+     */
+    private void commit(int payloadLength, long time, long nanoTime) {
+        int payloadStart = position + RECORD_HEADER_SIZE;
+
+        segment.putInt(position + 4, finish(hash, payloadLength));
+        segment.putLong(position + 8, time);
+        segment.putLong(position + 16, nanoTime);
+        segment.putInt(position, payloadLength);
+
+        // Keep records 8 byte aligned.
+        position = (payloadStart + payloadLength + 7) & ~7;
+        recordCount++;
+        byteCount += payloadLength;
+    }
+
+    private void openSegment() throws IOException {
+        File file = new File(directory, toSegmentName(segmentSequence));
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (randomAccessFile.length() != 0) {
+                throw new IOException("Journal segment " + file + " already exists.");
+            }
+
+            randomAccessFile.setLength(segmentSize);
+            // The mapping remains valid after the file is closed.
+            segment = randomAccessFile.getChannel().map(
+                    FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putLong(8, segmentSequence);
+        segment.putLong(16, System.currentTimeMillis());
+        position = SEGMENT_HEADER_SIZE;
+        segmentCount++;
+        LOG.debug("Opened NMEA journal segment {}.", file);
+    }
+
+    /**
+     * Returns the initial checksum of a record.  The checksum of a record is an FNV-1a hash of
+     * its times, content and length.
+     */
+    static int seed(long time, long nanoTime) {
+        int hash = (FNV_OFFSET_BASIS ^ (int) (time ^ time >>> 32)) * FNV_PRIME;
+        return (hash ^ (int) (nanoTime ^ nanoTime >>> 32)) * FNV_PRIME;
+    }
+
+    static int update(int hash, byte b) {
+        return (hash ^ (b & 0xFF)) * FNV_PRIME;
+    }
+
+    static int finish(int hash, int payloadLength) {
+        return (hash ^ payloadLength) * FNV_PRIME;
+    }
+
+    /**
+     * Returns the segment files in {@code directory} in the order they were written.
+     */
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        // Names are zero padded so lexical order is sequence order.
+        Arrays.sort(files);
+        return files;
+    }
+
+    static String toSegmentName(long sequence) {
+        String digits = Long.toString(sequence);
+        StringBuilder builder = new StringBuilder(20 + SEGMENT_SUFFIX.length());
+        for (int i = digits.length(); i < 20; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits).append(SEGMENT_SUFFIX).toString();
+    }
+
+    private static long getSequence(File segmentFile) throws IOException {
+        String name = segmentFile.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid journal segment name " + segmentFile + ".");
+        }
+    }
+}
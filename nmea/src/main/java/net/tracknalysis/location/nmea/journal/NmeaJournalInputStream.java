@@ -0,0 +1,145 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.journal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays the input recorded in an {@link NmeaJournal}.  The bytes returned are those that were
+ * appended, so a parser reading from this stream sees the same input as the parser that wrote the
+ * journal.  Wrap in a {@link net.tracknalysis.common.io.StreamSocketManager} to replay through
+ * a location manager.
+ *
+ * @author David Valeri
+ */
+public class NmeaJournalInputStream extends InputStream {
+
+    /**
+     * The largest difference, in nanoseconds, between the nano time and millisecond time intervals
+     * between records from the same run.
+     */
+    private static final long MAX_CLOCK_DIFFERENCE = 1000000000L;
+
+    private final NmeaJournalReader reader;
+    private final boolean paced;
+    private int position;
+    private boolean started;
+    private long previousRecordTime;
+    private long previousRecordNanoTime;
+    private long releaseNanoTime;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param reader the reader of the journal to replay
+     * @param paced true to release each record no earlier than its arrival relative to the
+     *            previous record, false to replay as fast as the input is consumed
+     */
+    public NmeaJournalInputStream(NmeaJournalReader reader, boolean paced) {
+        this.reader = reader;
+        this.paced = paced;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return reader.getPayload()[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(length, reader.getLength() - position);
+        System.arraycopy(reader.getPayload(), position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return started ? reader.getLength() - position : 0;
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (!started || position == reader.getLength()) {
+            if (!reader.next()) {
+                return false;
+            }
+
+            position = 0;
+
+            if (paced) {
+                pace();
+            }
+
+            started = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Delays until the current record is due.  The arrival times of records in the same run are
+     * compared using their nano times.  Records from different runs, whose nano times are not
+     * comparable, fall back to their millisecond times.
+     */
+    private void pace() throws IOException {
+        long time = reader.getTime();
+        long nanoTime = reader.getNanoTime();
+
+        if (!started) {
+            releaseNanoTime = System.nanoTime();
+        } else {
+            long interval = nanoTime - previousRecordNanoTime;
+            long wallInterval = (time - previousRecordTime) * 1000000L;
+
+            if (interval < 0 || Math.abs(interval - wallInterval) > MAX_CLOCK_DIFFERENCE) {
+                interval = Math.max(0, wallInterval);
+            }
+
+            releaseNanoTime += interval;
+            long delay = releaseNanoTime - System.nanoTime();
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while pacing replay.");
+                }
+            }
+        }
+
+        previousRecordTime = time;
+        previousRecordNanoTime = nanoTime;
+    }
+}
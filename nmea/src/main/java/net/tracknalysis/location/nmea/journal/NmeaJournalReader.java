@@ -0,0 +1,205 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the records of an {@link NmeaJournal} in the order they were appended.  Reading stops
+ * at the end of the records in each segment, including at a record torn by a crash, and
+ * continues with the next segment.
+ *
+ * @author David Valeri
+ */
+public final class NmeaJournalReader implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NmeaJournalReader.class);
+
+    private final File[] segmentFiles;
+    private int segmentIndex = -1;
+    private MappedByteBuffer segment;
+    private int position;
+
+    private int length;
+    private long time;
+    private long nanoTime;
+    private byte[] payload = new byte[128];
+    private long tornRecordCount;
+
+    /**
+     * Opens the journal in {@code directory} for reading.  Segments appended after the reader is
+     * opened are not read.
+     *
+     * @param directory the directory containing the segment files
+     *
+     * @throws IOException if {@code directory} is not a directory
+     */
+    public NmeaJournalReader(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("Journal directory " + directory + " does not exist.");
+        }
+
+        segmentFiles = NmeaJournal.listSegments(directory);
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return true if there is a record, false if the end of the journal has been reached
+     *
+     * @throws IOException if a segment cannot be read
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment == null) {
+                if (segmentIndex + 1 >= segmentFiles.length) {
+                    return false;
+                }
+
+                openSegment(segmentFiles[++segmentIndex]);
+                continue;
+            }
+
+            if (readRecord()) {
+                return true;
+            }
+
+            segment = null;
+        }
+    }
+
+    /**
+     * Returns the time, in milliseconds since midnight January 1, 1970 UTC, at which the input in
+     * the current record arrived.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which the input in the current record arrived.
+     * Only comparable between records appended by the same process.
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    /**
+     * Returns the number of bytes of input in the current record.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the buffer holding the input in the current record in its first
+     * {@link #getLength()} bytes.  The buffer is reused by subsequent records.
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns the number of records discarded so far because their checksum did not match their
+     * content.
+     */
+    public long getTornRecordCount() {
+        return tornRecordCount;
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        segmentIndex = segmentFiles.length;
+    }
+
+    private void openSegment(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            segment = randomAccessFile.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (segment.capacity() < NmeaJournal.SEGMENT_HEADER_SIZE
+                || segment.getInt(0) != NmeaJournal.MAGIC
+                || segment.getInt(4) != NmeaJournal.VERSION) {
+            LOG.warn("Skipping invalid journal segment {}.", file);
+            segment = null;
+        } else {
+            position = NmeaJournal.SEGMENT_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Reads the record at the current position of the current segment.
+     *
+     * @return true if a record was read, false if there are no more records in the segment
+     */
+    private boolean readRecord() {
+        if (position + NmeaJournal.RECORD_HEADER_SIZE > segment.capacity()) {
+            return false;
+        }
+
+        int recordLength = segment.getInt(position);
+        if (recordLength == 0 || recordLength == NmeaJournal.END_OF_SEGMENT) {
+            return false;
+        }
+
+        int payloadStart = position + NmeaJournal.RECORD_HEADER_SIZE;
+        if (recordLength < 0 || recordLength > segment.capacity() - payloadStart) {
+            tornRecordCount++;
+            LOG.warn("Invalid record length {} in journal segment {}.", recordLength,
+                    segmentFiles[segmentIndex]);
+            return false;
+        }
+
+        int checksum = segment.getInt(position + 4);
+        long recordTime = segment.getLong(position + 8);
+        long recordNanoTime = segment.getLong(position + 16);
+
+        if (payload.length < recordLength) {
+            payload = new byte[Math.max(recordLength, payload.length * 2)];
+        }
+
+        int hash = NmeaJournal.seed(recordTime, recordNanoTime);
+        for (int i = 0; i < recordLength; i++) {
+            payload[i] = segment.get(payloadStart + i);
+            hash = NmeaJournal.update(hash, payload[i]);
+        }
+
+        if (NmeaJournal.finish(hash, recordLength) != checksum) {
+            tornRecordCount++;
+            LOG.warn("Torn record in journal segment {}.", segmentFiles[segmentIndex]);
+            return false;
+        }
+
+        length = recordLength;
+        time = recordTime;
+        nanoTime = recordNanoTime;
+        position = (payloadStart + recordLength + 7) & ~7;
+        return true;
+    }
+}
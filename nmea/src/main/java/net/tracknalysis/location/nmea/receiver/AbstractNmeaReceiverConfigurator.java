@@ -0,0 +1,71 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.receiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for {@link ReceiverConfigurator}s that configure the receiver using proprietary
+ * NMEA sentences.
+ *
+ * @author David Valeri
+ */
+public abstract class AbstractNmeaReceiverConfigurator implements ReceiverConfigurator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(
+            AbstractNmeaReceiverConfigurator.class);
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Writes {@code body}, the contents of a sentence between the leading '$' and the
+     * checksum delimiter, to the receiver as a complete sentence with checksum.
+     *
+     * @param outputStream the stream to the receiver
+     * @param body the sentence body, e.g. "PMTK220,100"
+     *
+     * @throws IOException if there is an error writing to the receiver
+     */
+    protected void writeSentence(OutputStream outputStream, String body) throws IOException {
+        String sentence = toSentence(body);
+        LOG.debug("Sending receiver configuration sentence {}.", sentence);
+        outputStream.write(sentence.getBytes("US-ASCII"));
+        outputStream.write('\r');
+        outputStream.write('\n');
+    }
+
+    /**
+     * Returns the complete sentence, without line termination, for {@code body}.
+     */
+    static String toSentence(String body) {
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum ^= body.charAt(i);
+        }
+
+        StringBuilder builder = new StringBuilder(body.length() + 4);
+        builder.append('$');
+        builder.append(body);
+        builder.append('*');
+        builder.append(HEX_DIGITS[(checksum >> 4) & 0x0F]);
+        builder.append(HEX_DIGITS[checksum & 0x0F]);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.receiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures receivers based on MediaTek chipsets, such as the QStarz 818XT, using PMTK
+ * commands.  Sentence output is set with PMTK314 and the fix interval with PMTK220.
+ *
+ * @author David Valeri
+ */
+public class MtkReceiverConfigurator extends AbstractNmeaReceiverConfigurator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MtkReceiverConfigurator.class);
+
+    /**
+     * The sentence types in the order of the PMTK314 output frequency fields.  Null entries are
+     * reserved or unsupported fields that are always disabled.
+     */
+    private static final String[] PMTK314_SENTENCE_TYPES = {
+        "GLL", "RMC", "VTG", "GGA", "GSA", "GSV", null, null, null, null, null, null, null,
+        null, null, null, null, "ZDA", null};
+
+    @Override
+    public void configure(OutputStream outputStream, Set<String> sentenceTypes, int fixInterval)
+            throws IOException {
+
+        StringBuilder body = new StringBuilder("PMTK314");
+        int supported = 0;
+
+        for (String sentenceType : PMTK314_SENTENCE_TYPES) {
+            boolean enabled = sentenceType != null && sentenceTypes.contains(sentenceType);
+            body.append(enabled ? ",1" : ",0");
+
+            if (enabled) {
+                supported++;
+            }
+        }
+
+        if (supported != sentenceTypes.size()) {
+            LOG.warn("Some of the sentence types {} are not supported by PMTK314.  Supported "
+                    + "sentence types are GLL, RMC, VTG, GGA, GSA, GSV and ZDA.", sentenceTypes);
+        }
+
+        writeSentence(outputStream, body.toString());
+
+        if (fixInterval > 0) {
+            writeSentence(outputStream, "PMTK220," + fixInterval);
+        }
+
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.receiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Strategy for configuring a family of GPS receivers to emit only the sentence types that will
+ * be consumed and to report fixes at the requested rate.  Reducing the output at the source
+ * avoids reading, framing and discarding sentences that no listener uses.
+ *
+ * @author David Valeri
+ */
+public interface ReceiverConfigurator {
+
+    /**
+     * Writes the vendor commands that configure the receiver.
+     *
+     * @param outputStream the stream to the receiver
+     * @param sentenceTypes the NMEA sentence types, e.g. "GGA", that the receiver should emit.
+     *            All other sentence types supported by the configurator are disabled.
+     * @param fixInterval the interval between fixes in milliseconds or 0 to leave the
+     *            receiver's fix rate unchanged
+     *
+     * @throws IOException if there is an error writing to the receiver
+     */
+    void configure(OutputStream outputStream, Set<String> sentenceTypes, int fixInterval)
+            throws IOException;
+}
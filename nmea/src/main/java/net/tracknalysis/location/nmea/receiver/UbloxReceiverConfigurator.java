@@ -0,0 +1,149 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.receiver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures u-blox receivers.  The output rate of each standard NMEA sentence type is set on
+ * all ports with PUBX,40 and the fix interval is set with a UBX CFG-RATE message.  Receivers
+ * decoded as UBX are instead configured by {@link #configureNavPvt(OutputStream, int)} to
+ * output NAV-PVT messages and no NMEA sentences.
+ * <p/>
+ * The configuration is validated before anything is written to the receiver.
+ *
+ * @author David Valeri
+ */
+public class UbloxReceiverConfigurator extends AbstractNmeaReceiverConfigurator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UbloxReceiverConfigurator.class);
+
+    private static final String[] PUBX40_SENTENCE_TYPES = {
+        "GGA", "GLL", "GSA", "GSV", "RMC", "VTG", "GNS", "ZDA", "GRS", "GST"};
+
+    private static final int CLASS_CFG = 0x06;
+    private static final int ID_CFG_MSG = 0x01;
+    private static final int ID_CFG_RATE = 0x08;
+    private static final int CLASS_NAV = 0x01;
+    private static final int ID_NAV_PVT = 0x07;
+    private static final int TIME_REFERENCE_GPS = 1;
+
+    @Override
+    public void configure(OutputStream outputStream, Set<String> sentenceTypes, int fixInterval)
+            throws IOException {
+
+        validateFixInterval(fixInterval);
+
+        Set<String> unsupportedSentenceTypes = new HashSet<String>(sentenceTypes);
+        unsupportedSentenceTypes.removeAll(Arrays.asList(PUBX40_SENTENCE_TYPES));
+        if (!unsupportedSentenceTypes.isEmpty()) {
+            LOG.warn("Sentence types {} are not supported by PUBX,40.",
+                    unsupportedSentenceTypes);
+        }
+
+        writeNmeaRates(outputStream, sentenceTypes);
+        writeFixInterval(outputStream, fixInterval);
+        outputStream.flush();
+    }
+
+    /**
+     * Configures the receiver to output a UBX NAV-PVT message for each fix on all ports and to
+     * output no standard NMEA sentences.
+     *
+     * @param outputStream the stream to the receiver
+     * @param fixInterval the interval between fixes in milliseconds or 0 to leave the
+     *            receiver's fix rate unchanged
+     *
+     * @throws IOException if there is an error writing to the receiver
+     * @throws IllegalArgumentException if the fix interval is outside of the range supported
+     *             by the receiver
+     */
+    public void configureNavPvt(OutputStream outputStream, int fixInterval) throws IOException {
+        validateFixInterval(fixInterval);
+
+        writeNmeaRates(outputStream, Collections.<String>emptySet());
+
+        // Message class and ID followed by the DDC, USART 1, USART 2, USB, SPI and reserved
+        // port rates
+        writeUbxMessage(outputStream, CLASS_CFG, ID_CFG_MSG, new byte[] {
+                CLASS_NAV, ID_NAV_PVT, 1, 1, 1, 1, 1, 0});
+        writeFixInterval(outputStream, fixInterval);
+        outputStream.flush();
+    }
+
+    private static void validateFixInterval(int fixInterval) {
+        if (fixInterval < 0 || fixInterval > 0xFFFF) {
+            throw new IllegalArgumentException("Fix interval " + fixInterval
+                    + "ms is outside of the supported measurement rates.");
+        }
+    }
+
+    private void writeNmeaRates(OutputStream outputStream, Set<String> sentenceTypes)
+            throws IOException {
+        for (String sentenceType : PUBX40_SENTENCE_TYPES) {
+            int rate = sentenceTypes.contains(sentenceType) ? 1 : 0;
+
+            // DDC, USART 1, USART 2, USB and SPI rates followed by a reserved field
+            writeSentence(outputStream, "PUBX,40," + sentenceType + "," + rate + "," + rate
+                    + "," + rate + "," + rate + "," + rate + ",0");
+        }
+    }
+
+    private static void writeFixInterval(OutputStream outputStream, int fixInterval)
+            throws IOException {
+        if (fixInterval > 0) {
+            writeUbxMessage(outputStream, CLASS_CFG, ID_CFG_RATE, new byte[] {
+                    (byte) fixInterval, (byte) (fixInterval >> 8),
+                    1, 0,
+                    TIME_REFERENCE_GPS, 0});
+        }
+    }
+
+    /**
+     * Writes a UBX frame, including the Fletcher checksum, to the receiver.
+     */
+    static void writeUbxMessage(OutputStream outputStream, int messageClass, int messageId,
+            byte[] payload) throws IOException {
+
+        byte[] frame = new byte[payload.length + 8];
+        frame[0] = (byte) 0xB5;
+        frame[1] = (byte) 0x62;
+        frame[2] = (byte) messageClass;
+        frame[3] = (byte) messageId;
+        frame[4] = (byte) payload.length;
+        frame[5] = (byte) (payload.length >> 8);
+        System.arraycopy(payload, 0, frame, 6, payload.length);
+
+        int checksumA = 0;
+        int checksumB = 0;
+        for (int i = 2; i < frame.length - 2; i++) {
+            checksumA = (checksumA + (frame[i] & 0xFF)) & 0xFF;
+            checksumB = (checksumB + checksumA) & 0xFF;
+        }
+
+        frame[frame.length - 2] = (byte) checksumA;
+        frame[frame.length - 1] = (byte) checksumB;
+        outputStream.write(frame);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * Base class for {@link FixDecoder}s that tracks the position of the current field in the
+ * sentence and handles fields that fail to decode.
+ *
+ * @author David Valeri
+ */
+abstract class AbstractFixDecoder implements FixDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractFixDecoder.class);
+
+    private final String supportedSentenceType;
+    private final int sentenceMask;
+    private int fieldIndex;
+
+    protected AbstractFixDecoder(String supportedSentenceType) {
+        this.supportedSentenceType = supportedSentenceType;
+        this.sentenceMask = FixAccumulator.getSentenceMask(supportedSentenceType);
+    }
+
+    @Override
+    public final String getSupportedSentenceType() {
+        return supportedSentenceType;
+    }
+
+    @Override
+    public final int getSentenceMask() {
+        return sentenceMask;
+    }
+
+    @Override
+    public final NmeaReaderState decodeField(StringBuilder buffer) {
+        fieldIndex++;
+
+        try {
+            return decodeField(fieldIndex, buffer);
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid {} field {}, {}.", new Object[] {supportedSentenceType,
+                    fieldIndex, buffer});
+            return NmeaReaderState.WAITING_FOR_SYNCH;
+        }
+    }
+
+    @Override
+    public void reset() {
+        fieldIndex = 0;
+    }
+
+    /**
+     * Decodes the field at {@code fieldIndex} and returns the next expected state.
+     *
+     * @param fieldIndex the one based index of the field in the sentence
+     * @param buffer the buffer containing the current fields contents
+     *
+     * @throws NumberFormatException if the field contents are invalid
+     */
+    protected abstract NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer);
+
+    /**
+     * Returns -1 for the southern and western hemispheres and 1 for the northern and eastern
+     * hemispheres.
+     *
+     * @throws NumberFormatException if the field is not a valid hemisphere indicator
+     */
+    protected static int parseHemisphere(StringBuilder buffer, char positive, char negative) {
+        if (buffer.length() == 0) {
+            return 1;
+        } else if (buffer.length() == 1) {
+            if (buffer.charAt(0) == positive) {
+                return 1;
+            } else if (buffer.charAt(0) == negative) {
+                return -1;
+            }
+        }
+
+        throw new NumberFormatException("Invalid hemisphere '" + buffer + "'.");
+    }
+}
@@ -19,6 +19,7 @@ import java.text.NumberFormat;
 import java.util.Locale;
 
 import net.tracknalysis.common.util.TimeUtil;
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
 
 /**
  * @author David Valeri
@@ -100,4 +101,32 @@ abstract class AbstractNmeaSentenceParser implements NmeaSentenceParser {
 
         return utcTime;
     }
+
+    /**
+     * Returns the mode indicator for {@code c} or null if {@code c} is not a valid mode indicator.
+     */
+    protected ModeIndicator parseNmeaModeIndicator(char c) {
+        switch (c) {
+            case 'A':
+                return ModeIndicator.AUTONOMOUS;
+            case 'D':
+                return ModeIndicator.DIFFERENTIAL;
+            case 'E':
+                return ModeIndicator.ESTIMATED;
+            case 'M':
+                return ModeIndicator.MANUAL;
+            case 'S':
+                return ModeIndicator.SIMULATED;
+            case 'N':
+                return ModeIndicator.NOT_VALID;
+            case 'P':
+                return ModeIndicator.PRECISE;
+            case 'R':
+                return ModeIndicator.RTK;
+            case 'F':
+                return ModeIndicator.FLOAT_RTK;
+            default:
+                return null;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * Interface for decoders that extract the data for a fix from specific NMEA sentence types
+ * directly into a {@link FixAccumulator} without constructing sentence objects.  Implementations
+ * must not allocate while decoding valid input.
+ *
+ * @author David Valeri
+ */
+interface FixDecoder {
+
+    /**
+     * Returns the sentence type, e.g. "GGA", handled by the decoder.
+     */
+    String getSupportedSentenceType();
+
+    /**
+     * Returns the {@link FixAccumulator} mask bit for the sentence type handled by the decoder.
+     */
+    int getSentenceMask();
+
+    /**
+     * Returns the next expected state based on current state and input.
+     *
+     * @param buffer the buffer containing the current fields contents
+     */
+    NmeaReaderState decodeField(StringBuilder buffer);
+
+    /**
+     * Contributes the decoded sentence to {@code fix}.  Called only once the complete sentence
+     * has been successfully read.
+     *
+     * @param fix the fix to contribute to
+     * @param receivedTime the time at which the sentence started arriving
+     */
+    void commit(FixAccumulator fix, long receivedTime);
+
+    void reset();
+}
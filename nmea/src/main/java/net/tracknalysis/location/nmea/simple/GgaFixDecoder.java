@@ -0,0 +1,101 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the fix data in GGA sentences.  Only sentences reporting a GPS or DGPS fix
+ * contribute to a fix.
+ *
+ * @author David Valeri
+ */
+class GgaFixDecoder extends AbstractFixDecoder {
+
+    private long time;
+    private double latitude;
+    private double longitude;
+    private boolean validFix;
+    private double altitude;
+
+    public GgaFixDecoder() {
+        super("GGA");
+        reset();
+    }
+
+    @Override
+    protected NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                time = NmeaFieldUtil.parseUtcTimeInDay(buffer);
+                break;
+            case 2:
+                if (buffer.length() > 0) {
+                    latitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 3:
+                latitude *= parseHemisphere(buffer, 'N', 'S');
+                break;
+            case 4:
+                if (buffer.length() > 0) {
+                    longitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 5:
+                longitude *= parseHemisphere(buffer, 'E', 'W');
+                break;
+            case 6:
+                if (buffer.length() != 1 || buffer.charAt(0) < '0' || buffer.charAt(0) > '8') {
+                    throw new NumberFormatException("Invalid fix quality '" + buffer + "'.");
+                }
+                // GPS or DGPS
+                validFix = buffer.charAt(0) == '1' || buffer.charAt(0) == '2';
+                break;
+            case 9:
+                if (buffer.length() > 0) {
+                    // Parsed with float precision for parity with GgaSentenceParser.
+                    altitude = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 14:
+                return NmeaReaderState.READING_CHECKSUM;
+            default:
+                // Not needed for the fix.
+        }
+
+        return NmeaReaderState.READING_FIELD;
+    }
+
+    @Override
+    public void commit(FixAccumulator fix, long receivedTime) {
+        if (validFix) {
+            fix.acceptGga(time, latitude, longitude, altitude, receivedTime);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        time = 0;
+        latitude = 0;
+        longitude = 0;
+        validFix = false;
+        altitude = 0;
+    }
+}
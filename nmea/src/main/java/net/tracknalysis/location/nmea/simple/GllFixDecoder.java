@@ -0,0 +1,93 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the fix data in GLL sentences.  Only sentences with an active status
+ * contribute to a fix.
+ *
+ * @author David Valeri
+ */
+class GllFixDecoder extends AbstractFixDecoder {
+
+    private double latitude;
+    private double longitude;
+    private long time;
+    private boolean active;
+
+    public GllFixDecoder() {
+        super("GLL");
+        reset();
+    }
+
+    @Override
+    protected NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                if (buffer.length() > 0) {
+                    latitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 2:
+                latitude *= parseHemisphere(buffer, 'N', 'S');
+                break;
+            case 3:
+                if (buffer.length() > 0) {
+                    longitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 4:
+                longitude *= parseHemisphere(buffer, 'E', 'W');
+                break;
+            case 5:
+                time = NmeaFieldUtil.parseUtcTimeInDay(buffer);
+                break;
+            case 6:
+                if (buffer.length() != 1
+                        || (buffer.charAt(0) != 'A' && buffer.charAt(0) != 'V')) {
+                    throw new NumberFormatException("Invalid status indicator '" + buffer + "'.");
+                }
+                active = buffer.charAt(0) == 'A';
+                break;
+            case 7:
+                return NmeaReaderState.READING_CHECKSUM;
+            default:
+                // Not needed for the fix.
+        }
+
+        return NmeaReaderState.READING_FIELD;
+    }
+
+    @Override
+    public void commit(FixAccumulator fix, long receivedTime) {
+        if (active) {
+            fix.acceptGll(time, latitude, longitude, receivedTime);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        latitude = 0;
+        longitude = 0;
+        time = 0;
+        active = false;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.GllSentence;
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+import net.tracknalysis.location.nmea.RmcSentence.StatusIndicator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A parser for handling of GLL sentences.
+ *
+ * @author David Valeri
+ */
+class GllSentenceParser extends AbstractNmeaSentenceParser {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(GllSentenceParser.class);
+    
+    private GllSentenceParserState sentenceParserState;
+    private GllSentence sentence;
+    private Set<String> supportedSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(
+                    Arrays.asList("GLL")));
+    
+    /**
+     * State values for {@link GllSentenceParser}.
+     */
+    private static enum GllSentenceParserState {
+        READING_LAT,
+        READING_LAT_DIR,
+        READING_LON,
+        READING_LON_DIR,
+        READING_UTC_TIME,
+        READING_STATUS_INDICATOR,
+        READING_MODE_INDICATOR;
+    }
+    
+    public GllSentenceParser() {
+        reset();
+    }
+    
+    @Override
+    public NmeaReaderState parseField(StringBuilder buffer) {
+        
+        NmeaReaderState nextNmeaReaderState = NmeaReaderState.READING_FIELD;
+        
+        switch (sentenceParserState) {
+            case READING_LAT:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setLatitude(parseNmeaLatLong(buffer));
+                    }
+                    sentenceParserState = GllSentenceParserState.READING_LAT_DIR;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA latitude format {}.", buffer);
+                }
+                break;
+            case READING_LAT_DIR:
+                sentenceParserState = GllSentenceParserState.READING_LON;
+                
+                if (buffer.length() == 1) {
+                    if ('S' == buffer.charAt(0)) {
+                        sentence.setLatitude(sentence.getLatitude() * -1);        
+                    } else if ('N' != buffer.charAt(0)) {
+                        nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                        LOG.error("Invalid NMEA latitude direction {}.", buffer);
+                    }
+                } else if (buffer.length() > 1){
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA latitude direction {}.", buffer);
+                }
+                break;
+            case READING_LON:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setLongitude(parseNmeaLatLong(buffer));
+                    }
+                    sentenceParserState = GllSentenceParserState.READING_LON_DIR;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA longitude format {}.", buffer);
+                }
+                break;
+            case READING_LON_DIR:
+                sentenceParserState = GllSentenceParserState.READING_UTC_TIME;
+                
+                if (buffer.length() == 1) {
+                    if ('W' == buffer.charAt(0)) {
+                        sentence.setLongitude(sentence.getLongitude() * -1);        
+                    } else if ('E' != buffer.charAt(0)) {
+                        nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                        LOG.error("Invalid NMEA longitude direction format {}.", buffer);
+                    }
+                } else if (buffer.length() > 1) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA longitude direction {}.", buffer);
+                }
+                break;
+            case READING_UTC_TIME:
+                try {
+                    sentence.setTime(parseNmeaUtcTimeInDay(buffer));
+                    sentenceParserState = GllSentenceParserState.READING_STATUS_INDICATOR;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA UTC time format {}.", buffer);
+                }
+                break;
+            case READING_STATUS_INDICATOR:
+                if (buffer.length() == 1) {
+                    switch (buffer.charAt(0)) {
+                        case 'A':
+                            sentence.setStatusIndicator(StatusIndicator.ACTIVE);
+                            break;
+                        case 'V':
+                            sentence.setStatusIndicator(StatusIndicator.VOID);
+                            break;
+                        default: 
+                            nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                            LOG.error("Invalid NMEA status indicator {}.", buffer);
+                    }
+                    
+                    sentenceParserState = GllSentenceParserState.READING_MODE_INDICATOR;
+                } else {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA status indicator {}.", buffer);
+                }
+                break;
+            case READING_MODE_INDICATOR:
+                nextNmeaReaderState = NmeaReaderState.READING_CHECKSUM;
+                
+                ModeIndicator modeIndicator = buffer.length() == 1
+                        ? parseNmeaModeIndicator(buffer.charAt(0)) : null;
+                
+                if (modeIndicator != null) {
+                    sentence.setModeIndicator(modeIndicator);
+                } else {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA mode indicator {}.", buffer);
+                }
+                break;
+        }
+        
+        return nextNmeaReaderState;
+    }
+    
+    @Override
+    public AbstractNmeaSentence getSentence() {
+        return sentence;
+    }
+    
+    @Override
+    public Set<String> getSupportedSentenceTypes() {
+        return supportedSentenceTypes;
+    }
+
+    @Override
+    public void reset() {
+        sentenceParserState = GllSentenceParserState.READING_LAT;
+        sentence = new GllSentence();
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the fix data in GNS sentences.  Only sentences in which at least one
+ * constellation reports a valid mode contribute to a fix.
+ *
+ * @author David Valeri
+ */
+class GnsFixDecoder extends AbstractFixDecoder {
+
+    private long time;
+    private double latitude;
+    private double longitude;
+    private boolean valid;
+    private double altitude;
+
+    public GnsFixDecoder() {
+        super("GNS");
+        reset();
+    }
+
+    @Override
+    protected NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                time = NmeaFieldUtil.parseUtcTimeInDay(buffer);
+                break;
+            case 2:
+                if (buffer.length() > 0) {
+                    latitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 3:
+                latitude *= parseHemisphere(buffer, 'N', 'S');
+                break;
+            case 4:
+                if (buffer.length() > 0) {
+                    longitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 5:
+                longitude *= parseHemisphere(buffer, 'E', 'W');
+                break;
+            case 6:
+                for (int i = 0; i < buffer.length() && !valid; i++) {
+                    char mode = buffer.charAt(i);
+                    valid = mode == 'A' || mode == 'D' || mode == 'P' || mode == 'R'
+                            || mode == 'F';
+                }
+                break;
+            case 9:
+                if (buffer.length() > 0) {
+                    // Parsed as a float for parity with GgaFixDecoder.
+                    altitude = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 12:
+                return NmeaReaderState.READING_CHECKSUM;
+            default:
+                // Not needed for the fix.
+        }
+
+        return NmeaReaderState.READING_FIELD;
+    }
+
+    @Override
+    public void commit(FixAccumulator fix, long receivedTime) {
+        if (valid) {
+            fix.acceptGns(time, latitude, longitude, altitude, receivedTime);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        time = 0;
+        latitude = 0;
+        longitude = 0;
+        valid = false;
+        altitude = 0;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.GnsSentence;
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A parser for handling of GNS sentences.
+ *
+ * @author David Valeri
+ */
+class GnsSentenceParser extends AbstractNmeaSentenceParser {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(GnsSentenceParser.class);
+    
+    private GnsSentenceParserState sentenceParserState;
+    private GnsSentence sentence;
+    private Set<String> supportedSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(
+                    Arrays.asList("GNS")));
+    
+    /**
+     * State values for {@link GnsSentenceParser}.
+     */
+    private static enum GnsSentenceParserState {
+        READING_UTC_TIME,
+        READING_LAT,
+        READING_LAT_DIR,
+        READING_LON,
+        READING_LON_DIR,
+        READING_MODE_INDICATORS,
+        READING_NUMBER_OF_SATELITES,
+        READING_HDOP,
+        READING_ALTITUDE_MSL,
+        READING_GEOIDAL_SEPARATION,
+        READING_DGPS_AGE,
+        READING_DGPS_REF_STATION_ID;
+    }
+    
+    public GnsSentenceParser() {
+        reset();
+    }
+    
+    @Override
+    public NmeaReaderState parseField(StringBuilder buffer) {
+        
+        NmeaReaderState nextNmeaReaderState = NmeaReaderState.READING_FIELD;
+        
+        switch (sentenceParserState) {
+            case READING_UTC_TIME:
+                try {
+                    sentence.setTime(parseNmeaUtcTimeInDay(buffer));
+                    sentenceParserState = GnsSentenceParserState.READING_LAT;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA UTC time format {}.", buffer);
+                }
+                break;
+            case READING_LAT:
+                try {
+                    if (buffer.length() > 0) {
+                        sentence.setLatitude(parseNmeaLatLong(buffer));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_LAT_DIR;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA latitude format {}.", buffer);
+                }
+                break;
+            case READING_LAT_DIR:
+                sentenceParserState = GnsSentenceParserState.READING_LON;
+                
+                if (buffer.length() == 1) {
+                    if ('S' == buffer.charAt(0)) {
+                        sentence.setLatitude(sentence.getLatitude() * -1);        
+                    } else if ('N' != buffer.charAt(0)) {
+                        nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                        LOG.error("Invalid NMEA latitude direction {}.", buffer);
+                    }
+                } else if (buffer.length() > 1){
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA latitude direction {}.", buffer);
+                }
+                break;
+            case READING_LON:
+                try {
+                    if (buffer.length() > 0) {
+                        sentence.setLongitude(parseNmeaLatLong(buffer));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_LON_DIR;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA longitude format {}.", buffer);
+                }
+                break;
+            case READING_LON_DIR:
+                sentenceParserState = GnsSentenceParserState.READING_MODE_INDICATORS;
+                
+                if (buffer.length() == 1) {
+                    if ('W' == buffer.charAt(0)) {
+                        sentence.setLongitude(sentence.getLongitude() * -1);
+                    } else if ('E' != buffer.charAt(0)) {
+                        nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                        LOG.error("Invalid NMEA longitude direction format {}.", buffer);
+                    }
+                } else if (buffer.length() > 1) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA longitude direction {}.", buffer);
+                }
+                break;
+            case READING_MODE_INDICATORS:
+                ModeIndicator[] modeIndicators = new ModeIndicator[buffer.length()];
+                
+                for (int i = 0; i < modeIndicators.length
+                        && nextNmeaReaderState != NmeaReaderState.WAITING_FOR_SYNCH; i++) {
+                    modeIndicators[i] = parseNmeaModeIndicator(buffer.charAt(i));
+                    
+                    if (modeIndicators[i] == null) {
+                        nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                        LOG.error("Invalid NMEA mode indicators {}.", buffer);
+                    }
+                }
+                
+                if (modeIndicators.length == 0) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA mode indicators {}.", buffer);
+                }
+                
+                sentence.setModeIndicators(modeIndicators);
+                sentenceParserState = GnsSentenceParserState.READING_NUMBER_OF_SATELITES;
+                break;
+            case READING_NUMBER_OF_SATELITES:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setNumberOfSatelites(Integer.parseInt(buffer.toString()));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_HDOP;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid number of satellites format {}.", buffer);
+                }
+                break;
+            case READING_HDOP:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setHdop(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_ALTITUDE_MSL;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid HDOP format {}.", buffer);
+                }
+                break;
+            case READING_ALTITUDE_MSL:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setAltitude(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_GEOIDAL_SEPARATION;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid altitude format {}.", buffer);
+                }
+                break;
+            case READING_GEOIDAL_SEPARATION:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setGeoidalSepraration(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_DGPS_AGE;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid geoidal separation format {}.", buffer);
+                }
+                break;
+            case READING_DGPS_AGE:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setDgpsAge(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GnsSentenceParserState.READING_DGPS_REF_STATION_ID;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid DGPS age format {}.", buffer);
+                }
+                break;
+            case READING_DGPS_REF_STATION_ID:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setDgpsRefStationId(Integer.parseInt(buffer.toString()));
+                    }
+                    nextNmeaReaderState = NmeaReaderState.READING_CHECKSUM;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid DGPS station ID format {}.", buffer);
+                }
+                break;
+        }
+        
+        return nextNmeaReaderState;
+    }
+    
+    @Override
+    public AbstractNmeaSentence getSentence() {
+        return sentence;
+    }
+    
+    @Override
+    public Set<String> getSupportedSentenceTypes() {
+        return supportedSentenceTypes;
+    }
+
+    @Override
+    public void reset() {
+        sentenceParserState = GnsSentenceParserState.READING_UTC_TIME;
+        sentence = new GnsSentence();
+    }
+}
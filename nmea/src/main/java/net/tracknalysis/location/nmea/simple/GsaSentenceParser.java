@@ -0,0 +1,162 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.GsaSentence;
+import net.tracknalysis.location.nmea.GsaSentence.FixType;
+import net.tracknalysis.location.nmea.GsaSentence.SelectionMode;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A parser for handling of GSA sentences.
+ *
+ * @author David Valeri
+ */
+class GsaSentenceParser extends AbstractNmeaSentenceParser {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(GsaSentenceParser.class);
+    
+    private GsaSentenceParserState sentenceParserState;
+    private int satelliteFieldsRead;
+    private GsaSentence sentence;
+    private Set<String> supportedSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(
+                    Arrays.asList("GSA")));
+    
+    /**
+     * State values for {@link GsaSentenceParser}.
+     */
+    private static enum GsaSentenceParserState {
+        READING_SELECTION_MODE,
+        READING_FIX_TYPE,
+        READING_SATELLITE_IDS,
+        READING_PDOP,
+        READING_HDOP,
+        READING_VDOP;
+    }
+    
+    public GsaSentenceParser() {
+        reset();
+    }
+    
+    @Override
+    public NmeaReaderState parseField(StringBuilder buffer) {
+        
+        NmeaReaderState nextNmeaReaderState = NmeaReaderState.READING_FIELD;
+        
+        switch (sentenceParserState) {
+            case READING_SELECTION_MODE:
+                if (buffer.length() == 1 && buffer.charAt(0) == 'M') {
+                    sentence.setSelectionMode(SelectionMode.MANUAL);
+                } else if (buffer.length() == 1 && buffer.charAt(0) == 'A') {
+                    sentence.setSelectionMode(SelectionMode.AUTOMATIC);
+                } else {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA selection mode {}.", buffer);
+                }
+                sentenceParserState = GsaSentenceParserState.READING_FIX_TYPE;
+                break;
+            case READING_FIX_TYPE:
+                if (buffer.length() == 1 && buffer.charAt(0) == '1') {
+                    sentence.setFixType(FixType.NO_FIX);
+                } else if (buffer.length() == 1 && buffer.charAt(0) == '2') {
+                    sentence.setFixType(FixType.FIX_2D);
+                } else if (buffer.length() == 1 && buffer.charAt(0) == '3') {
+                    sentence.setFixType(FixType.FIX_3D);
+                } else {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA fix type {}.", buffer);
+                }
+                sentenceParserState = GsaSentenceParserState.READING_SATELLITE_IDS;
+                break;
+            case READING_SATELLITE_IDS:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.addSatelliteId(Integer.parseInt(buffer.toString()));
+                    }
+                    
+                    if (++satelliteFieldsRead == GsaSentence.MAX_SATELLITES) {
+                        sentenceParserState = GsaSentenceParserState.READING_PDOP;
+                    }
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid satellite ID format {}.", buffer);
+                }
+                break;
+            case READING_PDOP:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setPdop(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GsaSentenceParserState.READING_HDOP;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid PDOP format {}.", buffer);
+                }
+                break;
+            case READING_HDOP:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setHdop(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = GsaSentenceParserState.READING_VDOP;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid HDOP format {}.", buffer);
+                }
+                break;
+            case READING_VDOP:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setVdop(parseNmeaFloat(buffer.toString()));
+                    }
+                    nextNmeaReaderState = NmeaReaderState.READING_CHECKSUM;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid VDOP format {}.", buffer);
+                }
+                break;
+        }
+        
+        return nextNmeaReaderState;
+    }
+    
+    @Override
+    public AbstractNmeaSentence getSentence() {
+        return sentence;
+    }
+    
+    @Override
+    public Set<String> getSupportedSentenceTypes() {
+        return supportedSentenceTypes;
+    }
+
+    @Override
+    public void reset() {
+        sentenceParserState = GsaSentenceParserState.READING_SELECTION_MODE;
+        satelliteFieldsRead = 0;
+        sentence = new GsaSentence();
+    }
+}
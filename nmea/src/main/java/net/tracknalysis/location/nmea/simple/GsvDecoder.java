@@ -0,0 +1,151 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.SatelliteView;
+import net.tracknalysis.location.nmea.SatelliteView.Constellation;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the parts of multi-part GSV messages.  Each part is decoded into a preallocated
+ * buffer and contributed to a {@link SatelliteView} once the complete sentence has been read.
+ * Does not allocate while decoding valid input.
+ *
+ * @author David Valeri
+ */
+class GsvDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GsvDecoder.class);
+
+    private static final int SATELLITES_PER_SENTENCE = 4;
+
+    private final int[] satellites = new int[SATELLITES_PER_SENTENCE * 4];
+    private Constellation constellation;
+    private int fieldIndex;
+    private int lastFieldIndex;
+    private int messageCount;
+    private int messageNumber;
+    private int satellitesInView;
+    private int count;
+
+    public GsvDecoder() {
+        reset(Constellation.OTHER);
+    }
+
+    /**
+     * Returns true if {@code sentenceType} is GSV.  Does not allocate.
+     */
+    public static boolean isGsv(StringBuilder sentenceType) {
+        return sentenceType.length() == 3 && sentenceType.charAt(0) == 'G'
+                && sentenceType.charAt(1) == 'S' && sentenceType.charAt(2) == 'V';
+    }
+
+    /**
+     * Returns the next expected state based on current state and input.
+     *
+     * @param buffer the buffer containing the current fields contents
+     */
+    public NmeaReaderState decodeField(StringBuilder buffer) {
+        fieldIndex++;
+
+        try {
+            return decodeField(fieldIndex, buffer);
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid GSV field {}, {}.", fieldIndex, buffer);
+            return NmeaReaderState.WAITING_FOR_SYNCH;
+        }
+    }
+
+    /**
+     * Contributes the decoded sentence to {@code view}.  Called only once the complete sentence
+     * has been successfully read.
+     *
+     * @param view the view to contribute to
+     * @param receivedTime the time at which the sentence started arriving
+     */
+    public void commit(SatelliteView view, long receivedTime) {
+        view.acceptGsv(constellation, messageCount, messageNumber, satellitesInView, satellites,
+                count, receivedTime);
+    }
+
+    /**
+     * Returns the constellation reported by the current sentence.
+     */
+    public Constellation getConstellation() {
+        return constellation;
+    }
+
+    /**
+     * Returns the one based number of the current sentence in its message.
+     */
+    public int getMessageNumber() {
+        return messageNumber;
+    }
+
+    /**
+     * Prepares the decoder for a new sentence.
+     *
+     * @param constellation the constellation identified by the talker ID of the sentence
+     */
+    public void reset(Constellation constellation) {
+        this.constellation = constellation;
+        fieldIndex = 0;
+        lastFieldIndex = 0;
+        messageCount = 0;
+        messageNumber = 0;
+        satellitesInView = 0;
+        count = 0;
+    }
+
+    private NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                messageCount = NmeaFieldUtil.parseInt(buffer);
+                break;
+            case 2:
+                messageNumber = NmeaFieldUtil.parseInt(buffer);
+                break;
+            case 3:
+                satellitesInView = NmeaFieldUtil.parseInt(buffer);
+
+                // Only the last part of the message may contain fewer than four satellites.
+                int satellitesInSentence = messageNumber < messageCount
+                        ? SATELLITES_PER_SENTENCE
+                        : satellitesInView - SATELLITES_PER_SENTENCE * (messageCount - 1);
+                satellitesInSentence = Math.max(0,
+                        Math.min(SATELLITES_PER_SENTENCE, satellitesInSentence));
+                lastFieldIndex = 3 + satellitesInSentence * 4;
+                break;
+            default:
+                int offset = fieldIndex - 4;
+
+                if (offset % 4 == 0) {
+                    satellites[offset] = NmeaFieldUtil.parseInt(buffer);
+                    count++;
+                } else {
+                    satellites[offset] = buffer.length() == 0
+                            ? SatelliteView.NOT_AVAILABLE : NmeaFieldUtil.parseInt(buffer);
+                }
+        }
+
+        return fieldIndex == lastFieldIndex
+                ? NmeaReaderState.READING_CHECKSUM : NmeaReaderState.READING_FIELD;
+    }
+}
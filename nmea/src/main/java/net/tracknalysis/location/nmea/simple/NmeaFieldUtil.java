@@ -0,0 +1,164 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+/**
+ * Allocation free parsing of individual NMEA fields directly from the parser's field buffer.
+ *
+ * @author David Valeri
+ */
+final class NmeaFieldUtil {
+
+    /**
+     * The largest number of significant digits that can be accumulated in a long and converted
+     * exactly to a double.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+    private NmeaFieldUtil() {
+    }
+
+    /**
+     * Parses a decimal number.  The result is identical to {@link Double#parseDouble(String)}.
+     *
+     * @throws NumberFormatException if the field is empty or is not a valid decimal number
+     */
+    static double parseDouble(CharSequence field) {
+        int length = field.length();
+        int i = 0;
+        boolean negative = false;
+
+        if (length > 0 && (field.charAt(0) == '-' || field.charAt(0) == '+')) {
+            negative = field.charAt(0) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDecimalPoint = false;
+
+        for (; i < length; i++) {
+            char c = field.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == MAX_EXACT_DIGITS) {
+                    // Too long for the exact fast path, fall back to the JDK.
+                    return Double.parseDouble(field.toString());
+                }
+
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+
+                if (seenDecimalPoint) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenDecimalPoint) {
+                seenDecimalPoint = true;
+            } else {
+                throw new NumberFormatException("Invalid number '" + field + "'.");
+            }
+        }
+
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid number '" + field + "'.");
+        }
+
+        // Both operands are exactly representable so the division is correctly rounded.
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number as a float.
+     *
+     * @see #parseDouble(CharSequence)
+     */
+    static float parseFloat(CharSequence field) {
+        return (float) parseDouble(field);
+    }
+
+    /**
+     * Parses an integer.
+     *
+     * @throws NumberFormatException if the field is empty or is not a valid integer
+     */
+    static int parseInt(CharSequence field) {
+        int length = field.length();
+
+        if (length == 0 || length > 9) {
+            throw new NumberFormatException("Invalid integer '" + field + "'.");
+        }
+
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value * 10 + digit(field, i);
+        }
+
+        return value;
+    }
+
+    /**
+     * Parses an NMEA latitude or longitude in the form (d)ddmm.mmmm into degrees.  The sign of the
+     * result is always positive as the hemisphere is reported in a separate field.
+     */
+    static double parseLatLong(CharSequence field) {
+        double rawValue = parseDouble(field);
+
+        // Strip out everything except the degrees
+        int degrees = (int) (rawValue / 100);
+        // Strip out degrees leaving minutes and fractional minutes
+        double minutes = rawValue - (degrees * 100);
+
+        return (double) degrees + (minutes / 60d);
+    }
+
+    /**
+     * Parses an NMEA UTC time in the form hhmmss(.sss) into a millisecond offset into the day.
+     * Fractional digits beyond millisecond precision are truncated.
+     */
+    static long parseUtcTimeInDay(CharSequence field) {
+        int length = field.length();
+
+        if (length < 6 || (length > 6 && field.charAt(6) != '.')) {
+            throw new NumberFormatException("Invalid NMEA UTC time '" + field + "'.");
+        }
+
+        int hours = digit(field, 0) * 10 + digit(field, 1);
+        int minutes = digit(field, 2) * 10 + digit(field, 3);
+        int seconds = digit(field, 4) * 10 + digit(field, 5);
+
+        int millis = 0;
+        int scale = 100;
+        for (int i = 7; i < length; i++) {
+            int digit = digit(field, i);
+            millis += digit * scale;
+            scale /= 10;
+        }
+
+        return hours * 3600000L + minutes * 60000L + seconds * 1000L + millis;
+    }
+
+    private static int digit(CharSequence field, int index) {
+        char c = field.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid digit in '" + field + "'.");
+        }
+        return c - '0';
+    }
+}
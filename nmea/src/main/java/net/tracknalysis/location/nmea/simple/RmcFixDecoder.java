@@ -0,0 +1,107 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the fix data in RMC sentences.  Only sentences with an active status
+ * contribute to a fix.
+ *
+ * @author David Valeri
+ */
+class RmcFixDecoder extends AbstractFixDecoder {
+
+    private long time;
+    private boolean active;
+    private double latitude;
+    private double longitude;
+    private float speed;
+    private float heading;
+
+    public RmcFixDecoder() {
+        super("RMC");
+        reset();
+    }
+
+    @Override
+    protected NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                time = NmeaFieldUtil.parseUtcTimeInDay(buffer);
+                break;
+            case 2:
+                if (buffer.length() != 1
+                        || (buffer.charAt(0) != 'A' && buffer.charAt(0) != 'V')) {
+                    throw new NumberFormatException("Invalid status indicator '" + buffer + "'.");
+                }
+                active = buffer.charAt(0) == 'A';
+                break;
+            case 3:
+                if (buffer.length() > 0) {
+                    latitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 4:
+                latitude *= parseHemisphere(buffer, 'N', 'S');
+                break;
+            case 5:
+                if (buffer.length() > 0) {
+                    longitude = NmeaFieldUtil.parseLatLong(buffer);
+                }
+                break;
+            case 6:
+                longitude *= parseHemisphere(buffer, 'E', 'W');
+                break;
+            case 7:
+                if (buffer.length() > 0) {
+                    speed = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 8:
+                if (buffer.length() > 0) {
+                    heading = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 12:
+                return NmeaReaderState.READING_CHECKSUM;
+            default:
+                // Not needed for the fix.
+        }
+
+        return NmeaReaderState.READING_FIELD;
+    }
+
+    @Override
+    public void commit(FixAccumulator fix, long receivedTime) {
+        if (active) {
+            fix.acceptRmc(time, latitude, longitude, speed, heading, receivedTime);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        time = 0;
+        active = false;
+        latitude = 0;
+        longitude = 0;
+        speed = 0;
+        heading = 0;
+    }
+}
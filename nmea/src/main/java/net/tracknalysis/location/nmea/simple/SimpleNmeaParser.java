@@ -16,24 +16,49 @@
 package net.tracknalysis.location.nmea.simple;
 
 import java.io.BufferedReader;
+import java.io.FilterReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.tracknalysis.common.concurrent.GracefulShutdownThread;
+import net.tracknalysis.location.metrics.PipelineProbe;
 import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.CommittableInput;
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.FixListener;
 import net.tracknalysis.location.nmea.NmeaParser;
+import net.tracknalysis.location.nmea.NmeaParserMetrics;
 import net.tracknalysis.location.nmea.NmeaSentenceListener;
+import net.tracknalysis.location.nmea.SatelliteView;
+import net.tracknalysis.location.nmea.SatelliteViewListener;
+import net.tracknalysis.location.nmea.SatelliteView.Constellation;
+import net.tracknalysis.location.nmea.journal.NmeaJournal;
 
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
 /**
+ * A character based NMEA parser.  Sentences are parsed into sentence objects only while
+ * {@link NmeaSentenceListener}s are registered.  While {@link FixListener}s are registered,
+ * the sentences contributing to a fix are also decoded directly into a reused
+ * {@link FixAccumulator} without constructing sentence objects.  While
+ * {@link SatelliteViewListener}s are registered, the parts of GSV messages are assembled into a
+ * reused {@link SatelliteView} that is published once per epoch, when the first sentence other
+ * than GSV follows a complete set of GSV messages or when the next epoch's GSV messages begin.
+ * <p/>
+ * If the input is a {@link CommittableInput}, lines are committed once they have been delivered
+ * to the registered listeners.  The lines of a fix that is not yet complete are not committed,
+ * and nothing is committed while no listener is registered or while stopping, so that such
+ * input is read again, rather than lost, when parsing resumes.
+ *
  * @author David Valeri
  */
 public class SimpleNmeaParser implements NmeaParser {
@@ -48,15 +73,53 @@ public class SimpleNmeaParser implements NmeaParser {
     private NmeaReaderThread nmeaReaderThread;
     private List<NmeaSentenceListener> listeners = 
             new CopyOnWriteArrayList<NmeaSentenceListener>();
+    private List<FixListener> fixListeners = 
+            new CopyOnWriteArrayList<FixListener>();
+    /**
+     * Snapshot of {@link #fixListeners}, replaced on modification, so that fixes are delivered
+     * without allocating an iterator.
+     */
+    private volatile FixListener[] fixListenerArray = new FixListener[0];
+    private List<SatelliteViewListener> satelliteViewListeners = 
+            new CopyOnWriteArrayList<SatelliteViewListener>();
     private Map<String, NmeaSentenceParser> sentenceParserMap;
+    private FixDecoder[] fixDecoders = new FixDecoder[0];
+    private volatile int fixSentenceMask = FixAccumulator.GGA | FixAccumulator.RMC;
+    private volatile boolean tracing;
+    private volatile PipelineProbe probe;
+    private volatile NmeaJournal journal;
+    private final NmeaParserMetrics metrics;
     
     public SimpleNmeaParser(InputStream nmeaInputStream) {
+        this(nmeaInputStream, newMetrics());
+    }
+    
+    /**
+     * Constructs a new instance recording into {@code metrics}, so that counters outlive the
+     * parser.
+     *
+     * @param nmeaInputStream the input
+     * @param metrics the metrics, typically created by {@link #newMetrics()}
+     */
+    public SimpleNmeaParser(InputStream nmeaInputStream, NmeaParserMetrics metrics) {
         super();
         this.nmeaInputStream = nmeaInputStream;
+        this.metrics = metrics;
         sentenceParserMap = new HashMap<String, NmeaSentenceParser>();
         
         registerSentenceParser(new GgaSentenceParser());
         registerSentenceParser(new RmcSentenceParser());
+        registerSentenceParser(new VtgSentenceParser());
+        registerSentenceParser(new GllSentenceParser());
+        registerSentenceParser(new GnsSentenceParser());
+        registerSentenceParser(new ZdaSentenceParser());
+        registerSentenceParser(new GsaSentenceParser());
+        
+        registerFixDecoder(new GgaFixDecoder());
+        registerFixDecoder(new RmcFixDecoder());
+        registerFixDecoder(new GllFixDecoder());
+        registerFixDecoder(new GnsFixDecoder());
+        registerFixDecoder(new VtgFixDecoder());
     }
 
     @Override
@@ -88,6 +151,89 @@ public class SimpleNmeaParser implements NmeaParser {
         listeners.remove(listener);
     }
     
+    @Override
+    public synchronized void addSynchronousFixListener(FixListener listener) {
+        if (!fixListeners.contains(listener)) {
+            fixListeners.add(listener);
+            fixListenerArray = fixListeners.toArray(new FixListener[0]);
+        }
+    }
+    
+    @Override
+    public synchronized void removeSynchronousFixListener(FixListener listener) {
+        fixListeners.remove(listener);
+        fixListenerArray = fixListeners.toArray(new FixListener[0]);
+    }
+    
+    @Override
+    public void addSynchronousSatelliteViewListener(SatelliteViewListener listener) {
+        if (!satelliteViewListeners.contains(listener)) {
+            satelliteViewListeners.add(listener);
+        }
+    }
+    
+    @Override
+    public void removeSynchronousSatelliteViewListener(SatelliteViewListener listener) {
+        satelliteViewListeners.remove(listener);
+    }
+    
+    @Override
+    public NmeaParserMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Returns new metrics counting the sentence types decoded by this parser individually.
+     */
+    public static NmeaParserMetrics newMetrics() {
+        return new NmeaParserMetrics("GGA", "RMC", "VTG", "GLL", "GNS", "ZDA", "GSA", "GSV");
+    }
+    
+    @Override
+    public void setFixSentenceTypes(Set<String> sentenceTypes) {
+        fixSentenceMask = FixAccumulator.toSentenceMask(sentenceTypes);
+    }
+    
+    @Override
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+    
+    @Override
+    public void setProbe(PipelineProbe probe) {
+        this.probe = probe;
+    }
+    
+    @Override
+    public void setJournal(NmeaJournal journal) {
+        this.journal = journal;
+    }
+    
+    private void journal(CharSequence input, int start, int end, long time, long nanoTime) {
+        NmeaJournal journal = this.journal;
+        if (journal != null) {
+            try {
+                journal.append(input, start, end, time, nanoTime);
+            } catch (IOException e) {
+                LOG.error("Error appending to NMEA journal " + journal.getDirectory()
+                        + ".  Journaling disabled.", e);
+                if (this.journal == journal) {
+                    this.journal = null;
+                }
+            }
+        }
+    }
+    
+    private void recordInvalidSentence(int sentenceTypeIndex, String reason) {
+        metrics.recordInvalidSentence();
+        
+        PipelineProbe probe = this.probe;
+        if (probe != null) {
+            probe.sentenceRejected(sentenceTypeIndex == -1
+                    ? null : metrics.getSentenceType(sentenceTypeIndex), reason);
+        }
+    }
+    
     private void registerSentenceParser(NmeaSentenceParser parser) {
         for (String sentenceType : parser.getSupportedSentenceTypes()) {
             sentenceParserMap.put(sentenceType, parser);
@@ -98,6 +244,37 @@ public class SimpleNmeaParser implements NmeaParser {
         return sentenceParserMap.get(sentenceType);
     }
     
+    private void registerFixDecoder(FixDecoder decoder) {
+        FixDecoder[] newFixDecoders = new FixDecoder[fixDecoders.length + 1];
+        System.arraycopy(fixDecoders, 0, newFixDecoders, 0, fixDecoders.length);
+        newFixDecoders[fixDecoders.length] = decoder;
+        fixDecoders = newFixDecoders;
+    }
+    
+    /**
+     * Returns the decoder for the sentence type in {@code buffer} or null if the sentence
+     * type does not contribute to a fix with the current fix sentence types.  Does not allocate.
+     */
+    private FixDecoder getFixDecoder(StringBuilder sentenceType, int sentenceMask) {
+        for (FixDecoder decoder : fixDecoders) {
+            String supportedSentenceType = decoder.getSupportedSentenceType();
+            
+            if ((decoder.getSentenceMask() & sentenceMask) != 0
+                    && supportedSentenceType.length() == sentenceType.length()) {
+                boolean matches = true;
+                for (int i = 0; i < sentenceType.length() && matches; i++) {
+                    matches = supportedSentenceType.charAt(i) == sentenceType.charAt(i);
+                }
+                
+                if (matches) {
+                    return decoder;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
     /**
      * State values for the thread reading the NMEA input.
      */
@@ -106,6 +283,11 @@ public class SimpleNmeaParser implements NmeaParser {
         READING_TALKER_ID,
         READING_SENTENCE_TYPE,
         READING_FIELD,
+        /**
+         * Skipping trailing fields, such as those added in later versions of the NMEA standard,
+         * that the active parser does not consume.
+         */
+        SKIPPING_FIELDS,
         READING_CHECKSUM,
         DONE_SENTENCE;
     }
@@ -114,6 +296,16 @@ public class SimpleNmeaParser implements NmeaParser {
         
         private StringBuilder buffer = new StringBuilder(82);
         private StringBuilder sBuffer = new StringBuilder(82);
+        private final FixAccumulator fix = new FixAccumulator();
+        private final GsvDecoder gsvDecoder = new GsvDecoder();
+        private final SatelliteView satelliteView = new SatelliteView();
+        private CommittableInput committableInput;
+        
+        /**
+         * The number of lines read when the first sentence of the epoch in {@link #fix} began.
+         */
+        private long epochStartLineCount;
+        private long committedLineCount;
         
         public NmeaReaderThread() {
             super("NMEA Parser Thread " + NMEA_READER_THREAD_INSTANCE_COUNTER.getAndIncrement());
@@ -122,11 +314,18 @@ public class SimpleNmeaParser implements NmeaParser {
         @Override
         public void run() {
             
-            Reader reader = null;
+            LineCountingReader reader = null;
             int currentChar = -1;
             
             try {
-                reader = new BufferedReader(new InputStreamReader(nmeaInputStream, "UTF-8"));
+                if (nmeaInputStream instanceof CommittableInput) {
+                    // Recover any input read ahead, but not committed, by a previous parser.
+                    committableInput = (CommittableInput) nmeaInputStream;
+                    committableInput.rollback();
+                }
+                
+                reader = new LineCountingReader(new BufferedReader(
+                        new InputStreamReader(nmeaInputStream, "UTF-8")));
                 currentChar = reader.read();
             } catch (Exception e) {
                 if (keepRunning()) {
@@ -140,12 +339,20 @@ public class SimpleNmeaParser implements NmeaParser {
             NmeaReaderState state = NmeaReaderState.WAITING_FOR_SYNCH;
             char[] talkerId = new char[2];
             NmeaSentenceParser sentenceParser = null;
+            FixDecoder fixDecoder = null;
+            boolean decodingGsv = false;
             long sentenceStartTime = 0;
-            long sentenceEndTime = 0;
+            long sentenceStartNanoTime = 0;
+            int sentenceTypeIndex = -1;
+            
+            // The length of the start of sBuffer already appended to the journal.
+            int journaledLength = 0;
             
             while(keepRunning() && currentChar != -1) {
                 
                 if ('$' == (char) currentChar) {
+                    journalRemainder(journaledLength, sentenceStartTime, sentenceStartNanoTime);
+                    journaledLength = 0;
                     sBuffer.setLength(0);
                 }
                 
@@ -160,11 +367,15 @@ public class SimpleNmeaParser implements NmeaParser {
                             
                             if ('$' == (char) currentChar) {
                                 sentenceStartTime = System.currentTimeMillis();
+                                sentenceStartNanoTime = System.nanoTime();
+                                sentenceTypeIndex = -1;
                                 state = NmeaReaderState.READING_TALKER_ID;
                                 buffer.setLength(0);
                             } else {
                                 buffer.append((char) currentChar);
                                 if (buffer.length() > MAX_NMEA_SENTENCE_LENGTH) {
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_LENGTH);
                                     LOG.warn("Extra long NMEA sentence found while waiting for" +
                                             "sentence synch: {}.", buffer);
                                     buffer.setLength(0);
@@ -192,19 +403,50 @@ public class SimpleNmeaParser implements NmeaParser {
                             if (',' == (char) currentChar  || '*' == (char) currentChar) {
                                 if (buffer.length() == 3) {
                                     
-                                    sentenceParser = getSentenceParser(buffer.toString());
+                                    sentenceTypeIndex = metrics.indexOf(buffer);
+                                    metrics.recordSentence(sentenceTypeIndex,
+                                            sentenceStartNanoTime);
+                                    
+                                    decodingGsv = false;
+                                    if (!satelliteViewListeners.isEmpty()) {
+                                        decodingGsv = GsvDecoder.isGsv(buffer);
+                                        
+                                        if (decodingGsv) {
+                                            gsvDecoder.reset(Constellation.forTalkerId(
+                                                    talkerId[0], talkerId[1]));
+                                        } else if (satelliteView.isComplete()) {
+                                            publishSatelliteView();
+                                        }
+                                    }
+                                    
+                                    sentenceParser = listeners.isEmpty() || decodingGsv
+                                            ? null : getSentenceParser(buffer.toString());
+                                    fixDecoder = fixListeners.isEmpty() || decodingGsv
+                                            ? null : getFixDecoder(buffer, fixSentenceMask);
                                     
-                                    if (sentenceParser == null) {
+                                    if (decodingGsv) {
+                                        state = NmeaReaderState.READING_FIELD;
+                                    } else if (sentenceParser == null && fixDecoder == null) {
+                                        metrics.recordIgnoredSentence();
                                         state = NmeaReaderState.WAITING_FOR_SYNCH;
                                         LOG.debug("Ignoring NMEA sentence type {}.", buffer);
                                     } else {
-                                        sentenceParser.reset();
-                                        // TODO set the talker ID in the parser sentenceParser.setTalkerId()
+                                        if (sentenceParser != null) {
+                                            sentenceParser.reset();
+                                            // TODO set the talker ID in the parser sentenceParser.setTalkerId()
+                                        }
+                                        
+                                        if (fixDecoder != null) {
+                                            fixDecoder.reset();
+                                        }
+                                        
                                         state = NmeaReaderState.READING_FIELD;
                                     }
                                     
                                     buffer.setLength(0);
                                 } else {
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_SENTENCE_TYPE);
                                     LOG.error("Invalid NMEA sentence type {}.", buffer);
                                     buffer.setLength(0);
                                     state = NmeaReaderState.WAITING_FOR_SYNCH;
@@ -213,6 +455,8 @@ public class SimpleNmeaParser implements NmeaParser {
                                 if ('\r' == (char) currentChar || '\n' == (char) currentChar 
                                         || buffer.length() > 3) {
                                     
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_SENTENCE_TYPE);
                                     LOG.error("Invalid NMEA sentence type {}.", buffer);
                                     buffer.setLength(0);
                                     state = NmeaReaderState.WAITING_FOR_SYNCH;
@@ -227,12 +471,23 @@ public class SimpleNmeaParser implements NmeaParser {
                         case READING_FIELD:
                         
                             if (',' == (char) currentChar || '*' == (char) currentChar) {
-                                state = sentenceParser.parseField(buffer);
+                                state = decodingGsv ? gsvDecoder.decodeField(buffer)
+                                        : parseField(sentenceParser, fixDecoder);
                                 buffer.setLength(0);
+                                
+                                if (',' == (char) currentChar
+                                        && state == NmeaReaderState.READING_CHECKSUM) {
+                                    state = NmeaReaderState.SKIPPING_FIELDS;
+                                } else if (state == NmeaReaderState.WAITING_FOR_SYNCH) {
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_FIELD);
+                                }
                             } else { 
                                 if ('\r' == (char) currentChar || '\n' == (char) currentChar 
                                     || buffer.length() > MAX_NMEA_SENTENCE_LENGTH) {
                                 
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_LENGTH);
                                     LOG.error("Invalid sentence length for sentence '{}'.", sBuffer);
                                     buffer.setLength(0);
                                     state = NmeaReaderState.WAITING_FOR_SYNCH;
@@ -244,18 +499,39 @@ public class SimpleNmeaParser implements NmeaParser {
                             currentChar = reader.read();
                             break;
                             
+                        case SKIPPING_FIELDS:
+                            
+                            if ('*' == (char) currentChar) {
+                                state = NmeaReaderState.READING_CHECKSUM;
+                            } else if ('\r' == (char) currentChar || '\n' == (char) currentChar 
+                                    || sBuffer.length() > MAX_NMEA_SENTENCE_LENGTH) {
+                                
+                                recordInvalidSentence(sentenceTypeIndex,
+                                        PipelineProbe.INVALID_LENGTH);
+                                LOG.error("Invalid sentence length for sentence '{}'.", sBuffer);
+                                state = NmeaReaderState.WAITING_FOR_SYNCH;
+                            }
+                            
+                            currentChar = reader.read();
+                            break;
+                            
                         case READING_CHECKSUM:
                             
                             if ('\r' == (char) currentChar) {
                                 if (buffer.length() == 2) {
-                                    try {
-                                        Integer.parseInt(buffer.toString(), 16);
+                                    // Checked digit by digit as parsing a string allocates.
+                                    if (Character.digit(buffer.charAt(0), 16) != -1
+                                            && Character.digit(buffer.charAt(1), 16) != -1) {
                                         state = NmeaReaderState.DONE_SENTENCE;
-                                    } catch (Exception e) {
+                                    } else {
+                                        recordInvalidSentence(sentenceTypeIndex,
+                                                PipelineProbe.INVALID_CHECKSUM);
                                         state = NmeaReaderState.WAITING_FOR_SYNCH;
                                         LOG.error("Invalid checksum format {}.", buffer);
                                     }
                                 } else {
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_CHECKSUM);
                                     state = NmeaReaderState.WAITING_FOR_SYNCH;
                                     LOG.error("Invalid checksum format {}.", buffer);
                                 }
@@ -264,6 +540,8 @@ public class SimpleNmeaParser implements NmeaParser {
                             } else {
                                 
                                 if (buffer.length() > MAX_NMEA_SENTENCE_LENGTH) {
+                                    recordInvalidSentence(sentenceTypeIndex,
+                                            PipelineProbe.INVALID_CHECKSUM);
                                     LOG.error("Invalid checksum {}.", buffer);
                                     buffer.setLength(0);
                                     state = NmeaReaderState.WAITING_FOR_SYNCH;
@@ -277,38 +555,83 @@ public class SimpleNmeaParser implements NmeaParser {
                             
                         case DONE_SENTENCE:
                             
+                            journal(sBuffer, journaledLength, sBuffer.length(), sentenceStartTime,
+                                    sentenceStartNanoTime);
+                            journaledLength = sBuffer.length();
+                            
                             if ('\n' != (char) currentChar) {
-                                state = NmeaReaderState.WAITING_FOR_SYNCH;
+                                recordInvalidSentence(sentenceTypeIndex,
+                                        PipelineProbe.INVALID_TERMINATION);
                                 LOG.error("Invalid sentence termination {}.", buffer);
+                                
+                                // Rejected sentences are neither parsed nor delivered.
+                                commitInput(reader.getLineCount());
+                                buffer.setLength(0);
+                                state = NmeaReaderState.WAITING_FOR_SYNCH;
+                                currentChar = reader.read();
+                                break;
                             }
                             
-                            sentenceEndTime = System.currentTimeMillis();
+                            long parseTime = System.nanoTime() - sentenceStartNanoTime;
+                            metrics.getParseTime().record(parseTime);
                             
-                            AbstractNmeaSentence sentence = sentenceParser.getSentence();
-                            sentence.setSentenceParsingStartTime(sentenceStartTime);
-                            sentence.setSentenceParsingEndTime(sentenceEndTime);
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("Finished parsing '{}' into {} in {}ms.", 
-                                        new Object[] {
-                                                sBuffer,
-                                                sentence,
-                                                sentenceEndTime - sentenceStartTime});
+                            PipelineProbe probe = SimpleNmeaParser.this.probe;
+                            if (probe != null) {
+                                probe.sentenceParsed(
+                                        metrics.getSentenceType(sentenceTypeIndex), parseTime);
                             }
                             
-                            for (NmeaSentenceListener listener : listeners) {
-                                try {
-                                    listener.receiveSentence(sentence);
-                                } catch (Exception e) {
-                                    LOG.error("Error in NMEA sentence listener " + listener + ".",
-                                            e);
+                            if (decodingGsv) {
+                                if (satelliteView.isStartOfNextEpoch(
+                                        gsvDecoder.getConstellation(),
+                                        gsvDecoder.getMessageNumber())) {
+                                    publishSatelliteView();
                                 }
+                                
+                                gsvDecoder.commit(satelliteView, sentenceStartTime);
                             }
                             
-                            if (LOG.isDebugEnabled()) {
-                                LOG.debug("Finished notifications for {} in {}ms.",
-                                        sentence, System.currentTimeMillis() - sentenceEndTime);
+                            if (sentenceParser != null) {
+                                notifySentenceListeners(sentenceParser, sentenceStartTime);
+                            }
+                            
+                            if (fixDecoder != null) {
+                                if (fix.getRequiredSentenceMask() != fixSentenceMask) {
+                                    fix.setRequiredSentenceMask(fixSentenceMask);
+                                }
+                                
+                                long fusionStartTime = System.nanoTime();
+                                long discardedEpochCount = fix.getDiscardedEpochCount();
+                                boolean startingEpoch = fix.getReceivedSentenceMask() == 0;
+                                fixDecoder.commit(fix, sentenceStartTime);
+                                if (startingEpoch
+                                        || fix.getDiscardedEpochCount() != discardedEpochCount) {
+                                    // The line of this sentence starts the epoch.
+                                    epochStartLineCount = reader.getLineCount() - 1;
+                                }
+                                if (tracing) {
+                                    fix.stamp(sentenceStartNanoTime, fusionStartTime);
+                                }
+                                boolean complete = fix.isComplete();
+                                metrics.getFusionTime().recordSince(fusionStartTime);
+                                
+                                if (fix.getDiscardedEpochCount() != discardedEpochCount) {
+                                    metrics.recordDiscardedEpoch();
+                                    
+                                    if (probe != null) {
+                                        probe.epochMismatch(fix.getDiscardedTime(),
+                                                fix.getDiscardedSentenceMask(), fix.getTime());
+                                    }
+                                }
+                                
+                                if (complete) {
+                                    notifyFixListeners(fix);
+                                    fix.clear();
+                                }
                             }
                             
+                            // Commit before blocking for the next input.
+                            commitInput(reader.getLineCount());
                             buffer.setLength(0);
                             state = NmeaReaderState.WAITING_FOR_SYNCH;
                             currentChar = reader.read();
@@ -317,6 +640,7 @@ public class SimpleNmeaParser implements NmeaParser {
                     
                 } catch (Exception e) {
                     
+                    recordInvalidSentence(sentenceTypeIndex, PipelineProbe.PROCESSING_ERROR);
                     String logMessage = "Exception while parsing NMEA input.  Parser was in "
                             + "state '" + state + "' and parser buffer contains '" + buffer
                             + "' parser running is " + keepRunning() + ".";
@@ -332,9 +656,191 @@ public class SimpleNmeaParser implements NmeaParser {
                 }
             }
             
+            journalRemainder(journaledLength, sentenceStartTime, sentenceStartNanoTime);
+            
             if (currentChar == -1) {
                 LOG.info("End of NMEA reader input encountered.  NMEA reader thread terminating.");
             }
         }
+        
+        /**
+         * Commits the lines processed since the last commit to a {@link CommittableInput},
+         * holding back the lines of an incomplete fix.
+         *
+         * @param readLineCount the number of lines read, all of which have been processed
+         */
+        private void commitInput(long readLineCount) {
+            if (committableInput == null) {
+                return;
+            }
+            
+            long processedLineCount = fix.getReceivedSentenceMask() == 0
+                    ? readLineCount : epochStartLineCount;
+            
+            if (processedLineCount > committedLineCount && keepRunning()
+                    && (fixListenerArray.length != 0 || !listeners.isEmpty()
+                            || !satelliteViewListeners.isEmpty())) {
+                
+                int count = (int) (processedLineCount - committedLineCount);
+                committedLineCount = processedLineCount;
+                try {
+                    committableInput.commitLines(count);
+                } catch (Exception e) {
+                    LOG.error("Error committing NMEA input.", e);
+                }
+            }
+        }
+        
+        /**
+         * Appends the input in sBuffer following {@code journaledLength} to the journal.  This is
+         * either an invalid sentence, stamped with the time its sentence started, or input
+         * outside of a sentence, stamped with the current time.
+         */
+        private void journalRemainder(int journaledLength, long sentenceStartTime,
+                long sentenceStartNanoTime) {
+            
+            if (journaledLength < sBuffer.length()) {
+                if (journaledLength == 0 && sBuffer.charAt(0) == '$') {
+                    journal(sBuffer, 0, sBuffer.length(), sentenceStartTime,
+                            sentenceStartNanoTime);
+                } else {
+                    journal(sBuffer, journaledLength, sBuffer.length(),
+                            System.currentTimeMillis(), System.nanoTime());
+                }
+            }
+        }
+        
+        /**
+         * Passes the completed field in the buffer to the active sentence parser and fix
+         * decoder and returns the next expected state.  The parser ceases to synch if either
+         * rejects the field.
+         */
+        private NmeaReaderState parseField(NmeaSentenceParser sentenceParser,
+                FixDecoder fixDecoder) {
+            
+            NmeaReaderState nextState = null;
+            
+            if (sentenceParser != null) {
+                nextState = sentenceParser.parseField(buffer);
+            }
+            
+            if (fixDecoder != null && nextState != NmeaReaderState.WAITING_FOR_SYNCH) {
+                NmeaReaderState fixDecoderState = fixDecoder.decodeField(buffer);
+                
+                if (nextState == null || fixDecoderState == NmeaReaderState.WAITING_FOR_SYNCH) {
+                    nextState = fixDecoderState;
+                }
+            }
+            
+            return nextState;
+        }
+        
+        private void notifySentenceListeners(NmeaSentenceParser sentenceParser,
+                long sentenceStartTime) {
+            
+            long sentenceEndTime = System.currentTimeMillis();
+            
+            AbstractNmeaSentence sentence = sentenceParser.getSentence();
+            sentence.setSentenceParsingStartTime(sentenceStartTime);
+            sentence.setSentenceParsingEndTime(sentenceEndTime);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Finished parsing '{}' into {} in {}ms.", 
+                        new Object[] {
+                                sBuffer,
+                                sentence,
+                                sentenceEndTime - sentenceStartTime});
+            }
+            
+            for (NmeaSentenceListener listener : listeners) {
+                long listenerStartTime = System.nanoTime();
+                try {
+                    listener.receiveSentence(sentence);
+                } catch (Exception e) {
+                    metrics.recordListenerError();
+                    LOG.error("Error in NMEA sentence listener " + listener + ".",
+                            e);
+                }
+                metrics.getSentenceListenerTime().recordSince(listenerStartTime);
+            }
+            
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Finished notifications for {} in {}ms.",
+                        sentence, System.currentTimeMillis() - sentenceEndTime);
+            }
+        }
+        
+        /**
+         * Notifies the satellite view listeners of the view if it is complete and clears the view
+         * for the next epoch.
+         */
+        private void publishSatelliteView() {
+            if (satelliteView.isComplete()) {
+                for (SatelliteViewListener listener : satelliteViewListeners) {
+                    long listenerStartTime = System.nanoTime();
+                    try {
+                        listener.receiveSatelliteView(satelliteView);
+                    } catch (Exception e) {
+                        metrics.recordListenerError();
+                        LOG.error("Error in satellite view listener " + listener + ".", e);
+                    }
+                    metrics.getSatelliteViewListenerTime().recordSince(listenerStartTime);
+                }
+            }
+            
+            satelliteView.clear();
+        }
+        
+        private void notifyFixListeners(FixAccumulator fix) {
+            FixListener[] listeners = fixListenerArray;
+            
+            for (int i = 0; i < listeners.length; i++) {
+                FixListener listener = listeners[i];
+                long listenerStartTime = System.nanoTime();
+                try {
+                    listener.receiveFix(fix);
+                } catch (Exception e) {
+                    metrics.recordListenerError();
+                    LOG.error("Error in fix listener " + listener + ".", e);
+                }
+                metrics.getFixListenerTime().recordSince(listenerStartTime);
+            }
+        }
+    }
+    
+    /**
+     * Counts the lines read through the reader, i.e. the line feeds, so that lines can be
+     * committed to a {@link CommittableInput} as they are processed.
+     */
+    private static final class LineCountingReader extends FilterReader {
+        
+        private long lineCount;
+        
+        public LineCountingReader(Reader in) {
+            super(in);
+        }
+        
+        public long getLineCount() {
+            return lineCount;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int c = in.read();
+            if (c == '\n') {
+                lineCount++;
+            }
+            return c;
+        }
+        
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = in.read(buffer, offset, length);
+            for (int i = offset; i < offset + count; i++) {
+                if (buffer[i] == '\n') {
+                    lineCount++;
+                }
+            }
+            return count;
+        }
     }
 }
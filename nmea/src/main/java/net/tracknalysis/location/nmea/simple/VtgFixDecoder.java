@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A decoder for the course and speed data in VTG sentences.  Sentences with a mode indicator
+ * of not valid do not contribute to a fix.
+ *
+ * @author David Valeri
+ */
+class VtgFixDecoder extends AbstractFixDecoder {
+
+    private float trueCourse;
+    private float speed;
+    private boolean valid;
+
+    public VtgFixDecoder() {
+        super("VTG");
+        reset();
+    }
+
+    @Override
+    protected NmeaReaderState decodeField(int fieldIndex, StringBuilder buffer) {
+
+        switch (fieldIndex) {
+            case 1:
+                if (buffer.length() > 0) {
+                    trueCourse = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 5:
+                if (buffer.length() > 0) {
+                    speed = NmeaFieldUtil.parseFloat(buffer);
+                }
+                break;
+            case 9:
+                if (buffer.length() != 1) {
+                    throw new NumberFormatException("Invalid mode indicator '" + buffer + "'.");
+                }
+                valid = buffer.charAt(0) != 'N';
+                return NmeaReaderState.READING_CHECKSUM;
+            default:
+                // Not needed for the fix.
+        }
+
+        return NmeaReaderState.READING_FIELD;
+    }
+
+    @Override
+    public void commit(FixAccumulator fix, long receivedTime) {
+        if (valid) {
+            fix.acceptVtg(speed, trueCourse, receivedTime);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        trueCourse = 0;
+        speed = 0;
+        valid = false;
+    }
+}
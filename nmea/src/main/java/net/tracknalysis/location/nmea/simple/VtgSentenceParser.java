@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.VtgSentence;
+import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A parser for handling of VTG sentences.
+ *
+ * @author David Valeri
+ */
+class VtgSentenceParser extends AbstractNmeaSentenceParser {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(VtgSentenceParser.class);
+    
+    private VtgSentenceParserState sentenceParserState;
+    private VtgSentence sentence;
+    private Set<String> supportedSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(
+                    Arrays.asList("VTG")));
+    
+    /**
+     * State values for {@link VtgSentenceParser}.
+     */
+    private static enum VtgSentenceParserState {
+        READING_TRUE_COURSE,
+        READING_TRUE_COURSE_REFERENCE,
+        READING_MAGNETIC_COURSE,
+        READING_MAGNETIC_COURSE_REFERENCE,
+        READING_SPEED,
+        READING_SPEED_UNITS,
+        READING_SPEED_KPH,
+        READING_SPEED_KPH_UNITS,
+        READING_MODE_INDICATOR;
+    }
+    
+    public VtgSentenceParser() {
+        reset();
+    }
+    
+    @Override
+    public NmeaReaderState parseField(StringBuilder buffer) {
+        
+        NmeaReaderState nextNmeaReaderState = NmeaReaderState.READING_FIELD;
+        
+        switch (sentenceParserState) {
+            case READING_TRUE_COURSE:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setTrueCourse(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = VtgSentenceParserState.READING_TRUE_COURSE_REFERENCE;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid true course format {}.", buffer);
+                }
+                break;
+            case READING_TRUE_COURSE_REFERENCE:
+                sentenceParserState = VtgSentenceParserState.READING_MAGNETIC_COURSE;
+                break;
+            case READING_MAGNETIC_COURSE:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setMagneticCourse(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = VtgSentenceParserState.READING_MAGNETIC_COURSE_REFERENCE;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid magnetic course format {}.", buffer);
+                }
+                break;
+            case READING_MAGNETIC_COURSE_REFERENCE:
+                sentenceParserState = VtgSentenceParserState.READING_SPEED;
+                break;
+            case READING_SPEED:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setSpeed(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = VtgSentenceParserState.READING_SPEED_UNITS;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid speed format {}.", buffer);
+                }
+                break;
+            case READING_SPEED_UNITS:
+                sentenceParserState = VtgSentenceParserState.READING_SPEED_KPH;
+                break;
+            case READING_SPEED_KPH:
+                try {
+                    if (buffer.length() != 0) {
+                        sentence.setSpeedKph(parseNmeaFloat(buffer.toString()));
+                    }
+                    sentenceParserState = VtgSentenceParserState.READING_SPEED_KPH_UNITS;
+                } catch (Exception e) {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid speed format {}.", buffer);
+                }
+                break;
+            case READING_SPEED_KPH_UNITS:
+                sentenceParserState = VtgSentenceParserState.READING_MODE_INDICATOR;
+                break;
+            case READING_MODE_INDICATOR:
+                nextNmeaReaderState = NmeaReaderState.READING_CHECKSUM;
+                
+                ModeIndicator modeIndicator = buffer.length() == 1
+                        ? parseNmeaModeIndicator(buffer.charAt(0)) : null;
+                
+                if (modeIndicator != null) {
+                    sentence.setModeIndicator(modeIndicator);
+                } else {
+                    nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+                    LOG.error("Invalid NMEA mode indicator {}.", buffer);
+                }
+                break;
+        }
+        
+        return nextNmeaReaderState;
+    }
+    
+    @Override
+    public AbstractNmeaSentence getSentence() {
+        return sentence;
+    }
+    
+    @Override
+    public Set<String> getSupportedSentenceTypes() {
+        return supportedSentenceTypes;
+    }
+
+    @Override
+    public void reset() {
+        sentenceParserState = VtgSentenceParserState.READING_TRUE_COURSE;
+        sentence = new VtgSentence();
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.simple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.nmea.AbstractNmeaSentence;
+import net.tracknalysis.location.nmea.ZdaSentence;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser.NmeaReaderState;
+
+/**
+ * A parser for handling of ZDA sentences.
+ *
+ * @author David Valeri
+ */
+class ZdaSentenceParser extends AbstractNmeaSentenceParser {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(ZdaSentenceParser.class);
+    
+    private ZdaSentenceParserState sentenceParserState;
+    private ZdaSentence sentence;
+    private Set<String> supportedSentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(
+                    Arrays.asList("ZDA")));
+    
+    /**
+     * State values for {@link ZdaSentenceParser}.
+     */
+    private static enum ZdaSentenceParserState {
+        READING_UTC_TIME,
+        READING_DAY,
+        READING_MONTH,
+        READING_YEAR,
+        READING_LOCAL_ZONE_HOURS,
+        READING_LOCAL_ZONE_MINUTES;
+    }
+    
+    public ZdaSentenceParser() {
+        reset();
+    }
+    
+    @Override
+    public NmeaReaderState parseField(StringBuilder buffer) {
+        
+        NmeaReaderState nextNmeaReaderState = NmeaReaderState.READING_FIELD;
+        
+        try {
+            switch (sentenceParserState) {
+                case READING_UTC_TIME:
+                    sentence.setTime(parseNmeaUtcTimeInDay(buffer));
+                    sentenceParserState = ZdaSentenceParserState.READING_DAY;
+                    break;
+                case READING_DAY:
+                    sentence.setDay(Integer.parseInt(buffer.toString()));
+                    sentenceParserState = ZdaSentenceParserState.READING_MONTH;
+                    break;
+                case READING_MONTH:
+                    sentence.setMonth(Integer.parseInt(buffer.toString()));
+                    sentenceParserState = ZdaSentenceParserState.READING_YEAR;
+                    break;
+                case READING_YEAR:
+                    sentence.setYear(Integer.parseInt(buffer.toString()));
+                    sentenceParserState = ZdaSentenceParserState.READING_LOCAL_ZONE_HOURS;
+                    break;
+                case READING_LOCAL_ZONE_HOURS:
+                    if (buffer.length() != 0) {
+                        sentence.setLocalZoneHours(Integer.parseInt(buffer.toString()));
+                    }
+                    sentenceParserState = ZdaSentenceParserState.READING_LOCAL_ZONE_MINUTES;
+                    break;
+                case READING_LOCAL_ZONE_MINUTES:
+                    if (buffer.length() != 0) {
+                        sentence.setLocalZoneMinutes(Integer.parseInt(buffer.toString()));
+                    }
+                    nextNmeaReaderState = NmeaReaderState.READING_CHECKSUM;
+                    break;
+            }
+        } catch (Exception e) {
+            nextNmeaReaderState = NmeaReaderState.WAITING_FOR_SYNCH;
+            LOG.error("Invalid ZDA field {} in state {}.", buffer, sentenceParserState);
+        }
+        
+        return nextNmeaReaderState;
+    }
+    
+    @Override
+    public AbstractNmeaSentence getSentence() {
+        return sentence;
+    }
+    
+    @Override
+    public Set<String> getSupportedSentenceTypes() {
+        return supportedSentenceTypes;
+    }
+
+    @Override
+    public void reset() {
+        sentenceParserState = ZdaSentenceParserState.READING_UTC_TIME;
+        sentence = new ZdaSentence();
+    }
+}
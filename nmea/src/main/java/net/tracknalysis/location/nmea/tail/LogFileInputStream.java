@@ -0,0 +1,523 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.tail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Properties;
+
+import net.tracknalysis.location.nmea.CommittableInput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the log files written by another process into a directory, returning bytes as they
+ * are appended, like {@code tail -F}.  Log files are read in the order of their names.  When the
+ * current file is exhausted and a later file exists, reading continues at the start of the later
+ * file.  A file that shrinks is assumed to have been truncated in place and is read again from
+ * the start.
+ * <p/>
+ * Reads block until input is available, polling the current file, and end only when the stream
+ * is closed or the reading thread is interrupted.
+ * <p/>
+ * If a checkpoint file is provided, the file and offset following the last committed line are
+ * saved to it periodically and on close.  A new stream with the same checkpoint resumes from
+ * that offset, so committed input is not read again after a restart.  Without a checkpoint, or
+ * if it does not exist, reading starts at the end of the latest file, or at the start of the
+ * earliest file if so configured.
+ * <p/>
+ * Until a consumer calls {@link #rollback()}, each complete line is committed as it is returned.
+ * Consumers that read ahead of the lines they have processed call {@link #rollback()} and then
+ * {@link #commitLines(int)} as they finish with each line, so that lines read ahead are read
+ * again rather than lost after a restart.
+ *
+ * @author David Valeri
+ */
+public class LogFileInputStream extends InputStream implements CommittableInput {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogFileInputStream.class);
+
+    public static final long DEFAULT_POLL_INTERVAL = 10;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final String CHECKPOINT_FILE = "file";
+    private static final String CHECKPOINT_OFFSET = "offset";
+
+    private final File directory;
+    private final FilenameFilter filter;
+    private final File checkpointFile;
+    private final boolean startAtEnd;
+    private final byte[] singleByte = new byte[1];
+
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private volatile boolean closed;
+
+    private File currentFile;
+    private RandomAccessFile currentInput;
+    private long position;
+    private File committedFile;
+    private long committedPosition;
+    private File checkpointedFile;
+    private long checkpointedPosition;
+    private long lastCheckpointTime;
+
+    /**
+     * The thread that last called {@link #rollback()} or null if lines are committed as they are
+     * returned.
+     */
+    private Thread consumer;
+
+    /**
+     * Queue of the files and offsets following the lines returned to the consumer and not yet
+     * committed.
+     */
+    private File[] lineEndFiles = new File[64];
+    private long[] lineEndPositions = new long[64];
+    private int lineEndHead;
+    private int lineEndCount;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param directory the directory containing the log files
+     * @param filter the filter selecting the log files in the directory or {@code null} to read
+     *            all files other than the checkpoint and its temporary file
+     * @param checkpointFile the file in which the offset is saved or {@code null} to not save
+     *            the offset
+     * @param startAtEnd true to start at the end of the latest file, false to start at the start
+     *            of the earliest file, when there is no checkpoint
+     */
+    public LogFileInputStream(File directory, FilenameFilter filter, File checkpointFile,
+            boolean startAtEnd) {
+        this.directory = directory;
+        this.filter = filter;
+        this.checkpointFile = checkpointFile;
+        this.startAtEnd = startAtEnd;
+    }
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Sets the time, in milliseconds, between checks for new input.  Defaults to
+     * {@value #DEFAULT_POLL_INTERVAL}.
+     */
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets the minimum time, in milliseconds, between saves of the checkpoint.  Defaults to
+     * {@value #DEFAULT_CHECKPOINT_INTERVAL}.
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Returns the log file currently being read or null if reading has not started.
+     */
+    public synchronized File getCurrentFile() {
+        return currentFile;
+    }
+
+    /**
+     * Returns the log file containing the last committed line or null if reading has not
+     * started.
+     */
+    public synchronized File getCommittedFile() {
+        return committedFile;
+    }
+
+    /**
+     * Returns the offset in the {@link #getCommittedFile() committed file} following the last
+     * committed line.
+     */
+    public synchronized long getCommittedPosition() {
+        return committedPosition;
+    }
+
+    @Override
+    public synchronized void rollback() throws IOException {
+        consumer = Thread.currentThread();
+        lineEndHead = 0;
+        lineEndCount = 0;
+        Arrays.fill(lineEndFiles, null);
+
+        if (closed || committedFile == null
+                || (committedFile.equals(currentFile) && committedPosition == position)) {
+            return;
+        }
+
+        if (committedFile.isFile()) {
+            LOG.info("Rolling back to offset {} of log file {}.", committedPosition,
+                    committedFile);
+            open(committedFile, committedPosition, false);
+        } else {
+            LOG.warn("Committed log file {} no longer exists.  Unable to roll back.",
+                    committedFile);
+        }
+    }
+
+    @Override
+    public synchronized void commitLines(int count) throws IOException {
+        if (closed || consumer != Thread.currentThread() || count == 0) {
+            return;
+        }
+
+        if (count < 0 || count > lineEndCount) {
+            throw new IllegalArgumentException("Unable to commit " + count + " lines with "
+                    + lineEndCount + " uncommitted lines.");
+        }
+
+        int index = (lineEndHead + count - 1) % lineEndFiles.length;
+        committedFile = lineEndFiles[index];
+        committedPosition = lineEndPositions[index];
+
+        for (int i = 0; i < count; i++) {
+            lineEndFiles[(lineEndHead + i) % lineEndFiles.length] = null;
+        }
+        lineEndHead = (lineEndHead + count) % lineEndFiles.length;
+        lineEndCount -= count;
+
+        checkpointPeriodically();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (consumer != null && consumer != Thread.currentThread()) {
+            // A previous consumer replaced by a rollback.
+            return -1;
+        }
+
+        while (!closed) {
+            if (currentInput == null && !start()) {
+                pause();
+                continue;
+            }
+
+            int count = currentInput.read(buffer, offset, length);
+
+            if (count == -1) {
+                if (currentInput.length() < position) {
+                    LOG.warn("Log file {} was truncated.  Reading from the start.", currentFile);
+                    truncated();
+                    continue;
+                }
+
+                File nextFile = getNextFile();
+                if (nextFile == null) {
+                    pause();
+                    continue;
+                }
+
+                // Read anything written to the current file before the next file was created.
+                count = currentInput.read(buffer, offset, length);
+                if (count == -1) {
+                    LOG.info("Rolling over from log file {} to {}.", currentFile, nextFile);
+                    open(nextFile, 0, consumer == null);
+                    continue;
+                }
+            }
+
+            if (consumer == null) {
+                for (int i = offset + count - 1; i >= offset; i--) {
+                    if (buffer[i] == '\n') {
+                        committedFile = currentFile;
+                        committedPosition = position + i - offset + 1;
+                        break;
+                    }
+                }
+
+                position += count;
+                checkpointPeriodically();
+            } else {
+                for (int i = offset; i < offset + count; i++) {
+                    if (buffer[i] == '\n') {
+                        addLineEnd(position + i - offset + 1);
+                    }
+                }
+
+                position += count;
+            }
+
+            return count;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Saves the checkpoint and closes the stream.  Reads blocked in another thread end once they
+     * next poll.  Lines committed after the stream is closed are not saved.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        synchronized (this) {
+            try {
+                checkpoint();
+            } finally {
+                if (currentInput != null) {
+                    currentInput.close();
+                    currentInput = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the file to start reading from.
+     *
+     * @return false if there are no log files yet
+     */
+    private boolean start() throws IOException {
+        Properties checkpoint = loadCheckpoint();
+
+        if (checkpoint != null) {
+            File file = new File(directory, checkpoint.getProperty(CHECKPOINT_FILE));
+            long offset = Long.parseLong(checkpoint.getProperty(CHECKPOINT_OFFSET));
+
+            if (file.isFile()) {
+                open(file, file.length() < offset ? 0 : offset, true);
+                return true;
+            }
+
+            LOG.warn("Checkpoint log file {} no longer exists.  Reading from the next file.",
+                    file);
+            currentFile = file;
+            File nextFile = getNextFile();
+            currentFile = null;
+
+            if (nextFile != null) {
+                open(nextFile, 0, true);
+                return true;
+            }
+
+            return false;
+        }
+
+        File[] files = listFiles();
+        if (files.length == 0) {
+            return false;
+        }
+
+        if (startAtEnd) {
+            File file = files[files.length - 1];
+            open(file, file.length(), true);
+        } else {
+            open(files[0], 0, true);
+        }
+
+        return true;
+    }
+
+    /**
+     * Opens the file for reading from the offset.
+     *
+     * @param commit true to commit the offset, false to leave the committed position unchanged,
+     *            e.g. on rollover while lines in the previous file have not yet been committed
+     */
+    private void open(File file, long offset, boolean commit) throws IOException {
+        if (currentInput != null) {
+            currentInput.close();
+        }
+
+        currentInput = new RandomAccessFile(file, "r");
+        currentInput.seek(offset);
+        currentFile = file;
+        position = offset;
+        LOG.info("Reading log file {} from offset {}.", file, offset);
+
+        if (commit) {
+            committedFile = file;
+            committedPosition = offset;
+            checkpoint();
+        }
+    }
+
+    /**
+     * Reads the current file again from the start.  The committed position and the ends of
+     * uncommitted lines in the file move to its start since the content they followed was lost.
+     */
+    private void truncated() throws IOException {
+        currentInput.seek(0);
+        position = 0;
+
+        if (currentFile.equals(committedFile)) {
+            committedPosition = 0;
+        }
+
+        for (int i = 0; i < lineEndCount; i++) {
+            int index = (lineEndHead + i) % lineEndFiles.length;
+            if (currentFile.equals(lineEndFiles[index])) {
+                lineEndPositions[index] = 0;
+            }
+        }
+    }
+
+    /**
+     * Queues the end of a line returned to the consumer in the current file, growing the queue
+     * if it is full.
+     */
+    private void addLineEnd(long lineEndPosition) {
+        if (lineEndCount == lineEndFiles.length) {
+            File[] files = new File[lineEndFiles.length * 2];
+            long[] positions = new long[files.length];
+            for (int i = 0; i < lineEndCount; i++) {
+                int index = (lineEndHead + i) % lineEndFiles.length;
+                files[i] = lineEndFiles[index];
+                positions[i] = lineEndPositions[index];
+            }
+            lineEndFiles = files;
+            lineEndPositions = positions;
+            lineEndHead = 0;
+        }
+
+        int index = (lineEndHead + lineEndCount) % lineEndFiles.length;
+        lineEndFiles[index] = currentFile;
+        lineEndPositions[index] = lineEndPosition;
+        lineEndCount++;
+    }
+
+    private void pause() throws IOException {
+        try {
+            Thread.sleep(pollInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for log input.");
+        }
+    }
+
+    /**
+     * Returns the first log file ordered after the current file or null if none.
+     */
+    private File getNextFile() {
+        File[] files = listFiles();
+        for (File file : files) {
+            if (file.getName().compareTo(currentFile.getName()) > 0) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private File[] listFiles() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return (checkpointFile == null || !name.startsWith(checkpointFile.getName()))
+                        && (filter == null || filter.accept(dir, name));
+            }
+        });
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files);
+        return files;
+    }
+
+    private Properties loadCheckpoint() throws IOException {
+        if (checkpointFile == null || !checkpointFile.isFile()) {
+            return null;
+        }
+
+        Properties checkpoint = new Properties();
+        InputStream in = new FileInputStream(checkpointFile);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+
+        if (checkpoint.getProperty(CHECKPOINT_FILE) == null
+                || checkpoint.getProperty(CHECKPOINT_OFFSET) == null) {
+            LOG.warn("Ignoring invalid checkpoint {}.", checkpointFile);
+            return null;
+        }
+
+        return checkpoint;
+    }
+
+    private void checkpointPeriodically() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastCheckpointTime >= checkpointInterval) {
+            checkpoint();
+            lastCheckpointTime = now;
+        }
+    }
+
+    /**
+     * Saves the committed file and position to the checkpoint file, replacing it atomically
+     * where the platform allows, if they have changed.
+     */
+    private void checkpoint() throws IOException {
+        if (checkpointFile == null || committedFile == null
+                || (committedFile.equals(checkpointedFile)
+                        && committedPosition == checkpointedPosition)) {
+            return;
+        }
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(CHECKPOINT_FILE, committedFile.getName());
+        checkpoint.setProperty(CHECKPOINT_OFFSET, Long.toString(committedPosition));
+
+        File tempFile = new File(checkpointFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            checkpoint.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(checkpointFile)) {
+            checkpointFile.delete();
+            if (!tempFile.renameTo(checkpointFile)) {
+                throw new IOException("Unable to save checkpoint " + checkpointFile + ".");
+            }
+        }
+
+        checkpointedFile = committedFile;
+        checkpointedPosition = committedPosition;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.tail;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.tracknalysis.common.io.SocketManager;
+
+/**
+ * Connects a location manager to the log files written by a receiver daemon rather than to the
+ * receiver itself.  Input follows the log files through a {@link LogFileInputStream}.  There is
+ * no output to the receiver, so a receiver configurator cannot be used.
+ *
+ * @author David Valeri
+ */
+public class LogFileSocketManager implements SocketManager {
+
+    private final File directory;
+    private final FilenameFilter filter;
+    private final File checkpointFile;
+    private final boolean startAtEnd;
+    private long pollInterval = LogFileInputStream.DEFAULT_POLL_INTERVAL;
+    private LogFileInputStream in;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @see LogFileInputStream#LogFileInputStream(File, FilenameFilter, File, boolean)
+     */
+    public LogFileSocketManager(File directory, FilenameFilter filter, File checkpointFile,
+            boolean startAtEnd) {
+        this.directory = directory;
+        this.filter = filter;
+        this.checkpointFile = checkpointFile;
+        this.startAtEnd = startAtEnd;
+    }
+
+    /**
+     * Sets the time, in milliseconds, between checks for new input.  Applies from the next
+     * connection.
+     *
+     * @see LogFileInputStream#setPollInterval(long)
+     */
+    public synchronized void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public synchronized void connect() throws IOException {
+        if (in == null) {
+            if (!directory.isDirectory()) {
+                throw new IOException("Log directory " + directory + " does not exist.");
+            }
+
+            in = new LogFileInputStream(directory, filter, checkpointFile, startAtEnd);
+            in.setPollInterval(pollInterval);
+        }
+    }
+
+    /**
+     * Closes the input, saving the checkpoint.  Connecting again resumes from the checkpoint.
+     */
+    @Override
+    public synchronized void disconnect() throws IOException {
+        if (in != null) {
+            try {
+                in.close();
+            } finally {
+                in = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (in == null) {
+            throw new IOException("Not connected.");
+        }
+        return in;
+    }
+
+    /**
+     * Returns null as log files cannot be written to the receiver.
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return null;
+    }
+}
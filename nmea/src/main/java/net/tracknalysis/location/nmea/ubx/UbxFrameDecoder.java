@@ -0,0 +1,334 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.FixListener;
+import net.tracknalysis.location.nmea.NmeaParserMetrics;
+
+/**
+ * A byte oriented decoder for UBX frames.  Frames are validated using the 8-bit Fletcher
+ * checksum defined by the UBX protocol and NAV-PVT messages are decoded directly from the
+ * frame buffer into a reused {@link FixAccumulator}.  Does not allocate while decoding.
+ *
+ * @author David Valeri
+ */
+final class UbxFrameDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UbxFrameDecoder.class);
+
+    static final int SYNC_CHAR_1 = 0xB5;
+    static final int SYNC_CHAR_2 = 0x62;
+    static final int CLASS_NAV = 0x01;
+    static final int ID_NAV_PVT = 0x07;
+    static final int NAV_PVT_LENGTH = 92;
+    static final String NAV_PVT = "NAV-PVT";
+
+    /**
+     * The largest payload retained for decoding.  Longer frames are still checksummed and
+     * skipped so that the decoder stays in synch.
+     */
+    private static final int MAX_PAYLOAD_LENGTH = 1024;
+
+    private static final int FIX_TYPE_2D = 2;
+    private static final int FIX_TYPE_3D = 3;
+    private static final int FIX_TYPE_GNSS_DEAD_RECKONING = 4;
+    private static final int VALID_TIME = 0x02;
+    private static final int FLAGS_GNSS_FIX_OK = 0x01;
+    private static final long MILLISECONDS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    /**
+     * State values for the decoder.
+     */
+    static enum UbxReaderState {
+        WAITING_FOR_SYNCH_1,
+        WAITING_FOR_SYNCH_2,
+        READING_CLASS,
+        READING_ID,
+        READING_LENGTH_1,
+        READING_LENGTH_2,
+        READING_PAYLOAD,
+        READING_CHECKSUM_A,
+        READING_CHECKSUM_B;
+    }
+
+    private final byte[] payload = new byte[MAX_PAYLOAD_LENGTH];
+    private final FixAccumulator fix = new FixAccumulator();
+    private final NmeaParserMetrics metrics;
+    private final int navPvtIndex;
+    private final int otherIndex;
+
+    private UbxReaderState state = UbxReaderState.WAITING_FOR_SYNCH_1;
+    private int messageClass;
+    private int messageId;
+    private int length;
+    private int payloadIndex;
+    private int checksumA;
+    private int checksumB;
+    private long frameStartTime;
+    private long frameStartNanoTime;
+    private long frameCount;
+    private long checksumErrorCount;
+    private FixListener[] fixListeners = new FixListener[0];
+    private boolean tracing;
+    private PipelineProbe probe;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param metrics the metrics to record frames and listener callbacks into
+     */
+    public UbxFrameDecoder(NmeaParserMetrics metrics) {
+        this.metrics = metrics;
+        navPvtIndex = metrics.indexOf(NAV_PVT);
+        otherIndex = metrics.indexOf(NmeaParserMetrics.OTHER);
+        fix.setRequiredSentenceMask(FixAccumulator.NAV_PVT);
+    }
+
+    /**
+     * Sets the listeners to notify of each fix decoded from a NAV-PVT message.  The array is
+     * not copied and must not be modified after it is set.
+     */
+    public void setFixListeners(FixListener[] fixListeners) {
+        this.fixListeners = fixListeners;
+    }
+
+    /**
+     * Enables or disables stamping of the decoded fixes with the {@link System#nanoTime()} at
+     * which their frame arrived and was completely read.
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Sets the probe notified of decoded and rejected frames or {@code null} to disable
+     * notification.
+     */
+    public void setProbe(PipelineProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * Decodes the bytes in {@code buffer}, notifying the fix listeners of each valid NAV-PVT
+     * message.  Frames may span calls.
+     *
+     * @param buffer the buffer containing the input
+     * @param offset the offset of the first byte to decode
+     * @param count the number of bytes to decode
+     * @param receivedTime the time, in milliseconds since midnight January 1, 1970 UTC,
+     *            at which the bytes were received
+     */
+    public void decode(byte[] buffer, int offset, int count, long receivedTime) {
+        int end = offset + count;
+
+        for (int i = offset; i < end; i++) {
+            int b = buffer[i] & 0xFF;
+
+            switch (state) {
+                case WAITING_FOR_SYNCH_1:
+                    if (b == SYNC_CHAR_1) {
+                        frameStartTime = receivedTime;
+                        frameStartNanoTime = System.nanoTime();
+                        state = UbxReaderState.WAITING_FOR_SYNCH_2;
+                    }
+                    break;
+                case WAITING_FOR_SYNCH_2:
+                    if (b == SYNC_CHAR_2) {
+                        checksumA = 0;
+                        checksumB = 0;
+                        state = UbxReaderState.READING_CLASS;
+                    } else if (b != SYNC_CHAR_1) {
+                        state = UbxReaderState.WAITING_FOR_SYNCH_1;
+                    }
+                    break;
+                case READING_CLASS:
+                    updateChecksum(b);
+                    messageClass = b;
+                    state = UbxReaderState.READING_ID;
+                    break;
+                case READING_ID:
+                    updateChecksum(b);
+                    messageId = b;
+                    state = UbxReaderState.READING_LENGTH_1;
+                    break;
+                case READING_LENGTH_1:
+                    updateChecksum(b);
+                    length = b;
+                    state = UbxReaderState.READING_LENGTH_2;
+                    break;
+                case READING_LENGTH_2:
+                    updateChecksum(b);
+                    length |= b << 8;
+                    payloadIndex = 0;
+                    state = length == 0
+                            ? UbxReaderState.READING_CHECKSUM_A : UbxReaderState.READING_PAYLOAD;
+                    break;
+                case READING_PAYLOAD:
+                    updateChecksum(b);
+                    if (payloadIndex < MAX_PAYLOAD_LENGTH) {
+                        payload[payloadIndex] = (byte) b;
+                    }
+                    payloadIndex++;
+
+                    if (payloadIndex == length) {
+                        state = UbxReaderState.READING_CHECKSUM_A;
+                    }
+                    break;
+                case READING_CHECKSUM_A:
+                    if (b == checksumA) {
+                        state = UbxReaderState.READING_CHECKSUM_B;
+                    } else {
+                        checksumError();
+                    }
+                    break;
+                case READING_CHECKSUM_B:
+                    if (b == checksumB) {
+                        state = UbxReaderState.WAITING_FOR_SYNCH_1;
+                        frameCount++;
+                        handleFrame();
+                    } else {
+                        checksumError();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of frames received with a valid checksum.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of frames discarded due to an invalid checksum.
+     */
+    public long getChecksumErrorCount() {
+        return checksumErrorCount;
+    }
+
+    private void updateChecksum(int b) {
+        checksumA = (checksumA + b) & 0xFF;
+        checksumB = (checksumB + checksumA) & 0xFF;
+    }
+
+    private void checksumError() {
+        checksumErrorCount++;
+        metrics.recordInvalidSentence();
+        if (probe != null) {
+            probe.sentenceRejected(null, PipelineProbe.INVALID_CHECKSUM);
+        }
+        LOG.error("Invalid checksum for UBX message class {} ID {}.", messageClass, messageId);
+        state = UbxReaderState.WAITING_FOR_SYNCH_1;
+    }
+
+    private void handleFrame() {
+        if (messageClass == CLASS_NAV && messageId == ID_NAV_PVT) {
+            metrics.recordSentence(navPvtIndex, frameStartNanoTime);
+
+            if (length == NAV_PVT_LENGTH) {
+                decodeNavPvt();
+            } else {
+                metrics.recordInvalidSentence();
+                if (probe != null) {
+                    probe.sentenceRejected(NAV_PVT, PipelineProbe.INVALID_LENGTH);
+                }
+                LOG.error("Invalid UBX NAV-PVT length {}.", length);
+            }
+        } else {
+            metrics.recordSentence(otherIndex, frameStartNanoTime);
+            metrics.recordIgnoredSentence();
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Ignoring UBX message class {} ID {}.", messageClass, messageId);
+            }
+        }
+    }
+
+    private void decodeNavPvt() {
+        int valid = readU1(11);
+        int fixType = readU1(20);
+        int flags = readU1(21);
+
+        if ((valid & VALID_TIME) == 0 || (flags & FLAGS_GNSS_FIX_OK) == 0
+                || (fixType != FIX_TYPE_2D && fixType != FIX_TYPE_3D
+                        && fixType != FIX_TYPE_GNSS_DEAD_RECKONING)) {
+            LOG.debug("UBX NAV-PVT does not contain a valid fix.  Ignoring message.");
+            return;
+        }
+
+        long time = readU1(8) * 3600000L + readU1(9) * 60000L + readU1(10) * 1000L
+                + Math.round(readI4(16) / 1000000d);
+
+        // Nanoseconds may be negative and round the time into the previous or next day.
+        if (time < 0) {
+            time += MILLISECONDS_PER_DAY;
+        } else if (time >= MILLISECONDS_PER_DAY) {
+            time -= MILLISECONDS_PER_DAY;
+        }
+
+        long fusionStartTime = System.nanoTime();
+        fix.clear();
+        fix.acceptNavPvt(
+                time,
+                readI4(28) / 1e7d,
+                readI4(24) / 1e7d,
+                readI4(36) / 1000d,
+                readI4(60) / 1000f,
+                readI4(64) / 1e5f,
+                frameStartTime);
+        if (tracing) {
+            fix.stamp(frameStartNanoTime, fusionStartTime);
+        }
+        metrics.getFusionTime().recordSince(fusionStartTime);
+        long parseTime = System.nanoTime() - frameStartNanoTime;
+        metrics.getParseTime().record(parseTime);
+        if (probe != null) {
+            probe.sentenceParsed(NAV_PVT, parseTime);
+        }
+
+        FixListener[] listeners = fixListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            FixListener listener = listeners[i];
+            long listenerStartTime = System.nanoTime();
+            try {
+                listener.receiveFix(fix);
+            } catch (Exception e) {
+                metrics.recordListenerError();
+                LOG.error("Error in fix listener " + listener + ".", e);
+            }
+            metrics.getFixListenerTime().recordSince(listenerStartTime);
+        }
+    }
+
+    private int readU1(int offset) {
+        return payload[offset] & 0xFF;
+    }
+
+    private int readI4(int offset) {
+        return (payload[offset] & 0xFF)
+                | (payload[offset + 1] & 0xFF) << 8
+                | (payload[offset + 2] & 0xFF) << 16
+                | payload[offset + 3] << 24;
+    }
+}
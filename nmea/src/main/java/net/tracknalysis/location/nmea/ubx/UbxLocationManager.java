@@ -0,0 +1,81 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+import net.tracknalysis.common.io.SocketManager;
+import net.tracknalysis.location.nmea.NmeaLocationManager;
+import net.tracknalysis.location.nmea.NmeaParser;
+import net.tracknalysis.location.nmea.NmeaParserMetrics;
+import net.tracknalysis.location.nmea.receiver.ReceiverConfigurator;
+import net.tracknalysis.location.nmea.receiver.UbloxReceiverConfigurator;
+
+/**
+ * A location manager based on UBX NAV-PVT input.  Location and route processing is identical to
+ * {@link NmeaLocationManager}.
+ * <p/>
+ * Only a {@link UbloxReceiverConfigurator} can be used to configure the receiver.  It enables
+ * NAV-PVT output and disables NMEA output.
+ *
+ * @author David Valeri
+ */
+public class UbxLocationManager extends NmeaLocationManager {
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param socketManager the socket manager to provide data to parse
+     */
+    public UbxLocationManager(SocketManager socketManager) {
+        super(socketManager);
+    }
+
+    @Override
+    protected NmeaParserMetrics createParserMetrics() {
+        return UbxParser.newMetrics();
+    }
+
+    @Override
+    protected NmeaParser createParser(InputStream inputStream, NmeaParserMetrics metrics) {
+        return new UbxParser(inputStream, metrics);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Configures the receiver to output NAV-PVT messages rather than the sentence types.
+     *
+     * @throws IllegalArgumentException if the configurator is not a
+     *             {@link UbloxReceiverConfigurator}
+     */
+    @Override
+    protected void configureReceiver(ReceiverConfigurator receiverConfigurator,
+            OutputStream outputStream, Set<String> sentenceTypes, int fixInterval)
+            throws IOException {
+
+        if (!(receiverConfigurator instanceof UbloxReceiverConfigurator)) {
+            throw new IllegalArgumentException("Receiver configurator " + receiverConfigurator
+                    + " cannot configure UBX output.");
+        }
+
+        ((UbloxReceiverConfigurator) receiverConfigurator).configureNavPvt(outputStream,
+                fixInterval);
+    }
+}
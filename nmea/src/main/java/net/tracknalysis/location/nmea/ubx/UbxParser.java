@@ -0,0 +1,244 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.common.concurrent.GracefulShutdownThread;
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.FixListener;
+import net.tracknalysis.location.nmea.NmeaParser;
+import net.tracknalysis.location.nmea.NmeaParserMetrics;
+import net.tracknalysis.location.nmea.NmeaSentenceListener;
+import net.tracknalysis.location.nmea.SatelliteViewListener;
+import net.tracknalysis.location.nmea.journal.NmeaJournal;
+
+/**
+ * A parser for the u-blox UBX binary protocol that can stand in for an NMEA parser.  Each valid
+ * NAV-PVT message is decoded directly from the input buffer into a reused
+ * {@link FixAccumulator} and delivered to the registered {@link FixListener}s, feeding the same
+ * location and route processing as the NMEA fix path.
+ * <p/>
+ * UBX input does not contain NMEA sentences or GSV messages.  Sentence and satellite view
+ * listeners are accepted for compatibility but are never notified.  A NAV-PVT message reports a
+ * complete fix on its own, so the fix sentence types do not apply.
+ *
+ * @author David Valeri
+ */
+public class UbxParser implements NmeaParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UbxParser.class);
+
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final AtomicInteger UBX_READER_THREAD_INSTANCE_COUNTER = new AtomicInteger();
+
+    private InputStream ubxInputStream;
+
+    private UbxReaderThread ubxReaderThread;
+    private List<FixListener> fixListeners = new CopyOnWriteArrayList<FixListener>();
+    /**
+     * Snapshot of {@link #fixListeners}, replaced on modification, so that fixes are delivered
+     * without allocating an iterator.
+     */
+    private volatile FixListener[] fixListenerArray = new FixListener[0];
+    private final NmeaParserMetrics metrics;
+    private volatile boolean tracing;
+    private volatile PipelineProbe probe;
+    private volatile NmeaJournal journal;
+
+    public UbxParser(InputStream ubxInputStream) {
+        this(ubxInputStream, newMetrics());
+    }
+
+    /**
+     * Constructs a new instance recording into {@code metrics}, so that counters outlive the
+     * parser.
+     *
+     * @param ubxInputStream the input
+     * @param metrics the metrics, typically created by {@link #newMetrics()}
+     */
+    public UbxParser(InputStream ubxInputStream, NmeaParserMetrics metrics) {
+        super();
+        this.ubxInputStream = ubxInputStream;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (ubxReaderThread == null) {
+            ubxReaderThread = new UbxReaderThread();
+            ubxReaderThread.start();
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (ubxReaderThread != null) {
+            ubxReaderThread.cancel();
+        }
+    }
+
+    @Override
+    public void addSynchronousListener(NmeaSentenceListener listener) {
+        LOG.debug("UBX input does not contain NMEA sentences.  {} will not be notified.",
+                listener);
+    }
+
+    @Override
+    public void removeSynchronousListener(NmeaSentenceListener listener) {
+        // No-op
+    }
+
+    @Override
+    public synchronized void addSynchronousFixListener(FixListener listener) {
+        if (!fixListeners.contains(listener)) {
+            fixListeners.add(listener);
+            fixListenerArray = fixListeners.toArray(new FixListener[0]);
+        }
+    }
+
+    @Override
+    public synchronized void removeSynchronousFixListener(FixListener listener) {
+        fixListeners.remove(listener);
+        fixListenerArray = fixListeners.toArray(new FixListener[0]);
+    }
+
+    @Override
+    public void addSynchronousSatelliteViewListener(SatelliteViewListener listener) {
+        LOG.debug("UBX input does not contain GSV messages.  {} will not be notified.",
+                listener);
+    }
+
+    @Override
+    public void removeSynchronousSatelliteViewListener(SatelliteViewListener listener) {
+        // No-op
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * UBX frames are counted as sentences with NAV-PVT counted individually.  Frames with an
+     * invalid checksum are counted as invalid sentences.
+     */
+    @Override
+    public NmeaParserMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns new metrics counting NAV-PVT frames individually.
+     */
+    public static NmeaParserMetrics newMetrics() {
+        return new NmeaParserMetrics(UbxFrameDecoder.NAV_PVT);
+    }
+
+    @Override
+    public void setFixSentenceTypes(Set<String> sentenceTypes) {
+        // Validated for consistency with the NMEA parser but otherwise not applicable.
+        FixAccumulator.toSentenceMask(sentenceTypes);
+    }
+
+    @Override
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    public void setProbe(PipelineProbe probe) {
+        this.probe = probe;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Each read from the input is appended as one record.
+     */
+    @Override
+    public void setJournal(NmeaJournal journal) {
+        this.journal = journal;
+    }
+
+    private void journal(byte[] input, int count, long time, long nanoTime) {
+        NmeaJournal journal = this.journal;
+        if (journal != null) {
+            try {
+                journal.append(input, 0, count, time, nanoTime);
+            } catch (IOException e) {
+                LOG.error("Error appending to UBX journal " + journal.getDirectory()
+                        + ".  Journaling disabled.", e);
+                if (this.journal == journal) {
+                    this.journal = null;
+                }
+            }
+        }
+    }
+
+    private class UbxReaderThread extends GracefulShutdownThread {
+
+        private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+        private final UbxFrameDecoder decoder = new UbxFrameDecoder(metrics);
+
+        public UbxReaderThread() {
+            super("UBX Parser Thread " + UBX_READER_THREAD_INSTANCE_COUNTER.getAndIncrement());
+        }
+
+        @Override
+        public void run() {
+
+            int count = 0;
+
+            while (keepRunning() && count != -1) {
+                try {
+                    count = ubxInputStream.read(buffer);
+
+                    if (count > 0) {
+                        long receivedTime = System.currentTimeMillis();
+                        journal(buffer, count, receivedTime, System.nanoTime());
+                        decoder.setFixListeners(fixListenerArray);
+                        decoder.setTracing(tracing);
+                        decoder.setProbe(probe);
+                        decoder.decode(buffer, 0, count, receivedTime);
+                    }
+                } catch (Exception e) {
+                    if (keepRunning()) {
+                        LOG.error("Error reading UBX input.  UBX reader thread terminating.", e);
+                    } else {
+                        LOG.info("Error thrown while stopping UBX reader thread.", e);
+                    }
+
+                    return;
+                }
+            }
+
+            if (count == -1) {
+                LOG.info("End of UBX reader input encountered.  UBX reader thread terminating.  "
+                        + "Received {} frames with {} checksum errors.",
+                        decoder.getFrameCount(), decoder.getChecksumErrorCount());
+            }
+        }
+    }
+}
@@ -20,13 +20,20 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationListener;
 import net.tracknalysis.location.nmea.GgaSentence.FixQuality;
+import net.tracknalysis.location.nmea.GsaSentence.FixType;
+import net.tracknalysis.location.nmea.GsaSentence.SelectionMode;
 import net.tracknalysis.location.nmea.RmcSentence.ModeIndicator;
 import net.tracknalysis.location.nmea.RmcSentence.StatusIndicator;
+import net.tracknalysis.location.nmea.SatelliteView.Constellation;
 
 import org.junit.Test;
 
@@ -191,6 +198,307 @@ public abstract class AbstractNmeaParserTest {
             assertEquals(0, rmcSentence.getMagneticVariation(), 0);
             assertEquals(ModeIndicator.AUTONOMOUS, rmcSentence.getModeIndicator());
             
+            NmeaParserMetrics metrics = parser.getMetrics();
+            assertEquals(119, metrics.getSentenceCount("GGA"));
+            assertEquals(119, metrics.getSentenceCount("RMC"));
+            assertEquals(238, metrics.getSentenceCount());
+            assertEquals(0, metrics.getInvalidSentenceCount());
+            assertEquals(238, metrics.getParseTime().getCount());
+            assertEquals(238, metrics.getSentenceListenerTime().getCount());
+            
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.stop();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testFixListenerMatchesSentenceFusion() throws Exception {
+        
+        final List<Location> sentenceLocations = Collections
+                .synchronizedList(new LinkedList<Location>());
+        final List<Location> fixLocations = Collections
+                .synchronizedList(new LinkedList<Location>());
+        InputStream is = this.getClass().getResourceAsStream("/QStarz-818XT-NMEA.txt");
+        
+        NmeaParser parser = getNmeaParser(is);
+        NmeaLocationManager sentenceFusion = new NmeaLocationManager(null);
+        
+        try {
+            sentenceFusion.addSynchronousListener(new LocationListener() {
+                @Override
+                public void receiveLocation(Location location) {
+                    sentenceLocations.add(location);
+                }
+            });
+            parser.addSynchronousListener(sentenceFusion);
+            parser.addSynchronousFixListener(new FixListener() {
+                @Override
+                public void receiveFix(FixAccumulator fix) {
+                    fixLocations.add(fix.toLocation());
+                }
+            });
+            parser.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (fixLocations.size() == 119 && sentenceLocations.size() == 119) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            for (int i = 0; i < 119; i++) {
+                Location expected = sentenceLocations.get(i);
+                Location actual = fixLocations.get(i);
+                
+                assertEquals(expected.getReceivedTime(), actual.getReceivedTime());
+                assertEquals(expected.getTime(), actual.getTime());
+                assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+                assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+                assertEquals(expected.getAltitude(), actual.getAltitude(), 0);
+                assertEquals(expected.getSpeed(), actual.getSpeed(), 0);
+                assertEquals(expected.getBearing(), actual.getBearing(), 0);
+            }
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.stop();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdditionalSentenceTypes() throws Exception {
+        
+        String sentenceStrings =
+                "$GPVTG,229.39,T,,M,0.09,N,0.17,K,A*3C\r\n"
+                + "$GPGLL,3859.0335,N,07731.9688,W,180358.200,A,D*4F\r\n"
+                + "$GNGNS,180358.200,3859.0335,N,07731.9688,W,AAN,12,0.9,113.3,-33.4,,,V*1A\r\n"
+                + "$GPZDA,180358.200,13,05,2012,00,00*5A\r\n"
+                + "$GPGSA,A,3,04,05,,09,12,,,24,,,,,2.5,1.3,2.1*39\r\n";
+        
+        InputStream is = new ByteArrayInputStream(sentenceStrings.getBytes());
+        
+        final List<AbstractNmeaSentence> sentences = Collections
+                .synchronizedList(new LinkedList<AbstractNmeaSentence>());
+        
+        NmeaParser parser = getNmeaParser(is);
+        
+        try {
+            parser.addSynchronousListener(new NmeaSentenceListener() {
+                @Override
+                public void receiveSentence(AbstractNmeaSentence sentence) {
+                    sentences.add(sentence);
+                }
+            });
+            parser.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (sentences.size() == 5) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            assertTrue(sentences.get(0) instanceof VtgSentence);
+            VtgSentence vtgSentence = (VtgSentence) sentences.get(0);
+            assertEquals(229.39f, vtgSentence.getTrueCourse(), 0);
+            assertEquals(0f, vtgSentence.getMagneticCourse(), 0);
+            assertEquals(0.09f, vtgSentence.getSpeed(), 0);
+            assertEquals(0.17f, vtgSentence.getSpeedKph(), 0);
+            assertEquals(ModeIndicator.AUTONOMOUS, vtgSentence.getModeIndicator());
+            
+            assertTrue(sentences.get(1) instanceof GllSentence);
+            GllSentence gllSentence = (GllSentence) sentences.get(1);
+            assertEquals(38.983891666666665d, gllSentence.getLatitude(), 0);
+            assertEquals(-77.53281333333332d, gllSentence.getLongitude(), 0);
+            assertEquals(65038200l, gllSentence.getTime());
+            assertEquals(StatusIndicator.ACTIVE, gllSentence.getStatusIndicator());
+            assertEquals(ModeIndicator.DIFFERENTIAL, gllSentence.getModeIndicator());
+            
+            // The trailing NMEA 4.1 navigational status field is skipped.
+            assertTrue(sentences.get(2) instanceof GnsSentence);
+            GnsSentence gnsSentence = (GnsSentence) sentences.get(2);
+            assertEquals(65038200l, gnsSentence.getTime());
+            assertEquals(38.983891666666665d, gnsSentence.getLatitude(), 0);
+            assertEquals(-77.53281333333332d, gnsSentence.getLongitude(), 0);
+            assertEquals(3, gnsSentence.getModeIndicators().length);
+            assertEquals(ModeIndicator.AUTONOMOUS, gnsSentence.getModeIndicators()[0]);
+            assertEquals(ModeIndicator.NOT_VALID, gnsSentence.getModeIndicators()[2]);
+            assertTrue(gnsSentence.isValid());
+            assertEquals(12, gnsSentence.getNumberOfSatelites());
+            assertEquals(0.9f, gnsSentence.getHdop(), 0);
+            assertEquals(113.3f, gnsSentence.getAltitude(), 0);
+            assertEquals(-33.4f, gnsSentence.getGeoidalSepraration(), 0);
+            
+            assertTrue(sentences.get(3) instanceof ZdaSentence);
+            ZdaSentence zdaSentence = (ZdaSentence) sentences.get(3);
+            assertEquals(65038200l, zdaSentence.getTime());
+            assertEquals(13, zdaSentence.getDay());
+            assertEquals(5, zdaSentence.getMonth());
+            assertEquals(2012, zdaSentence.getYear());
+            assertEquals(0, zdaSentence.getLocalZoneHours());
+            assertEquals(0, zdaSentence.getLocalZoneMinutes());
+            
+            assertTrue(sentences.get(4) instanceof GsaSentence);
+            GsaSentence gsaSentence = (GsaSentence) sentences.get(4);
+            assertEquals(SelectionMode.AUTOMATIC, gsaSentence.getSelectionMode());
+            assertEquals(FixType.FIX_3D, gsaSentence.getFixType());
+            assertEquals(5, gsaSentence.getNumberOfSatelliteIds());
+            assertEquals(4, gsaSentence.getSatelliteIds()[0]);
+            assertEquals(24, gsaSentence.getSatelliteIds()[4]);
+            assertEquals(2.5f, gsaSentence.getPdop(), 0);
+            assertEquals(1.3f, gsaSentence.getHdop(), 0);
+            assertEquals(2.1f, gsaSentence.getVdop(), 0);
+            
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.stop();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testGnsVtgFix() throws Exception {
+        
+        String sentenceStrings =
+                "$GNGNS,180358.200,3859.0335,N,07731.9688,W,AA,12,0.9,113.3,-33.4,,*5B\r\n"
+                + "$GPGGA,180358.200,3859.0000,N,07731.0000,W,1,6,1.37,10.0,M,-33.4,M,,*6E\r\n"
+                + "$GPVTG,229.39,T,,M,10.0,N,18.52,K,A*3C\r\n"
+                + "$GNGNS,180358.400,3859.0335,N,07731.9688,W,NN,0,,,,,*5B\r\n"
+                + "$GPVTG,,T,,M,,N,,K,N*3C\r\n"
+                + "$GNGNS,180358.600,3859.0336,N,07731.9689,W,D,12,0.9,113.4,-33.4,,*5B\r\n"
+                + "$GPVTG,229.40,T,,M,10.1,N,18.71,K,D*3C\r\n";
+        
+        InputStream is = new ByteArrayInputStream(sentenceStrings.getBytes());
+        
+        final List<Location> locations = Collections
+                .synchronizedList(new LinkedList<Location>());
+        
+        NmeaParser parser = getNmeaParser(is);
+        
+        try {
+            parser.setFixSentenceTypes(new HashSet<String>(Arrays.asList("GNS", "VTG")));
+            parser.addSynchronousFixListener(new FixListener() {
+                @Override
+                public void receiveFix(FixAccumulator fix) {
+                    locations.add(fix.toLocation());
+                }
+            });
+            parser.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (locations.size() == 2) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            // Give the parser time to report any unexpected fixes.
+            Thread.sleep(500l);
+            assertEquals(2, locations.size());
+            
+            Location location = locations.get(0);
+            assertEquals(65038200l, location.getTime());
+            assertEquals(38.983891666666665d, location.getLatitude(), 0);
+            assertEquals(-77.53281333333332d, location.getLongitude(), 0);
+            assertEquals(113.3f, location.getAltitude(), 0);
+            assertEquals(10.0f * 0.514444444f, location.getSpeed(), 0);
+            assertEquals(229.39f, location.getBearing(), 0);
+            
+            location = locations.get(1);
+            assertEquals(65038600l, location.getTime());
+            assertEquals(229.40f, location.getBearing(), 0);
+            
+        } finally {
+            if (parser != null) {
+                try {
+                    parser.stop();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSatelliteView() throws Exception {
+        
+        String sentenceStrings =
+                "$GPGSV,2,1,05,04,77,046,42,05,15,102,35,09,,,,12,45,298,40*7A\r\n"
+                + "$GPGSV,2,2,05,24,32,184,38*4F\r\n"
+                + "$GLGSV,1,1,02,65,45,040,30,66,10,120,,1*5E\r\n"
+                + "$GPGGA,180358.200,3859.0335,N,07731.9688,W,1,6,1.37,113.3,M,-33.4,M,,*6E\r\n"
+                // Out of order part discards the GPS table.
+                + "$GPGSV,2,2,05,24,32,184,38*4F\r\n"
+                + "$GLGSV,1,1,01,65,45,040,31*5E\r\n"
+                // Start of the next epoch publishes the previous view.
+                + "$GLGSV,1,1,00*5E\r\n"
+                + "$GPGGA,180358.400,3859.0335,N,07731.9688,W,1,6,1.37,113.3,M,-33.4,M,,*6E\r\n";
+        
+        InputStream is = new ByteArrayInputStream(sentenceStrings.getBytes());
+        
+        final List<String> views = Collections.synchronizedList(new LinkedList<String>());
+        final List<Integer> gpsSnrs = Collections.synchronizedList(new LinkedList<Integer>());
+        
+        NmeaParser parser = getNmeaParser(is);
+        
+        try {
+            parser.addSynchronousSatelliteViewListener(new SatelliteViewListener() {
+                @Override
+                public void receiveSatelliteView(SatelliteView view) {
+                    if (views.isEmpty()) {
+                        for (int i = 0; i < view.getSatelliteCount(Constellation.GPS); i++) {
+                            gpsSnrs.add(view.getSnr(Constellation.GPS, i));
+                        }
+                    }
+                    
+                    views.add(view.toString());
+                }
+            });
+            parser.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (views.size() == 3) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            assertEquals(Arrays.asList(42, 35, SatelliteView.NOT_AVAILABLE, 40, 38), gpsSnrs);
+            assertTrue(views.get(0).contains("GPS=[4:42, 5:35, 9:-1, 12:40, 24:38]"));
+            assertTrue(views.get(0).contains("GLONASS=[65:30, 66:-1]"));
+            assertEquals(false, views.get(1).contains("GPS"));
+            assertTrue(views.get(1).contains("GLONASS=[65:31]"));
+            assertTrue(views.get(2).contains("GLONASS=[]"));
             
         } finally {
             if (parser != null) {
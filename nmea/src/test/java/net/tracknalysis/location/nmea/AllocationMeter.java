@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the current thread using the HotSpot specific
+ * {@code com.sun.management.ThreadMXBean}.
+ *
+ * @author David Valeri
+ */
+final class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN;
+
+    static {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean)
+                        .isThreadAllocatedMemorySupported()) {
+            THREAD_MX_BEAN = (com.sun.management.ThreadMXBean) threadMXBean;
+            THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            THREAD_MX_BEAN = null;
+        }
+    }
+
+    private long startBytes;
+    private long allocatedBytes;
+
+    private AllocationMeter() {
+    }
+
+    /**
+     * Returns a new meter or {@code null} if the JVM does not support measuring thread allocation.
+     */
+    public static AllocationMeter create() {
+        return THREAD_MX_BEAN == null ? null : new AllocationMeter();
+    }
+
+    /**
+     * Starts measuring on the current thread.
+     */
+    public void start() {
+        startBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Stops measuring on the current thread.  Must be called on the thread that called
+     * {@link #start()}.
+     */
+    public void stop() {
+        allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId())
+                - startBytes;
+    }
+
+    /**
+     * Returns the bytes allocated between the calls to {@link #start()} and {@link #stop()}.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
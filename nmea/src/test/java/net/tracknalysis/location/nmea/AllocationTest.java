@@ -0,0 +1,382 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.Waypoint;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser;
+import net.tracknalysis.location.nmea.ubx.UbxParser;
+import net.tracknalysis.location.nmea.ubx.UbxTestFrames;
+
+/**
+ * Guards the steady state allocation of the hot paths.  Each test replays the QStarz sample
+ * until the JIT has compiled the path and then asserts that the bytes allocated per sentence or
+ * fix stay within a budget.  Debug logging is disabled while measuring as formatting log messages
+ * allocates.
+ *
+ * @author David Valeri
+ */
+public class AllocationTest {
+
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(AllocationTest.class);
+
+    private static final int WARM_UP_PASSES = 200;
+    private static final int MEASURED_PASSES = 100;
+    private static final int FIXES_PER_PASS = 119;
+    private static final int SENTENCES_PER_PASS = 238;
+
+    /**
+     * Budget for the parser reader thread.  The character decoder allocates a small wrapper each
+     * time the buffered reader fills, which amounts to a fraction of a byte per sentence.
+     */
+    private static final double PARSER_BYTES_PER_SENTENCE = 1d;
+
+    /**
+     * Budget for the UBX parser reader thread, which reads the frames directly from its buffer.
+     */
+    private static final double UBX_PARSER_BYTES_PER_FRAME = 1d;
+
+    private static final double RECEIVE_SENTENCE_BYTES_PER_SENTENCE = 1d;
+
+    private static final double PROCESS_UPDATE_BYTES_PER_FIX = 1d;
+
+    private Logger logger;
+    private Level level;
+
+    @Before
+    public void setup() {
+        logger = Logger.getLogger("net.tracknalysis");
+        level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+    }
+
+    @After
+    public void tearDown() {
+        logger.setLevel(level);
+    }
+
+    @Test
+    public void testSimpleNmeaParser() throws Exception {
+        final AllocationMeter meter = AllocationMeter.create();
+        if (meter == null) {
+            LOG.warn("Thread allocation measurement is not supported.  Skipping test.");
+            return;
+        }
+
+        final int warmUpFixes = WARM_UP_PASSES * FIXES_PER_PASS;
+        final int totalFixes = (WARM_UP_PASSES + MEASURED_PASSES) * FIXES_PER_PASS;
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        SimpleNmeaParser parser = new SimpleNmeaParser(new RepeatingInputStream(
+                readSample(), WARM_UP_PASSES + MEASURED_PASSES));
+
+        parser.addSynchronousFixListener(new FixListener() {
+
+            private int fixCount;
+
+            @Override
+            public void receiveFix(FixAccumulator fix) {
+                fixCount++;
+
+                if (fixCount == warmUpFixes) {
+                    meter.start();
+                } else if (fixCount == totalFixes) {
+                    meter.stop();
+                    latch.countDown();
+                }
+            }
+        });
+
+        try {
+            parser.start();
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+        } finally {
+            parser.stop();
+        }
+
+        assertBudget("SimpleNmeaParser", meter, MEASURED_PASSES * SENTENCES_PER_PASS,
+                PARSER_BYTES_PER_SENTENCE);
+    }
+
+    @Test
+    public void testUbxParser() throws Exception {
+        final AllocationMeter meter = AllocationMeter.create();
+        if (meter == null) {
+            LOG.warn("Thread allocation measurement is not supported.  Skipping test.");
+            return;
+        }
+
+        ByteArrayOutputStream sample = new ByteArrayOutputStream();
+        for (int i = 0; i < FIXES_PER_PASS; i++) {
+            sample.write(UbxTestFrames.navPvt(50000000L + i * 100L, 38.98395d + i * 0.00001d,
+                    -77.532813d, 100d, 30f, 90f));
+        }
+
+        final int warmUpFixes = WARM_UP_PASSES * FIXES_PER_PASS;
+        final int totalFixes = (WARM_UP_PASSES + MEASURED_PASSES) * FIXES_PER_PASS;
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        UbxParser parser = new UbxParser(new RepeatingInputStream(
+                sample.toByteArray(), WARM_UP_PASSES + MEASURED_PASSES));
+
+        parser.addSynchronousFixListener(new FixListener() {
+
+            private int fixCount;
+
+            @Override
+            public void receiveFix(FixAccumulator fix) {
+                fixCount++;
+
+                if (fixCount == warmUpFixes) {
+                    meter.start();
+                } else if (fixCount == totalFixes) {
+                    meter.stop();
+                    latch.countDown();
+                }
+            }
+        });
+
+        try {
+            parser.start();
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+        } finally {
+            parser.stop();
+        }
+
+        assertBudget("UbxParser", meter, MEASURED_PASSES * FIXES_PER_PASS,
+                UBX_PARSER_BYTES_PER_FRAME);
+    }
+
+    @Test
+    public void testReceiveSentence() throws Exception {
+        AllocationMeter meter = AllocationMeter.create();
+        if (meter == null) {
+            LOG.warn("Thread allocation measurement is not supported.  Skipping test.");
+            return;
+        }
+
+        List<AbstractNmeaSentence> sentences = readSentences();
+        assertEquals(SENTENCES_PER_PASS, sentences.size());
+
+        NmeaLocationManager locationManager = new NmeaLocationManager(null);
+        locationManager.addRouteForSynchronousListeners(createRoute(), 10f, new NoOpRouteListener());
+
+        for (int i = 0; i < WARM_UP_PASSES; i++) {
+            for (AbstractNmeaSentence sentence : sentences) {
+                locationManager.receiveSentence(sentence);
+            }
+        }
+
+        meter.start();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            for (int j = 0; j < SENTENCES_PER_PASS; j++) {
+                locationManager.receiveSentence(sentences.get(j));
+            }
+        }
+        meter.stop();
+
+        assertEquals((WARM_UP_PASSES + MEASURED_PASSES) * FIXES_PER_PASS,
+                locationManager.getMetrics().getFixCount());
+        assertBudget("NmeaLocationManager.receiveSentence", meter,
+                MEASURED_PASSES * SENTENCES_PER_PASS, RECEIVE_SENTENCE_BYTES_PER_SENTENCE);
+    }
+
+    @Test
+    public void testProcessUpdate() throws Exception {
+        AllocationMeter meter = AllocationMeter.create();
+        if (meter == null) {
+            LOG.warn("Thread allocation measurement is not supported.  Skipping test.");
+            return;
+        }
+
+        List<AbstractNmeaSentence> sentences = readSentences();
+        double[] latitudes = new double[FIXES_PER_PASS];
+        double[] longitudes = new double[FIXES_PER_PASS];
+        long[] times = new long[FIXES_PER_PASS];
+        int fixCount = 0;
+
+        for (AbstractNmeaSentence sentence : sentences) {
+            if (sentence instanceof GgaSentence) {
+                GgaSentence ggaSentence = (GgaSentence) sentence;
+                latitudes[fixCount] = ggaSentence.getLatitude();
+                longitudes[fixCount] = ggaSentence.getLongitude();
+                times[fixCount] = ggaSentence.getTime();
+                fixCount++;
+            }
+        }
+
+        assertEquals(FIXES_PER_PASS, fixCount);
+
+        NmeaRouteManager routeManager = new NmeaRouteManager();
+        routeManager.addRouteForSynchronousListeners(createRoute(), 10f, new NoOpRouteListener());
+        FixAccumulator fix = new FixAccumulator();
+        fix.setRequiredSentenceMask(FixAccumulator.GGA);
+
+        for (int i = 0; i < WARM_UP_PASSES; i++) {
+            for (int j = 0; j < FIXES_PER_PASS; j++) {
+                fix.clear();
+                fix.acceptGga(times[j], latitudes[j], longitudes[j], 0, times[j]);
+                routeManager.receiveFix(fix);
+            }
+        }
+
+        meter.start();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            for (int j = 0; j < FIXES_PER_PASS; j++) {
+                fix.clear();
+                fix.acceptGga(times[j], latitudes[j], longitudes[j], 0, times[j]);
+                routeManager.receiveFix(fix);
+            }
+        }
+        meter.stop();
+
+        assertEquals((WARM_UP_PASSES + MEASURED_PASSES) * FIXES_PER_PASS,
+                routeManager.getMetrics().getUpdateCount());
+        assertBudget("AbstractRouteManager.processUpdate", meter,
+                MEASURED_PASSES * FIXES_PER_PASS, PROCESS_UPDATE_BYTES_PER_FIX);
+    }
+
+    private void assertBudget(String name, AllocationMeter meter, int count, double budget) {
+        double bytesPer = (double) meter.getAllocatedBytes() / count;
+
+        LOG.info("{} allocated {} bytes over {} operations, {} bytes per operation.",
+                new Object[] {name, meter.getAllocatedBytes(), count, bytesPer});
+
+        assertTrue(name + " allocated " + bytesPer + " bytes per operation, exceeding the budget of "
+                + budget + ".", bytesPer <= budget);
+    }
+
+    private Route createRoute() {
+        return new Route("Allocation", Arrays.asList(
+                new Waypoint("1", 38.98395d, -77.532813d),
+                new Waypoint("2", 38.983891d, -77.53281d)));
+    }
+
+    private byte[] readSample() throws Exception {
+        InputStream in = getClass().getResourceAsStream("/QStarz-818XT-NMEA.txt");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private List<AbstractNmeaSentence> readSentences() throws Exception {
+        final List<AbstractNmeaSentence> sentences = Collections.synchronizedList(
+                new ArrayList<AbstractNmeaSentence>());
+        final CountDownLatch latch = new CountDownLatch(SENTENCES_PER_PASS);
+
+        SimpleNmeaParser parser = new SimpleNmeaParser(getClass().getResourceAsStream(
+                "/QStarz-818XT-NMEA.txt"));
+        parser.addSynchronousListener(new NmeaSentenceListener() {
+            @Override
+            public void receiveSentence(AbstractNmeaSentence sentence) {
+                sentences.add(sentence);
+                latch.countDown();
+            }
+        });
+
+        try {
+            parser.start();
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            parser.stop();
+        }
+
+        return new ArrayList<AbstractNmeaSentence>(sentences);
+    }
+
+    private static final class NoOpRouteListener implements RouteListener {
+        @Override
+        public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+        }
+    }
+
+    /**
+     * Replays a sample a fixed number of times without allocating.
+     */
+    private static final class RepeatingInputStream extends InputStream {
+
+        private final byte[] sample;
+        private int remainingPasses;
+        private int position;
+
+        public RepeatingInputStream(byte[] sample, int passes) {
+            this.sample = sample;
+            this.remainingPasses = passes;
+        }
+
+        @Override
+        public int read() {
+            if (remainingPasses == 0) {
+                return -1;
+            }
+
+            int value = sample[position++] & 0xFF;
+            advance();
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remainingPasses == 0) {
+                return -1;
+            }
+
+            int count = Math.min(length, sample.length - position);
+            System.arraycopy(sample, position, buffer, offset, count);
+            position += count;
+            advance();
+            return count;
+        }
+
+        private void advance() {
+            if (position == sample.length) {
+                position = 0;
+                remainingPasses--;
+            }
+        }
+    }
+}
@@ -16,19 +16,40 @@
 package net.tracknalysis.location.nmea;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
 
 import org.junit.Test;
 
 import net.tracknalysis.common.io.SocketManager;
 import net.tracknalysis.common.io.StreamSocketManager;
 import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationManagerLifecycleNotificationType;
 import net.tracknalysis.location.LocationListener;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.Waypoint;
+import net.tracknalysis.location.metrics.JmxMetricsExporter;
+import net.tracknalysis.location.metrics.PipelineProbe;
+import net.tracknalysis.location.metrics.PipelineTrace;
+import net.tracknalysis.location.nmea.receiver.ReceiverConfigurator;
 
 /**
  * @author David Valeri
@@ -132,4 +153,412 @@ public class NmeaLocationManagerTest {
             locationManager.stop();
         }
     }
+
+    @Test
+    public void testMetrics() throws Exception {
+        
+        SocketManager socketManager = new StreamSocketManager(this.getClass()
+                .getResourceAsStream("/QStarz-818XT-NMEA.txt"), null);
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        JmxMetricsExporter exporter = new JmxMetricsExporter(mBeanServer);
+        
+        try {
+            
+            final List<Location> locations = Collections.synchronizedList(new LinkedList<Location>());
+            
+            locationManager.addSynchronousListener(new LocationListener() {
+                @Override
+                public void receiveLocation(Location location) {
+                    locations.add(location);
+                }
+            });
+            
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (locations.size() == 119) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            NmeaLocationManagerMetrics metrics = locationManager.getMetrics();
+            assertEquals(119, metrics.getFixCount());
+            assertEquals(119, metrics.getLocationListenerTime().getCount());
+            assertEquals(119, locationManager.getRouteManagerMetrics().getUpdateCount());
+            assertEquals(238, locationManager.getParserMetrics().getSentenceCount());
+            assertEquals(238, locationManager.getParserMetrics().getParseTime().getCount());
+            assertEquals(238, locationManager.getParserMetrics().getFusionTime().getCount());
+            assertEquals(0, locationManager.getParserMetrics().getSentenceListenerTime().getCount());
+            
+            exporter.export(metrics, "NmeaLocationManager", "test");
+            
+            assertEquals(119l, mBeanServer.getAttribute(new ObjectName(
+                    "net.tracknalysis.location:type=\"NmeaLocationManager\",name=\"test\""),
+                    "FixCount"));
+            assertEquals(119l, mBeanServer.getAttribute(new ObjectName(
+                    "net.tracknalysis.location:type=\"NmeaLocationManager\",name=\"test\","
+                    + "histogram=\"locationListenerTime\""),
+                    "Count"));
+            
+            mBeanServer.invoke(new ObjectName(
+                    "net.tracknalysis.location:type=\"NmeaLocationManager\",name=\"test\""),
+                    "reset", null, null);
+            assertEquals(0, metrics.getFixCount());
+            assertEquals(0, metrics.getLocationListenerTime().getCount());
+        } finally {
+            exporter.unexportAll();
+            locationManager.stop();
+        }
+    }
+
+    @Test
+    public void testTracing() throws Exception {
+        
+        SocketManager socketManager = new StreamSocketManager(this.getClass()
+                .getResourceAsStream("/QStarz-818XT-NMEA.txt"), null);
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        
+        try {
+            
+            final List<Location> locations = Collections.synchronizedList(new LinkedList<Location>());
+            final List<RouteListener.WaypointEventType> eventTypes = Collections.synchronizedList(
+                    new LinkedList<RouteListener.WaypointEventType>());
+            
+            locationManager.addSynchronousListener(new LocationListener() {
+                @Override
+                public void receiveLocation(Location location) {
+                    locations.add(location);
+                }
+            });
+            
+            locationManager.addRouteForSynchronousListeners(
+                    new Route("Trace", Arrays.asList(new Waypoint("1", 38.983891d, -77.53281d))),
+                    100000f,
+                    new RouteListener() {
+                        @Override
+                        public void waypointEvent(int waypointIndex, Route route,
+                                long locationTime, long systemTime, WaypointEventType eventType,
+                                float distanceToWaypoint) {
+                            eventTypes.add(eventType);
+                        }
+                    });
+            
+            assertFalse(locationManager.isTracing());
+            locationManager.setTracing(true);
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (locationManager.getRouteManagerMetrics().getUpdateCount() == 119) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            PipelineTrace trace = locationManager.getPipelineTrace();
+            assertEquals(119, trace.getLocationCount());
+            assertEquals(119, trace.getFirstByteToSentence().getCount());
+            assertEquals(119, trace.getSentenceToLocation().getCount());
+            assertTrue(trace.getFirstByteToSentence().getMin() >= 0);
+            assertTrue(trace.getFirstByteToLocation().getMax()
+                    >= trace.getFirstByteToSentence().getMin());
+            assertEquals(eventTypes.size(), trace.getWaypointEventCount());
+            assertEquals(eventTypes.size(), trace.getFirstByteToWaypointEvent().getCount());
+            assertTrue(eventTypes.size() > 0);
+            
+            trace.reset();
+            assertEquals(0, trace.getLocationCount());
+        } finally {
+            locationManager.stop();
+        }
+    }
+
+    @Test
+    public void testProbe() throws Exception {
+        
+        SocketManager socketManager = new StreamSocketManager(this.getClass()
+                .getResourceAsStream("/QStarz-818XT-NMEA.txt"), null);
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        
+        try {
+            
+            final List<String> sentenceTypes = Collections.synchronizedList(new LinkedList<String>());
+            final List<Long> locationTimes = Collections.synchronizedList(new LinkedList<Long>());
+            final List<Integer> routesEvaluated = Collections.synchronizedList(
+                    new LinkedList<Integer>());
+            
+            locationManager.addRouteForSynchronousListeners(
+                    new Route("Probe", Arrays.asList(new Waypoint("1", 38.983891d, -77.53281d))),
+                    10f);
+            
+            locationManager.setProbe(new PipelineProbe() {
+                @Override
+                public void sentenceParsed(String sentenceType, long parseTime) {
+                    sentenceTypes.add(sentenceType);
+                }
+
+                @Override
+                public void sentenceRejected(String sentenceType, String reason) {
+                }
+
+                @Override
+                public void locationFused(long time, int sentenceMask, long fusionTime) {
+                    assertEquals(FixAccumulator.GGA | FixAccumulator.RMC, sentenceMask);
+                    locationTimes.add(time);
+                }
+
+                @Override
+                public void epochMismatch(long discardedTime, int discardedSentenceMask,
+                        long time) {
+                }
+
+                @Override
+                public void routesProcessed(int evaluated, int skipped, long processTime) {
+                    routesEvaluated.add(evaluated);
+                }
+
+                @Override
+                public void waypointEvent(Route route, int waypointIndex,
+                        RouteListener.WaypointEventType eventType, float distanceToWaypoint) {
+                }
+            });
+            
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (routesEvaluated.size() == 119) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            assertEquals(238, sentenceTypes.size());
+            assertEquals("GGA", sentenceTypes.get(0));
+            assertEquals("RMC", sentenceTypes.get(1));
+            assertEquals(119, locationTimes.size());
+            assertEquals(Integer.valueOf(1), routesEvaluated.get(0));
+        } finally {
+            locationManager.stop();
+        }
+    }
+
+    @Test
+    public void testProbeInvalidTermination() throws Exception {
+        
+        String sentenceStrings =
+                "$GPGGA,180358.000,3859.0335,N,07731.9688,W,1,6,1.37,113.3,M,-33.4,M,,*6C\rX"
+                + "$GPRMC,180358.000,A,3859.0335,N,07731.9688,W,0.09,229.39,130512,,,A*7A\r\n"
+                + "$GPGGA,180358.200,3859.0335,N,07731.9688,W,1,6,1.37,113.3,M,-33.4,M,,*6E\r\n"
+                + "$GPRMC,180358.200,A,3859.0335,N,07731.9688,W,0.09,229.39,130512,,,A*78\r\n";
+        
+        SocketManager socketManager = new StreamSocketManager(
+                new ByteArrayInputStream(sentenceStrings.getBytes()), null);
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        
+        try {
+            final List<String> events = Collections.synchronizedList(new LinkedList<String>());
+            final List<Long> locationTimes = Collections.synchronizedList(new LinkedList<Long>());
+            
+            locationManager.setProbe(new PipelineProbe() {
+                @Override
+                public void sentenceParsed(String sentenceType, long parseTime) {
+                    events.add("parsed " + sentenceType);
+                }
+
+                @Override
+                public void sentenceRejected(String sentenceType, String reason) {
+                    events.add("rejected " + sentenceType + " " + reason);
+                }
+
+                @Override
+                public void locationFused(long time, int sentenceMask, long fusionTime) {
+                    locationTimes.add(time);
+                }
+
+                @Override
+                public void epochMismatch(long discardedTime, int discardedSentenceMask,
+                        long time) {
+                    events.add("mismatch");
+                }
+
+                @Override
+                public void routesProcessed(int evaluated, int skipped, long processTime) {
+                }
+
+                @Override
+                public void waypointEvent(Route route, int waypointIndex,
+                        RouteListener.WaypointEventType eventType, float distanceToWaypoint) {
+                }
+            });
+            
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (locationTimes.isEmpty()) {
+                Thread.sleep(100l);
+                waitingTime += 100;
+                assertTrue(waitingTime < 10000);
+            }
+            
+            assertEquals(Arrays.asList(
+                    "rejected GGA " + PipelineProbe.INVALID_TERMINATION,
+                    "parsed RMC", "parsed GGA", "mismatch", "parsed RMC"), events);
+            assertEquals(Arrays.asList(65038200l), locationTimes);
+            assertEquals(1, locationManager.getParserMetrics().getInvalidSentenceCount());
+        } finally {
+            locationManager.stop();
+        }
+    }
+
+    @Test
+    public void testReceiverConfigurationFailure() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final boolean[] connected = new boolean[1];
+        
+        SocketManager socketManager = new SocketManager() {
+            @Override
+            public void connect() throws IOException {
+                connected[0] = true;
+            }
+            
+            @Override
+            public void disconnect() throws IOException {
+                connected[0] = false;
+            }
+            
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+            
+            @Override
+            public OutputStream getOutputStream() throws IOException {
+                return output;
+            }
+        };
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        
+        try {
+            locationManager.setFixInterval(NmeaLocationManager.MAX_FIX_INTERVAL + 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        
+        locationManager.setReceiverConfigurator(new ReceiverConfigurator() {
+            @Override
+            public void configure(OutputStream outputStream, Set<String> sentenceTypes,
+                    int fixInterval) throws IOException {
+                throw new IllegalArgumentException("Unsupported configuration.");
+            }
+        });
+        
+        locationManager.start();
+        
+        assertEquals(LocationManagerLifecycleNotificationType.START_FAILED,
+                locationManager.getState());
+        assertFalse(connected[0]);
+        assertEquals(0, output.size());
+        locationManager.stop();
+        assertEquals(LocationManagerLifecycleNotificationType.START_FAILED,
+                locationManager.getState());
+    }
+
+    @Test
+    public void testManagement() throws Exception {
+        
+        SocketManager socketManager = new StreamSocketManager(this.getClass()
+                .getResourceAsStream("/QStarz-818XT-NMEA.txt"), null);
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        JmxMetricsExporter exporter = new JmxMetricsExporter(mBeanServer);
+        ObjectName objectName = new ObjectName(
+                "net.tracknalysis.location:type=\"NmeaLocationManager\",name=\"test\"");
+        
+        try {
+            
+            locationManager.addSynchronousListener(new LocationListener() {
+                @Override
+                public void receiveLocation(Location location) {
+                }
+            });
+            
+            locationManager.addRouteForSynchronousListeners(
+                    new Route("Management", Arrays.asList(new Waypoint("1", 38.983891d, -77.53281d))),
+                    10f);
+            
+            NmeaLocationManagerManagement.export(locationManager, exporter, "test");
+            
+            assertEquals("STOPPED", mBeanServer.getAttribute(objectName, "State"));
+            assertEquals(-1l, mBeanServer.getAttribute(objectName, "LastFixAge"));
+            
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (locationManager.getRouteManagerMetrics().getUpdateCount() == 119) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            assertEquals("STARTED", mBeanServer.getAttribute(objectName, "State"));
+            assertEquals(Boolean.TRUE, mBeanServer.getAttribute(objectName, "Running"));
+            assertEquals(1, mBeanServer.getAttribute(objectName, "ListenerCount"));
+            assertEquals(1, mBeanServer.getAttribute(objectName, "RouteCount"));
+            assertEquals(0, mBeanServer.getAttribute(objectName, "RouteListenerCount"));
+            assertEquals(119l, mBeanServer.getAttribute(objectName, "FixCount"));
+            assertEquals(238l, mBeanServer.getAttribute(objectName, "SentenceCount"));
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "InvalidSentenceCount"));
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "DiscardedEpochCount"));
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "ListenerErrorCount"));
+            assertTrue((Long) mBeanServer.getAttribute(objectName, "LastFixAge") >= 0);
+            
+            ObjectName parseTimeName = new ObjectName(
+                    "net.tracknalysis.location:type=\"NmeaParserMetrics\",name=\"test\","
+                    + "histogram=\"parseTime\"");
+            assertEquals(238l, mBeanServer.getAttribute(parseTimeName, "Count"));
+            
+            // Parser counters survive a restart, which creates a new parser.
+            NmeaParserMetrics parserMetrics = locationManager.getParserMetrics();
+            locationManager.stop();
+            assertEquals("STOPPED", mBeanServer.getAttribute(objectName, "State"));
+            locationManager.start();
+            locationManager.stop();
+            assertSame(parserMetrics, locationManager.getParserMetrics());
+            assertEquals(238l, mBeanServer.getAttribute(objectName, "SentenceCount"));
+            assertEquals(238l, mBeanServer.getAttribute(parseTimeName, "Count"));
+            
+            mBeanServer.invoke(objectName, "resetCounters", null, null);
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "FixCount"));
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "SentenceCount"));
+            assertEquals(0l, mBeanServer.getAttribute(objectName, "RouteUpdateCount"));
+            assertEquals(0l, mBeanServer.getAttribute(parseTimeName, "Count"));
+        } finally {
+            exporter.unexportAll();
+            locationManager.stop();
+        }
+    }
 }
@@ -16,17 +16,25 @@
 package net.tracknalysis.location.nmea;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import net.tracknalysis.location.LocalTangentPlane;
+import net.tracknalysis.location.PackedRoute;
 import net.tracknalysis.location.Route;
 import net.tracknalysis.location.RouteListener;
 import net.tracknalysis.location.RouteListener.WaypointEventType;
@@ -168,21 +176,420 @@ public class NmeaRouteManagerTest {
     }
     
     @Test
-    public void testCompleteRoute() throws Exception {
-        Route route = new Route("My Route", Arrays.asList(
+    public void testStateRetainedAcrossRouteChanges() {
+        List<Waypoint> waypoints = Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+                new Waypoint("2", 38.98295974731445d, -77.53973388671875d));
+        Route route1 = new Route("Route 1", waypoints);
+        Route route2 = new Route("Route 2", waypoints);
+        
+        final List<String> events = new ArrayList<String>();
+        
+        RouteListener listener = new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route,
+                    long locationTime, long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                events.add(route.getName() + " " + eventType + " " + locationTime);
+            }
+        };
+        
+        routeManager.addRouteForSynchronousListeners(route1, 10f, listener);
+        routeManager.receiveSentence(createGgaSentence(3, 38.979805,   -77.541077, true));
+        routeManager.receiveSentence(createGgaSentence(4, 38.979828,   -77.541077, true));
+        
+        routeManager.addRouteForSynchronousListeners(route2, 10f, listener, listener);
+        assertEquals(2, routeManager.getRouteCount());
+        assertEquals(2, routeManager.getRouteListenerCount());
+        routeManager.receiveSentence(createGgaSentence(5, 38.979847,   -77.541077, true));
+        
+        routeManager.removeRouteForSynchronousListeners(route2);
+        routeManager.receiveSentence(createGgaSentence(6, 38.97987,    -77.541069, true));
+        
+        assertEquals(Arrays.asList(
+                "Route 1 ENTERING_PERIMETER 4",
+                "Route 1 APPROACHING 5",
+                "Route 2 ENTERING_PERIMETER 5",
+                "Route 1 APPROACHING 6"), events);
+    }
+    
+    @Test
+    public void testReplaceRoutesRetainsState() {
+        List<Waypoint> waypoints = Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+                new Waypoint("2", 38.98295974731445d, -77.53973388671875d));
+        Route route1 = new Route("Route 1", waypoints);
+        Route route2 = new Route("Route 2", waypoints);
+        
+        final List<String> events = new ArrayList<String>();
+        
+        RouteListener listener = new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route,
+                    long locationTime, long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                events.add(route.getName() + " " + eventType + " " + locationTime);
+            }
+        };
+        
+        routeManager.addRouteForSynchronousListeners(route1, 10f, listener);
+        routeManager.receiveSentence(createGgaSentence(3, 38.979805,   -77.541077, true));
+        routeManager.receiveSentence(createGgaSentence(4, 38.979828,   -77.541077, true));
+        
+        routeManager.replaceRoutesForSynchronousListeners(new Route[] {route1, route2},
+                new float[] {10f, 10f}, listener);
+        assertEquals(2, routeManager.getRouteCount());
+        routeManager.receiveSentence(createGgaSentence(5, 38.979847,   -77.541077, true));
+        
+        try {
+            routeManager.replaceRoutesForSynchronousListeners(new Route[] {route2, route2},
+                    new float[] {10f, 10f}, listener);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(2, routeManager.getRouteCount());
+        
+        routeManager.replaceRoutesForSynchronousListeners(new Route[] {route2},
+                new float[] {10f}, listener);
+        routeManager.receiveSentence(createGgaSentence(6, 38.97987,    -77.541069, true));
+        
+        assertEquals(1, routeManager.getRouteCount());
+        assertEquals(Arrays.asList(
+                "Route 1 ENTERING_PERIMETER 4",
+                "Route 1 APPROACHING 5",
+                "Route 2 ENTERING_PERIMETER 5",
+                "Route 2 APPROACHING 6"), events);
+    }
+    
+    @Test
+    public void testReplaceRoutesIsAtomic() throws Exception {
+        final Route[][] routeSets = new Route[2][50];
+        final float[] distances = new float[50];
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 2; j++) {
+                routeSets[j][i] = new Route("Set " + j, Arrays.asList(
+                        new Waypoint("1", 38.979896545410156d, -77.54102325439453d)));
+            }
+            distances[i] = 10000000f;
+        }
+        
+        final Set<String> updateRouteNames = new HashSet<String>();
+        RouteListener listener = new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route,
+                    long locationTime, long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                updateRouteNames.add(route.getName());
+            }
+        };
+        
+        routeManager.addRoutesForSynchronousListeners(routeSets[0], distances, listener);
+        
+        final AtomicBoolean running = new AtomicBoolean(true);
+        Thread swapper = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; running.get(); i++) {
+                    routeManager.replaceRoutesForSynchronousListeners(routeSets[i % 2],
+                            distances, listener);
+                }
+            }
+        };
+        swapper.start();
+        
+        Set<String> seenRouteNames = new HashSet<String>();
+        try {
+            for (int i = 0; i < 20000; i++) {
+                updateRouteNames.clear();
+                routeManager.receiveSentence(createGgaSentence(i,
+                        38.979 + (i % 100) * 0.00001, -77.541, true));
+                assertTrue(updateRouteNames.toString(), updateRouteNames.size() <= 1);
+                seenRouteNames.addAll(updateRouteNames);
+            }
+        } finally {
+            running.set(false);
+            swapper.join();
+        }
+        
+        assertEquals(2, seenRouteNames.size());
+    }
+    
+    @Test
+    public void testEventTypeSubscription() throws Exception {
+        List<Waypoint> waypoints = Arrays.asList(
                 new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
                 new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
                 new Waypoint("3", 38.982906341552734d, -77.54007720947266d),
                 new Waypoint("4", 38.972618103027344d, -77.54145050048828d),
-                new Waypoint("5", 38.97257995605469d, -77.5412826538086d)));
+                new Waypoint("5", 38.97257995605469d, -77.5412826538086d));
         
-        final List<Integer> waypointIndexes = new ArrayList<Integer>();
-        final List<Long> locationTimes = new ArrayList<Long>();
-        final List<Long> systemTimes = new ArrayList<Long>();
-        final List<WaypointEventType> eventTypes = new ArrayList<WaypointEventType>();
-        // Collected for comparison of route manager accuracy 
-        final List<Long> splitTimes = new ArrayList<Long>();
+        final List<String> allEvents = new ArrayList<String>();
+        final List<String> subscribedEvents = new ArrayList<String>();
         
+        routeManager.addRouteForSynchronousListeners(new Route("All", waypoints), 15f,
+                new RouteListener() {
+                    @Override
+                    public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                            long systemTime, WaypointEventType eventType,
+                            float distanceToWaypoint) {
+                        allEvents.add(waypointIndex + " " + eventType + " " + locationTime
+                                + " " + distanceToWaypoint);
+                    }
+                });
+        
+        routeManager.addRouteForSynchronousListeners(new Route("Subscribed", waypoints), 15f,
+                EnumSet.of(WaypointEventType.ENTERING_PERIMETER,
+                        WaypointEventType.CLOSEST_TO_WAYPOINT),
+                new RouteListener() {
+                    @Override
+                    public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                            long systemTime, WaypointEventType eventType,
+                            float distanceToWaypoint) {
+                        subscribedEvents.add(waypointIndex + " " + eventType + " "
+                                + locationTime + " " + distanceToWaypoint);
+                    }
+                });
+        
+        replayTestData();
+        
+        List<String> expected = new ArrayList<String>();
+        for (String event : allEvents) {
+            if (event.contains(" ENTERING_PERIMETER ") || event.contains(" CLOSEST_TO_WAYPOINT ")) {
+                expected.add(event);
+            }
+        }
+        
+        assertTrue(expected.size() >= 10);
+        assertEquals(expected, subscribedEvents);
+        
+        routeManager = new NmeaRouteManager();
+        routeManager.addRouteForSynchronousListeners(new Route("None", waypoints), 15f,
+                EnumSet.noneOf(WaypointEventType.class), new RouteListener() {
+                    @Override
+                    public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                            long systemTime, WaypointEventType eventType,
+                            float distanceToWaypoint) {
+                        fail();
+                    }
+                });
+        
+        replayTestData();
+    }
+    
+    @Test
+    public void testListenerEventTypeSubscription() throws Exception {
+        Route route = new Route("Route", Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+                new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
+                new Waypoint("3", 38.982906341552734d, -77.54007720947266d)));
+        
+        final List<String> allEvents = new ArrayList<String>();
+        final List<String> subscribedEvents = new ArrayList<String>();
+        
+        RouteListener allListener = new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                    long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                allEvents.add(waypointIndex + " " + eventType + " " + locationTime + " "
+                        + distanceToWaypoint);
+            }
+        };
+        
+        RouteListener subscribedListener = new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                    long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                subscribedEvents.add(waypointIndex + " " + eventType + " " + locationTime + " "
+                        + distanceToWaypoint);
+            }
+        };
+        
+        try {
+            routeManager.addListenerForSynchronousNotification(route,
+                    EnumSet.of(WaypointEventType.ENTERING_PERIMETER), subscribedListener);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        
+        routeManager.addRouteForSynchronousListeners(route, 15f, allListener);
+        routeManager.addListenerForSynchronousNotification(route,
+                EnumSet.of(WaypointEventType.ENTERING_PERIMETER), subscribedListener);
+        routeManager.addListenerForSynchronousNotification(route,
+                EnumSet.of(WaypointEventType.CLOSEST_TO_WAYPOINT), subscribedListener);
+        assertEquals(2, routeManager.getRouteListenerCount());
+        
+        // Re-registering the route keeps the event types of the listeners.
+        routeManager.replaceRoutesForSynchronousListeners(new Route[] {route},
+                new float[] {15f}, allListener, subscribedListener);
+        
+        replayTestData();
+        
+        List<String> expected = new ArrayList<String>();
+        for (String event : allEvents) {
+            if (event.contains(" ENTERING_PERIMETER ") || event.contains(" CLOSEST_TO_WAYPOINT ")) {
+                expected.add(event);
+            }
+        }
+        
+        assertTrue(expected.size() >= 6);
+        assertTrue(allEvents.size() > expected.size());
+        assertEquals(expected, subscribedEvents);
+    }
+    
+    @Test
+    public void testCompleteRoute() throws Exception {
+        List<Long> splitTimes = new ArrayList<Long>();
+        
+        replayCompleteRoute(splitTimes, new ArrayList<String>(), new ArrayList<Float>());
+        
+        assertEquals(5, splitTimes.size());
+        assertEquals(Long.valueOf(16359), splitTimes.get(0));
+        assertEquals(Long.valueOf(12822), splitTimes.get(1));
+        assertEquals(Long.valueOf(45077), splitTimes.get(2));
+        assertEquals(Long.valueOf(11296), splitTimes.get(3));
+        assertEquals(Long.valueOf(36016), splitTimes.get(4));
+        
+        
+    }
+    
+    @Test
+    public void testCompleteRouteInLocalTangentPlane() throws Exception {
+        List<Long> splitTimes = new ArrayList<Long>();
+        List<String> events = new ArrayList<String>();
+        List<Float> distances = new ArrayList<Float>();
+        
+        replayCompleteRoute(splitTimes, events, distances);
+        
+        routeManager = new NmeaRouteManager();
+        routeManager.setLocalTangentPlane(new LocalTangentPlane(38.978, -77.54));
+        
+        List<Long> planeSplitTimes = new ArrayList<Long>();
+        List<String> planeEvents = new ArrayList<String>();
+        List<Float> planeDistances = new ArrayList<Float>();
+        
+        replayCompleteRoute(planeSplitTimes, planeEvents, planeDistances);
+        
+        assertEquals(splitTimes, planeSplitTimes);
+        assertEquals(events, planeEvents);
+        
+        for (int i = 0; i < distances.size(); i++) {
+            float distance = distances.get(i);
+            // Float resolution of the results plus the bound on the chord error.
+            double tolerance = Math.ulp(distance) * 2 + LocalTangentPlane.getMaxError(distance);
+            assertEquals(distance, planeDistances.get(i), tolerance);
+            assertTrue(planeDistances.get(i) <= distance + Math.ulp(distance) * 2);
+        }
+    }
+    
+    @Test
+    public void testCompleteRouteWithMaxSpeed() throws Exception {
+        List<Long> splitTimes = new ArrayList<Long>();
+        List<String> events = new ArrayList<String>();
+        List<Float> distances = new ArrayList<Float>();
+        
+        replayCompleteRoute(splitTimes, events, distances);
+        
+        assertEquals(0, routeManager.getMetrics().getRouteSkipCount());
+        long evaluationCount = routeManager.getMetrics().getRouteEvaluationCount();
+        
+        routeManager = new NmeaRouteManager();
+        // Well above the speed of the vehicle in the test data.
+        routeManager.setMaxSpeed(90f);
+        
+        List<Long> boundedSplitTimes = new ArrayList<Long>();
+        List<String> boundedEvents = new ArrayList<String>();
+        List<Float> boundedDistances = new ArrayList<Float>();
+        
+        replayCompleteRoute(boundedSplitTimes, boundedEvents, boundedDistances);
+        
+        assertEquals(splitTimes, boundedSplitTimes);
+        assertEquals(events, boundedEvents);
+        assertEquals(distances, boundedDistances);
+        
+        long skipCount = routeManager.getMetrics().getRouteSkipCount();
+        assertTrue(skipCount > evaluationCount / 2);
+        assertEquals(evaluationCount,
+                routeManager.getMetrics().getRouteEvaluationCount() + skipCount);
+    }
+    
+    @Test
+    public void testCompleteRouteWithPackedRoute() throws Exception {
+        List<Long> splitTimes = new ArrayList<Long>();
+        List<String> events = new ArrayList<String>();
+        List<Float> distances = new ArrayList<Float>();
+        
+        replayCompleteRoute(splitTimes, events, distances);
+        
+        double[] latitudes = new double[] {38.979896545410156d, 38.98295974731445d,
+                38.982906341552734d, 38.972618103027344d, 38.97257995605469d};
+        double[] longitudes = new double[] {-77.54102325439453d, -77.53973388671875d,
+                -77.54007720947266d, -77.54145050048828d, -77.5412826538086d};
+        
+        for (boolean fixedPoint : new boolean[] {false, true}) {
+            PackedRoute route = new PackedRoute("My Route", latitudes, longitudes, fixedPoint);
+            assertEquals(fixedPoint, route.isFixedPoint());
+            assertEquals(5, route.getWaypointCount());
+            assertEquals("3", route.getWaypoints().get(2).getId());
+            assertEquals(latitudes[2], route.getWaypoints().get(2).getLatitude(),
+                    fixedPoint ? 0.5 / PackedRoute.FIXED_POINT_SCALE : 0);
+            
+            routeManager = new NmeaRouteManager();
+            
+            List<Long> packedSplitTimes = new ArrayList<Long>();
+            List<String> packedEvents = new ArrayList<String>();
+            List<Float> packedDistances = new ArrayList<Float>();
+            
+            replayCompleteRoute(route, packedSplitTimes, packedEvents, packedDistances);
+            
+            assertEquals(splitTimes, packedSplitTimes);
+            assertEquals(events, packedEvents);
+            
+            for (int i = 0; i < distances.size(); i++) {
+                // The fixed-point resolution is roughly 1.1 cm in each axis.
+                assertEquals(distances.get(i), packedDistances.get(i), fixedPoint ? 0.02f : 0f);
+            }
+        }
+    }
+    
+    @Test
+    public void testLocalTangentPlaneReprojectsExistingRoutes() {
+        Route route = new Route("My Route", Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d)));
+        
+        final List<Float> distances = new ArrayList<Float>();
+        
+        routeManager.addRouteForSynchronousListeners(route, 10f, new RouteListener() {
+            @Override
+            public void waypointEvent(int waypointIndex, Route route,
+                    long locationTime, long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                distances.add(distanceToWaypoint);
+            }
+        });
+        
+        routeManager.receiveSentence(createGgaSentence(1, 38.979828,   -77.541077, true));
+        routeManager.setLocalTangentPlane(new LocalTangentPlane(38.979, -77.541));
+        routeManager.receiveSentence(createGgaSentence(2, 38.979847,   -77.541077, true));
+        routeManager.setLocalTangentPlane(null);
+        routeManager.receiveSentence(createGgaSentence(3, 38.97987,    -77.541069, true));
+        
+        assertEquals(3, distances.size());
+        assertEquals(8.922f, distances.get(0), 0.001f);
+        assertEquals(7.207f, distances.get(1), 0.001f);
+        assertEquals(4.939f, distances.get(2), 0.001f);
+    }
+    
+    private void replayCompleteRoute(final List<Long> splitTimes, final List<String> events,
+            final List<Float> distances) throws Exception {
+        replayCompleteRoute(new Route("My Route", Arrays.asList(
+                new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+                new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
+                new Waypoint("3", 38.982906341552734d, -77.54007720947266d),
+                new Waypoint("4", 38.972618103027344d, -77.54145050048828d),
+                new Waypoint("5", 38.97257995605469d, -77.5412826538086d))),
+                splitTimes, events, distances);
+    }
+    
+    private void replayCompleteRoute(Route route, final List<Long> splitTimes,
+            final List<String> events, final List<Float> distances) throws Exception {
         RouteListener listener = new RouteListener() {
             
             private long lastTime = 0;
@@ -190,11 +597,10 @@ public class NmeaRouteManagerTest {
             @Override
             public void waypointEvent(int waypointIndex, Route route,
                     long locationTime, long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
-                waypointIndexes.add(waypointIndex);
-                locationTimes.add(locationTime);
-                systemTimes.add(systemTime);
-                eventTypes.add(eventType);
+                events.add(waypointIndex + " " + eventType + " " + locationTime);
+                distances.add(distanceToWaypoint);
                 
+                // Collected for comparison of route manager accuracy 
                 if (eventType == WaypointEventType.CLOSEST_TO_WAYPOINT) {
                     if (lastTime == 0) {
                         lastTime = locationTime;
@@ -208,6 +614,10 @@ public class NmeaRouteManagerTest {
         
         routeManager.addRouteForSynchronousListeners(route, 15f, listener);
         
+        replayTestData();
+    }
+    
+    private void replayTestData() throws Exception {
         InputStream is = this.getClass().getResourceAsStream("/RouteManagerTestData.csv");
         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
         
@@ -232,14 +642,7 @@ public class NmeaRouteManagerTest {
             line = reader.readLine();
         }
         
-        assertEquals(5, splitTimes.size());
-        assertEquals(Long.valueOf(16359), splitTimes.get(0));
-        assertEquals(Long.valueOf(12822), splitTimes.get(1));
-        assertEquals(Long.valueOf(45077), splitTimes.get(2));
-        assertEquals(Long.valueOf(11296), splitTimes.get(3));
-        assertEquals(Long.valueOf(36016), splitTimes.get(4));
-        
-        
+        reader.close();
     }
     
     protected GgaSentence createGgaSentence(long time, double latitude, double longitude, boolean valid) {
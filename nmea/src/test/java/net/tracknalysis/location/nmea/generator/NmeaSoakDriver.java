@@ -0,0 +1,201 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationListener;
+import net.tracknalysis.location.Route;
+import net.tracknalysis.location.RouteListener;
+import net.tracknalysis.location.metrics.PipelineTrace;
+import net.tracknalysis.location.nmea.NmeaLocationManager;
+import net.tracknalysis.location.nmea.NmeaParserMetrics;
+
+/**
+ * Drives one {@link NmeaLocationManager} per simulated receiver with paced, generated traffic
+ * for an extended period and periodically reports the sustained throughput, the sentences and
+ * epochs lost and the end to end latency of the location and route pipeline.  Each receiver
+ * travels the same route, which is also registered with its manager, so that waypoint
+ * processing is part of the measured pipeline.
+ * <p/>
+ * Not run as part of the test suite.  Run {@link #main(String[])} with the test classpath and
+ * the arguments:
+ * <ol>
+ * <li>the number of receivers, defaults to 4</li>
+ * <li>the fix rate of each receiver in Hz, defaults to 10</li>
+ * <li>the duration in minutes, defaults to 60</li>
+ * <li>the sentence corruption rate between 0 and 1, defaults to 0.001</li>
+ * </ol>
+ *
+ * @author David Valeri
+ */
+public final class NmeaSoakDriver {
+
+    private static final int DEFAULT_RECEIVERS = 4;
+    private static final int DEFAULT_RATE = 10;
+    private static final int DEFAULT_DURATION = 60;
+    private static final double DEFAULT_CORRUPTION_RATE = 0.001d;
+    private static final long REPORT_INTERVAL = 10000;
+
+    private NmeaSoakDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int receivers = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RECEIVERS;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RATE;
+        int duration = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DURATION;
+        double corruptionRate = args.length > 3
+                ? Double.parseDouble(args[3]) : DEFAULT_CORRUPTION_RATE;
+
+        long epochs = duration * 60L * rate;
+        Route route = new Route("Soak", NmeaTrafficGeneratorTest.WAYPOINTS);
+        final AtomicLong locationCount = new AtomicLong();
+        final AtomicLong waypointEventCount = new AtomicLong();
+
+        List<NmeaTrafficGenerator> generators = new ArrayList<NmeaTrafficGenerator>();
+        List<NmeaLocationManager> locationManagers = new ArrayList<NmeaLocationManager>();
+
+        for (int i = 0; i < receivers; i++) {
+            NmeaTrafficGenerator generator = new NmeaTrafficGenerator(
+                    NmeaTrafficGeneratorTest.WAYPOINTS);
+            generator.setSentenceTypes(NmeaTrafficGenerator.SUPPORTED_SENTENCE_TYPES);
+            generator.setFixInterval(1000 / rate);
+            generator.setPositionNoise(3d);
+            generator.setCorruptionRate(corruptionRate);
+            generator.setSeed(i);
+            generator.setStartTime(System.currentTimeMillis());
+
+            NmeaLocationManager locationManager = new NmeaLocationManager(
+                    generator.newSocketManager(epochs, true));
+            locationManager.setTracing(true);
+            locationManager.addSynchronousListener(new LocationListener() {
+                @Override
+                public void receiveLocation(Location location) {
+                    locationCount.incrementAndGet();
+                }
+            });
+            locationManager.addRouteForSynchronousListeners(route, 25f, new RouteListener() {
+                @Override
+                public void waypointEvent(int waypointIndex, Route route, long locationTime,
+                        long systemTime, WaypointEventType eventType, float distanceToWaypoint) {
+                    waypointEventCount.incrementAndGet();
+                }
+            });
+
+            generators.add(generator);
+            locationManagers.add(locationManager);
+        }
+
+        System.out.println("Receivers: " + receivers + ", rate: " + rate + " Hz, duration: "
+                + duration + " min, corruption rate: " + corruptionRate);
+
+        long startTime = System.currentTimeMillis();
+        long endTime = startTime + duration * 60000L;
+
+        for (NmeaLocationManager locationManager : locationManagers) {
+            locationManager.start();
+        }
+
+        try {
+            long lastLocationCount = 0;
+            long lastReportTime = startTime;
+
+            while (System.currentTimeMillis() < endTime) {
+                Thread.sleep(Math.min(REPORT_INTERVAL,
+                        Math.max(1, endTime - System.currentTimeMillis())));
+
+                long now = System.currentTimeMillis();
+                long currentLocationCount = locationCount.get();
+                report(now - startTime, (currentLocationCount - lastLocationCount) * 1000d
+                        / Math.max(1, now - lastReportTime), currentLocationCount,
+                        waypointEventCount.get(), generators, locationManagers);
+                lastLocationCount = currentLocationCount;
+                lastReportTime = now;
+            }
+
+            // Allow the final epochs in flight to drain.
+            Thread.sleep(1000);
+            report(System.currentTimeMillis() - startTime, 0, locationCount.get(),
+                    waypointEventCount.get(), generators, locationManagers);
+        } finally {
+            for (NmeaLocationManager locationManager : locationManagers) {
+                locationManager.stop();
+            }
+        }
+    }
+
+    private static void report(long elapsedTime, double locationRate, long locationCount,
+            long waypointEventCount, List<NmeaTrafficGenerator> generators,
+            List<NmeaLocationManager> locationManagers) {
+
+        long epochCount = 0;
+        long corruptedEpochCount = 0;
+        long generatedSentenceCount = 0;
+        long sentenceCount = 0;
+        long invalidSentenceCount = 0;
+        long discardedEpochCount = 0;
+        long firstByteToLocationP50 = 0;
+        long firstByteToLocationP99 = 0;
+        long firstByteToLocationP999 = 0;
+        long firstByteToWaypointEventP99 = 0;
+        long processUpdateP99 = 0;
+
+        for (NmeaTrafficGenerator generator : generators) {
+            epochCount += generator.getEpochCount();
+            corruptedEpochCount += generator.getCorruptedEpochCount();
+            generatedSentenceCount += generator.getSentenceCount();
+        }
+
+        for (NmeaLocationManager locationManager : locationManagers) {
+            NmeaParserMetrics parserMetrics = locationManager.getParserMetrics();
+            sentenceCount += parserMetrics.getSentenceCount();
+            invalidSentenceCount += parserMetrics.getInvalidSentenceCount();
+            discardedEpochCount += parserMetrics.getDiscardedEpochCount();
+
+            // Report the worst receiver.
+            PipelineTrace trace = locationManager.getPipelineTrace();
+            firstByteToLocationP50 = Math.max(firstByteToLocationP50,
+                    trace.getFirstByteToLocation().getP50());
+            firstByteToLocationP99 = Math.max(firstByteToLocationP99,
+                    trace.getFirstByteToLocation().getP99());
+            firstByteToLocationP999 = Math.max(firstByteToLocationP999,
+                    trace.getFirstByteToLocation().getP999());
+            firstByteToWaypointEventP99 = Math.max(firstByteToWaypointEventP99,
+                    trace.getFirstByteToWaypointEvent().getP99());
+            processUpdateP99 = Math.max(processUpdateP99,
+                    locationManager.getRouteManagerMetrics().getProcessUpdateTime().getP99());
+        }
+
+        // Corrupted epochs include those that only lost non-fix sentences so the expected fix
+        // count is a lower bound.
+        System.out.println(String.format("%6ds  %8.1f fixes/s  fixes %d (%d+ expected)  "
+                + "epochs %d (%d corrupted, %d discarded)  sentences %d/%d (%d invalid)  "
+                + "waypoint events %d",
+                elapsedTime / 1000, locationRate, locationCount,
+                epochCount - corruptedEpochCount, epochCount, corruptedEpochCount,
+                discardedEpochCount, sentenceCount, generatedSentenceCount,
+                invalidSentenceCount, waypointEventCount));
+        System.out.println(String.format("        first byte to location p50 %.1f us, "
+                + "p99 %.1f us, p99.9 %.1f us  first byte to waypoint event p99 %.1f us  "
+                + "process update p99 %.1f us",
+                firstByteToLocationP50 / 1000d, firstByteToLocationP99 / 1000d,
+                firstByteToLocationP999 / 1000d, firstByteToWaypointEventP99 / 1000d,
+                processUpdateP99 / 1000d));
+    }
+}
@@ -0,0 +1,601 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.generator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import net.tracknalysis.common.io.SocketManager;
+import net.tracknalysis.common.io.StreamSocketManager;
+import net.tracknalysis.location.Waypoint;
+
+/**
+ * Synthesizes the NMEA output of a receiver travelling along a route.  The receiver moves at a
+ * constant speed along the polyline formed by the waypoints of the route, returning to the first
+ * waypoint after the last, and reports one epoch of sentences per fix interval.  Reported
+ * positions may be perturbed with Gaussian noise and sentences may be dropped or truncated to
+ * simulate a lossy link.
+ * <p/>
+ * The output is deterministic for a given seed and configuration.  It is available a sentence
+ * epoch at a time, as a stream, optionally paced in real time at the fix interval, as a
+ * {@link SocketManager} or written to a file.
+ *
+ * @author David Valeri
+ */
+public final class NmeaTrafficGenerator {
+
+    /**
+     * The sentence types that the generator can produce.
+     */
+    public static final Set<String> SUPPORTED_SENTENCE_TYPES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList(
+                    "GGA", "RMC", "VTG", "GLL", "GNS", "ZDA", "GSA", "GSV")));
+
+    private static final String[] SENTENCE_ORDER = {
+            "GGA", "GNS", "GLL", "RMC", "VTG", "GSA", "GSV", "ZDA" };
+
+    private static final double EARTH_RADIUS = 6371008.8d;
+    private static final double METERS_PER_SECOND_TO_KNOTS = 1d / 0.514444444d;
+    private static final double METERS_PER_SECOND_TO_KILOMETERS_PER_HOUR = 3.6d;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int[] SATELLITE_PRNS = { 2, 5, 9, 12, 15, 21, 25, 29 };
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cumulativeDistances;
+
+    private Set<String> sentenceTypes = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("GGA", "RMC")));
+    private float speed = 20f;
+    private int fixInterval = 100;
+    private double altitude = 100d;
+    private double positionNoise;
+    private double corruptionRate;
+    private long startTime = 1336931038200L;
+    private Random random = new Random(0);
+
+    private long epochCount;
+    private long sentenceCount;
+    private long droppedSentenceCount;
+    private long truncatedSentenceCount;
+    private long corruptedEpochCount;
+
+    private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    private final StringBuilder sentence = new StringBuilder(128);
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param waypoints the waypoints forming the route travelled by the receiver
+     *
+     * @throws IllegalArgumentException if fewer than two waypoints are provided
+     */
+    public NmeaTrafficGenerator(List<Waypoint> waypoints) {
+        if (waypoints.size() < 2) {
+            throw new IllegalArgumentException("At least two waypoints are required.");
+        }
+
+        latitudes = new double[waypoints.size() + 1];
+        longitudes = new double[waypoints.size() + 1];
+        cumulativeDistances = new double[waypoints.size() + 1];
+
+        for (int i = 0; i <= waypoints.size(); i++) {
+            Waypoint waypoint = waypoints.get(i % waypoints.size());
+            latitudes[i] = waypoint.getLatitude();
+            longitudes[i] = waypoint.getLongitude();
+
+            if (i > 0) {
+                cumulativeDistances[i] = cumulativeDistances[i - 1] + distance(
+                        latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+            }
+        }
+    }
+
+    public Set<String> getSentenceTypes() {
+        return sentenceTypes;
+    }
+
+    /**
+     * Sets the sentence types reported in each epoch.  Defaults to GGA and RMC.
+     *
+     * @throws IllegalArgumentException if a sentence type is not supported
+     */
+    public void setSentenceTypes(Set<String> sentenceTypes) {
+        for (String sentenceType : sentenceTypes) {
+            if (!SUPPORTED_SENTENCE_TYPES.contains(sentenceType)) {
+                throw new IllegalArgumentException("Unsupported sentence type " + sentenceType
+                        + ".");
+            }
+        }
+
+        this.sentenceTypes = Collections.unmodifiableSet(new HashSet<String>(sentenceTypes));
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the speed of the receiver in meters per second.  Defaults to 20.
+     */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    public int getFixInterval() {
+        return fixInterval;
+    }
+
+    /**
+     * Sets the time between epochs in milliseconds.  Defaults to 100.
+     */
+    public void setFixInterval(int fixInterval) {
+        if (fixInterval <= 0) {
+            throw new IllegalArgumentException("The fix interval must be positive.");
+        }
+        this.fixInterval = fixInterval;
+    }
+
+    public double getPositionNoise() {
+        return positionNoise;
+    }
+
+    /**
+     * Sets the standard deviation, in meters, of the Gaussian noise added to each reported
+     * position.  Defaults to 0.
+     */
+    public void setPositionNoise(double positionNoise) {
+        this.positionNoise = positionNoise;
+    }
+
+    public double getCorruptionRate() {
+        return corruptionRate;
+    }
+
+    /**
+     * Sets the probability, between 0 and 1, that a sentence is dropped or truncated.  Defaults to
+     * 0.
+     */
+    public void setCorruptionRate(double corruptionRate) {
+        this.corruptionRate = corruptionRate;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Sets the time of the first epoch, in milliseconds since midnight January 1, 1970 UTC.
+     */
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Sets the seed for the noise and corruption.
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Returns the number of epochs generated.
+     */
+    public long getEpochCount() {
+        return epochCount;
+    }
+
+    /**
+     * Returns the number of sentences generated, including those dropped or truncated.
+     */
+    public long getSentenceCount() {
+        return sentenceCount;
+    }
+
+    public long getDroppedSentenceCount() {
+        return droppedSentenceCount;
+    }
+
+    public long getTruncatedSentenceCount() {
+        return truncatedSentenceCount;
+    }
+
+    /**
+     * Returns the number of epochs in which at least one sentence was dropped or truncated.
+     */
+    public long getCorruptedEpochCount() {
+        return corruptedEpochCount;
+    }
+
+    /**
+     * Returns the time of the next epoch, in milliseconds since midnight January 1, 1970 UTC.
+     */
+    public long getNextEpochTime() {
+        return startTime + epochCount * fixInterval;
+    }
+
+    /**
+     * Appends the sentences of the next epoch to {@code output}, each terminated by CR LF.
+     */
+    public void nextEpoch(StringBuilder output) {
+        long time = getNextEpochTime();
+        double distance = (double) speed * (epochCount * fixInterval) / 1000d
+                % cumulativeDistances[cumulativeDistances.length - 1];
+
+        int segment = 0;
+        while (cumulativeDistances[segment + 1] < distance) {
+            segment++;
+        }
+
+        double segmentLength = cumulativeDistances[segment + 1] - cumulativeDistances[segment];
+        double fraction = segmentLength == 0
+                ? 0 : (distance - cumulativeDistances[segment]) / segmentLength;
+        double latitude = latitudes[segment]
+                + (latitudes[segment + 1] - latitudes[segment]) * fraction;
+        double longitude = longitudes[segment]
+                + (longitudes[segment + 1] - longitudes[segment]) * fraction;
+        double heading = bearing(latitudes[segment], longitudes[segment],
+                latitudes[segment + 1], longitudes[segment + 1]);
+
+        if (positionNoise > 0) {
+            latitude += Math.toDegrees(random.nextGaussian() * positionNoise / EARTH_RADIUS);
+            longitude += Math.toDegrees(random.nextGaussian() * positionNoise
+                    / (EARTH_RADIUS * Math.cos(Math.toRadians(latitude))));
+        }
+
+        calendar.setTimeInMillis(time);
+        boolean corrupted = false;
+
+        for (String sentenceType : SENTENCE_ORDER) {
+            if (!sentenceTypes.contains(sentenceType)) {
+                continue;
+            }
+
+            if ("GSV".equals(sentenceType)) {
+                for (int message = 1; message <= 2; message++) {
+                    appendGsv(message);
+                    corrupted |= emit(output);
+                }
+            } else {
+                appendSentence(sentenceType, latitude, longitude, heading);
+                corrupted |= emit(output);
+            }
+        }
+
+        if (corrupted) {
+            corruptedEpochCount++;
+        }
+
+        epochCount++;
+    }
+
+    /**
+     * Returns a stream of {@code epochs} epochs.  If paced, each epoch is released no earlier than
+     * a fix interval after the previous one, as a receiver would report them.
+     */
+    public InputStream newInputStream(long epochs, boolean paced) {
+        return new GeneratorInputStream(epochs, paced);
+    }
+
+    /**
+     * Returns a socket manager whose input is a stream of {@code epochs} epochs.
+     *
+     * @see #newInputStream(long, boolean)
+     */
+    public SocketManager newSocketManager(long epochs, boolean paced) {
+        return new StreamSocketManager(newInputStream(epochs, paced), null);
+    }
+
+    /**
+     * Writes {@code epochs} epochs to {@code file}.
+     *
+     * @throws IOException if there is an error writing the file
+     */
+    public void writeFile(File file, long epochs) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            StringBuilder output = new StringBuilder(4096);
+            for (long i = 0; i < epochs; i++) {
+                nextEpoch(output);
+
+                if (output.length() > 65536 || i == epochs - 1) {
+                    out.write(output.toString().getBytes("US-ASCII"));
+                    output.setLength(0);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void appendSentence(String sentenceType, double latitude, double longitude,
+            double heading) {
+
+        sentence.setLength(0);
+
+        if ("GGA".equals(sentenceType)) {
+            sentence.append("GPGGA,");
+            appendTime(3);
+            sentence.append(',');
+            appendPosition(latitude, longitude);
+            sentence.append(",1,08,0.9,");
+            appendDecimal(altitude, 1, 1);
+            sentence.append(",M,-33.4,M,,");
+        } else if ("GNS".equals(sentenceType)) {
+            sentence.append("GNGNS,");
+            appendTime(3);
+            sentence.append(',');
+            appendPosition(latitude, longitude);
+            sentence.append(",AA,08,0.9,");
+            appendDecimal(altitude, 1, 1);
+            sentence.append(",-33.4,,");
+        } else if ("GLL".equals(sentenceType)) {
+            sentence.append("GPGLL,");
+            appendPosition(latitude, longitude);
+            sentence.append(',');
+            appendTime(3);
+            sentence.append(",A,A");
+        } else if ("RMC".equals(sentenceType)) {
+            sentence.append("GPRMC,");
+            appendTime(3);
+            sentence.append(",A,");
+            appendPosition(latitude, longitude);
+            sentence.append(',');
+            appendDecimal(speed * METERS_PER_SECOND_TO_KNOTS, 1, 2);
+            sentence.append(',');
+            appendDecimal(heading, 1, 2);
+            sentence.append(',');
+            appendInteger(calendar.get(Calendar.DAY_OF_MONTH), 2);
+            appendInteger(calendar.get(Calendar.MONTH) + 1, 2);
+            appendInteger(calendar.get(Calendar.YEAR) % 100, 2);
+            sentence.append(",,,A");
+        } else if ("VTG".equals(sentenceType)) {
+            sentence.append("GPVTG,");
+            appendDecimal(heading, 1, 2);
+            sentence.append(",T,,M,");
+            appendDecimal(speed * METERS_PER_SECOND_TO_KNOTS, 1, 2);
+            sentence.append(",N,");
+            appendDecimal(speed * METERS_PER_SECOND_TO_KILOMETERS_PER_HOUR, 1, 2);
+            sentence.append(",K,A");
+        } else if ("GSA".equals(sentenceType)) {
+            sentence.append("GPGSA,A,3");
+            for (int i = 0; i < 12; i++) {
+                sentence.append(',');
+                if (i < SATELLITE_PRNS.length) {
+                    appendInteger(SATELLITE_PRNS[i], 2);
+                }
+            }
+            sentence.append(",1.6,0.9,1.3");
+        } else if ("ZDA".equals(sentenceType)) {
+            sentence.append("GPZDA,");
+            appendTime(2);
+            sentence.append(',');
+            appendInteger(calendar.get(Calendar.DAY_OF_MONTH), 2);
+            sentence.append(',');
+            appendInteger(calendar.get(Calendar.MONTH) + 1, 2);
+            sentence.append(',');
+            appendInteger(calendar.get(Calendar.YEAR), 4);
+            sentence.append(",00,00");
+        }
+    }
+
+    private void appendGsv(int message) {
+        sentence.setLength(0);
+        sentence.append("GPGSV,2,");
+        sentence.append(message);
+        sentence.append(',');
+        appendInteger(SATELLITE_PRNS.length, 2);
+
+        for (int i = (message - 1) * 4; i < message * 4; i++) {
+            int prn = SATELLITE_PRNS[i];
+            sentence.append(',');
+            appendInteger(prn, 2);
+            sentence.append(',');
+            appendInteger(10 + prn * 2, 2);
+            sentence.append(',');
+            appendInteger(prn * 12 % 360, 3);
+            sentence.append(',');
+            appendInteger(30 + (int) (epochCount + prn) % 15, 2);
+        }
+    }
+
+    /**
+     * Frames the sentence in {@link #sentence} and appends it to {@code output} unless corrupted.
+     *
+     * @return true if the sentence was dropped or truncated
+     */
+    private boolean emit(StringBuilder output) {
+        sentenceCount++;
+
+        if (corruptionRate > 0 && random.nextDouble() < corruptionRate) {
+            if (random.nextBoolean()) {
+                droppedSentenceCount++;
+            } else {
+                truncatedSentenceCount++;
+                output.append('$');
+                output.append(sentence, 0, sentence.length() / 2);
+                output.append("\r\n");
+            }
+
+            return true;
+        }
+
+        int checksum = 0;
+        for (int i = 0; i < sentence.length(); i++) {
+            checksum ^= sentence.charAt(i);
+        }
+
+        output.append('$');
+        output.append(sentence);
+        output.append('*');
+        output.append(HEX_DIGITS[(checksum >> 4) & 0x0F]);
+        output.append(HEX_DIGITS[checksum & 0x0F]);
+        output.append("\r\n");
+        return false;
+    }
+
+    private void appendTime(int fractionDigits) {
+        appendInteger(calendar.get(Calendar.HOUR_OF_DAY), 2);
+        appendInteger(calendar.get(Calendar.MINUTE), 2);
+        appendInteger(calendar.get(Calendar.SECOND), 2);
+        sentence.append('.');
+        appendInteger(calendar.get(Calendar.MILLISECOND) / (fractionDigits == 3 ? 1 : 10),
+                fractionDigits);
+    }
+
+    private void appendPosition(double latitude, double longitude) {
+        appendLatLong(Math.abs(latitude), 2);
+        sentence.append(latitude < 0 ? ",S," : ",N,");
+        appendLatLong(Math.abs(longitude), 3);
+        sentence.append(longitude < 0 ? ",W" : ",E");
+    }
+
+    private void appendLatLong(double degrees, int degreeDigits) {
+        // Round on the total number of ten thousandths of a minute to avoid 60 minutes.
+        long tenThousandthsOfMinutes = Math.round(degrees * 600000d);
+        appendInteger((int) (tenThousandthsOfMinutes / 600000), degreeDigits);
+        appendInteger((int) (tenThousandthsOfMinutes % 600000 / 10000), 2);
+        sentence.append('.');
+        appendInteger((int) (tenThousandthsOfMinutes % 10000), 4);
+    }
+
+    private void appendDecimal(double value, int integerDigits, int fractionDigits) {
+        long scale = 1;
+        for (int i = 0; i < fractionDigits; i++) {
+            scale *= 10;
+        }
+
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            sentence.append('-');
+        }
+        appendInteger(scaled / scale, integerDigits);
+        sentence.append('.');
+        appendInteger(scaled % scale, fractionDigits);
+    }
+
+    private void appendInteger(long value, int digits) {
+        int length = sentence.length();
+        sentence.append(value);
+        for (int i = sentence.length() - length; i < digits; i++) {
+            sentence.insert(length, '0');
+        }
+    }
+
+    private static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1)
+                * Math.cos(Math.toRadians((lat1 + lat2) / 2d));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS;
+    }
+
+    private static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1)
+                * Math.cos(Math.toRadians((lat1 + lat2) / 2d));
+        double y = Math.toRadians(lat2 - lat1);
+        double bearing = Math.toDegrees(Math.atan2(x, y));
+        return bearing < 0 ? bearing + 360d : bearing;
+    }
+
+    /**
+     * Produces the bytes of the generated epochs on demand.
+     */
+    private final class GeneratorInputStream extends InputStream {
+
+        private final StringBuilder output = new StringBuilder(1024);
+        private final long epochs;
+        private final boolean paced;
+        private long remainingEpochs;
+        private long nextReleaseTime;
+        private byte[] bytes = new byte[0];
+        private int position;
+
+        public GeneratorInputStream(long epochs, boolean paced) {
+            this.epochs = epochs;
+            this.paced = paced;
+            this.remainingEpochs = epochs;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+
+            return bytes[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+
+            int count = Math.min(length, bytes.length - position);
+            System.arraycopy(bytes, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == bytes.length) {
+                if (remainingEpochs == 0) {
+                    return false;
+                }
+
+                if (paced) {
+                    long now = System.currentTimeMillis();
+
+                    if (remainingEpochs == epochs) {
+                        nextReleaseTime = now;
+                    } else if (nextReleaseTime > now) {
+                        try {
+                            Thread.sleep(nextReleaseTime - now);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted while pacing output.");
+                        }
+                    }
+
+                    nextReleaseTime += fixInterval;
+                }
+
+                output.setLength(0);
+                nextEpoch(output);
+                remainingEpochs--;
+                bytes = output.toString().getBytes("US-ASCII");
+                position = 0;
+            }
+
+            return true;
+        }
+    }
+}
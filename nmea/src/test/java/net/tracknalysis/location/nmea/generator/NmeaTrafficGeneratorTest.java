@@ -0,0 +1,162 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationListener;
+import net.tracknalysis.location.Waypoint;
+import net.tracknalysis.location.nmea.NmeaLocationManager;
+
+/**
+ * @author David Valeri
+ */
+public class NmeaTrafficGeneratorTest {
+    
+    public static final List<Waypoint> WAYPOINTS = Arrays.asList(
+            new Waypoint("1", 38.979896545410156d, -77.54102325439453d),
+            new Waypoint("2", 38.98295974731445d, -77.53973388671875d),
+            new Waypoint("3", 38.982906341552734d, -77.54007720947266d),
+            new Waypoint("4", 38.972618103027344d, -77.54145050048828d),
+            new Waypoint("5", 38.97257995605469d, -77.5412826538086d));
+    
+    NmeaTrafficGenerator generator;
+    
+    @Before
+    public void setup() {
+        generator = new NmeaTrafficGenerator(WAYPOINTS);
+    }
+    
+    @Test
+    public void testEpoch() {
+        StringBuilder output = new StringBuilder();
+        generator.nextEpoch(output);
+        
+        assertEquals(
+                "$GPGGA,174358.200,3858.7938,N,07732.4614,W,1,08,0.9,100.0,M,-33.4,M,,*6C\r\n"
+                + "$GPRMC,174358.200,A,3858.7938,N,07732.4614,W,38.88,18.12,130512,,,A*72\r\n",
+                output.toString());
+        assertEquals(1, generator.getEpochCount());
+        assertEquals(2, generator.getSentenceCount());
+        assertEquals(1336931038300L, generator.getNextEpochTime());
+    }
+    
+    @Test
+    public void testCleanStream() throws Exception {
+        generator.setSentenceTypes(NmeaTrafficGenerator.SUPPORTED_SENTENCE_TYPES);
+        generator.setPositionNoise(2d);
+        
+        List<Location> locations = run(generator, 500);
+        
+        assertEquals(500, locations.size());
+        assertEquals(0, generator.getCorruptedEpochCount());
+        
+        for (int i = 0; i < locations.size(); i++) {
+            Location location = locations.get(i);
+            // Locations report the time of day.
+            assertEquals(63838200L + i * 100L, location.getTime());
+            assertEquals(38.978d, location.getLatitude(), 0.01d);
+            assertEquals(-77.541d, location.getLongitude(), 0.01d);
+            assertEquals(20f, location.getSpeed(), 0.01f);
+        }
+    }
+    
+    @Test
+    public void testCorruptedStream() throws Exception {
+        generator.setCorruptionRate(0.05d);
+        generator.setSeed(42);
+        
+        List<Location> locations = run(generator, 1000);
+        
+        assertTrue(generator.getDroppedSentenceCount() > 0);
+        assertTrue(generator.getTruncatedSentenceCount() > 0);
+        assertEquals(1000 - generator.getCorruptedEpochCount(), locations.size());
+    }
+    
+    @Test
+    public void testWriteFile() throws Exception {
+        generator.setSentenceTypes(new HashSet<String>(Arrays.asList("GGA", "RMC", "GSV")));
+        
+        File file = File.createTempFile("nmea", ".txt");
+        try {
+            generator.writeFile(file, 100);
+            
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            int lines = 0;
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    assertTrue(line.startsWith("$GP"));
+                    lines++;
+                }
+            } finally {
+                reader.close();
+            }
+            
+            assertEquals(400, lines);
+            assertEquals(400, generator.getSentenceCount());
+        } finally {
+            file.delete();
+        }
+    }
+    
+    private List<Location> run(NmeaTrafficGenerator generator, int epochs) throws Exception {
+        
+        NmeaLocationManager locationManager = new NmeaLocationManager(
+                generator.newSocketManager(epochs, false));
+        
+        final List<Location> locations = Collections.synchronizedList(new LinkedList<Location>());
+        
+        locationManager.addSynchronousListener(new LocationListener() {
+            @Override
+            public void receiveLocation(Location location) {
+                locations.add(location);
+            }
+        });
+        
+        try {
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (generator.getEpochCount() < epochs
+                    || locationManager.getParserMetrics().getSentenceCount()
+                            + generator.getDroppedSentenceCount()
+                            < generator.getSentenceCount()) {
+                Thread.sleep(100l);
+                waitingTime += 100;
+                assertTrue(waitingTime < 10000);
+            }
+        } finally {
+            locationManager.stop();
+        }
+        
+        return locations;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.tracknalysis.location.nmea.generator.NmeaTrafficGenerator;
+import net.tracknalysis.location.nmea.generator.NmeaTrafficGeneratorTest;
+import net.tracknalysis.location.nmea.index.TimeIndex.Format;
+
+/**
+ * @author David Valeri
+ */
+public class TimeIndexTest {
+    
+    File capture;
+    
+    @Before
+    public void setup() throws Exception {
+        capture = File.createTempFile("capture", ".nmea");
+    }
+    
+    @After
+    public void teardown() {
+        TimeIndex.getIndexFile(capture).delete();
+        capture.delete();
+    }
+    
+    @Test
+    public void testNmeaCapture() throws Exception {
+        TimeIndex index = TimeIndex.build(
+                getClass().getResourceAsStream("/QStarz-818XT-NMEA.txt"), Format.NMEA, 1000);
+        
+        // 18:03:58.200 to 18:04:10.000 every second.
+        assertEquals(12, index.size());
+        assertEquals(65038200L, index.getTime(0));
+        assertEquals(0, index.getOffset(0));
+        assertEquals(65039200L, index.getTime(1));
+        assertEquals(65049200L, index.getTime(11));
+        
+        assertEquals(-1, index.getEntry(65038199L));
+        assertEquals(0, index.getOffset(65038199L));
+        assertEquals(0, index.getEntry(65038200L));
+        assertEquals(4, index.getEntry(65042500L));
+        assertEquals(11, index.getEntry(Long.MAX_VALUE));
+    }
+    
+    @Test
+    public void testSeekAcrossMidnight() throws Exception {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(2012, Calendar.MAY, 13, 23, 30, 0);
+        
+        NmeaTrafficGenerator generator = new NmeaTrafficGenerator(
+                NmeaTrafficGeneratorTest.WAYPOINTS);
+        generator.setStartTime(calendar.getTimeInMillis());
+        generator.setFixInterval(1000);
+        generator.writeFile(capture, 2 * 60 * 60);
+        
+        TimeIndex index = TimeIndex.open(capture, Format.NMEA);
+        assertTrue(TimeIndex.getIndexFile(capture).isFile());
+        assertEquals(TimeIndex.DEFAULT_INTERVAL, index.getInterval());
+        assertEquals(2 * 60 * 6, index.size());
+        assertEquals((23 * 60 + 30) * 60000L, index.getTime(0));
+        
+        // 00:45:05 on the next day.
+        long time = (24 * 60 + 45) * 60000L + 5000L;
+        assertEquals("$GPGGA,004500.000", readLine(index, time).substring(0, 17));
+        
+        TimeIndex savedIndex = TimeIndex.open(capture, Format.NMEA);
+        assertEquals(index.size(), savedIndex.size());
+        assertEquals(index.getOffset(time), savedIndex.getOffset(time));
+        assertEquals("$GPGGA,004500.000", readLine(savedIndex, time).substring(0, 17));
+    }
+    
+    private String readLine(TimeIndex index, long time) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                index.openStream(capture, time), "US-ASCII"));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser;
+
+/**
+ * @author David Valeri
+ */
+public class NmeaJournalTest {
+    
+    File directory;
+    
+    @Before
+    public void setup() throws Exception {
+        directory = File.createTempFile("nmea-journal", "");
+        directory.delete();
+    }
+    
+    @After
+    public void teardown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testParserJournalReplay() throws Exception {
+        
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        input.write("garbage before synch\r\n".getBytes("US-ASCII"));
+        input.write(read(getClass().getResourceAsStream("/QStarz-818XT-NMEA.txt")));
+        input.write("$GPGGA,1234\r\n$GPRMC,truncated".getBytes("US-ASCII"));
+        byte[] bytes = input.toByteArray();
+        
+        NmeaJournal journal = new NmeaJournal(directory, NmeaJournal.MIN_SEGMENT_SIZE);
+        SimpleNmeaParser parser = new SimpleNmeaParser(new ByteArrayInputStream(bytes));
+        parser.setJournal(journal);
+        
+        try {
+            parser.start();
+            
+            int waitingTime = 0;
+            while (journal.getByteCount() < bytes.length) {
+                Thread.sleep(100l);
+                waitingTime += 100;
+                assertTrue(waitingTime < 10000);
+            }
+        } finally {
+            parser.stop();
+            journal.close();
+        }
+        
+        assertEquals(bytes.length, journal.getByteCount());
+        assertTrue(journal.getSegmentCount() > 1);
+        
+        NmeaJournalReader reader = new NmeaJournalReader(directory);
+        long lastTime = 0;
+        long recordCount = 0;
+        while (reader.next()) {
+            assertTrue(reader.getTime() >= lastTime);
+            lastTime = reader.getTime();
+            recordCount++;
+        }
+        reader.close();
+        
+        assertEquals(journal.getRecordCount(), recordCount);
+        assertEquals(0, reader.getTornRecordCount());
+        
+        assertArrayEquals(bytes, read(new NmeaJournalInputStream(
+                new NmeaJournalReader(directory), false)));
+    }
+    
+    @Test
+    public void testTornRecord() throws Exception {
+        
+        NmeaJournal journal = new NmeaJournal(directory);
+        journal.append("$GPGGA,1\r\n", 0, 10, 1000, 1000000000L);
+        journal.append("$GPGGA,2\r\n", 0, 10, 1100, 1100000000L);
+        journal.append("$GPGGA,3\r\n", 0, 10, 1200, 1200000000L);
+        journal.close();
+        
+        // Corrupt the content of the last record as if the write was interrupted.
+        File segment = NmeaJournal.listSegments(directory)[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(NmeaJournal.SEGMENT_HEADER_SIZE + 2 * 40 + NmeaJournal.RECORD_HEADER_SIZE + 7);
+        file.write('X');
+        file.close();
+        
+        // Appending after reopening continues in a new segment.
+        journal = new NmeaJournal(directory);
+        journal.append("$GPGGA,4\r\n".getBytes("US-ASCII"), 0, 10, 2000, 5000000L);
+        journal.close();
+        assertEquals(2, NmeaJournal.listSegments(directory).length);
+        
+        NmeaJournalReader reader = new NmeaJournalReader(directory);
+        
+        assertTrue(reader.next());
+        assertEquals(1000, reader.getTime());
+        assertEquals(1000000000L, reader.getNanoTime());
+        assertEquals("$GPGGA,1\r\n", new String(reader.getPayload(), 0, reader.getLength(),
+                "US-ASCII"));
+        assertTrue(reader.next());
+        assertEquals(1100, reader.getTime());
+        assertTrue(reader.next());
+        assertEquals(2000, reader.getTime());
+        assertEquals("$GPGGA,4\r\n", new String(reader.getPayload(), 0, reader.getLength(),
+                "US-ASCII"));
+        assertFalse(reader.next());
+        assertEquals(1, reader.getTornRecordCount());
+        
+        reader.close();
+    }
+    
+    private static byte[] read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        try {
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.receiver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * @author David Valeri
+ */
+public class ReceiverConfiguratorTest {
+    
+    @Test
+    public void testMtkReceiverConfigurator() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        
+        new MtkReceiverConfigurator().configure(os,
+                new HashSet<String>(Arrays.asList("GGA", "RMC")), 100);
+        
+        assertEquals("$PMTK314,0,1,0,1,0,0,0,0,0,0,0,0,0,0,0,0,0,0,0*28\r\n"
+                + "$PMTK220,100*2F\r\n", os.toString("US-ASCII"));
+    }
+    
+    @Test
+    public void testUbloxReceiverConfigurator() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        
+        new UbloxReceiverConfigurator().configure(os,
+                new HashSet<String>(Arrays.asList("GNS", "VTG")), 100);
+        
+        byte[] bytes = os.toByteArray();
+        String sentences = new String(bytes, 0, bytes.length - 14, "US-ASCII");
+        
+        assertTrue(sentences.startsWith("$PUBX,40,GGA,0,0,0,0,0,0*5A\r\n"));
+        assertTrue(sentences.contains("$PUBX,40,VTG,1,1,1,1,1,0*5F\r\n"));
+        assertTrue(sentences.contains("$PUBX,40,GNS,1,1,1,1,1,0*"));
+        assertEquals(10, sentences.split("\r\n").length);
+        
+        // UBX CFG-RATE with a 100ms measurement rate
+        byte[] cfgRate = Arrays.copyOfRange(bytes, bytes.length - 14, bytes.length);
+        assertEquals("[-75, 98, 6, 8, 6, 0, 100, 0, 1, 0, 1, 0, 122, 18]",
+                Arrays.toString(cfgRate));
+    }
+    
+    @Test
+    public void testUbloxReceiverConfiguratorInvalidFixInterval() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        
+        try {
+            new UbloxReceiverConfigurator().configure(os,
+                    new HashSet<String>(Arrays.asList("GGA", "RMC")), 0x10000);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        
+        try {
+            new UbloxReceiverConfigurator().configureNavPvt(os, -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        
+        assertEquals(0, os.size());
+    }
+}
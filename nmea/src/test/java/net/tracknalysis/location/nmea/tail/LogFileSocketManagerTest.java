@@ -0,0 +1,249 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.tail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationListener;
+import net.tracknalysis.location.nmea.NmeaLocationManager;
+import net.tracknalysis.location.nmea.generator.NmeaTrafficGenerator;
+import net.tracknalysis.location.nmea.generator.NmeaTrafficGeneratorTest;
+
+/**
+ * @author David Valeri
+ */
+public class LogFileSocketManagerTest {
+    
+    File directory;
+    File checkpointFile;
+    NmeaTrafficGenerator generator;
+    List<Location> locations;
+    Set<Long> times;
+    volatile long listenerDelay;
+    
+    @Before
+    public void setup() throws Exception {
+        directory = File.createTempFile("nmea-logs", "");
+        directory.delete();
+        directory.mkdirs();
+        checkpointFile = new File(directory, "checkpoint.properties");
+        generator = new NmeaTrafficGenerator(NmeaTrafficGeneratorTest.WAYPOINTS);
+        locations = Collections.synchronizedList(new LinkedList<Location>());
+        times = Collections.synchronizedSet(new HashSet<Long>());
+    }
+    
+    @After
+    public void teardown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+    
+    @Test
+    public void testFollowRolloverAndResume() throws Exception {
+        
+        File firstFile = new File(directory, "gps-0001.nmea");
+        File secondFile = new File(directory, "gps-0002.nmea");
+        append(firstFile, 10);
+        
+        LogFileSocketManager socketManager = new LogFileSocketManager(directory, null,
+                checkpointFile, false);
+        socketManager.setPollInterval(1);
+        NmeaLocationManager locationManager = createLocationManager(socketManager);
+        
+        try {
+            locationManager.start();
+            waitForLocations(10);
+            
+            append(firstFile, 10);
+            waitForLocations(20);
+            
+            append(secondFile, 15);
+            waitForLocations(35);
+            
+            // Let the parser commit the sentences following the last fix.
+            Thread.sleep(100);
+        } finally {
+            locationManager.stop();
+            socketManager.disconnect();
+        }
+        
+        Properties checkpoint = new Properties();
+        FileInputStream in = new FileInputStream(checkpointFile);
+        try {
+            checkpoint.load(in);
+        } finally {
+            in.close();
+        }
+        assertEquals(secondFile.getName(), checkpoint.getProperty("file"));
+        assertEquals(Long.toString(secondFile.length()), checkpoint.getProperty("offset"));
+        
+        // Input appended while stopped is read after a restart, without reading earlier input.
+        append(secondFile, 5);
+        locations.clear();
+        
+        locationManager = createLocationManager(socketManager);
+        try {
+            locationManager.start();
+            waitForLocations(5);
+            Thread.sleep(100);
+            assertEquals(5, locations.size());
+            assertEquals(generator.getNextEpochTime() - 5 * generator.getFixInterval(),
+                    1336867200000L + locations.get(0).getTime());
+        } finally {
+            locationManager.stop();
+            socketManager.disconnect();
+        }
+    }
+    
+    @Test
+    public void testResumeWithoutLoss() throws Exception {
+        
+        // Enough input that the parser reads well ahead of the fixes it has delivered.
+        File file = new File(directory, "gps.nmea");
+        append(file, 300);
+        assertTrue(file.length() > 16 * 1024);
+        listenerDelay = 1;
+        
+        LogFileSocketManager socketManager = new LogFileSocketManager(directory, null,
+                checkpointFile, false);
+        socketManager.setPollInterval(1);
+        NmeaLocationManager locationManager = createLocationManager(socketManager);
+        
+        try {
+            locationManager.start();
+            waitForLocations(50);
+            locationManager.stop();
+            
+            // Restarting on the same input reads again the input read ahead by the old parser.
+            locationManager.start();
+            waitForLocations(locations.size() + 50);
+        } finally {
+            locationManager.stop();
+            socketManager.disconnect();
+        }
+        
+        int stoppedCount = times.size();
+        assertTrue(stoppedCount < 300);
+        locations.clear();
+        
+        // Restarting from the checkpoint reads again the input read ahead before stopping.
+        socketManager = new LogFileSocketManager(directory, null, checkpointFile, false);
+        socketManager.setPollInterval(1);
+        locationManager = createLocationManager(socketManager);
+        
+        try {
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (times.size() < 300) {
+                Thread.sleep(10l);
+                waitingTime += 10;
+                assertTrue("Only " + times.size() + " of 300 fixes were received.",
+                        waitingTime < 10000);
+            }
+            
+            assertTrue(locations.size() < 300);
+        } finally {
+            locationManager.stop();
+            socketManager.disconnect();
+        }
+    }
+    
+    @Test
+    public void testStartAtEnd() throws Exception {
+        File file = new File(directory, "gps.nmea");
+        append(file, 10);
+        
+        LogFileSocketManager socketManager = new LogFileSocketManager(directory, null, null,
+                true);
+        socketManager.setPollInterval(1);
+        NmeaLocationManager locationManager = createLocationManager(socketManager);
+        
+        try {
+            locationManager.start();
+            Thread.sleep(100);
+            assertEquals(0, locations.size());
+            
+            append(file, 3);
+            waitForLocations(3);
+        } finally {
+            locationManager.stop();
+            socketManager.disconnect();
+        }
+    }
+    
+    private NmeaLocationManager createLocationManager(LogFileSocketManager socketManager) {
+        NmeaLocationManager locationManager = new NmeaLocationManager(socketManager);
+        locationManager.addSynchronousListener(new LocationListener() {
+            @Override
+            public void receiveLocation(Location location) {
+                locations.add(location);
+                times.add(location.getTime());
+                
+                if (listenerDelay > 0) {
+                    try {
+                        Thread.sleep(listenerDelay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        return locationManager;
+    }
+    
+    private void append(File file, int epochs) throws Exception {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < epochs; i++) {
+            generator.nextEpoch(output);
+        }
+        
+        OutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(output.toString().getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+    
+    private void waitForLocations(int count) throws Exception {
+        int waitingTime = 0;
+        while (locations.size() < count) {
+            Thread.sleep(10l);
+            waitingTime += 10;
+            assertTrue(waitingTime < 10000);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.tracknalysis.common.io.SocketManager;
+import net.tracknalysis.common.io.StreamSocketManager;
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.LocationListener;
+import net.tracknalysis.location.LocationManagerLifecycleNotificationType;
+import net.tracknalysis.location.nmea.receiver.MtkReceiverConfigurator;
+import net.tracknalysis.location.nmea.receiver.UbloxReceiverConfigurator;
+
+/**
+ * @author David Valeri
+ */
+public class UbxLocationManagerTest {
+    
+    @Test
+    public void testLocationListener() throws Exception {
+        
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        // Noise before the first frame
+        input.write(new byte[] {0x24, (byte) 0xB5, 0x00});
+        input.write(UbxTestFrames.navPvt(65038200l, 38.9838917, -77.5328133, 113.3, 0.046f,
+                229.39f));
+        // Invalid checksum
+        byte[] corrupt = UbxTestFrames.navPvt(65038400l, 38.9838917, -77.5328133, 113.3, 0.046f,
+                229.39f);
+        corrupt[30]++;
+        input.write(corrupt);
+        // No fix
+        input.write(UbxTestFrames.navPvt(65038600l, 0, 0, 0, 0, 0, 0, 0));
+        // Other message
+        input.write(UbxTestFrames.frame(0x01, 0x35, new byte[8]));
+        input.write(UbxTestFrames.navPvt(65038800l, 38.9838967, -77.5328333, 113.4, 0.149f,
+                101.27f));
+        
+        SocketManager socketManager = new StreamSocketManager(
+                new ByteArrayInputStream(input.toByteArray()), null);
+        
+        UbxLocationManager locationManager = new UbxLocationManager(socketManager);
+        
+        final List<Location> locations = Collections.synchronizedList(new LinkedList<Location>());
+        
+        locationManager.addSynchronousListener(new LocationListener() {
+            @Override
+            public void receiveLocation(Location location) {
+                locations.add(location);
+            }
+        });
+        
+        try {
+            locationManager.start();
+            
+            int waitingTime = 0;
+            while (true) {
+                if (locations.size() == 2) {
+                    break;
+                } else {
+                    Thread.sleep(1000l);
+                    waitingTime += 1000;
+                    assertTrue(waitingTime < 10000);
+                }
+            }
+            
+            assertEquals(2, locations.size());
+            
+            Location location = locations.get(0);
+            assertEquals(65038200l, location.getTime());
+            assertEquals(38.9838917d, location.getLatitude(), 1e-9);
+            assertEquals(-77.5328133d, location.getLongitude(), 1e-9);
+            assertEquals(113.3d, location.getAltitude(), 1e-9);
+            assertEquals(0.046f, location.getSpeed(), 0);
+            assertEquals(229.39f, location.getBearing(), 0);
+            
+            location = locations.get(1);
+            assertEquals(65038800l, location.getTime());
+            assertEquals(38.9838967d, location.getLatitude(), 1e-9);
+            assertEquals(101.27f, location.getBearing(), 0);
+        } finally {
+            locationManager.stop();
+        }
+    }
+    
+    @Test
+    public void testReceiverConfiguration() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UbxLocationManager locationManager = new UbxLocationManager(new StreamSocketManager(
+                new ByteArrayInputStream(new byte[0]), output));
+        locationManager.setReceiverConfigurator(new UbloxReceiverConfigurator());
+        locationManager.setFixInterval(100);
+        
+        try {
+            locationManager.start();
+            assertEquals(LocationManagerLifecycleNotificationType.STARTED,
+                    locationManager.getState());
+        } finally {
+            locationManager.stop();
+        }
+        
+        byte[] bytes = output.toByteArray();
+        String sentences = new String(bytes, 0, bytes.length - 30, "US-ASCII");
+        assertTrue(sentences.startsWith("$PUBX,40,GGA,0,0,0,0,0,0*5A\r\n"));
+        assertTrue(sentences.contains("$PUBX,40,RMC,0,0,0,0,0,0*"));
+        assertEquals(-1, sentences.indexOf(",1,1,1,1,1,0*"));
+        
+        // UBX CFG-MSG enabling NAV-PVT on all ports
+        byte[] cfgMsg = Arrays.copyOfRange(bytes, bytes.length - 30, bytes.length - 14);
+        assertEquals("[-75, 98, 6, 1, 8, 0, 1, 7, 1, 1, 1, 1, 1, 0, 28, -16]",
+                Arrays.toString(cfgMsg));
+        
+        locationManager = new UbxLocationManager(new StreamSocketManager(
+                new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream()));
+        locationManager.setReceiverConfigurator(new MtkReceiverConfigurator());
+        locationManager.start();
+        assertEquals(LocationManagerLifecycleNotificationType.START_FAILED,
+                locationManager.getState());
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.tracknalysis.location.Location;
+import net.tracknalysis.location.nmea.FixAccumulator;
+import net.tracknalysis.location.nmea.FixListener;
+import net.tracknalysis.location.nmea.NmeaParser;
+import net.tracknalysis.location.nmea.simple.SimpleNmeaParser;
+
+/**
+ * Compares the throughput of the NMEA GGA/RMC fix path with the UBX NAV-PVT fix path on
+ * equivalent data.  The QStarz capture is decoded once through the NMEA path and each resulting
+ * fix is re-encoded as a NAV-PVT frame.  Both inputs are then repeated and timed through their
+ * parsers from start until the last fix is delivered.
+ * <p/>
+ * Not run as part of the test suite.  Run {@link #main(String[])} with the test classpath,
+ * optionally passing the number of repetitions of the capture.
+ *
+ * @author David Valeri
+ */
+public final class UbxParserBenchmark {
+
+    private static final int DEFAULT_REPETITIONS = 500;
+    private static final int ROUNDS = 5;
+
+    private UbxParserBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REPETITIONS;
+
+        byte[] capture = readCapture();
+        List<Location> locations = decode(new SimpleNmeaParser(
+                new ByteArrayInputStream(capture)));
+
+        ByteArrayOutputStream nmeaInput = new ByteArrayOutputStream();
+        ByteArrayOutputStream ubxInput = new ByteArrayOutputStream();
+
+        for (int i = 0; i < repetitions; i++) {
+            nmeaInput.write(capture);
+
+            for (Location location : locations) {
+                ubxInput.write(UbxTestFrames.navPvt(location.getTime(), location.getLatitude(),
+                        location.getLongitude(), location.getAltitude(), location.getSpeed(),
+                        location.getBearing()));
+            }
+        }
+
+        int fixes = locations.size() * repetitions;
+        byte[] nmeaBytes = nmeaInput.toByteArray();
+        byte[] ubxBytes = ubxInput.toByteArray();
+
+        System.out.println("Fixes per run: " + fixes);
+        System.out.println("NMEA bytes per fix: " + nmeaBytes.length / fixes);
+        System.out.println("UBX bytes per fix: " + ubxBytes.length / fixes);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long nmeaTime = time(new SimpleNmeaParser(new ByteArrayInputStream(nmeaBytes)), fixes);
+            long ubxTime = time(new UbxParser(new ByteArrayInputStream(ubxBytes)), fixes);
+
+            System.out.println("Round " + round + ": NMEA " + nmeaTime / fixes + "ns/fix, UBX "
+                    + ubxTime / fixes + "ns/fix.");
+        }
+    }
+
+    private static byte[] readCapture() throws Exception {
+        InputStream is = UbxParserBenchmark.class.getResourceAsStream("/QStarz-818XT-NMEA.txt");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        try {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                os.write(buffer, 0, count);
+            }
+        } finally {
+            is.close();
+        }
+
+        return os.toByteArray();
+    }
+
+    /**
+     * Returns the elapsed time in nanoseconds for the parser to deliver {@code fixes} fixes.
+     */
+    private static long time(NmeaParser parser, int fixes) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(fixes);
+
+        parser.addSynchronousFixListener(new FixListener() {
+            @Override
+            public void receiveFix(FixAccumulator fix) {
+                latch.countDown();
+            }
+        });
+
+        long start = System.nanoTime();
+        parser.start();
+
+        try {
+            if (!latch.await(5, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Timed out waiting for fixes.");
+            }
+
+            return System.nanoTime() - start;
+        } finally {
+            parser.stop();
+        }
+    }
+
+    /**
+     * Returns the locations decoded by the parser until the input is exhausted.
+     */
+    private static List<Location> decode(NmeaParser parser) throws Exception {
+        final List<Location> locations = Collections.synchronizedList(new ArrayList<Location>());
+
+        parser.addSynchronousFixListener(new FixListener() {
+            @Override
+            public void receiveFix(FixAccumulator fix) {
+                locations.add(fix.toLocation());
+            }
+        });
+
+        parser.start();
+
+        try {
+            int size = -1;
+            while (size != locations.size()) {
+                size = locations.size();
+                Thread.sleep(500l);
+            }
+        } finally {
+            parser.stop();
+        }
+
+        return new ArrayList<Location>(locations);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+/**
+ * Builds UBX frames for tests and benchmarks.
+ *
+ * @author David Valeri
+ */
+public final class UbxTestFrames {
+
+    private UbxTestFrames() {
+    }
+
+    /**
+     * Returns a NAV-PVT frame reporting a valid 3D fix.
+     *
+     * @param time the UTC time of the fix as millisecond offset into the day
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param altitude the height above mean sea level in meters
+     * @param speed the ground speed in meters per second
+     * @param heading the heading of motion in degrees
+     */
+    public static byte[] navPvt(long time, double latitude, double longitude,
+            double altitude, float speed, float heading) {
+        return navPvt(time, latitude, longitude, altitude, speed, heading, 3, 0x01);
+    }
+
+    /**
+     * Returns a NAV-PVT frame.
+     *
+     * @param fixType the UBX fix type
+     * @param flags the UBX fix status flags
+     */
+    static byte[] navPvt(long time, double latitude, double longitude, double altitude,
+            float speed, float heading, int fixType, int flags) {
+
+        byte[] payload = new byte[UbxFrameDecoder.NAV_PVT_LENGTH];
+        writeI4(payload, 0, (int) (time % 604800000L));
+        writeU2(payload, 4, 2012);
+        payload[6] = 5;
+        payload[7] = 13;
+        payload[8] = (byte) (time / 3600000L);
+        payload[9] = (byte) (time / 60000L % 60);
+        payload[10] = (byte) (time / 1000L % 60);
+        payload[11] = 0x07;
+        writeI4(payload, 16, (int) (time % 1000L) * 1000000);
+        payload[20] = (byte) fixType;
+        payload[21] = (byte) flags;
+        payload[23] = 6;
+        writeI4(payload, 24, (int) Math.round(longitude * 1e7));
+        writeI4(payload, 28, (int) Math.round(latitude * 1e7));
+        writeI4(payload, 32, (int) Math.round(altitude * 1000));
+        writeI4(payload, 36, (int) Math.round(altitude * 1000));
+        writeI4(payload, 60, Math.round(speed * 1000));
+        writeI4(payload, 64, Math.round(heading * 1e5f));
+        return frame(UbxFrameDecoder.CLASS_NAV, UbxFrameDecoder.ID_NAV_PVT, payload);
+    }
+
+    /**
+     * Returns a frame with a valid checksum for the payload.
+     */
+    static byte[] frame(int messageClass, int messageId, byte[] payload) {
+        byte[] frame = new byte[payload.length + 8];
+        frame[0] = (byte) UbxFrameDecoder.SYNC_CHAR_1;
+        frame[1] = (byte) UbxFrameDecoder.SYNC_CHAR_2;
+        frame[2] = (byte) messageClass;
+        frame[3] = (byte) messageId;
+        writeU2(frame, 4, payload.length);
+        System.arraycopy(payload, 0, frame, 6, payload.length);
+
+        int checksumA = 0;
+        int checksumB = 0;
+        for (int i = 2; i < frame.length - 2; i++) {
+            checksumA = (checksumA + (frame[i] & 0xFF)) & 0xFF;
+            checksumB = (checksumB + checksumA) & 0xFF;
+        }
+
+        frame[frame.length - 2] = (byte) checksumA;
+        frame[frame.length - 1] = (byte) checksumB;
+        return frame;
+    }
+
+    private static void writeU2(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void writeI4(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+}
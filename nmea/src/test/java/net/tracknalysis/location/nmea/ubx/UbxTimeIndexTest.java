@@ -0,0 +1,55 @@
+/**
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this software except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.tracknalysis.location.nmea.ubx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import net.tracknalysis.location.nmea.index.TimeIndex;
+import net.tracknalysis.location.nmea.index.TimeIndex.Format;
+
+/**
+ * @author David Valeri
+ */
+public class UbxTimeIndexTest {
+    
+    @Test
+    public void testUbxCapture() throws Exception {
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        byte[] other = UbxTestFrames.frame(0x01, 0x35, new byte[16]);
+        byte[] frame = null;
+        
+        for (int i = 0; i < 100; i++) {
+            capture.write(other);
+            frame = UbxTestFrames.navPvt(65038200L + i * 200L, 38.98d, -77.53d, 100d, 10f, 90f);
+            capture.write(frame);
+        }
+        
+        TimeIndex index = TimeIndex.build(new ByteArrayInputStream(capture.toByteArray()),
+                Format.UBX, 1000);
+        
+        assertEquals(20, index.size());
+        assertEquals(65038200L, index.getTime(0));
+        assertEquals(other.length, index.getOffset(0));
+        assertEquals(65039200L, index.getTime(1));
+        assertEquals(other.length + 5 * (other.length + frame.length), index.getOffset(1));
+        assertEquals(index.getOffset(1), index.getOffset(65040000L));
+    }
+}